@@ -0,0 +1,102 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class computes an exponential moving average for irregularly sampled data.<br>
+ * The weight of a new sample depends on the time since the previous sample: each sample decays
+ * with the time constant <code>tau</code>, so gaps in the data weigh the new sample accordingly
+ * instead of treating it like any other sample. Each sample costs O(1) time.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class ExponentialSmoothing {
+
+    /**
+     * Smooths a series of samples.
+     *
+     * @param times     Sample times in milliseconds in chronological order. Samples with a time of
+     *                  {@link Long#MIN_VALUE} are skipped.
+     * @param values    Sample values
+     * @param size      Number of samples
+     * @param tau       Time constant in milliseconds
+     * @param smoothed  Array receiving the smoothed value at each sample. Skipped samples are NaN.
+     */
+    public static void apply(long[] times, int[] values, int size, long tau, double[] smoothed) {
+        ExponentialSmoothing smoothing = new ExponentialSmoothing(tau);
+        for (int i = 0; i < size; i++) {
+            smoothed[i] = times[i] == Long.MIN_VALUE
+                    ? Double.NaN
+                    : smoothing.add(times[i], values[i]);
+        }
+    }
+
+
+
+    private final double mTau;
+
+    private long mTime;
+
+    private double mValue = Double.NaN;
+
+
+    /**
+     * Creates a new ExponentialSmoothing.
+     *
+     * @param tau   Time constant in milliseconds, i.e. the time after which the weight of a sample
+     *              dropped to 1/e
+     */
+    public ExponentialSmoothing(long tau) {
+        if (tau <= 0) {
+            throw new IllegalArgumentException("Invalid time constant: " + tau);
+        }
+        mTau = tau;
+    }
+
+
+    /**
+     * Adds a sample.
+     *
+     * @param time  Time of the sample in milliseconds. Samples older than the previous one are
+     *              weighted like simultaneous samples.
+     * @param value Value of the sample
+     * @return      Smoothed value
+     */
+    public double add(long time, double value) {
+        if (Double.isNaN(mValue)) {
+            mValue = value;
+        } else {
+            double alpha = 1d - Math.exp(-Math.max(0L, time - mTime) / mTau);
+            mValue += alpha * (value - mValue);
+        }
+        mTime = time;
+        return mValue;
+    }
+
+    /**
+     * Removes all samples.
+     */
+    public void reset() {
+        mValue = Double.NaN;
+    }
+
+
+    /**
+     * @return  Smoothed value or NaN if no sample has been added
+     */
+    public double getValue() {
+        return mValue;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class detects implausible heart rate samples such as sensor glitches using a robust z-score
+ * based on the median absolute deviation (MAD) within a sliding window.<br>
+ * Each sample is compared to the window centered on it, so a single spike is an outlier while a
+ * genuine change of the heart rate, e.g. at the start of an interval, is not. Samples outside of
+ * the physiologically plausible range are always considered anomalies.<br>
+ * The window is kept in a histogram with one bin per beat per minute. The median is tracked
+ * incrementally and the MAD is found by expanding from the median, so the work per sample does
+ * not depend on the window size.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class HeartRateAnomalyDetector {
+
+    /**
+     * Default number of samples in the window
+     */
+    public static final int DEFAULT_WINDOW = 31;
+
+    /**
+     * Default robust z-score above which a sample is an anomaly
+     */
+    public static final double DEFAULT_THRESHOLD = 5d;
+
+
+    private static final int MIN_PLAUSIBLE = 25;
+
+    private static final int MAX_PLAUSIBLE = 240;
+
+    // Scales the MAD to the standard deviation of normally distributed data
+    private static final double MAD_TO_SIGMA = 1.4826;
+
+    // Lower bound of the scale in bpm, avoids flagging small changes of an almost constant signal
+    private static final double MIN_SCALE = 3d;
+
+    private static final int BINS = 256;
+
+
+
+    private final int mWindow;
+
+    private final double mThreshold;
+
+    private final int[] mHistogram = new int[BINS];
+
+    private int mCount;
+
+    private int mMedian;
+
+    // Number of samples in bins below the median bin
+    private int mBelow;
+
+
+    /**
+     * Creates a new HeartRateAnomalyDetector using the {@link #DEFAULT_WINDOW default window} and
+     * {@link #DEFAULT_THRESHOLD threshold}.
+     */
+    public HeartRateAnomalyDetector() {
+        this(DEFAULT_WINDOW, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Creates a new HeartRateAnomalyDetector.
+     *
+     * @param window    Odd number of samples in the window centered on each sample
+     * @param threshold Robust z-score above which a sample is an anomaly
+     */
+    public HeartRateAnomalyDetector(int window, double threshold) {
+        if (window < 3 || window % 2 == 0) {
+            throw new IllegalArgumentException("Window size must be odd and at least 3: " + window);
+        }
+        mWindow = window;
+        mThreshold = threshold;
+    }
+
+
+    /**
+     * Checks a series of heart rates for anomalies in a single pass.
+     *
+     * @param heartrates    Heart rates in chronological order
+     * @param size          Number of heart rates
+     * @param anomalies     Array receiving whether each sample is an anomaly or null
+     * @param repair        Whether to replace anomalies with the median of their window in place
+     * @return              Number of anomalies
+     */
+    public int apply(int[] heartrates, int size, boolean[] anomalies, boolean repair) {
+        int half = mWindow / 2;
+        // Original values of the window since repaired values must not be removed from it
+        int[] window = new int[mWindow];
+        int count = 0;
+
+        clear();
+        for (int i = 0; i < size + half; i++) {
+            if (i >= mWindow) {
+                remove(window[i % mWindow]);
+            }
+            // The window shrinks at the end of the series
+            if (i < size) {
+                window[i % mWindow] = heartrates[i];
+                add(heartrates[i]);
+            }
+
+            int center = i - half;
+            if (center < 0) continue;
+
+            boolean anomaly = isAnomaly(window[center % mWindow]);
+            if (anomalies != null) anomalies[center] = anomaly;
+            if (anomaly) {
+                count++;
+                if (repair) heartrates[center] = mMedian;
+            }
+        }
+        return count;
+    }
+
+
+    private boolean isAnomaly(int value) {
+        if (value < MIN_PLAUSIBLE || value > MAX_PLAUSIBLE) {
+            return true;
+        }
+        double scale = Math.max(MIN_SCALE, getMedianAbsoluteDeviation() * MAD_TO_SIGMA);
+        return Math.abs(value - mMedian) / scale > mThreshold;
+    }
+
+    // Expands from the median bin until half of the samples are within the distance
+    private int getMedianAbsoluteDeviation() {
+        int required = (mCount + 1) / 2;
+        int within = mHistogram[mMedian];
+        int distance = 0;
+        while (within < required) {
+            distance++;
+            if (mMedian - distance >= 0) within += mHistogram[mMedian - distance];
+            if (mMedian + distance < BINS) within += mHistogram[mMedian + distance];
+        }
+        return distance;
+    }
+
+
+    private void clear() {
+        for (int i = 0; i < BINS; i++) mHistogram[i] = 0;
+        mCount = 0;
+        mMedian = 0;
+        mBelow = 0;
+    }
+
+    private void add(int value) {
+        int bin = bin(value);
+        mHistogram[bin]++;
+        mCount++;
+        if (bin < mMedian) mBelow++;
+        moveMedian();
+    }
+
+    private void remove(int value) {
+        int bin = bin(value);
+        mHistogram[bin]--;
+        mCount--;
+        if (bin < mMedian) mBelow--;
+        moveMedian();
+    }
+
+    // Moves the median bin to the one containing the lower median, usually by a single bin
+    private void moveMedian() {
+        if (mCount == 0) return;
+        int rank = (mCount - 1) / 2;
+        while (rank < mBelow) {
+            mMedian--;
+            mBelow -= mHistogram[mMedian];
+        }
+        while (rank >= mBelow + mHistogram[mMedian]) {
+            mBelow += mHistogram[mMedian];
+            mMedian++;
+        }
+    }
+
+    private static int bin(int value) {
+        return value < 0 ? 0 : value >= BINS ? BINS - 1 : value;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class defines heart rate zones by their lower bounds in beats per minute and classifies
+ * heart rates accordingly. Zone 0 contains all heart rates below the first bound, so there is
+ * always one zone more than there are bounds.<br>
+ * Classification uses a precomputed lookup table and does not branch on the number of zones.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class HeartRateZones {
+
+    private static final int TABLE_SIZE = 256;
+
+    private static final int[] DEFAULT_PERCENTAGES = { 50, 60, 70, 80, 90 };
+
+    private static final int DEFAULT_MAXIMUM = 190;
+
+
+    /**
+     * Default zones based on a maximum heart rate of 190 bpm, see {@link #fromMaximum(int)}
+     */
+    public static final HeartRateZones DEFAULT = fromMaximum(DEFAULT_MAXIMUM);
+
+
+    /**
+     * Creates the common five zones starting at 50, 60, 70, 80 and 90 percent of the specified
+     * maximum heart rate.
+     *
+     * @param maximum   Maximum heart rate in bpm
+     * @return          HeartRateZones
+     */
+    public static HeartRateZones fromMaximum(int maximum) {
+        int[] bounds = new int[DEFAULT_PERCENTAGES.length];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = Math.round(maximum * DEFAULT_PERCENTAGES[i] / 100f);
+        }
+        return new HeartRateZones(bounds);
+    }
+
+
+
+    private final int[] mBounds;
+
+    private final byte[] mTable = new byte[TABLE_SIZE];
+
+
+    /**
+     * Creates new HeartRateZones from their lower bounds.
+     *
+     * @param bounds    Strictly ascending lower bounds in bpm
+     */
+    public HeartRateZones(int... bounds) {
+        if (bounds.length == 0 || bounds.length >= Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid number of zones: " + bounds.length);
+        }
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Bounds must be strictly ascending!");
+            }
+        }
+        mBounds = bounds.clone();
+
+        int zone = 0;
+        for (int heartrate = 0; heartrate < TABLE_SIZE; heartrate++) {
+            while (zone < mBounds.length && heartrate >= mBounds[zone]) {
+                zone++;
+            }
+            mTable[heartrate] = (byte) zone;
+        }
+    }
+
+
+    /**
+     * @return  Number of zones including zone 0
+     */
+    public int size() {
+        return mBounds.length + 1;
+    }
+
+    /**
+     * Returns the zone a heart rate belongs to.
+     *
+     * @param heartrate Heart rate in bpm
+     * @return          Zone between 0 and {@link #size()} - 1
+     */
+    public int classify(int heartrate) {
+        if (heartrate < 0) return 0;
+        return mTable[heartrate < TABLE_SIZE ? heartrate : TABLE_SIZE - 1];
+    }
+
+    /**
+     * Returns a String uniquely identifying this zone configuration, e.g. to store it alongside
+     * aggregated data.
+     *
+     * @return  Key of this configuration
+     */
+    public String getKey() {
+        StringBuilder key = new StringBuilder();
+        for (int bound : mBounds) {
+            if (key.length() > 0) key.append(',');
+            key.append(bound);
+        }
+        return key.toString();
+    }
+
+
+    // No Javadoc
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HeartRateZones && Arrays.equals(mBounds, ((HeartRateZones) o).mBounds);
+    }
+
+    // No Javadoc
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(mBounds);
+    }
+
+    // No Javadoc
+    @Override
+    public String toString() {
+        return "HeartRateZones: " + getKey();
+    }
+}
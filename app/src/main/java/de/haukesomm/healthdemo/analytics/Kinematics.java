@@ -0,0 +1,207 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class derives per-sample distance, speed and pace as well as the cumulative distance of a
+ * session from its GPS coordinates and timestamps.<br>
+ * Distances between consecutive fixes are computed with an equirectangular approximation, which is
+ * accurate to well below a meter for the short segments between samples. Longer segments (e.g.
+ * after a lost signal) fall back to the haversine formula. Invalid fixes (out of range, not
+ * finite or exactly 0/0) are skipped, i.e. the next valid fix is measured from the last valid one.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class Kinematics {
+
+    /**
+     * Mean earth radius in meters
+     */
+    public static final double EARTH_RADIUS = 6371008.8;
+
+    // Segments spanning more than this (in degrees) use the haversine formula
+    private static final double EQUIRECTANGULAR_LIMIT = 0.05;
+
+
+    /**
+     * Checks whether a GPS fix is usable. Lost fixes are commonly reported at 0/0.
+     *
+     * @param latitude  Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return          True if the fix is valid
+     */
+    public static boolean isValidFix(double latitude, double longitude) {
+        return latitude >= -90d && latitude <= 90d && longitude >= -180d && longitude <= 180d
+                && !(latitude == 0d && longitude == 0d);
+    }
+
+    /**
+     * Computes the great-circle distance between two points using the haversine formula.
+     *
+     * @param latitude1     Latitude of the first point in degrees
+     * @param longitude1    Longitude of the first point in degrees
+     * @param latitude2     Latitude of the second point in degrees
+     * @param longitude2    Longitude of the second point in degrees
+     * @return              Distance in meters
+     */
+    public static double haversine(double latitude1, double longitude1,
+                                   double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double sinHalfPhi = Math.sin((phi2 - phi1) / 2);
+        double sinHalfLambda = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinHalfPhi * sinHalfPhi
+                + Math.cos(phi1) * Math.cos(phi2) * sinHalfLambda * sinHalfLambda;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1d, Math.sqrt(a)));
+    }
+
+
+    /**
+     * Derives the kinematics of a session.<br>
+     * The speed of a sample is the distance from the previous valid fix divided by the time
+     * between them. If it can not be determined (invalid fix or timestamp, no time elapsed) the
+     * previous speed is carried forward.
+     *
+     * @param times         Timestamps in milliseconds, {@link Long#MIN_VALUE} if unknown
+     * @param latitudes     Latitudes in degrees
+     * @param longitudes    Longitudes in degrees
+     * @param size          Number of samples
+     * @return              Kinematics of the session
+     */
+    public static Kinematics derive(long[] times, double[] latitudes, double[] longitudes,
+                                    int size) {
+        double[] cumulative = new double[size];
+        float[] speeds = new float[size];
+
+        double total = 0d;
+        float speed = 0f;
+
+        int last = -1;
+        double lastCos = 0d;
+        for (int i = 0; i < size; i++) {
+            double latitude = latitudes[i];
+            double longitude = longitudes[i];
+
+            if (isValidFix(latitude, longitude)) {
+                double cos = Math.cos(Math.toRadians(latitude));
+                if (last >= 0) {
+                    double dLatitude = latitude - latitudes[last];
+                    double dLongitude = longitude - longitudes[last];
+
+                    double distance;
+                    if (Math.abs(dLatitude) < EQUIRECTANGULAR_LIMIT
+                            && Math.abs(dLongitude) < EQUIRECTANGULAR_LIMIT) {
+                        double x = Math.toRadians(dLongitude) * (cos + lastCos) / 2;
+                        double y = Math.toRadians(dLatitude);
+                        distance = EARTH_RADIUS * Math.sqrt(x * x + y * y);
+                    } else {
+                        distance = haversine(latitudes[last], longitudes[last], latitude, longitude);
+                    }
+                    total += distance;
+
+                    long elapsed = times[i] - times[last];
+                    if (times[i] != Long.MIN_VALUE && times[last] != Long.MIN_VALUE
+                            && elapsed > 0) {
+                        speed = (float) (distance * 1000d / elapsed);
+                    }
+                }
+                last = i;
+                lastCos = cos;
+            }
+
+            cumulative[i] = total;
+            speeds[i] = speed;
+        }
+
+        return new Kinematics(cumulative, speeds);
+    }
+
+
+
+    private final double[] mCumulativeDistances;
+
+    private final float[] mSpeeds;
+
+
+    /**
+     * Creates a Kinematics object from previously derived values, e.g. when loading them from
+     * storage.
+     *
+     * @param cumulativeDistances   Cumulative distance at each sample in meters
+     * @param speeds                Speed at each sample in m/s
+     */
+    public Kinematics(double[] cumulativeDistances, float[] speeds) {
+        if (cumulativeDistances.length != speeds.length) {
+            throw new IllegalArgumentException("Array lengths do not match!");
+        }
+        mCumulativeDistances = cumulativeDistances;
+        mSpeeds = speeds;
+    }
+
+
+    /**
+     * @return  Number of samples
+     */
+    public int size() {
+        return mSpeeds.length;
+    }
+
+    /**
+     * @return  Total distance in meters
+     */
+    public double getTotalDistance() {
+        return mSpeeds.length == 0 ? 0d : mCumulativeDistances[mSpeeds.length - 1];
+    }
+
+    /**
+     * Returns the distance covered since the previous sample.
+     *
+     * @param index Index of the sample
+     * @return      Distance in meters
+     */
+    public double getDistance(int index) {
+        return index == 0 ? 0d : mCumulativeDistances[index] - mCumulativeDistances[index - 1];
+    }
+
+    /**
+     * Returns the pace at a sample.
+     *
+     * @param index Index of the sample
+     * @return      Pace in seconds per kilometer, infinite when not moving
+     */
+    public double getPace(int index) {
+        return 1000d / mSpeeds[index];
+    }
+
+    /**
+     * Returns the cumulative distance at each sample in meters. The returned array is this
+     * object's backing storage and must not be modified.
+     *
+     * @return  Cumulative distances in meters
+     */
+    public double[] getCumulativeDistances() {
+        return mCumulativeDistances;
+    }
+
+    /**
+     * Returns the speed at each sample in m/s. The returned array is this object's backing storage
+     * and must not be modified.
+     *
+     * @return  Speeds in m/s
+     */
+    public float[] getSpeeds() {
+        return mSpeeds;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class converts a window of a {@link MinMaxPyramid} into line segments in pixel
+ * coordinates, ready to be drawn at once.<br>
+ * The level with about one bucket per pixel is chosen, so the cost only depends on the width of
+ * the area and not on the number of values or the zoom level. Each bucket is drawn as a vertical
+ * bar between its extremes, so no peaks are lost, and connected to the previous bucket at its
+ * center. Values just outside of the window are included so the line reaches the edges.<br>
+ * The buffer of coordinates is reused and only grows, so projecting a window again does not
+ * allocate. This class does not depend on any Android APIs.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public final class LineProjection {
+
+    // Pixel coordinates, four per line segment
+    private float[] mLines = new float[0];
+
+    private int mLineCount;
+
+
+    /**
+     * Projects the visible window of a series into an area. Pixel coordinates grow to the right
+     * and downwards.
+     *
+     * @param pyramid   Pyramid of the series
+     * @param left      Left edge of the area in pixels
+     * @param top       Top edge of the area in pixels
+     * @param right     Right edge of the area in pixels
+     * @param bottom    Bottom edge of the area in pixels
+     * @param minX      X value at the left edge of the area
+     * @param maxX      X value at the right edge of the area
+     * @param minY      Y value at the bottom edge of the area
+     * @param maxY      Y value at the top edge of the area
+     */
+    public void project(MinMaxPyramid pyramid, float left, float top, float right, float bottom,
+                        float minX, float maxX, float minY, float maxY) {
+        mLineCount = 0;
+        float width = right - left;
+        float height = bottom - top;
+        if (pyramid.size() == 0 || width <= 0) return;
+
+        float scaleX = maxX > minX ? width / (maxX - minX) : 0f;
+        float scaleY = maxY > minY ? height / (maxY - minY) : 0f;
+
+        int level = pyramid.levelFor((maxX - minX) / width);
+        float[] min = pyramid.getMin(level);
+        float[] max = pyramid.getMax(level);
+        int bucket = 1 << level;
+        int first = Math.max(0, (int) Math.floor(minX) / bucket - 1);
+        int last = Math.min(min.length - 1, (int) Math.ceil(maxX) / bucket + 1);
+
+        // A connecting segment and a bar per bucket
+        int capacity = (last - first + 1) * 8;
+        if (mLines.length < capacity) {
+            mLines = new float[capacity];
+        }
+
+        // Single values are drawn as bars of length zero
+        boolean bars = level > 0 || first == last;
+        float center = (bucket - 1) * 0.5f;
+        float previousX = 0f;
+        float previousY = 0f;
+        int line = 0;
+        for (int i = first; i <= last; i++) {
+            float x = left + ((float) i * bucket + center - minX) * scaleX;
+            float high = bottom - (max[i] - minY) * scaleY;
+            float low = bottom - (min[i] - minY) * scaleY;
+            float middle = (high + low) * 0.5f;
+
+            if (i > first) {
+                mLines[line++] = previousX;
+                mLines[line++] = previousY;
+                mLines[line++] = x;
+                mLines[line++] = middle;
+            }
+            if (bars) {
+                mLines[line++] = x;
+                mLines[line++] = high;
+                mLines[line++] = x;
+                mLines[line++] = low;
+            }
+            previousX = x;
+            previousY = middle;
+        }
+        mLineCount = line;
+    }
+
+
+    /**
+     * @return  Coordinates of the line segments as x0, y0, x1, y1. Only the first
+     *          {@link #getLineCount()} values are valid. The array is reused by the next
+     *          projection.
+     */
+    public float[] getLines() {
+        return mLines;
+    }
+
+    /**
+     * @return  Number of valid values in {@link #getLines()}, i.e. four per line segment
+     */
+    public int getLineCount() {
+        return mLineCount;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class precomputes the minimum and maximum of a series at power-of-two resolutions, so
+ * any window of the series can be drawn from about as many buckets as there are pixels.<br>
+ * Level 0 holds the values themselves, each bucket of level <i>k</i> covers 2<sup>k</sup>
+ * consecutive values and is built from two buckets of level <i>k - 1</i>. All levels together
+ * take up about three times the memory of the values as floats and are built in O(n) time.
+ * Values are expected to be sampled in equal intervals, their index is used as the x coordinate.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public final class MinMaxPyramid {
+
+    private final float[][] mMin;
+
+    private final float[][] mMax;
+
+    private final int mSize;
+
+
+    /**
+     * Builds the pyramid of a series.
+     *
+     * @param values    Values of the series
+     * @param size      Number of values
+     */
+    public MinMaxPyramid(double[] values, int size) {
+        if (size < 0 || size > values.length) {
+            throw new IllegalArgumentException("Invalid series size: " + size);
+        }
+        mSize = size;
+
+        int levels = 1;
+        while ((1L << (levels - 1)) < size) levels++;
+        mMin = new float[levels][];
+        mMax = new float[levels][];
+
+        // Both extremes of a single value are the value itself
+        float[] base = new float[size];
+        for (int i = 0; i < size; i++) {
+            base[i] = (float) values[i];
+        }
+        mMin[0] = base;
+        mMax[0] = base;
+
+        for (int level = 1; level < levels; level++) {
+            float[] lowerMin = mMin[level - 1];
+            float[] lowerMax = mMax[level - 1];
+            int length = (lowerMin.length + 1) / 2;
+            float[] min = new float[length];
+            float[] max = new float[length];
+            for (int i = 0; i < length; i++) {
+                int left = 2 * i;
+                int right = Math.min(left + 1, lowerMin.length - 1);
+                min[i] = Math.min(lowerMin[left], lowerMin[right]);
+                max[i] = Math.max(lowerMax[left], lowerMax[right]);
+            }
+            mMin[level] = min;
+            mMax[level] = max;
+        }
+    }
+
+
+    /**
+     * @return  Number of values
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return  Number of levels including level 0
+     */
+    public int getLevelCount() {
+        return mMin.length;
+    }
+
+    /**
+     * Returns the coarsest level whose buckets cover at most the specified number of values, e.g.
+     * the number of values per pixel of the visible window.
+     *
+     * @param valuesPerBucket   Maximum number of values per bucket
+     * @return                  Level
+     */
+    public int levelFor(double valuesPerBucket) {
+        int level = 0;
+        while (level + 1 < mMin.length && (1L << (level + 1)) <= valuesPerBucket) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * This method returns the bucket minimums of a level.
+     * <br>
+     * The returned array is this pyramid's backing storage and must not be modified.
+     *
+     * @param level Level
+     * @return      Minimum of each bucket
+     */
+    public float[] getMin(int level) {
+        return mMin[level];
+    }
+
+    /**
+     * This method returns the bucket maximums of a level.
+     * <br>
+     * The returned array is this pyramid's backing storage, see {@link #getMin(int)}.
+     *
+     * @param level Level
+     * @return      Maximum of each bucket
+     */
+    public float[] getMax(int level) {
+        return mMax[level];
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class maintains the mean, minimum and maximum of the samples within a sliding time window.
+ * <br>
+ * Samples are added in chronological order, either live while recording or from stored data (see
+ * {@link #apply(long[], int[], int, long, double[], double[], double[])}). Samples leaving the
+ * window are removed from a running sum, and the minimum and maximum are kept in monotonic deques,
+ * so each sample costs amortized O(1) time regardless of the window size.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class RollingWindow {
+
+    /**
+     * Computes the rolling mean, minimum and maximum of the window ending at each sample.
+     *
+     * @param times     Sample times in milliseconds in chronological order. Samples with a time of
+     *                  {@link Long#MIN_VALUE} are skipped.
+     * @param values    Sample values
+     * @param size      Number of samples
+     * @param window    Window length in milliseconds
+     * @param means     Array receiving the mean at each sample or null. Skipped samples are NaN.
+     * @param minimums  Array receiving the minimum at each sample or null
+     * @param maximums  Array receiving the maximum at each sample or null
+     */
+    public static void apply(long[] times, int[] values, int size, long window,
+                             double[] means, double[] minimums, double[] maximums) {
+        RollingWindow rolling = new RollingWindow(window);
+        for (int i = 0; i < size; i++) {
+            boolean valid = times[i] != Long.MIN_VALUE;
+            if (valid) rolling.add(times[i], values[i]);
+
+            if (means != null) means[i] = valid ? rolling.getMean() : Double.NaN;
+            if (minimums != null) minimums[i] = valid ? rolling.getMin() : Double.NaN;
+            if (maximums != null) maximums[i] = valid ? rolling.getMax() : Double.NaN;
+        }
+    }
+
+
+
+    private static final int INITIAL_CAPACITY = 64;
+
+
+    private final long mWindow;
+
+
+    // Samples within the window, stored in a ring buffer
+    private long[] mTimes = new long[INITIAL_CAPACITY];
+
+    private double[] mValues = new double[INITIAL_CAPACITY];
+
+    private int mHead;
+
+    private int mCount;
+
+    private double mSum;
+
+
+    // Ring buffers of sample positions with decreasing minimums and maximums
+    private long[] mMinimums = new long[INITIAL_CAPACITY];
+
+    private int mMinimumHead;
+
+    private int mMinimumCount;
+
+    private long[] mMaximums = new long[INITIAL_CAPACITY];
+
+    private int mMaximumHead;
+
+    private int mMaximumCount;
+
+
+    // Position of the next sample, used to identify samples in the deques
+    private long mPosition;
+
+
+    /**
+     * Creates a new RollingWindow.
+     *
+     * @param window    Window length in milliseconds. A sample is within the window while it is
+     *                  less than this much older than the latest sample.
+     */
+    public RollingWindow(long window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Invalid window length: " + window);
+        }
+        mWindow = window;
+    }
+
+
+    /**
+     * Adds a sample and removes all samples that left the window.
+     *
+     * @param time  Time of the sample in milliseconds, not older than the previous sample
+     * @param value Value of the sample
+     */
+    public void add(long time, double value) {
+        if (mCount > 0 && time < mTimes[(mHead + mCount - 1) & (mTimes.length - 1)]) {
+            throw new IllegalArgumentException("Samples must be added in chronological order!");
+        }
+
+        // Evict samples older than the window
+        while (mCount > 0 && time - mTimes[mHead] >= mWindow) {
+            mSum -= mValues[mHead];
+            mHead = (mHead + 1) & (mTimes.length - 1);
+            mCount--;
+        }
+        long oldest = mPosition - mCount;
+        while (mMinimumCount > 0 && mMinimums[mMinimumHead] < oldest) {
+            mMinimumHead = (mMinimumHead + 1) & (mMinimums.length - 1);
+            mMinimumCount--;
+        }
+        while (mMaximumCount > 0 && mMaximums[mMaximumHead] < oldest) {
+            mMaximumHead = (mMaximumHead + 1) & (mMaximums.length - 1);
+            mMaximumCount--;
+        }
+        if (mCount == 0) {
+            // Discard accumulated rounding errors
+            mSum = 0d;
+        }
+
+        // Append the sample
+        if (mCount == mTimes.length) {
+            mTimes = grow(mTimes, mHead, mCount);
+            mValues = grow(mValues, mHead, mCount);
+            mHead = 0;
+        }
+        int tail = (mHead + mCount) & (mTimes.length - 1);
+        mTimes[tail] = time;
+        mValues[tail] = value;
+        mCount++;
+        mSum += value;
+        long position = mPosition++;
+
+        // Samples which can no longer be the minimum or maximum leave the deques
+        while (mMinimumCount > 0 && valueAt(mMinimums[last(mMinimumHead, mMinimumCount,
+                mMinimums.length)]) >= value) {
+            mMinimumCount--;
+        }
+        if (mMinimumCount == mMinimums.length) {
+            mMinimums = grow(mMinimums, mMinimumHead, mMinimumCount);
+            mMinimumHead = 0;
+        }
+        mMinimums[(mMinimumHead + mMinimumCount++) & (mMinimums.length - 1)] = position;
+
+        while (mMaximumCount > 0 && valueAt(mMaximums[last(mMaximumHead, mMaximumCount,
+                mMaximums.length)]) <= value) {
+            mMaximumCount--;
+        }
+        if (mMaximumCount == mMaximums.length) {
+            mMaximums = grow(mMaximums, mMaximumHead, mMaximumCount);
+            mMaximumHead = 0;
+        }
+        mMaximums[(mMaximumHead + mMaximumCount++) & (mMaximums.length - 1)] = position;
+    }
+
+    /**
+     * Removes all samples.
+     */
+    public void reset() {
+        mHead = 0;
+        mCount = 0;
+        mSum = 0d;
+        mMinimumHead = 0;
+        mMinimumCount = 0;
+        mMaximumHead = 0;
+        mMaximumCount = 0;
+    }
+
+
+    private static int last(int head, int count, int length) {
+        return (head + count - 1) & (length - 1);
+    }
+
+    private double valueAt(long position) {
+        int offset = (int) (position - (mPosition - mCount));
+        return mValues[(mHead + offset) & (mValues.length - 1)];
+    }
+
+    // Doubles the capacity of a full ring buffer, moving its head to index 0
+    private static long[] grow(long[] ring, int head, int count) {
+        long[] grown = new long[ring.length * 2];
+        for (int i = 0; i < count; i++) {
+            grown[i] = ring[(head + i) & (ring.length - 1)];
+        }
+        return grown;
+    }
+
+    private static double[] grow(double[] ring, int head, int count) {
+        double[] grown = new double[ring.length * 2];
+        for (int i = 0; i < count; i++) {
+            grown[i] = ring[(head + i) & (ring.length - 1)];
+        }
+        return grown;
+    }
+
+
+    /**
+     * @return  Number of samples within the window
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return  Mean of the samples within the window or NaN if it is empty
+     */
+    public double getMean() {
+        return mCount == 0 ? Double.NaN : mSum / mCount;
+    }
+
+    /**
+     * @return  Minimum of the samples within the window or NaN if it is empty
+     */
+    public double getMin() {
+        return mMinimumCount == 0 ? Double.NaN : valueAt(mMinimums[mMinimumHead]);
+    }
+
+    /**
+     * @return  Maximum of the samples within the window or NaN if it is empty
+     */
+    public double getMax() {
+        return mMaximumCount == 0 ? Double.NaN : valueAt(mMaximums[mMaximumHead]);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This enum consists of the calendar periods sessions are rolled up by. Periods are aligned to
+ * local midnight, the locale's first day of the week and the first day of the month.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public enum RollupPeriod {
+
+    /**
+     * Calendar day
+     */
+    DAY("day", Calendar.DAY_OF_MONTH),
+
+    /**
+     * Calendar week
+     */
+    WEEK("week", Calendar.WEEK_OF_YEAR),
+
+    /**
+     * Calendar month
+     */
+    MONTH("month", Calendar.MONTH);
+
+
+    /**
+     * Alias to represent the period in an SQL database.
+     */
+    public final String alias;
+
+    private final int mField;
+
+
+    RollupPeriod(String alias, int field) {
+        this.alias = alias;
+        mField = field;
+    }
+
+
+    /**
+     * This method returns the start of the period containing a point in time.
+     *
+     * @param time  Milliseconds since the epoch
+     * @param zone  Time zone defining the local calendar
+     * @return      Start of the period in milliseconds since the epoch
+     */
+    public long getStart(long time, TimeZone zone) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+
+        if (this == WEEK) {
+            int days = (calendar.get(Calendar.DAY_OF_WEEK) - calendar.getFirstDayOfWeek() + 7) % 7;
+            calendar.add(Calendar.DAY_OF_MONTH, -days);
+        } else if (this == MONTH) {
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+        }
+
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * This method returns the start of the following period.
+     *
+     * @param start Start of a period as returned by {@link #getStart(long, TimeZone)}
+     * @param zone  Time zone defining the local calendar
+     * @return      Start of the next period in milliseconds since the epoch
+     */
+    public long getNext(long start, TimeZone zone) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(start);
+        calendar.add(mField, 1);
+        return calendar.getTimeInMillis();
+    }
+
+
+    /**
+     * This method finds a period by its alias and returns it.
+     *
+     * @param alias Alias
+     * @return      RollupPeriod or null if there is none with the specified alias
+     */
+    public static RollupPeriod get(String alias) {
+        for (RollupPeriod period : RollupPeriod.values()) {
+            if (period.alias.equals(alias)) {
+                return period;
+            }
+        }
+        return null;
+    }
+}
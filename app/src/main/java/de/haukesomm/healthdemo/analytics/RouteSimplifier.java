@@ -0,0 +1,311 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class simplifies GPS tracks using the Douglas-Peucker algorithm.<br>
+ * Instead of running the algorithm once per tolerance, the importance of each vertex (the
+ * tolerance at which Douglas-Peucker would keep it) is computed once when the RouteSimplifier is
+ * created. Importances are capped by the importance of the enclosing segment's splitting vertex, so
+ * the result for any tolerance is a simple threshold and the result for a larger tolerance is
+ * always a subset of the result for a smaller one. This allows re-simplifying a route, e.g. on
+ * every zoom level change, in linear time and to enforce a hard limit on the number of vertices by
+ * keeping the most important ones.<br>
+ * Distances are measured in meters in a local equirectangular projection. Invalid fixes (see
+ * {@link Kinematics#isValidFix(double, double)}) are never part of a simplified route.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class RouteSimplifier {
+
+    /**
+     * A simplified route.
+     */
+    public static class Route {
+
+        /**
+         * Latitudes of the route's vertices
+         */
+        public final double[] latitudes;
+
+        /**
+         * Longitudes of the route's vertices
+         */
+        public final double[] longitudes;
+
+
+        Route(double[] latitudes, double[] longitudes) {
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+        }
+
+
+        /**
+         * @return  Number of vertices
+         */
+        public int size() {
+            return latitudes.length;
+        }
+    }
+
+
+
+    // Ground resolution of Web Mercator tiles at zoom level 0 at the equator in meters per pixel
+    private static final double METERS_PER_PIXEL_ZOOM_0 = 156543.03392;
+
+
+    /**
+     * Computes the tolerance matching a map zoom level, i.e. the ground distance covered by the
+     * specified number of screen pixels.
+     *
+     * @param zoom      Zoom level as used by Google Maps
+     * @param latitude  Latitude of the map's center in degrees
+     * @param pixels    Tolerance in pixels
+     * @return          Tolerance in meters
+     */
+    public static double toleranceForZoom(float zoom, double latitude, double pixels) {
+        return pixels * METERS_PER_PIXEL_ZOOM_0 * Math.cos(Math.toRadians(latitude))
+                / Math.pow(2d, zoom);
+    }
+
+
+
+    private final double[] mLatitudes;
+
+    private final double[] mLongitudes;
+
+    private final double[] mImportance;
+
+    private final double[] mSortedImportance;
+
+    private double mSouth = Double.NaN;
+
+    private double mNorth = Double.NaN;
+
+    private double mWest = Double.NaN;
+
+    private double mEast = Double.NaN;
+
+
+    /**
+     * Creates a new RouteSimplifier and computes the importance of each vertex. This takes
+     * O(n log n) time for typical tracks.
+     *
+     * @param latitudes     Latitudes in degrees
+     * @param longitudes    Longitudes in degrees
+     * @param size          Number of samples
+     */
+    public RouteSimplifier(double[] latitudes, double[] longitudes, int size) {
+        int valid = 0;
+        for (int i = 0; i < size; i++) {
+            if (Kinematics.isValidFix(latitudes[i], longitudes[i])) valid++;
+        }
+
+        mLatitudes = new double[valid];
+        mLongitudes = new double[valid];
+        for (int i = 0, j = 0; i < size; i++) {
+            if (Kinematics.isValidFix(latitudes[i], longitudes[i])) {
+                mLatitudes[j] = latitudes[i];
+                mLongitudes[j] = longitudes[i];
+                j++;
+
+                if (j == 1) {
+                    mSouth = mNorth = latitudes[i];
+                    mWest = mEast = longitudes[i];
+                } else {
+                    mSouth = Math.min(mSouth, latitudes[i]);
+                    mNorth = Math.max(mNorth, latitudes[i]);
+                    mWest = Math.min(mWest, longitudes[i]);
+                    mEast = Math.max(mEast, longitudes[i]);
+                }
+            }
+        }
+
+        mImportance = computeImportance();
+        mSortedImportance = mImportance.clone();
+        Arrays.sort(mSortedImportance);
+    }
+
+
+    private double[] computeImportance() {
+        int size = mLatitudes.length;
+        double[] importance = new double[size];
+        if (size == 0) return importance;
+
+        // Project to meters around the route's center
+        double scale = Math.toRadians(1d) * Kinematics.EARTH_RADIUS;
+        double cos = Math.cos(Math.toRadians((mSouth + mNorth) / 2));
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = mLongitudes[i] * scale * cos;
+            y[i] = mLatitudes[i] * scale;
+        }
+
+        importance[0] = Double.POSITIVE_INFINITY;
+        importance[size - 1] = Double.POSITIVE_INFINITY;
+
+        // Iterative Douglas-Peucker; each stack entry is a segment and its parent's importance
+        int[] firsts = new int[64];
+        int[] lasts = new int[64];
+        double[] caps = new double[64];
+        int top = 0;
+        firsts[0] = 0;
+        lasts[0] = size - 1;
+        caps[0] = Double.POSITIVE_INFINITY;
+        top++;
+
+        while (top > 0) {
+            top--;
+            int first = firsts[top];
+            int last = lasts[top];
+            double cap = caps[top];
+            if (last - first < 2) continue;
+
+            int split = -1;
+            double max = -1d;
+            for (int i = first + 1; i < last; i++) {
+                double distance = segmentDistance(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (distance > max) {
+                    max = distance;
+                    split = i;
+                }
+            }
+
+            double value = Math.min(max, cap);
+            importance[split] = value;
+
+            if (top + 2 > firsts.length) {
+                firsts = Arrays.copyOf(firsts, firsts.length * 2);
+                lasts = Arrays.copyOf(lasts, lasts.length * 2);
+                caps = Arrays.copyOf(caps, caps.length * 2);
+            }
+            firsts[top] = first;
+            lasts[top] = split;
+            caps[top] = value;
+            top++;
+            firsts[top] = split;
+            lasts[top] = last;
+            caps[top] = value;
+            top++;
+        }
+
+        return importance;
+    }
+
+    private static double segmentDistance(double px, double py, double ax, double ay,
+                                          double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0d
+                ? 0d
+                : Math.max(0d, Math.min(1d, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+
+
+    /**
+     * Simplifies the route. The first and last vertex are always kept.
+     *
+     * @param tolerance     Maximum deviation of the simplified route in meters
+     * @param maxVertices   Maximum number of vertices, at least 2. If the tolerance would keep
+     *                      more vertices, only the most important ones are kept.
+     * @return              Simplified route
+     */
+    public Route simplify(double tolerance, int maxVertices) {
+        if (maxVertices < 2) {
+            throw new IllegalArgumentException("At least two vertices are required!");
+        }
+
+        // The endpoints' importance is infinite, so they are kept for any finite threshold
+        double threshold = Math.min(tolerance, Double.MAX_VALUE);
+        int ties = 0;
+        if (countAbove(threshold) > maxVertices) {
+            // Keep the most important vertices; vertices at the threshold only while there is room
+            threshold = mSortedImportance[mSortedImportance.length - maxVertices];
+            ties = maxVertices - countAbove(threshold);
+        }
+
+        int size = Math.min(maxVertices, countAbove(threshold) + ties);
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        int j = 0;
+        for (int i = 0; i < mImportance.length && j < size; i++) {
+            if (mImportance[i] > threshold || (mImportance[i] == threshold && ties-- > 0)) {
+                latitudes[j] = mLatitudes[i];
+                longitudes[j] = mLongitudes[i];
+                j++;
+            }
+        }
+
+        return new Route(latitudes, longitudes);
+    }
+
+    // Number of vertices with an importance greater than the specified value
+    private int countAbove(double value) {
+        int low = 0;
+        int high = mSortedImportance.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mSortedImportance[middle] > value) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return mSortedImportance.length - low;
+    }
+
+
+    /**
+     * @return  Number of valid vertices of the original route
+     */
+    public int size() {
+        return mImportance.length;
+    }
+
+    /**
+     * @return  Southern bound of the route in degrees or NaN if it has no valid vertices
+     */
+    public double getSouth() {
+        return mSouth;
+    }
+
+    /**
+     * @return  Northern bound of the route in degrees or NaN if it has no valid vertices
+     */
+    public double getNorth() {
+        return mNorth;
+    }
+
+    /**
+     * @return  Western bound of the route in degrees or NaN if it has no valid vertices
+     */
+    public double getWest() {
+        return mWest;
+    }
+
+    /**
+     * @return  Eastern bound of the route in degrees or NaN if it has no valid vertices
+     */
+    public double getEast() {
+        return mEast;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class accumulates descriptive statistics (count, minimum, maximum, mean, variance and
+ * approximate percentiles) of a series of values in a single pass.<br>
+ * Mean and variance are updated using Welford's algorithm. Percentiles are estimated from a
+ * fixed-width histogram over a configurable value range, so their error is bounded by the bucket
+ * width. Values outside the range are counted in the first or last bucket.<br>
+ * Partial results of different chunks or threads can be combined using {@link #merge(Statistics)}.
+ * Since the histogram has a fixed size, Statistics can be stored as compact sketches (see
+ * {@link #toBytes()}) and merged later to answer percentile queries over any set of series.
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class Statistics {
+
+    private static final int HEARTRATE_LOWER = 0;
+
+    private static final int HEARTRATE_UPPER = 256;
+
+
+    private static final byte SERIAL_VERSION = 1;
+
+    // Version, bounds, bucket count, count and moments
+    private static final int SERIAL_HEADER_SIZE = 1 + 8 + 8 + 4 + 8 + 8 + 8 + 8 + 8;
+
+
+    /**
+     * Creates a Statistics object suited for heart rates, with one histogram bucket per beat per
+     * minute in the range 0-255.
+     *
+     * @return  Statistics for heart rates
+     */
+    public static Statistics forHeartrate() {
+        return new Statistics(HEARTRATE_LOWER, HEARTRATE_UPPER, HEARTRATE_UPPER - HEARTRATE_LOWER);
+    }
+
+
+
+    private final double mLower;
+
+    private final double mUpper;
+
+    private final double mBucketWidth;
+
+    private final double mBucketsPerUnit;
+
+    private final long[] mHistogram;
+
+
+    private long mCount;
+
+    private double mMin = Double.NaN;
+
+    private double mMax = Double.NaN;
+
+    private double mMean;
+
+    private double mSquaredDeviations;
+
+
+    /**
+     * Creates a new, empty Statistics object.
+     *
+     * @param lower     Lower bound (inclusive) of the percentile histogram
+     * @param upper     Upper bound (exclusive) of the percentile histogram
+     * @param buckets   Number of histogram buckets
+     */
+    public Statistics(double lower, double upper, int buckets) {
+        if (!(upper > lower) || buckets < 1) {
+            throw new IllegalArgumentException("Invalid histogram: [" + lower + ", " + upper + "), "
+                    + buckets + " buckets");
+        }
+        mLower = lower;
+        mUpper = upper;
+        mBucketWidth = (upper - lower) / buckets;
+        mBucketsPerUnit = buckets / (upper - lower);
+        mHistogram = new long[buckets];
+    }
+
+
+    /**
+     * Adds a single value.
+     *
+     * @param value Value to add
+     */
+    public void add(double value) {
+        if (mCount == 0) {
+            mMin = value;
+            mMax = value;
+        } else if (value < mMin) {
+            mMin = value;
+        } else if (value > mMax) {
+            mMax = value;
+        }
+
+        mCount++;
+        double delta = value - mMean;
+        mMean += delta / mCount;
+        mSquaredDeviations += delta * (value - mMean);
+
+        mHistogram[bucketOf(value)]++;
+    }
+
+    /**
+     * Adds a range of values from an array.<br>
+     * Integer values are summed up exactly, so the range is accumulated without any divisions and
+     * merged into the running statistics afterwards.
+     *
+     * @param values    Values
+     * @param from      Index of the first value (inclusive)
+     * @param to        Index of the last value (exclusive)
+     */
+    public void addAll(int[] values, int from, int to) {
+        int count = to - from;
+        if (count <= 0) return;
+
+        int min = values[from];
+        int max = min;
+        long sum = 0;
+        long sumOfSquares = 0;
+        for (int i = from; i < to; i++) {
+            int value = values[i];
+            if (value < min) min = value;
+            if (value > max) max = value;
+            sum += value;
+            sumOfSquares += (long) value * value;
+            mHistogram[bucketOf(value)]++;
+        }
+
+        double mean = (double) sum / count;
+        double squaredDeviations = Math.max(0d, sumOfSquares - (double) sum * sum / count);
+        combine(count, min, max, mean, squaredDeviations);
+    }
+
+    /**
+     * Adds a range of values from an array.
+     *
+     * @param values    Values
+     * @param from      Index of the first value (inclusive)
+     * @param to        Index of the last value (exclusive)
+     */
+    public void addAll(double[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(values[i]);
+        }
+    }
+
+    private int bucketOf(double value) {
+        int bucket = (int) ((value - mLower) * mBucketsPerUnit);
+        if (bucket < 0 || value != value) return 0;
+        return bucket >= mHistogram.length ? mHistogram.length - 1 : bucket;
+    }
+
+
+    /**
+     * Merges the values accumulated by another Statistics object into this one. Both need to use
+     * the same histogram layout.
+     *
+     * @param other                     Statistics to merge
+     * @throws IllegalArgumentException If the histogram layouts differ
+     */
+    public void merge(Statistics other) throws IllegalArgumentException {
+        if (other.mLower != mLower || other.mUpper != mUpper
+                || other.mHistogram.length != mHistogram.length) {
+            throw new IllegalArgumentException("Histogram layouts do not match!");
+        }
+        if (other.mCount == 0) return;
+
+        combine(other.mCount, other.mMin, other.mMax, other.mMean, other.mSquaredDeviations);
+        for (int i = 0; i < mHistogram.length; i++) {
+            mHistogram[i] += other.mHistogram[i];
+        }
+    }
+
+    // Combines the moments of another set of values into this one (Chan et al.)
+    private void combine(long count, double min, double max, double mean,
+                         double squaredDeviations) {
+        if (mCount == 0) {
+            mMin = min;
+            mMax = max;
+        } else {
+            mMin = Math.min(mMin, min);
+            mMax = Math.max(mMax, max);
+        }
+
+        long total = mCount + count;
+        double delta = mean - mMean;
+        mSquaredDeviations += squaredDeviations + delta * delta * ((double) mCount * count / total);
+        mMean += delta * count / total;
+        mCount = total;
+    }
+
+
+    /**
+     * Serializes these Statistics. Histogram counts are stored as variable-length integers, so
+     * empty buckets take up a single byte.
+     *
+     * @return  Serialized Statistics
+     * @see #fromBytes(byte[])
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(SERIAL_HEADER_SIZE + mHistogram.length * 10);
+        buffer.put(SERIAL_VERSION);
+        buffer.putDouble(mLower);
+        buffer.putDouble(mUpper);
+        buffer.putInt(mHistogram.length);
+        buffer.putLong(mCount);
+        buffer.putDouble(mMin);
+        buffer.putDouble(mMax);
+        buffer.putDouble(mMean);
+        buffer.putDouble(mSquaredDeviations);
+        for (long count : mHistogram) {
+            // Unsigned LEB128
+            long value = count;
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Restores Statistics serialized by {@link #toBytes()}.
+     *
+     * @param bytes                     Serialized Statistics
+     * @return                          Statistics
+     * @throws IllegalArgumentException If the data is malformed
+     */
+    public static Statistics fromBytes(byte[] bytes) throws IllegalArgumentException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.get() != SERIAL_VERSION) {
+                throw new IllegalArgumentException("Unsupported serialized Statistics version!");
+            }
+
+            double lower = buffer.getDouble();
+            double upper = buffer.getDouble();
+            int buckets = buffer.getInt();
+            // Each bucket takes up at least one byte
+            if (buckets > buffer.remaining()) {
+                throw new IllegalArgumentException("Serialized Statistics are truncated!");
+            }
+
+            Statistics statistics = new Statistics(lower, upper, buckets);
+            statistics.mCount = buffer.getLong();
+            statistics.mMin = buffer.getDouble();
+            statistics.mMax = buffer.getDouble();
+            statistics.mMean = buffer.getDouble();
+            statistics.mSquaredDeviations = buffer.getDouble();
+            for (int i = 0; i < statistics.mHistogram.length; i++) {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get();
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                statistics.mHistogram[i] = value;
+            }
+            return statistics;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Serialized Statistics are truncated!", e);
+        }
+    }
+
+
+    /**
+     * @return  Number of values
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return  Smallest value or NaN if there are no values
+     */
+    public double getMin() {
+        return mMin;
+    }
+
+    /**
+     * @return  Largest value or NaN if there are no values
+     */
+    public double getMax() {
+        return mMax;
+    }
+
+    /**
+     * @return  Arithmetic mean or NaN if there are no values
+     */
+    public double getMean() {
+        return mCount == 0 ? Double.NaN : mMean;
+    }
+
+    /**
+     * @return  Population variance or NaN if there are no values
+     */
+    public double getVariance() {
+        return mCount == 0 ? Double.NaN : mSquaredDeviations / mCount;
+    }
+
+    /**
+     * @return  Population standard deviation or NaN if there are no values
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Estimates a percentile by interpolating linearly within the histogram bucket containing it.
+     * The result is always within the range of the actual minimum and maximum.
+     *
+     * @param percentile    Percentile between 0 and 100
+     * @return              Estimated value or NaN if there are no values
+     */
+    public double getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile);
+        }
+        if (mCount == 0) return Double.NaN;
+
+        double rank = percentile / 100d * mCount;
+        long cumulative = 0;
+        for (int i = 0; i < mHistogram.length; i++) {
+            long count = mHistogram[i];
+            if (count > 0 && cumulative + count >= rank) {
+                double fraction = (rank - cumulative) / count;
+                double value = mLower + (i + fraction) * mBucketWidth;
+                return Math.max(mMin, Math.min(mMax, value));
+            }
+            cumulative += count;
+        }
+        return mMax;
+    }
+}
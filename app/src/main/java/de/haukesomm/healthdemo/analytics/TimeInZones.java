@@ -0,0 +1,162 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class accumulates the time spent in each {@link HeartRateZones heart rate zone}
+ * incrementally, one sample at a time. The time between two consecutive samples is attributed to
+ * the zone of the earlier one. Gaps longer than a maximum duration (e.g. a paused recording) as
+ * well as samples that are out of order or lack a valid timestamp are not counted.<br>
+ * Accumulators of different chunks of a session or of different sessions can be combined using
+ * {@link #merge(TimeInZones)}. Instances are not thread-safe.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class TimeInZones {
+
+    /**
+     * Default maximum gap between two samples that still counts as time in zone
+     */
+    public static final long DEFAULT_MAX_GAP = 60 * 1000L;
+
+
+    private final HeartRateZones mZones;
+
+    private final long mMaxGap;
+
+    private final long[] mMillis;
+
+
+    private long mLastTime = Long.MIN_VALUE;
+
+    private int mLastZone;
+
+
+    /**
+     * Creates a new, empty TimeInZones accumulator using {@link #DEFAULT_MAX_GAP}.
+     *
+     * @param zones Zones to classify samples into
+     */
+    public TimeInZones(HeartRateZones zones) {
+        this(zones, DEFAULT_MAX_GAP);
+    }
+
+    /**
+     * Creates a new, empty TimeInZones accumulator.
+     *
+     * @param zones     Zones to classify samples into
+     * @param maxGap    Maximum time between two samples in milliseconds that is still counted
+     */
+    public TimeInZones(HeartRateZones zones, long maxGap) {
+        mZones = zones;
+        mMaxGap = maxGap;
+        mMillis = new long[zones.size()];
+    }
+
+    /**
+     * Creates a TimeInZones object from previously accumulated values, e.g. when loading them from
+     * storage.
+     *
+     * @param zones     Zones the values were accumulated with
+     * @param millis    Time in each zone in milliseconds
+     */
+    public TimeInZones(HeartRateZones zones, long[] millis) {
+        this(zones);
+        if (millis.length != mMillis.length) {
+            throw new IllegalArgumentException("Expected " + mMillis.length + " zones!");
+        }
+        System.arraycopy(millis, 0, mMillis, 0, millis.length);
+    }
+
+
+    /**
+     * Adds a single sample.
+     *
+     * @param time      Time of the sample in milliseconds, {@link Long#MIN_VALUE} if unknown
+     * @param heartrate Heart rate in bpm
+     */
+    public void add(long time, int heartrate) {
+        if (time == Long.MIN_VALUE) return;
+
+        if (mLastTime != Long.MIN_VALUE) {
+            long delta = time - mLastTime;
+            if (delta < 0) return;
+            if (delta <= mMaxGap) {
+                mMillis[mLastZone] += delta;
+            }
+        }
+        mLastTime = time;
+        mLastZone = mZones.classify(heartrate);
+    }
+
+    /**
+     * Adds a range of samples from primitive arrays.
+     *
+     * @param times         Times in milliseconds
+     * @param heartrates    Heart rates in bpm
+     * @param from          Index of the first sample (inclusive)
+     * @param to            Index of the last sample (exclusive)
+     */
+    public void addAll(long[] times, int[] heartrates, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(times[i], heartrates[i]);
+        }
+    }
+
+    /**
+     * Adds the time in zones accumulated by another object to this one. Both must use the same
+     * {@link HeartRateZones}.
+     *
+     * @param other                     Accumulator to merge
+     * @throws IllegalArgumentException If the zones differ
+     */
+    public void merge(TimeInZones other) throws IllegalArgumentException {
+        if (!mZones.equals(other.mZones)) {
+            throw new IllegalArgumentException("Zones do not match!");
+        }
+        for (int i = 0; i < mMillis.length; i++) {
+            mMillis[i] += other.mMillis[i];
+        }
+    }
+
+
+    /**
+     * @return  Zones used by this accumulator
+     */
+    public HeartRateZones getZones() {
+        return mZones;
+    }
+
+    /**
+     * Returns the time spent in a zone.
+     *
+     * @param zone  Zone between 0 and {@link HeartRateZones#size()} - 1
+     * @return      Time in milliseconds
+     */
+    public long getMillis(int zone) {
+        return mMillis[zone];
+    }
+
+    /**
+     * @return  Total time in all zones in milliseconds
+     */
+    public long getTotalMillis() {
+        long total = 0;
+        for (long millis : mMillis) {
+            total += millis;
+        }
+        return total;
+    }
+}
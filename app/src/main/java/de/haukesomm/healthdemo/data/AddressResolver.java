@@ -0,0 +1,43 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This interface resolves coordinates to a human readable address. It is used by the
+ * {@link GeocodingCache} on a background thread, so implementations may block.
+ * </p>
+ *
+ * @see GeocoderAddressResolver
+ * @see CoordinateAddressResolver
+ *
+ * @author Hauke Sommerfeld
+ */
+public interface AddressResolver {
+
+    /**
+     * Resolves coordinates to an address.
+     *
+     * @param latitude      Latitude in degrees
+     * @param longitude     Longitude in degrees
+     * @return              Address or null if there is no address for the coordinates
+     * @throws IOException  If the address could not be looked up, e.g. without network access.
+     *                      Unlike missing addresses, such failures are not cached.
+     */
+    @Nullable
+    String resolve(double latitude, double longitude) throws IOException;
+}
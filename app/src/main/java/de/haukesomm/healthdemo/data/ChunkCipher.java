@@ -0,0 +1,183 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class encrypts and authenticates the {@link MeasurementChunks chunks} of a single Session
+ * with AES-GCM.<br>
+ * Every chunk is sealed independently with a random IV, so chunks can be decrypted in any order
+ * and encrypted in parallel. The Session ID and the chunk index are authenticated along with the
+ * chunk, so chunks can neither be moved to another position nor to another Session.<br>
+ * Data derived from the Measurements, e.g. {@link #KINEMATICS kinematics}, is sealed under the
+ * same key with its purpose authenticated as well, so it can not be passed off as a Measurement
+ * chunk or data of another purpose. Instances are thread-safe. This class does not depend on any
+ * Android APIs.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+final class ChunkCipher {
+
+    private static final String ALGORITHM = "AES";
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final int KEY_SIZE = 256;
+
+    private static final int IV_SIZE = 12;
+
+    private static final int TAG_SIZE = 128;
+
+
+    /**
+     * Purpose of the chunks holding the Measurements themselves
+     */
+    static final int MEASUREMENTS = 0;
+
+    /**
+     * Purpose of the chunks holding the distances and speeds derived from the Measurements
+     */
+    static final int KINEMATICS = 1;
+
+
+    private static final SecureRandom sRandom = new SecureRandom();
+
+
+    /**
+     * Generates a new random key for a Session.
+     *
+     * @return  AES key
+     */
+    static SecretKey generateKey() {
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance(ALGORITHM);
+            generator.init(KEY_SIZE, sRandom);
+            return generator.generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to generate key: " + e.getMessage(), e);
+        }
+    }
+
+
+
+    private final SecretKey mKey;
+
+    private final int mSession;
+
+
+    /**
+     * Creates a new ChunkCipher.
+     *
+     * @param key       Key of the Session
+     * @param session   ID of the Session
+     */
+    ChunkCipher(SecretKey key, int session) {
+        mKey = key;
+        mSession = session;
+    }
+
+
+    /**
+     * Encrypts a chunk of Measurements.
+     *
+     * @param chunk                     Index of the chunk within the Session
+     * @param plaintext                 Serialized chunk
+     * @return                          IV followed by the ciphertext and the authentication tag
+     * @throws IllegalStateException    If the platform does not support AES-GCM
+     */
+    byte[] seal(int chunk, byte[] plaintext) throws IllegalStateException {
+        return seal(MEASUREMENTS, chunk, plaintext);
+    }
+
+    /**
+     * Encrypts a chunk of data serving a specific purpose.
+     *
+     * @param purpose                   Purpose of the chunk, e.g. {@link #KINEMATICS}
+     * @param chunk                     Index of the chunk within the Session and purpose
+     * @param plaintext                 Serialized chunk
+     * @return                          IV followed by the ciphertext and the authentication tag
+     * @throws IllegalStateException    If the platform does not support AES-GCM
+     */
+    byte[] seal(int purpose, int chunk, byte[] plaintext) throws IllegalStateException {
+        byte[] iv = new byte[IV_SIZE];
+        sRandom.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, mKey, new GCMParameterSpec(TAG_SIZE, iv));
+            cipher.updateAAD(associatedData(purpose, chunk));
+
+            byte[] sealed = Arrays.copyOf(iv, IV_SIZE + cipher.getOutputSize(plaintext.length));
+            cipher.doFinal(plaintext, 0, plaintext.length, sealed, IV_SIZE);
+            return sealed;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to encrypt chunk: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decrypts a chunk of Measurements and verifies its integrity.
+     *
+     * @param chunk                     Index of the chunk within the Session
+     * @param sealed                    Chunk encrypted by {@link #seal(int, byte[])}
+     * @return                          Serialized chunk
+     * @throws IllegalStateException    If the chunk has been tampered with, belongs to another
+     *                                  position, Session or purpose or has been encrypted with
+     *                                  another key
+     */
+    byte[] open(int chunk, byte[] sealed) throws IllegalStateException {
+        return open(MEASUREMENTS, chunk, sealed);
+    }
+
+    /**
+     * Decrypts a chunk of data serving a specific purpose and verifies its integrity.
+     *
+     * @param purpose                   Purpose the chunk has been sealed for
+     * @param chunk                     Index of the chunk within the Session and purpose
+     * @param sealed                    Chunk encrypted by {@link #seal(int, int, byte[])}
+     * @return                          Serialized chunk
+     * @throws IllegalStateException    If the chunk has been tampered with, belongs to another
+     *                                  position, Session or purpose or has been encrypted with
+     *                                  another key
+     */
+    byte[] open(int purpose, int chunk, byte[] sealed) throws IllegalStateException {
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, mKey, new GCMParameterSpec(TAG_SIZE, sealed, 0,
+                    IV_SIZE));
+            cipher.updateAAD(associatedData(purpose, chunk));
+            return cipher.doFinal(sealed, IV_SIZE, sealed.length - IV_SIZE);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to decrypt chunk " + chunk + " of session "
+                    + mSession + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Measurement chunks keep the associated data they were sealed with before purposes existed
+    private byte[] associatedData(int purpose, int chunk) {
+        if (purpose == MEASUREMENTS) {
+            return ByteBuffer.allocate(8).putInt(mSession).putInt(chunk).array();
+        }
+        return ByteBuffer.allocate(12).putInt(mSession).putInt(chunk).putInt(purpose).array();
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class defines the table holding the encrypted {@link MeasurementChunks chunks} of all
+ * Sessions and moves Measurements in and out of it.<br>
+ * Chunks are sealed and opened on all cores while the caller writes or reads the rows, see
+ * {@link #seal(String[], long[], double[], double[], int[], int, ChunkCipher, Writer)} and
+ * {@link Reader}. The time range of each chunk is stored in plain text, so time ranges are read by
+ * decrypting only the chunks overlapping them.<br>
+ * The {@link SessionDatabase} executes the statements defined here, so does the benchmark module
+ * using a desktop SQLite driver. This class does not depend on any Android APIs.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+final class ChunkTable {
+
+    static final String TABLE = "session_chunks";
+
+    static final String SESSION = "session_id";
+
+    static final String INDEX = "chunk";
+
+    static final String START = "start";
+
+    static final String END = "end";
+
+    static final String COUNT = "count";
+
+    static final String PAYLOAD = "payload";
+
+
+    /**
+     * Creates the table
+     */
+    static final String CREATE = "CREATE TABLE " + TABLE + "("
+            + SESSION   + " INTEGER NOT NULL,"
+            + INDEX     + " INTEGER NOT NULL,"
+            + START     + " INTEGER NOT NULL,"
+            + END       + " INTEGER NOT NULL,"
+            + COUNT     + " INTEGER NOT NULL,"
+            + PAYLOAD   + " BLOB NOT NULL,"
+            + "PRIMARY KEY (" + SESSION + ", " + INDEX + "));";
+
+    /**
+     * Inserts a chunk. Binds the Session ID, the chunk index, start, end, number of Measurements
+     * and payload in this order, see {@link Writer}.
+     */
+    static final String INSERT = "INSERT INTO " + TABLE + " (" + SESSION + ", " + INDEX + ", "
+            + START + ", " + END + ", " + COUNT + ", " + PAYLOAD + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+
+    // Encrypts and decrypts the chunks of large Sessions in parallel
+    private static final ExecutorService sExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ChunkTable");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+
+    private ChunkTable() {
+        // Utility class
+    }
+
+
+    /**
+     * Returns the query reading the index, number of Measurements and payload of all chunks of a
+     * Session overlapping a time range in order.
+     *
+     * @param id    ID of the Session
+     * @param from  Start of the range in milliseconds since the epoch, inclusive
+     * @param to    End of the range in milliseconds since the epoch, exclusive
+     * @return      SQL query
+     */
+    static String select(int id, long from, long to) {
+        return "SELECT " + INDEX + ", " + COUNT + ", " + PAYLOAD + " FROM " + TABLE
+                + " WHERE " + SESSION + " = " + id + " AND " + END + " >= " + from
+                + " AND " + START + " < " + to + " ORDER BY " + INDEX;
+    }
+
+
+    /**
+     * Receives sealed chunks in order, e.g. to bind them to {@link #INSERT}.
+     */
+    interface Writer {
+
+        /**
+         * @param chunk     Index of the chunk within the Session
+         * @param start     Earliest time of the chunk
+         * @param end       Latest time of the chunk
+         * @param count     Number of Measurements
+         * @param payload   Sealed chunk
+         */
+        void write(int chunk, long start, long end, int count, byte[] payload);
+    }
+
+    /**
+     * Splits Measurements into chunks and seals them on all cores. Chunks are passed to the Writer
+     * in order as soon as they are sealed, so at most one chunk per core is held in memory in
+     * addition to the Measurements. Arrays must not be modified until this method returns.
+     *
+     * @param timestamps                Timestamps in the ISO-8601 date format
+     * @param times                     Times in milliseconds since the epoch
+     * @param latitudes                 Latitudes in degrees
+     * @param longitudes                Longitudes in degrees
+     * @param heartrates                Heart rates in beats per minute
+     * @param size                      Number of Measurements
+     * @param cipher                    Cipher of the Session
+     * @param writer                    Receives the sealed chunks
+     * @throws IllegalStateException    If a chunk could not be sealed
+     */
+    static void seal(final String[] timestamps, final long[] times, final double[] latitudes,
+                     final double[] longitudes, final int[] heartrates, final int size,
+                     final ChunkCipher cipher, Writer writer) throws IllegalStateException {
+        final int chunkSize = MeasurementChunks.CHUNK_SIZE;
+        int chunks = (size + chunkSize - 1) / chunkSize;
+        int window = Runtime.getRuntime().availableProcessors();
+        List<Future<byte[]>> pending = new ArrayList<>();
+        try {
+            for (int chunk = 0, submitted = 0; chunk < chunks; chunk++) {
+                for (; submitted < chunks && submitted < chunk + window; submitted++) {
+                    final int index = submitted;
+                    pending.add(sExecutor.submit(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() {
+                            int from = index * chunkSize;
+                            int to = Math.min(size, from + chunkSize);
+                            return cipher.seal(index, MeasurementChunks.encode(timestamps, times,
+                                    latitudes, longitudes, heartrates, from, to));
+                        }
+                    }));
+                }
+
+                int from = chunk * chunkSize;
+                int to = Math.min(size, from + chunkSize);
+                writer.write(chunk, start(times, from, to), end(times, from, to), to - from,
+                        await(pending.set(chunk, null)));
+            }
+        } finally {
+            for (Future<byte[]> future : pending) {
+                if (future != null) future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * @param times Times in milliseconds since the epoch
+     * @param from  Index of the first Measurement of the chunk
+     * @param to    Index after the last Measurement of the chunk
+     * @return      Earliest time of the chunk as stored in the {@link #START} column
+     */
+    static long start(long[] times, int from, int to) {
+        long min = Long.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            if (times[i] < min) min = times[i];
+        }
+        return min;
+    }
+
+    /**
+     * @param times Times in milliseconds since the epoch
+     * @param from  Index of the first Measurement of the chunk
+     * @param to    Index after the last Measurement of the chunk
+     * @return      Latest time of the chunk as stored in the {@link #END} column
+     */
+    static long end(long[] times, int from, int to) {
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            if (times[i] > max) max = times[i];
+        }
+        return max;
+    }
+
+    /**
+     * Receives the Measurements read by a {@link Reader} in chronological order.
+     */
+    interface Target {
+
+        /**
+         * Called once before the first Measurement.
+         *
+         * @param size  Number of Measurements in the chunks read, an upper bound of the number of
+         *              Measurements that will follow
+         */
+        void ensureCapacity(int size);
+
+        /**
+         * @param timestamp Timestamp in the ISO-8601 date format
+         * @param time      Time in milliseconds since the epoch
+         * @param latitude  Latitude in degrees
+         * @param longitude Longitude in degrees
+         * @param heartrate Heart rate in beats per minute
+         */
+        void add(String timestamp, long time, double latitude, double longitude, int heartrate);
+    }
+
+    /**
+     * Opens the chunks read by {@link #select(int, long, long)} on all cores while the rows are
+     * still being read. Add all rows in order, then call {@link #read(long, long, Target)} once.
+     */
+    static final class Reader {
+
+        private final ChunkCipher mCipher;
+
+        private final List<Future<MeasurementChunks.Chunk>> mChunks = new ArrayList<>();
+
+        private int mSize;
+
+
+        /**
+         * @param cipher    Cipher of the Session
+         */
+        Reader(ChunkCipher cipher) {
+            mCipher = cipher;
+        }
+
+
+        /**
+         * Starts opening a chunk in the background.
+         *
+         * @param chunk     Index of the chunk within the Session
+         * @param count     Number of Measurements of the chunk
+         * @param payload   Sealed chunk
+         */
+        void add(final int chunk, int count, final byte[] payload) {
+            mSize += count;
+            mChunks.add(sExecutor.submit(new Callable<MeasurementChunks.Chunk>() {
+                @Override
+                public MeasurementChunks.Chunk call() {
+                    return MeasurementChunks.decode(mCipher.open(chunk, payload));
+                }
+            }));
+        }
+
+        /**
+         * Passes the Measurements of all chunks within a time range to a Target as soon as their
+         * chunks have been opened.
+         *
+         * @param from                      Start of the range in milliseconds since the epoch,
+         *                                  inclusive
+         * @param to                        End of the range in milliseconds since the epoch,
+         *                                  exclusive
+         * @param target                    Receives the Measurements
+         * @throws IllegalArgumentException If a chunk is malformed
+         * @throws IllegalStateException    If a chunk has been tampered with
+         */
+        void read(long from, long to, Target target)
+                throws IllegalArgumentException, IllegalStateException {
+            target.ensureCapacity(mSize);
+            try {
+                for (int i = 0; i < mChunks.size(); i++) {
+                    MeasurementChunks.Chunk chunk = await(mChunks.set(i, null));
+                    for (int j = 0; j < chunk.size(); j++) {
+                        if (chunk.times[j] < from || chunk.times[j] >= to) continue;
+                        target.add(chunk.timestamps[j], chunk.times[j], chunk.latitudes[j],
+                                chunk.longitudes[j], chunk.heartrates[j]);
+                    }
+                }
+            } finally {
+                for (Future<MeasurementChunks.Chunk> chunk : mChunks) {
+                    if (chunk != null) chunk.cancel(false);
+                }
+            }
+        }
+    }
+
+
+    private static <T> T await(Future<T> future) throws IllegalStateException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing chunks!", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to process chunk: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class is an offline stand-in for a geocoder: it "resolves" coordinates to a label of the
+ * coordinates themselves, e.g. <code>53.5511&deg; N, 9.9937&deg; E</code>.<br>
+ * It is used when the platform does not provide a geocoder and can be plugged into the
+ * {@link GeocodingCache} to work without network access, e.g. in tests.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class CoordinateAddressResolver implements AddressResolver {
+
+    // No Javadoc
+    @NonNull
+    @Override
+    public String resolve(double latitude, double longitude) {
+        return String.format(Locale.US, "%.4f\u00B0 %s, %.4f\u00B0 %s",
+                Math.abs(latitude), latitude < 0 ? "S" : "N",
+                Math.abs(longitude), longitude < 0 ? "W" : "E");
+    }
+}
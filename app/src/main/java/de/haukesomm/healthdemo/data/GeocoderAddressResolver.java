@@ -0,0 +1,54 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Geocoder;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class resolves addresses using the platform's {@link Geocoder}, which usually requires
+ * network access.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class GeocoderAddressResolver implements AddressResolver {
+
+    private final Geocoder mGeocoder;
+
+
+    /**
+     * Creates a new resolver. Check {@link Geocoder#isPresent()} before.
+     *
+     * @param context   The app's context
+     */
+    public GeocoderAddressResolver(Context context) {
+        mGeocoder = new Geocoder(context.getApplicationContext());
+    }
+
+
+    // No Javadoc
+    @Nullable
+    @Override
+    public String resolve(double latitude, double longitude) throws IOException {
+        List<Address> addresses = mGeocoder.getFromLocation(latitude, longitude, 1);
+        if (addresses == null || addresses.isEmpty()) return null;
+        return addresses.get(0).getAddressLine(0);
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import android.content.Context;
+import android.location.Geocoder;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class resolves coordinates to addresses in the background and caches the results in memory
+ * and on disk.<br>
+ * Coordinates are quantized to cells of about 100 meters and all coordinates within a cell share
+ * an address, so the addresses of previously seen areas are available immediately, even after a
+ * restart. Concurrent lookups of the same cell are merged into one. Only cells missing from the
+ * cache are passed to the {@link AddressResolver}, which is the platform's {@link Geocoder} if
+ * available and a {@link CoordinateAddressResolver} otherwise.<br>
+ * Call {@link #invalidate()} whenever the privacy mode changes to delete all cached addresses.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class GeocodingCache {
+
+    /**
+     * Callback for resolved addresses. Callbacks are invoked on the main thread.
+     */
+    public interface Callback {
+
+        /**
+         * Called when the address has been resolved.
+         *
+         * @param address   Address or null if there is no address or it could not be looked up
+         */
+        void onAddressResolved(@Nullable String address);
+    }
+
+
+
+    private static final String FILE = "geocoding";
+
+    private static final int FILE_VERSION = 1;
+
+    // About 110 meters of latitude
+    private static final double CELL_DEGREES = 0.001d;
+
+    // Marks cells without an address in the cache
+    private static final String NO_ADDRESS = "";
+
+
+    private static GeocodingCache sInstance;
+
+
+    /**
+     * @param context   The app's context
+     * @return          Process-wide GeocodingCache instance
+     */
+    public static synchronized GeocodingCache getInstance(Context context) {
+        if (sInstance == null) {
+            Context application = context.getApplicationContext();
+            AddressResolver resolver = Geocoder.isPresent()
+                    ? new GeocoderAddressResolver(application)
+                    : new CoordinateAddressResolver();
+            sInstance = new GeocodingCache(new File(application.getCacheDir(), FILE), resolver);
+        }
+        return sInstance;
+    }
+
+
+
+    private final File mFile;
+
+    private volatile AddressResolver mResolver;
+
+    private final ConcurrentHashMap<Long, String> mAddresses = new ConcurrentHashMap<>();
+
+    // Callbacks of pending lookups by cell, only accessed on the main thread
+    private final LongSparseArray<List<Callback>> mPending = new LongSparseArray<>();
+
+    // Loads the cache file first, then resolves and appends cells in order
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+
+    private GeocodingCache(File file, AddressResolver resolver) {
+        mFile = file;
+        mResolver = resolver;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+
+    /**
+     * Replaces the resolver used for cells missing from the cache, e.g. by an offline resolver.
+     * Addresses that have already been cached are kept.
+     *
+     * @param resolver  Resolver to use
+     */
+    public void setResolver(@NonNull AddressResolver resolver) {
+        mResolver = resolver;
+    }
+
+    /**
+     * Resolves coordinates to an address. Call this method on the main thread. If the address of
+     * the coordinates' cell is cached in memory, the callback is invoked immediately.
+     *
+     * @param latitude  Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param callback  Callback invoked on the main thread
+     */
+    public void resolve(final double latitude, final double longitude,
+                        @NonNull Callback callback) {
+        final long cell = getCell(latitude, longitude);
+        String cached = mAddresses.get(cell);
+        if (cached != null) {
+            callback.onAddressResolved(toAddress(cached));
+            return;
+        }
+
+        List<Callback> pending = mPending.get(cell);
+        if (pending != null) {
+            pending.add(callback);
+            return;
+        }
+        pending = new ArrayList<>(1);
+        pending.add(callback);
+        mPending.put(cell, pending);
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final String address = lookup(cell, latitude, longitude);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        List<Callback> callbacks = mPending.get(cell);
+                        mPending.remove(cell);
+                        if (callbacks == null) return;
+                        for (Callback callback : callbacks) {
+                            callback.onAddressResolved(toAddress(address));
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+
+    /**
+     * Removes all cached addresses, e.g. after the privacy mode has changed.
+     */
+    public void invalidate() {
+        mAddresses.clear();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mAddresses.clear();
+                //noinspection ResultOfMethodCallIgnored
+                mFile.delete();
+            }
+        });
+    }
+
+
+    // Quantized latitude in the upper, quantized longitude in the lower 32 bits
+    private static long getCell(double latitude, double longitude) {
+        long row = (long) Math.floor(latitude / CELL_DEGREES);
+        long column = (long) Math.floor(longitude / CELL_DEGREES);
+        return (row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private static String toAddress(String cached) {
+        return cached == null || cached.equals(NO_ADDRESS) ? null : cached;
+    }
+
+    // Called on the executor, returns null if the lookup failed
+    private String lookup(long cell, double latitude, double longitude) {
+        // Another lookup of the same cell may have finished in the meantime
+        String address = mAddresses.get(cell);
+        if (address != null) return address;
+
+        try {
+            address = mResolver.resolve(latitude, longitude);
+        } catch (IOException | IllegalArgumentException e) {
+            Log.w("GeocodingCache", "Unable to resolve address: " + e.getMessage());
+            return null;
+        }
+
+        if (address == null) address = NO_ADDRESS;
+        mAddresses.put(cell, address);
+        append(cell, address);
+        return address;
+    }
+
+
+    /*
+     * File layout: version followed by one entry per cell, consisting of the cell and its
+     * address. Entries are appended as cells are resolved.
+     */
+    private void load() {
+        if (!mFile.exists()) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(mFile)))) {
+            if (in.readInt() != FILE_VERSION) {
+                throw new IOException("Unsupported cache version");
+            }
+            while (true) {
+                long cell;
+                try {
+                    cell = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                mAddresses.put(cell, in.readUTF());
+            }
+        } catch (EOFException e) {
+            // The last entry is truncated, drop it so that further entries can be appended
+            rewrite();
+        } catch (IOException e) {
+            Log.w("GeocodingCache", "Unable to read cached addresses: " + e.getMessage());
+            mAddresses.clear();
+            //noinspection ResultOfMethodCallIgnored
+            mFile.delete();
+        }
+    }
+
+    private void rewrite() {
+        File temp = new File(mFile.getParentFile(), mFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temp)))) {
+            out.writeInt(FILE_VERSION);
+            for (Map.Entry<Long, String> entry : mAddresses.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+        } catch (IOException e) {
+            Log.w("GeocodingCache", "Unable to rewrite cached addresses: " + e.getMessage());
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            return;
+        }
+
+        if (!temp.renameTo(mFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            //noinspection ResultOfMethodCallIgnored
+            mFile.delete();
+        }
+    }
+
+    private void append(long cell, String address) {
+        boolean create = !mFile.exists();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(mFile, true)))) {
+            if (create) out.writeInt(FILE_VERSION);
+            out.writeLong(cell);
+            out.writeUTF(address);
+        } catch (IOException e) {
+            // The address is simply looked up again next time
+            Log.w("GeocodingCache", "Unable to cache address: " + e.getMessage());
+        }
+    }
+}
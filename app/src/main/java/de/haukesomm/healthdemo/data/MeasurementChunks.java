@@ -0,0 +1,166 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class serializes Measurements in chunks of a fixed number of Measurements.<br>
+ * Chunks are the unit of encryption of the {@link SessionDatabase}, so only the chunks overlapping
+ * a time range have to be decrypted to read it. Values are stored column by column and numeric
+ * columns are copied in bulk, so decoding a chunk costs little more than copying it.
+ * This class does not depend on any Android APIs.
+ * </p>
+ *
+ * @see ChunkCipher
+ *
+ * @author Hauke Sommerfeld
+ */
+final class MeasurementChunks {
+
+    /**
+     * Number of Measurements per chunk, the last chunk of a Session may be smaller
+     */
+    static final int CHUNK_SIZE = 4096;
+
+
+    private static final byte VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+
+    /**
+     * Decoded chunk. Arrays are exactly as long as the chunk.
+     */
+    static final class Chunk {
+
+        final String[] timestamps;
+
+        final long[] times;
+
+        final double[] latitudes;
+
+        final double[] longitudes;
+
+        final int[] heartrates;
+
+
+        private Chunk(int size) {
+            timestamps = new String[size];
+            times = new long[size];
+            latitudes = new double[size];
+            longitudes = new double[size];
+            heartrates = new int[size];
+        }
+
+
+        int size() {
+            return times.length;
+        }
+    }
+
+
+
+    private MeasurementChunks() {
+        // Utility class
+    }
+
+
+    /**
+     * Serializes a range of Measurements.
+     *
+     * @param timestamps    Timestamps in the ISO-8601 date format
+     * @param times         Timestamps in milliseconds since the epoch
+     * @param latitudes     Latitudes
+     * @param longitudes    Longitudes
+     * @param heartrates    Heart rates
+     * @param from          Index of the first Measurement (inclusive)
+     * @param to            Index of the last Measurement (exclusive)
+     * @return              Serialized chunk
+     */
+    static byte[] encode(String[] timestamps, long[] times, double[] latitudes,
+                         double[] longitudes, int[] heartrates, int from, int to) {
+        int size = to - from;
+        byte[][] encodedTimestamps = new byte[size][];
+        int length = 1 + 4 + size * (8 + 8 + 8 + 4 + 2);
+        for (int i = 0; i < size; i++) {
+            encodedTimestamps[i] = timestamps[from + i].getBytes(UTF_8);
+            if (encodedTimestamps[i].length > 0xFFFF) {
+                throw new IllegalArgumentException("Timestamp too long: " + timestamps[from + i]);
+            }
+            length += encodedTimestamps[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(VERSION);
+        buffer.putInt(size);
+        buffer.asLongBuffer().put(times, from, size);
+        buffer.position(buffer.position() + size * 8);
+        buffer.asDoubleBuffer().put(latitudes, from, size);
+        buffer.position(buffer.position() + size * 8);
+        buffer.asDoubleBuffer().put(longitudes, from, size);
+        buffer.position(buffer.position() + size * 8);
+        buffer.asIntBuffer().put(heartrates, from, size);
+        buffer.position(buffer.position() + size * 4);
+        for (byte[] timestamp : encodedTimestamps) {
+            buffer.putShort((short) timestamp.length);
+            buffer.put(timestamp);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Restores a chunk serialized by
+     * {@link #encode(String[], long[], double[], double[], int[], int, int)}.
+     *
+     * @param data                      Serialized chunk
+     * @return                          Decoded chunk
+     * @throws IllegalArgumentException If the data is malformed
+     */
+    static Chunk decode(byte[] data) throws IllegalArgumentException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (buffer.get() != VERSION) {
+                throw new IllegalArgumentException("Unsupported chunk version!");
+            }
+            int size = buffer.getInt();
+            if (size < 0 || size > buffer.remaining() / (8 + 8 + 8 + 4 + 2)) {
+                throw new IllegalArgumentException("Chunk is truncated!");
+            }
+
+            Chunk chunk = new Chunk(size);
+            buffer.asLongBuffer().get(chunk.times);
+            buffer.position(buffer.position() + size * 8);
+            buffer.asDoubleBuffer().get(chunk.latitudes);
+            buffer.position(buffer.position() + size * 8);
+            buffer.asDoubleBuffer().get(chunk.longitudes);
+            buffer.position(buffer.position() + size * 8);
+            buffer.asIntBuffer().get(chunk.heartrates);
+            buffer.position(buffer.position() + size * 4);
+            for (int i = 0; i < size; i++) {
+                int length = buffer.getShort() & 0xFFFF;
+                if (length > buffer.remaining()) {
+                    throw new IllegalArgumentException("Chunk is truncated!");
+                }
+                chunk.timestamps[i] = new String(data, buffer.position(), length, UTF_8);
+                buffer.position(buffer.position() + length);
+            }
+            return chunk;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Chunk is truncated!", e);
+        }
+    }
+}
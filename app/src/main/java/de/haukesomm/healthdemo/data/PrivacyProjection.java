@@ -0,0 +1,440 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import de.haukesomm.healthdemo.privacy.PrivacySettings;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class is a read-only view of a {@link Session}'s Measurements restricted by
+ * {@link PrivacySettings}. All consumers of measurement data (UI, export and upload) should read
+ * Sessions through a PrivacyProjection.<br>
+ * The projection does not copy the Session's data. Resampling to the collection interval is done
+ * by keeping the first Measurement of each interval and only stores the indices of the kept
+ * Measurements. Suppression of fields, truncation of timestamps and coarsening of coordinates are
+ * applied on access. The bulk accessors (e.g. {@link #getHeartrates()}) return the Session's
+ * backing arrays for fields that are neither resampled nor restricted and materialize a projected
+ * copy on first access otherwise.<br>
+ * Projections can also be restored from previously materialized data without the underlying
+ * Session, see {@link ProjectionCache}.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class PrivacyProjection {
+
+    /**
+     * Heart rate of Measurements whose heart rate is not available
+     */
+    public static final int NO_HEARTRATE = 0;
+
+
+
+    private final SessionDescription mDescription;
+
+    // Null if the projection has been restored from materialized data
+    private final Session mSession;
+
+    private final PrivacySettings mSettings;
+
+    // Indices of the kept Measurements in the Session or null if all of them are kept
+    private final int[] mIndices;
+
+    private final int mSize;
+
+    // Number of Measurements of the Session at the time of projection
+    private final int mSourceSize;
+
+
+    // Materialized fields, published to the per-Measurement accessors once complete
+    private volatile long[] mTimes;
+
+    private volatile String[] mTimestamps;
+
+    private volatile double[] mLatitudes;
+
+    private volatile double[] mLongitudes;
+
+    private volatile int[] mHeartrates;
+
+
+    /**
+     * Creates a new PrivacyProjection. Resampling requires the Session to be sorted, see
+     * {@link Session#isSorted()}. Measurements with malformed timestamps are dropped when
+     * resampling.
+     *
+     * @param session   Session to project. Must not be modified while the projection is in use.
+     * @param settings  Restrictions to apply
+     */
+    public PrivacyProjection(Session session, PrivacySettings settings) {
+        mDescription = session;
+        mSession = session;
+        mSettings = settings;
+
+        long interval = settings.getInterval();
+        if (interval > 0) {
+            long[] times = session.getTimes();
+            int[] indices = new int[session.size()];
+            int size = 0;
+            long bucket = Timestamps.INVALID;
+            for (int i = 0; i < session.size(); i++) {
+                if (times[i] == Timestamps.INVALID) continue;
+                long start = settings.getIntervalStart(times[i]);
+                if (start != bucket) {
+                    indices[size++] = i;
+                    bucket = start;
+                }
+            }
+            mIndices = Arrays.copyOf(indices, size);
+            mSize = size;
+        } else {
+            mIndices = null;
+            mSize = session.size();
+        }
+        mSourceSize = session.size();
+    }
+
+
+    /**
+     * Restores a projection from materialized data. Arrays of fields which are not available
+     * according to the settings may be null.
+     */
+    PrivacyProjection(SessionDescription description, PrivacySettings settings, int size,
+                      int sourceSize, int[] indices, long[] times, String[] timestamps,
+                      double[] latitudes, double[] longitudes, int[] heartrates) {
+        mDescription = description;
+        mSession = null;
+        mSettings = settings;
+        mSize = size;
+        mSourceSize = sourceSize;
+        mIndices = indices;
+        mTimes = times;
+        mTimestamps = timestamps;
+        mLatitudes = latitudes;
+        mLongitudes = longitudes;
+        mHeartrates = heartrates;
+    }
+
+
+    /**
+     * @return  Description of the projected Session
+     */
+    public SessionDescription getDescription() {
+        return mDescription;
+    }
+
+    /**
+     * @return  Restrictions applied by this projection
+     */
+    public PrivacySettings getSettings() {
+        return mSettings;
+    }
+
+    /**
+     * This method returns the number of Measurements left after resampling.
+     *
+     * @return  Number of Measurements
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * This method returns the index of a projected Measurement in the Session, e.g. to look up data
+     * derived from the full Session.
+     *
+     * @param index Index of the projected Measurement
+     * @return      Index in the Session
+     */
+    public int getSourceIndex(int index) {
+        return mIndices == null ? index : mIndices[index];
+    }
+
+    /**
+     * This method returns the number of Measurements the Session had when it was projected. Data
+     * derived from the Session later on only matches the source indices if its size is equal,
+     * Sessions may have been compacted in the meantime.
+     *
+     * @return  Number of Measurements of the Session
+     */
+    public int getSourceSize() {
+        return mSourceSize;
+    }
+
+
+    /**
+     * @return  true if timestamps are available
+     */
+    public boolean isTimeAvailable() {
+        return mSettings.isTimeEnabled();
+    }
+
+    /**
+     * @return  true if GPS locations are available
+     */
+    public boolean isLocationAvailable() {
+        return mSettings.isLocationEnabled();
+    }
+
+    /**
+     * @return  true if heart rates are available
+     */
+    public boolean isHeartrateAvailable() {
+        return mSettings.isHeartrateEnabled();
+    }
+
+
+
+    /**
+     * @param index Index of the Measurement
+     * @return      Timestamp in milliseconds since the epoch or {@link Timestamps#INVALID} if
+     *              timestamps are not available
+     */
+    public long getTime(int index) {
+        if (!mSettings.isTimeEnabled()) return Timestamps.INVALID;
+        long[] times = mTimes;
+        if (times != null) return times[index];
+
+        int source = getSourceIndex(index);
+        long time = mSession.getTimes()[source];
+        if (mSettings.getTimePrecision() == 0L) return time;
+        return mSettings.projectTime(time,
+                Timestamps.offsetMinutes(mSession.getTimestamps()[source]));
+    }
+
+    /**
+     * @param index Index of the Measurement
+     * @return      Timestamp in the ISO-8601 date format or null if timestamps are not available
+     */
+    public String getTimestamp(int index) {
+        if (!mSettings.isTimeEnabled()) return null;
+        String[] timestamps = mTimestamps;
+        if (timestamps != null) return timestamps[index];
+
+        return mSettings.projectTimestamp(mSession.getTimestamps()[getSourceIndex(index)]);
+    }
+
+    /**
+     * @param index Index of the Measurement
+     * @return      Latitude or NaN if GPS locations are not available
+     */
+    public double getLatitude(int index) {
+        if (!mSettings.isLocationEnabled()) return Double.NaN;
+        double[] latitudes = mLatitudes;
+        if (latitudes != null) return latitudes[index];
+        return mSettings.projectCoordinate(mSession.getLatitudes()[getSourceIndex(index)]);
+    }
+
+    /**
+     * @param index Index of the Measurement
+     * @return      Longitude or NaN if GPS locations are not available
+     */
+    public double getLongitude(int index) {
+        if (!mSettings.isLocationEnabled()) return Double.NaN;
+        double[] longitudes = mLongitudes;
+        if (longitudes != null) return longitudes[index];
+        return mSettings.projectCoordinate(mSession.getLongitudes()[getSourceIndex(index)]);
+    }
+
+    /**
+     * @param index Index of the Measurement
+     * @return      Heart rate or {@link #NO_HEARTRATE} if heart rates are not available
+     */
+    public int getHeartrate(int index) {
+        if (!mSettings.isHeartrateEnabled()) return NO_HEARTRATE;
+        int[] heartrates = mHeartrates;
+        if (heartrates != null) return heartrates[index];
+        return mSession.getHeartrates()[getSourceIndex(index)];
+    }
+
+
+
+    /**
+     * This method returns the projected timestamps in milliseconds since the epoch, see
+     * {@link #getTime(int)}.
+     * <br>
+     * The returned array must not be modified and only the first {@link #size()} elements are
+     * valid.
+     *
+     * @return  Timestamps in milliseconds since the epoch
+     */
+    public long[] getTimes() {
+        if (isTimeUnchanged()) {
+            return mSession.getTimes();
+        }
+        synchronized (this) {
+            if (mTimes == null) {
+                long[] times = new long[mSize];
+                for (int i = 0; i < mSize; i++) {
+                    times[i] = getTime(i);
+                }
+                mTimes = times;
+            }
+            return mTimes;
+        }
+    }
+
+    /**
+     * This method returns the projected timestamps in the ISO-8601 date format, see
+     * {@link #getTimestamp(int)}.
+     * <br>
+     * The returned array must not be modified, see {@link #getTimes()}.
+     *
+     * @return  Timestamps
+     */
+    public String[] getTimestamps() {
+        if (isTimeUnchanged()) {
+            return mSession.getTimestamps();
+        }
+        synchronized (this) {
+            if (mTimestamps == null) {
+                String[] timestamps = new String[mSize];
+                for (int i = 0; i < mSize; i++) {
+                    timestamps[i] = getTimestamp(i);
+                }
+                mTimestamps = timestamps;
+            }
+            return mTimestamps;
+        }
+    }
+
+    /**
+     * This method returns the projected latitudes, see {@link #getLatitude(int)}.
+     * <br>
+     * The returned array must not be modified, see {@link #getTimes()}.
+     *
+     * @return  Latitudes
+     */
+    public double[] getLatitudes() {
+        if (isLocationUnchanged()) {
+            return mSession.getLatitudes();
+        }
+        synchronized (this) {
+            if (mLatitudes == null) {
+                double[] latitudes = new double[mSize];
+                for (int i = 0; i < mSize; i++) {
+                    latitudes[i] = getLatitude(i);
+                }
+                mLatitudes = latitudes;
+            }
+            return mLatitudes;
+        }
+    }
+
+    /**
+     * This method returns the projected longitudes, see {@link #getLongitude(int)}.
+     * <br>
+     * The returned array must not be modified, see {@link #getTimes()}.
+     *
+     * @return  Longitudes
+     */
+    public double[] getLongitudes() {
+        if (isLocationUnchanged()) {
+            return mSession.getLongitudes();
+        }
+        synchronized (this) {
+            if (mLongitudes == null) {
+                double[] longitudes = new double[mSize];
+                for (int i = 0; i < mSize; i++) {
+                    longitudes[i] = getLongitude(i);
+                }
+                mLongitudes = longitudes;
+            }
+            return mLongitudes;
+        }
+    }
+
+    private boolean isTimeUnchanged() {
+        return mSession != null && mIndices == null && mSettings.isTimeEnabled()
+                && mSettings.getTimePrecision() == 0L;
+    }
+
+    private boolean isLocationUnchanged() {
+        return mSession != null && mIndices == null && mSettings.isLocationEnabled()
+                && mSettings.getCoordinatePrecision() == 0d;
+    }
+
+    /**
+     * This method returns the projected heart rates, see {@link #getHeartrate(int)}.
+     * <br>
+     * The returned array must not be modified, see {@link #getTimes()}.
+     *
+     * @return  Heart rates
+     */
+    public int[] getHeartrates() {
+        if (mSession != null && mIndices == null && mSettings.isHeartrateEnabled()) {
+            return mSession.getHeartrates();
+        }
+        synchronized (this) {
+            if (mHeartrates == null) {
+                int[] heartrates = new int[mSize];
+                for (int i = 0; i < mSize; i++) {
+                    heartrates[i] = getHeartrate(i);
+                }
+                mHeartrates = heartrates;
+            }
+            return mHeartrates;
+        }
+    }
+
+
+
+    /**
+     * This method returns an unmodifiable List of all projected Measurements. Like
+     * {@link Session#getMeasurements()} the List is a view creating a new {@link Measurement}
+     * object on each access.
+     *
+     * @return  Unmodifiable List of Measurements
+     */
+    public List<Measurement> getMeasurements() {
+        return new MeasurementList();
+    }
+
+    private class MeasurementList extends AbstractList<Measurement> implements RandomAccess {
+
+        @Override
+        public Measurement get(int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+            }
+            return new Measurement(getTimestamp(index), getLatitude(index), getLongitude(index),
+                    getHeartrate(index));
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
+
+
+    /**
+     * This method passes all projected Measurements to a {@link SessionGenerator.Sink}, e.g. a
+     * {@link SessionJsonWriter} to export the Session. Unavailable fields are passed as null, NaN
+     * and {@link #NO_HEARTRATE} respectively.
+     *
+     * @param sink  Sink to write to
+     */
+    public void writeTo(SessionGenerator.Sink sink) {
+        sink.begin(mDescription.type.alias, mDescription.description, mSize);
+        for (int i = 0; i < mSize; i++) {
+            sink.measurement(getTimestamp(i), getLatitude(i), getLongitude(i), getHeartrate(i));
+        }
+        sink.end();
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.SparseIntArray;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.haukesomm.healthdemo.privacy.PrivacySettings;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class caches {@link PrivacyProjection}s of Sessions in memory and on disk, so reading a
+ * Session in a restricted privacy mode costs about as much as reading its raw data.<br>
+ * Projections are cached per Session and {@link PrivacySettings#getFingerprint() privacy rules}
+ * in their materialized form, so neither resampling nor any other rule has to be applied again.
+ * Projections missing from the cache are built from the {@link SessionDatabase} on first access.
+ * Unrestricted projections are never cached since they do not copy any data.<br>
+ * Files on disk are sealed with the {@link ChunkCipher} of their Session, so cached projections
+ * are protected just like the Measurements they were built from and become unreadable once the
+ * Session's key is gone.<br>
+ * Call {@link #invalidate()} whenever the privacy mode changes to drop all cached projections.
+ * Projections built while they are being invalidated are handed out but never cached.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class ProjectionCache {
+
+    private static final String DIRECTORY = "sealed_projections";
+
+    // Held unencrypted projections before version 2
+    private static final String LEGACY_DIRECTORY = "projections";
+
+    private static final int FILE_VERSION = 3;
+
+    // Chunk index authenticated along with projection files, Measurements use indices from 0
+    private static final int PROJECTION_CHUNK = -1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Total number of measurements of all projections cached in memory
+    private static final int MAX_CACHED_MEASUREMENTS = 1 << 20;
+
+
+    private static ProjectionCache sInstance;
+
+
+    /**
+     * @param context   The app's context
+     * @return          Process-wide ProjectionCache instance
+     */
+    public static synchronized ProjectionCache getInstance(Context context) {
+        if (sInstance == null) {
+            File cache = context.getApplicationContext().getCacheDir();
+            sInstance = new ProjectionCache(new File(cache, DIRECTORY));
+            sInstance.deleteLegacyDirectory(new File(cache, LEGACY_DIRECTORY));
+        }
+        return sInstance;
+    }
+
+
+
+    private final File mDirectory;
+
+    private final LruCache<String, PrivacyProjection> mProjections =
+            new LruCache<String, PrivacyProjection>(MAX_CACHED_MEASUREMENTS) {
+                @Override
+                protected int sizeOf(String key, PrivacyProjection value) {
+                    return Math.max(1, value.size());
+                }
+            };
+
+    // Writes and deletes files in order
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    // Guards the generations as well as renaming and deleting the files of single Sessions
+    private final Object mLock = new Object();
+
+    // Bumped by invalidate(), projections are only cached if no generation changed meanwhile
+    private int mGeneration;
+
+    // Bumped by invalidate(int) per Session ID
+    private final SparseIntArray mGenerations = new SparseIntArray();
+
+
+    private ProjectionCache(File directory) {
+        mDirectory = directory;
+    }
+
+
+    /**
+     * Returns the projection of a Session, either from the cache or by loading and projecting the
+     * Session. Newly built projections are written to disk in the background.
+     *
+     * @param database                  Database to load the Session from on a cache miss
+     * @param id                        ID of the Session
+     * @param settings                  Privacy rules to apply
+     * @return                          Projection of the Session
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public PrivacyProjection get(SessionDatabase database, int id, PrivacySettings settings)
+            throws IllegalStateException {
+        if (settings.isUnrestricted()) {
+            return new PrivacyProjection(database.get(id), settings);
+        }
+
+        final String key = id + ":" + settings.getFingerprint();
+        PrivacyProjection projection = mProjections.get(key);
+        if (projection != null) {
+            return projection;
+        }
+
+        final int generation = getGeneration(id);
+
+        // Sessions without a key have no Measurements, so there is nothing worth storing
+        final ChunkCipher cipher = database.findCipher(id);
+        final File file = getFile(id, settings);
+        if (cipher != null && file.exists()) {
+            try {
+                projection = read(file, cipher, settings);
+            } catch (IOException | IllegalStateException e) {
+                // Corrupt, outdated or sealed with a previous key, rebuild it below
+                Log.w("ProjectionCache", "Unable to read cached projection: " + e.getMessage());
+            }
+        }
+
+        if (projection == null) {
+            final PrivacyProjection built = new PrivacyProjection(database.get(id), settings);
+            materialize(built);
+            if (cipher != null) {
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        write(file, cipher, built, generation);
+                    }
+                });
+            }
+            projection = built;
+        }
+
+        synchronized (mLock) {
+            if (getGeneration(id) == generation) {
+                mProjections.put(key, projection);
+            }
+        }
+        return projection;
+    }
+
+
+    /**
+     * Removes all cached projections, e.g. after the privacy mode has changed. Projections are
+     * rebuilt lazily on their next access.
+     */
+    public void invalidate() {
+        synchronized (mLock) {
+            mGeneration++;
+            mProjections.evictAll();
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] directories = mDirectory.listFiles();
+                if (directories == null) return;
+                for (File directory : directories) {
+                    deleteDirectory(directory);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes all cached projections of a Session, e.g. after it has been deleted. Its files are
+     * deleted right away, so they can not be read once this method returns.
+     *
+     * @param id    ID of the Session
+     */
+    public void invalidate(int id) {
+        synchronized (mLock) {
+            mGenerations.put(id, mGenerations.get(id) + 1);
+            for (String key : mProjections.snapshot().keySet()) {
+                if (key.startsWith(id + ":")) {
+                    mProjections.remove(key);
+                }
+            }
+
+            File[] directories = mDirectory.listFiles();
+            if (directories == null) return;
+            for (File directory : directories) {
+                //noinspection ResultOfMethodCallIgnored
+                new File(directory, String.valueOf(id)).delete();
+            }
+        }
+    }
+
+
+
+    // Both counters only grow, so their sum changes whenever either of them is bumped
+    private int getGeneration(int id) {
+        synchronized (mLock) {
+            return mGeneration + mGenerations.get(id);
+        }
+    }
+
+    private File getFile(int id, PrivacySettings settings) {
+        // Fingerprints are verified when reading, so hash collisions are harmless
+        String fingerprint = Integer.toHexString(settings.getFingerprint().hashCode());
+        return new File(new File(mDirectory, fingerprint), String.valueOf(id));
+    }
+
+    private static void materialize(PrivacyProjection projection) {
+        projection.getTimes();
+        projection.getTimestamps();
+        projection.getLatitudes();
+        projection.getLongitudes();
+        projection.getHeartrates();
+    }
+
+    private void deleteLegacyDirectory(final File legacy) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] directories = legacy.listFiles();
+                if (directories == null) return;
+                for (File directory : directories) {
+                    deleteDirectory(directory);
+                }
+                //noinspection ResultOfMethodCallIgnored
+                legacy.delete();
+            }
+        });
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        directory.delete();
+    }
+
+
+    /*
+     * Plaintext layout: version, fingerprint, type alias, description, size, source size and the
+     * indices of the kept Measurements (if resampled), followed by one column per available field.
+     * Files hold the plaintext sealed as a whole, it never touches the disk unencrypted.
+     */
+    private void write(File file, ChunkCipher cipher, PrivacyProjection projection,
+                       int generation) {
+        File directory = file.getParentFile();
+        File temp = new File(directory, file.getName() + ".tmp");
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+
+        PrivacySettings settings = projection.getSettings();
+        SessionDescription description = projection.getDescription();
+        int size = projection.size();
+        ByteArrayOutputStream plaintext = new ByteArrayOutputStream(BUFFER_SIZE);
+        try (DataOutputStream out = new DataOutputStream(plaintext)) {
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(settings.getFingerprint());
+            out.writeUTF(description.type.alias);
+            out.writeUTF(description.description);
+            out.writeInt(size);
+            out.writeInt(projection.getSourceSize());
+
+            boolean resampled = settings.getInterval() > 0;
+            out.writeBoolean(resampled);
+            if (resampled) {
+                for (int i = 0; i < size; i++) out.writeInt(projection.getSourceIndex(i));
+            }
+            if (settings.isTimeEnabled()) {
+                long[] times = projection.getTimes();
+                String[] timestamps = projection.getTimestamps();
+                for (int i = 0; i < size; i++) out.writeLong(times[i]);
+                for (int i = 0; i < size; i++) {
+                    out.writeBoolean(timestamps[i] != null);
+                    if (timestamps[i] != null) out.writeUTF(timestamps[i]);
+                }
+            }
+            if (settings.isLocationEnabled()) {
+                double[] latitudes = projection.getLatitudes();
+                double[] longitudes = projection.getLongitudes();
+                for (int i = 0; i < size; i++) out.writeDouble(latitudes[i]);
+                for (int i = 0; i < size; i++) out.writeDouble(longitudes[i]);
+            }
+            if (settings.isHeartrateEnabled()) {
+                int[] heartrates = projection.getHeartrates();
+                for (int i = 0; i < size; i++) out.writeInt(heartrates[i]);
+            }
+        } catch (IOException e) {
+            // Not thrown by in-memory streams
+            throw new IllegalStateException(e);
+        }
+
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(cipher.seal(PROJECTION_CHUNK, plaintext.toByteArray()));
+        } catch (IOException | IllegalStateException e) {
+            // The projection is simply rebuilt next time
+            Log.w("ProjectionCache", "Unable to cache projection: " + e.getMessage());
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            return;
+        }
+
+        // The Session may have been invalidated while its projection was built or written
+        synchronized (mLock) {
+            if (getGeneration(description.id) != generation || !temp.renameTo(file)) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+
+    private static PrivacyProjection read(File file, ChunkCipher cipher, PrivacySettings settings)
+            throws IOException, IllegalStateException {
+        byte[] sealed = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(sealed);
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(cipher.open(PROJECTION_CHUNK, sealed)))) {
+            if (in.readInt() != FILE_VERSION || !in.readUTF().equals(settings.getFingerprint())) {
+                throw new IOException("Cached projection does not match");
+            }
+            SessionType type = SessionType.get(in.readUTF());
+            String description = in.readUTF();
+            int id = Integer.parseInt(file.getName());
+            int size = in.readInt();
+            int sourceSize = in.readInt();
+
+            int[] indices = null;
+            if (in.readBoolean()) {
+                indices = new int[size];
+                for (int i = 0; i < size; i++) indices[i] = in.readInt();
+            }
+
+            long[] times = null;
+            String[] timestamps = null;
+            if (settings.isTimeEnabled()) {
+                times = new long[size];
+                timestamps = new String[size];
+                for (int i = 0; i < size; i++) times[i] = in.readLong();
+                for (int i = 0; i < size; i++) {
+                    timestamps[i] = in.readBoolean() ? in.readUTF() : null;
+                }
+            }
+
+            double[] latitudes = null;
+            double[] longitudes = null;
+            if (settings.isLocationEnabled()) {
+                latitudes = new double[size];
+                longitudes = new double[size];
+                for (int i = 0; i < size; i++) latitudes[i] = in.readDouble();
+                for (int i = 0; i < size; i++) longitudes[i] = in.readDouble();
+            }
+
+            int[] heartrates = null;
+            if (settings.isHeartrateEnabled()) {
+                heartrates = new int[size];
+                for (int i = 0; i < size; i++) heartrates[i] = in.readInt();
+            }
+
+            return new PrivacyProjection(new SessionDescription(id, type, description), settings,
+                    size, sourceSize, indices, times, timestamps, latitudes, longitudes, heartrates);
+        }
+    }
+}
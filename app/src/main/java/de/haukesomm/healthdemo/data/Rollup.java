@@ -0,0 +1,129 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import de.haukesomm.healthdemo.analytics.RollupPeriod;
+import de.haukesomm.healthdemo.analytics.TimeInZones;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This is a data class representing the aggregated {@link Session}s started within one day, week
+ * or month as maintained by the {@link SessionDatabase}.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class Rollup {
+
+    /**
+     * Period this Rollup covers
+     */
+    public final RollupPeriod period;
+
+    /**
+     * Start of the period in milliseconds since the epoch, inclusive
+     */
+    public final long start;
+
+    /**
+     * End of the period in milliseconds since the epoch, exclusive
+     */
+    public final long end;
+
+    /**
+     * Number of Sessions started within the period
+     */
+    public final int sessions;
+
+    /**
+     * Total duration of the Sessions in milliseconds
+     */
+    public final long duration;
+
+    /**
+     * Total distance of the Sessions in meters
+     */
+    public final double distance;
+
+    /**
+     * Highest heart rate of all Sessions
+     */
+    public final int maxHeartrate;
+
+    /**
+     * Time spent in each of the default heart rate zones
+     */
+    public final TimeInZones timeInZones;
+
+
+    private final long mHeartrateSum;
+
+    private final long mHeartrateCount;
+
+
+    Rollup(RollupPeriod period, long start, long end, int sessions, long duration,
+           double distance, long heartrateSum, long heartrateCount, int maxHeartrate,
+           TimeInZones timeInZones) {
+        this.period = period;
+        this.start = start;
+        this.end = end;
+        this.sessions = sessions;
+        this.duration = duration;
+        this.distance = distance;
+        this.maxHeartrate = maxHeartrate;
+        this.timeInZones = timeInZones;
+        mHeartrateSum = heartrateSum;
+        mHeartrateCount = heartrateCount;
+    }
+
+
+    /**
+     * This method returns the average heart rate of all Measurements of all Sessions.
+     *
+     * @return  Average heart rate or NaN if there were no Measurements
+     */
+    public double getAverageHeartrate() {
+        return mHeartrateCount == 0 ? Double.NaN : (double) mHeartrateSum / mHeartrateCount;
+    }
+
+    /**
+     * @return  Sum of the heart rates of all Measurements of all Sessions
+     */
+    long getHeartrateSum() {
+        return mHeartrateSum;
+    }
+
+    /**
+     * @return  Number of Measurements of all Sessions
+     */
+    long getHeartrateCount() {
+        return mHeartrateCount;
+    }
+
+    /**
+     * This method combines the Sessions of two Rollups of the same period. Neither Rollup is
+     * modified.
+     *
+     * @param other Rollup of the same period and start
+     * @return      Rollup of the Sessions of both Rollups
+     */
+    Rollup merge(Rollup other) {
+        TimeInZones merged = new TimeInZones(timeInZones.getZones());
+        merged.merge(timeInZones);
+        merged.merge(other.timeInZones);
+        return new Rollup(period, start, end, sessions + other.sessions, duration + other.duration,
+                distance + other.distance, mHeartrateSum + other.mHeartrateSum,
+                mHeartrateCount + other.mHeartrateCount,
+                Math.max(maxHeartrate, other.maxHeartrate), merged);
+    }
+}
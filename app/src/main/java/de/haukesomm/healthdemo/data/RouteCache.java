@@ -0,0 +1,189 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.haukesomm.healthdemo.analytics.RouteSimplifier;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class simplifies the routes of {@link Session}s in the background and caches the results
+ * in memory.<br>
+ * Routes are read through a {@link PrivacyProjection}. The expensive part of simplifying a route,
+ * computing the importance of each vertex, is done once per session and set of privacy rules.
+ * Simplified routes are cached per session, privacy rules, tolerance and vertex limit. Tolerances are
+ * rounded down to the next power of two so that all tolerances within one map zoom level share a
+ * cache entry.
+ * </p>
+ *
+ * @see RouteSimplifier
+ *
+ * @author Hauke Sommerfeld
+ */
+public class RouteCache {
+
+    /**
+     * Callback for asynchronously simplified routes. Callbacks are invoked on the main thread.
+     */
+    public interface Callback {
+
+        /**
+         * Called when the route is available.
+         *
+         * @param simplifier    RouteSimplifier of the session, can be used to query its bounds
+         * @param route         Simplified route
+         */
+        void onRouteSimplified(RouteSimplifier simplifier, RouteSimplifier.Route route);
+    }
+
+
+
+    // Total number of vertices of all cached RouteSimplifiers
+    private static final int MAX_CACHED_VERTICES = 1 << 20;
+
+    private static final int MAX_CACHED_ROUTES = 64;
+
+
+    private static RouteCache sInstance;
+
+
+    /**
+     * @return  Process-wide RouteCache instance
+     */
+    public static synchronized RouteCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new RouteCache();
+        }
+        return sInstance;
+    }
+
+
+
+    private final LruCache<String, RouteSimplifier> mSimplifiers =
+            new LruCache<String, RouteSimplifier>(MAX_CACHED_VERTICES) {
+                @Override
+                protected int sizeOf(String key, RouteSimplifier value) {
+                    return Math.max(1, value.size());
+                }
+            };
+
+    private final LruCache<String, RouteSimplifier.Route> mRoutes =
+            new LruCache<>(MAX_CACHED_ROUTES);
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+
+    private RouteCache() {
+        // Singleton
+    }
+
+
+    /**
+     * Simplifies the route of a {@link Session} on a background thread. If the route is already
+     * cached the callback is still invoked asynchronously.
+     *
+     * @param projection    Projection of the Session whose route should be simplified. The Session
+     *                      must not be modified while the route is being simplified.
+     * @param tolerance     Tolerance in meters, see {@link RouteSimplifier#simplify(double, int)}
+     * @param maxVertices   Maximum number of vertices
+     * @param callback      Callback invoked on the main thread
+     */
+    public void simplify(final PrivacyProjection projection, double tolerance,
+                         final int maxVertices, final Callback callback) {
+        final double quantized = quantize(tolerance);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String projectionKey = projection.getDescription().id + ":"
+                        + projection.getSettings().getFingerprint();
+                final RouteSimplifier simplifier = getSimplifier(projectionKey, projection);
+                String key = projectionKey + ":" + quantized + ":" + maxVertices;
+
+                RouteSimplifier.Route route = mRoutes.get(key);
+                if (route == null) {
+                    route = simplifier.simplify(quantized, maxVertices);
+                    mRoutes.put(key, route);
+                }
+
+                final RouteSimplifier.Route result = route;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onRouteSimplified(simplifier, result);
+                    }
+                });
+            }
+        });
+    }
+
+
+    /**
+     * Removes all cached routes, e.g. after the stored measurements have been rewritten.
+     */
+    public void invalidate() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mSimplifiers.evictAll();
+                mRoutes.evictAll();
+            }
+        });
+    }
+
+    /**
+     * Removes all cached routes of a session, e.g. after it has been deleted.
+     *
+     * @param id    ID of the session
+     */
+    public void invalidate(final int id) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String key : mSimplifiers.snapshot().keySet()) {
+                    if (key.startsWith(id + ":")) {
+                        mSimplifiers.remove(key);
+                    }
+                }
+                for (String key : mRoutes.snapshot().keySet()) {
+                    if (key.startsWith(id + ":")) {
+                        mRoutes.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+
+    private RouteSimplifier getSimplifier(String key, PrivacyProjection projection) {
+        RouteSimplifier simplifier = mSimplifiers.get(key);
+        if (simplifier == null) {
+            simplifier = new RouteSimplifier(
+                    projection.getLatitudes(), projection.getLongitudes(), projection.size());
+            mSimplifiers.put(key, simplifier);
+        }
+        return simplifier;
+    }
+
+    private static double quantize(double tolerance) {
+        if (!(tolerance > 0d)) return 0d;
+        return Math.pow(2d, Math.floor(Math.log(tolerance) / Math.log(2d)));
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import de.haukesomm.healthdemo.R;
+import de.haukesomm.healthdemo.analytics.RouteSimplifier;
+import de.haukesomm.healthdemo.privacy.PrivacyConfigStore;
+import de.haukesomm.healthdemo.privacy.PrivacySettings;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class renders small thumbnails of the routes of Sessions and caches them in memory and on
+ * disk.<br>
+ * Routes are read through the {@link ProjectionCache} using the active privacy settings,
+ * simplified to about one vertex per pixel and drawn onto a Bitmap without any map. Thumbnails
+ * are cached per Session, privacy rules and size. Sessions without a route are remembered as
+ * well, as empty files on disk.<br>
+ * Thumbnails are rendered on a small pool of background threads. The most recent request is
+ * served first and cancelled requests are skipped, so rows scrolled past during a fling do not
+ * delay the rows that are visible. Call {@link #invalidate()} whenever the privacy mode changes
+ * to delete all thumbnails.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class RouteThumbnailCache {
+
+    /**
+     * Callback for asynchronously loaded thumbnails. Callbacks are invoked on the main thread.
+     */
+    public interface Callback {
+
+        /**
+         * Called when the thumbnail has been loaded.
+         *
+         * @param thumbnail Thumbnail or null if the Session has no route
+         */
+        void onThumbnailLoaded(@Nullable Bitmap thumbnail);
+    }
+
+
+    /**
+     * Handle of a pending thumbnail request.
+     */
+    public static final class Request {
+
+        private volatile boolean mCancelled;
+
+        private Request() {
+            // Created by load()
+        }
+
+        /**
+         * Cancels the request. The callback will not be invoked afterwards.
+         */
+        public void cancel() {
+            mCancelled = true;
+        }
+    }
+
+
+
+    private static final String DIRECTORY = "thumbnails";
+
+    private static final int THREADS = 2;
+
+    private static final float STROKE_WIDTH_DP = 2f;
+
+    private static final float PADDING_DP = 4f;
+
+    // Meters per degree of latitude
+    private static final double METERS_PER_DEGREE = 111320d;
+
+
+    private static RouteThumbnailCache sInstance;
+
+
+    /**
+     * @param context   The app's context
+     * @return          Process-wide RouteThumbnailCache instance
+     */
+    public static synchronized RouteThumbnailCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new RouteThumbnailCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+
+
+    private final Context mContext;
+
+    private final File mDirectory;
+
+    private final float mStrokeWidth;
+
+    private final float mPadding;
+
+    private final LruCache<String, Bitmap> mThumbnails =
+            new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 32)) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getByteCount();
+                }
+            };
+
+    // Sessions without a route
+    private final LruCache<String, Boolean> mMissing = new LruCache<>(1024);
+
+    // Serves the most recent request first
+    private final ExecutorService mExecutor = new ThreadPoolExecutor(THREADS, THREADS,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<Runnable>() {
+                @Override
+                public boolean offer(@NonNull Runnable runnable) {
+                    return offerFirst(runnable);
+                }
+            });
+
+    // Deletes files in order
+    private final ExecutorService mDiskExecutor = Executors.newSingleThreadExecutor();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+
+    private RouteThumbnailCache(Context context) {
+        mContext = context;
+        mDirectory = new File(context.getCacheDir(), DIRECTORY);
+        float density = context.getResources().getDisplayMetrics().density;
+        mStrokeWidth = STROKE_WIDTH_DP * density;
+        mPadding = PADDING_DP * density;
+    }
+
+
+    /**
+     * Returns a thumbnail if it is cached in memory. Use this method to bind thumbnails without a
+     * round trip to a background thread.
+     *
+     * @param id        ID of the Session
+     * @param width     Width of the thumbnail in pixels
+     * @param height    Height of the thumbnail in pixels
+     * @return          Thumbnail or null if it is not cached in memory
+     */
+    @Nullable
+    public Bitmap getCached(int id, int width, int height) {
+        return mThumbnails.get(getKey(id, width, height, currentSettings()));
+    }
+
+    /**
+     * Loads a thumbnail from the cache or renders it on a background thread.
+     *
+     * @param id        ID of the Session
+     * @param width     Width of the thumbnail in pixels
+     * @param height    Height of the thumbnail in pixels
+     * @param callback  Callback invoked on the main thread unless the request is cancelled
+     * @return          Request which should be cancelled once the thumbnail is no longer needed
+     */
+    public Request load(final int id, final int width, final int height,
+                        final Callback callback) {
+        final Request request = new Request();
+        final PrivacySettings settings = currentSettings();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (request.mCancelled) return;
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                final Bitmap thumbnail = get(id, width, height, settings);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!request.mCancelled) {
+                            callback.onThumbnailLoaded(thumbnail);
+                        }
+                    }
+                });
+            }
+        });
+        return request;
+    }
+
+
+    /**
+     * Removes all thumbnails, e.g. after the privacy mode has changed.
+     */
+    public void invalidate() {
+        mThumbnails.evictAll();
+        mMissing.evictAll();
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] directories = mDirectory.listFiles();
+                if (directories == null) return;
+                for (File directory : directories) {
+                    File[] files = directory.listFiles();
+                    if (files != null) {
+                        for (File file : files) {
+                            //noinspection ResultOfMethodCallIgnored
+                            file.delete();
+                        }
+                    }
+                    //noinspection ResultOfMethodCallIgnored
+                    directory.delete();
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes all thumbnails of a Session, e.g. after it has been deleted.
+     *
+     * @param id    ID of the Session
+     */
+    public void invalidate(final int id) {
+        for (String key : mThumbnails.snapshot().keySet()) {
+            if (key.startsWith(id + ":")) {
+                mThumbnails.remove(key);
+            }
+        }
+        for (String key : mMissing.snapshot().keySet()) {
+            if (key.startsWith(id + ":")) {
+                mMissing.remove(key);
+            }
+        }
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] directories = mDirectory.listFiles();
+                if (directories == null) return;
+                for (File directory : directories) {
+                    File[] files = directory.listFiles();
+                    if (files == null) continue;
+                    for (File file : files) {
+                        if (file.getName().startsWith(id + "_")) {
+                            //noinspection ResultOfMethodCallIgnored
+                            file.delete();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+
+
+    private PrivacySettings currentSettings() {
+        return PrivacyConfigStore.getInstance(mContext).get();
+    }
+
+    private static String getKey(int id, int width, int height, PrivacySettings settings) {
+        return id + ":" + settings.getFingerprint() + ":" + width + "x" + height;
+    }
+
+    private File getFile(int id, int width, int height, PrivacySettings settings) {
+        String fingerprint = Integer.toHexString(settings.getFingerprint().hashCode());
+        return new File(new File(mDirectory, fingerprint), id + "_" + width + "x" + height + ".png");
+    }
+
+    // Called on a background thread
+    private Bitmap get(int id, int width, int height, PrivacySettings settings) {
+        String key = getKey(id, width, height, settings);
+        Bitmap thumbnail = mThumbnails.get(key);
+        if (thumbnail != null || mMissing.get(key) != null) {
+            return thumbnail;
+        }
+
+        File file = getFile(id, width, height, settings);
+        if (file.exists()) {
+            // Empty files mark Sessions without a route
+            thumbnail = file.length() > 0 ? BitmapFactory.decodeFile(file.getPath()) : null;
+            if (thumbnail != null || file.length() == 0) {
+                remember(key, thumbnail);
+                return thumbnail;
+            }
+        }
+
+        thumbnail = render(id, width, height, settings);
+        remember(key, thumbnail);
+        write(file, thumbnail);
+        return thumbnail;
+    }
+
+    private void remember(String key, Bitmap thumbnail) {
+        if (thumbnail != null) {
+            mThumbnails.put(key, thumbnail);
+        } else {
+            mMissing.put(key, Boolean.TRUE);
+        }
+    }
+
+    private Bitmap render(int id, int width, int height, PrivacySettings settings) {
+        if (!settings.isLocationEnabled()) return null;
+
+        PrivacyProjection projection;
+        try (SessionDatabase database = new SessionDatabase(mContext)) {
+            projection = ProjectionCache.getInstance(mContext).get(database, id, settings);
+        } catch (IllegalStateException e) {
+            Log.w("RouteThumbnailCache", "Unable to load session " + id + ": " + e.getMessage());
+            return null;
+        }
+        if (!projection.isLocationAvailable()) return null;
+
+        RouteSimplifier simplifier = new RouteSimplifier(
+                projection.getLatitudes(), projection.getLongitudes(), projection.size());
+        if (simplifier.size() < 2) return null;
+        RouteSimplifier.Route route = simplifier.simplify(0d, Math.max(2, width + height));
+
+        // Equirectangular projection around the route's center, fitted into the thumbnail
+        double cosLatitude = Math.cos(Math.toRadians(
+                (simplifier.getSouth() + simplifier.getNorth()) / 2d));
+        double spanX = (simplifier.getEast() - simplifier.getWest()) * cosLatitude;
+        double spanY = simplifier.getNorth() - simplifier.getSouth();
+        float innerWidth = width - 2 * mPadding;
+        float innerHeight = height - 2 * mPadding;
+        double scale = Math.min(spanX > 0 ? innerWidth / spanX : Double.MAX_VALUE,
+                spanY > 0 ? innerHeight / spanY : Double.MAX_VALUE);
+        if (scale == Double.MAX_VALUE || spanX * METERS_PER_DEGREE < 1d
+                && spanY * METERS_PER_DEGREE < 1d) {
+            // The route does not leave a single spot
+            return null;
+        }
+        double offsetX = mPadding + (innerWidth - spanX * scale) / 2d;
+        double offsetY = mPadding + (innerHeight - spanY * scale) / 2d;
+
+        Path path = new Path();
+        for (int i = 0; i < route.size(); i++) {
+            float x = (float) (offsetX
+                    + (route.longitudes[i] - simplifier.getWest()) * cosLatitude * scale);
+            float y = (float) (offsetY + (simplifier.getNorth() - route.latitudes[i]) * scale);
+            if (i == 0) {
+                path.moveTo(x, y);
+            } else {
+                path.lineTo(x, y);
+            }
+        }
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(mStrokeWidth);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        paint.setColor(mContext.getColor(R.color.colorAccent));
+
+        Bitmap thumbnail = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(thumbnail).drawPath(path, paint);
+        return thumbnail;
+    }
+
+    private static void write(File file, Bitmap thumbnail) {
+        File directory = file.getParentFile();
+        File temp = new File(directory, file.getName() + ".tmp");
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            if (thumbnail != null) {
+                thumbnail.compress(Bitmap.CompressFormat.PNG, 100, out);
+            }
+        } catch (IOException e) {
+            // The thumbnail is simply rendered again next time
+            Log.w("RouteThumbnailCache", "Unable to cache thumbnail: " + e.getMessage());
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            return;
+        }
+
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+}
@@ -11,22 +11,48 @@
 
 package de.haukesomm.healthdemo.data;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Created on 24.08.18
  * <p>
  * This is a data class representing a fitness session consisting of {@link SessionDescription}'s
- * attributes and a list of measurements.
+ * attributes and a list of measurements.<br>
+ * Measurements are stored column by column in primitive arrays. Analytics can access these arrays
+ * directly (e.g. {@link #getHeartrates()}) while {@link #getMeasurements()} provides a List view
+ * creating {@link Measurement} objects on demand.<br>
+ * A Session knows whether its Measurements are in chronological order, see {@link #isSorted()}.
+ * Sessions loaded from the {@link SessionDatabase} always are.
  * </p>
  *
  * @author Hauke Sommerfeld
  */
 public class Session extends SessionDescription {
 
-    private final List<Measurement> mMeasurements = new LinkedList<>();
+    private static final int INITIAL_CAPACITY = 16;
+
+
+    private String[] mTimestamps = new String[INITIAL_CAPACITY];
+
+    private double[] mLatitudes = new double[INITIAL_CAPACITY];
+
+    private double[] mLongitudes = new double[INITIAL_CAPACITY];
+
+    private int[] mHeartrates = new int[INITIAL_CAPACITY];
+
+    private int mSize;
+
+
+    // Timestamps parsed to epoch milliseconds, lazily extended by getTimes()
+    private long[] mTimes = new long[0];
+
+    private int mParsedTimes;
+
+
+    private boolean mSorted = true;
 
 
     /**
@@ -41,21 +67,210 @@ public class Session extends SessionDescription {
 
 
     /**
-     * This method returns an unmodifiable List of all Measurements.
+     * This method returns the number of Measurements in this Session.
+     *
+     * @return  Number of Measurements
+     */
+    public int size() {
+        return mSize;
+    }
+
+
+    /**
+     * This method returns whether the Measurements are guaranteed to be in chronological order,
+     * with malformed timestamps first. Consumers relying on the order, e.g. to compute durations or
+     * find a time range, do not need to sort sorted Sessions again.
+     *
+     * @return  true if the Measurements are in chronological order
+     * @see #sort()
+     */
+    public boolean isSorted() {
+        return mSorted;
+    }
+
+    /**
+     * This method brings the Measurements into chronological order. Measurements with equal
+     * timestamps keep their order. This takes linear time if the Measurements are already sorted
+     * or only a few of them are out of order.
+     */
+    public void sort() {
+        if (mSorted) return;
+
+        long[] times = getTimes();
+        int[] order = TimeOrder.sort(times, mSize);
+        if (order != null) {
+            String[] timestamps = new String[mTimestamps.length];
+            long[] sortedTimes = new long[mTimes.length];
+            double[] latitudes = new double[mLatitudes.length];
+            double[] longitudes = new double[mLongitudes.length];
+            int[] heartrates = new int[mHeartrates.length];
+            for (int i = 0; i < mSize; i++) {
+                int j = order[i];
+                timestamps[i] = mTimestamps[j];
+                sortedTimes[i] = times[j];
+                latitudes[i] = mLatitudes[j];
+                longitudes[i] = mLongitudes[j];
+                heartrates[i] = mHeartrates[j];
+            }
+            mTimestamps = timestamps;
+            mTimes = sortedTimes;
+            mLatitudes = latitudes;
+            mLongitudes = longitudes;
+            mHeartrates = heartrates;
+        }
+        mSorted = true;
+    }
+
+    /**
+     * This method creates a copy of this Session. Sorting or modifying the backing arrays of the
+     * copy leaves this Session untouched.
+     *
+     * @return  Copy of this Session
+     */
+    Session copy() {
+        Session copy = new Session(id, type, description);
+        copy.mTimestamps = Arrays.copyOf(mTimestamps, mSize);
+        copy.mLatitudes = Arrays.copyOf(mLatitudes, mSize);
+        copy.mLongitudes = Arrays.copyOf(mLongitudes, mSize);
+        copy.mHeartrates = Arrays.copyOf(mHeartrates, mSize);
+        copy.mSize = mSize;
+        copy.mTimes = Arrays.copyOf(mTimes, mParsedTimes);
+        copy.mParsedTimes = mParsedTimes;
+        copy.mSorted = mSorted;
+        return copy;
+    }
+
+    /**
+     * This method returns the time between the first and the last Measurement with a valid
+     * timestamp. This takes constant time for sorted Sessions.
+     *
+     * @return  Duration in milliseconds or 0 if there are less than two valid timestamps
+     */
+    public long getDuration() {
+        long[] times = getTimes();
+        long first = Long.MAX_VALUE;
+        long last = Timestamps.INVALID;
+
+        if (mSorted) {
+            // Malformed timestamps are ordered first
+            for (int i = 0; i < mSize && first == Long.MAX_VALUE; i++) {
+                if (times[i] != Timestamps.INVALID) first = times[i];
+            }
+            if (mSize > 0) last = times[mSize - 1];
+        } else {
+            for (int i = 0; i < mSize; i++) {
+                if (times[i] == Timestamps.INVALID) continue;
+                first = Math.min(first, times[i]);
+                last = Math.max(last, times[i]);
+            }
+        }
+
+        return first < last ? last - first : 0L;
+    }
+
+
+    /**
+     * This method returns an unmodifiable List of all Measurements. The List is a view of this
+     * Session's data and creates a new {@link Measurement} object on each access.
      *
      * @return  Unmodifiable List of measurements
      */
     public List<Measurement> getMeasurements() {
-        return Collections.unmodifiableList(mMeasurements);
+        return new MeasurementList();
+    }
+
+    private class MeasurementList extends AbstractList<Measurement> implements RandomAccess {
+
+        @Override
+        public Measurement get(int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+            }
+            return new Measurement(mTimestamps[index], mLatitudes[index], mLongitudes[index],
+                    mHeartrates[index]);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
     }
 
+
+    /**
+     * This method returns the timestamps of all Measurements in the ISO-8601 date format.
+     * <br>
+     * The returned array is this Session's backing storage and must not be modified. Only the
+     * first {@link #size()} elements are valid and the array will be replaced once further
+     * Measurements are added.
+     *
+     * @return  Timestamps
+     */
+    public String[] getTimestamps() {
+        return mTimestamps;
+    }
+
+    /**
+     * This method returns the timestamps of all Measurements in milliseconds since the epoch, or
+     * {@link Timestamps#INVALID} for malformed timestamps. Timestamps are parsed on first access
+     * and only newly added ones are parsed on subsequent calls.
+     * <br>
+     * The returned array is this Session's backing storage, see {@link #getTimestamps()}.
+     *
+     * @return  Timestamps in milliseconds since the epoch
+     */
+    public long[] getTimes() {
+        if (mTimes.length < mSize) {
+            mTimes = Arrays.copyOf(mTimes, mTimestamps.length);
+        }
+        for (; mParsedTimes < mSize; mParsedTimes++) {
+            mTimes[mParsedTimes] = Timestamps.parse(mTimestamps[mParsedTimes]);
+        }
+        return mTimes;
+    }
+
+    /**
+     * This method returns the latitudes of all Measurements.
+     * <br>
+     * The returned array is this Session's backing storage, see {@link #getTimestamps()}.
+     *
+     * @return  Latitudes
+     */
+    public double[] getLatitudes() {
+        return mLatitudes;
+    }
+
+    /**
+     * This method returns the longitudes of all Measurements.
+     * <br>
+     * The returned array is this Session's backing storage, see {@link #getTimestamps()}.
+     *
+     * @return  Longitudes
+     */
+    public double[] getLongitudes() {
+        return mLongitudes;
+    }
+
+    /**
+     * This method returns the heart rates of all Measurements.
+     * <br>
+     * The returned array is this Session's backing storage, see {@link #getTimestamps()}.
+     *
+     * @return  Heart rates
+     */
+    public int[] getHeartrates() {
+        return mHeartrates;
+    }
+
+
     /**
      * Use this method to add a single Measurement to the Session.
      *
      * @param measurement   Measurement to add
      */
     public void add(Measurement measurement) {
-        mMeasurements.add(measurement);
+        add(measurement.timestamp, measurement.latitude, measurement.longitude,
+                measurement.heartrate);
     }
 
     /**
@@ -64,6 +279,70 @@ public class Session extends SessionDescription {
      * @param measurements  Measurements to add
      */
     public void addAll(List<Measurement> measurements) {
-        mMeasurements.addAll(measurements);
+        ensureCapacity(mSize + measurements.size());
+        for (Measurement measurement : measurements) {
+            add(measurement);
+        }
+    }
+
+    /**
+     * Adds a single Measurement without creating a {@link Measurement} object.
+     *
+     * @param timestamp Timestamp in the ISO-8601 date format
+     * @param latitude  Latitude of the user's location at the time of the measurement
+     * @param longitude Longitude of the user's location at the time of the measurement
+     * @param heartrate The user's heartrate at the time of the measurement
+     */
+    void add(String timestamp, double latitude, double longitude, int heartrate) {
+        if (mSize == mTimestamps.length) {
+            ensureCapacity(mSize + (mSize >> 1) + 1);
+        }
+        mTimestamps[mSize] = timestamp;
+        mLatitudes[mSize] = latitude;
+        mLongitudes[mSize] = longitude;
+        mHeartrates[mSize] = heartrate;
+        mSize++;
+        mSorted = false;
+    }
+
+    /**
+     * Adds a single Measurement whose timestamp has already been parsed. The Session stays sorted
+     * as long as the Measurements are added in chronological order.
+     *
+     * @param timestamp Timestamp in the ISO-8601 date format
+     * @param time      Timestamp in milliseconds since the epoch or {@link Timestamps#INVALID}
+     * @param latitude  Latitude of the user's location at the time of the measurement
+     * @param longitude Longitude of the user's location at the time of the measurement
+     * @param heartrate The user's heartrate at the time of the measurement
+     */
+    void add(String timestamp, long time, double latitude, double longitude, int heartrate) {
+        boolean sorted = mSorted && mParsedTimes == mSize
+                && (mSize == 0 || mTimes[mSize - 1] <= time);
+        boolean parsed = mParsedTimes == mSize;
+
+        add(timestamp, latitude, longitude, heartrate);
+
+        if (parsed) {
+            if (mTimes.length < mSize) {
+                mTimes = Arrays.copyOf(mTimes, mTimestamps.length);
+            }
+            mTimes[mSize - 1] = time;
+            mParsedTimes = mSize;
+        }
+        mSorted = sorted;
+    }
+
+    /**
+     * Grows the backing arrays so that they can hold at least the specified number of
+     * Measurements.
+     *
+     * @param capacity  Minimum capacity
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity <= mTimestamps.length) return;
+        mTimestamps = Arrays.copyOf(mTimestamps, capacity);
+        mLatitudes = Arrays.copyOf(mLatitudes, capacity);
+        mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+        mHeartrates = Arrays.copyOf(mHeartrates, capacity);
     }
 }
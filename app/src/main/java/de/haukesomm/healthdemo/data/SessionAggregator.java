@@ -0,0 +1,456 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.haukesomm.healthdemo.analytics.HeartRateZones;
+import de.haukesomm.healthdemo.analytics.Statistics;
+import de.haukesomm.healthdemo.analytics.TimeInZones;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class computes aggregates over many {@link Session}s in parallel.<br>
+ * Sessions are partitioned recursively across a {@link ForkJoinPool}. Each partition reads its
+ * Sessions through its own {@link SessionDatabase} connection, accumulates a partial aggregate
+ * and partial aggregates are merged pairwise, so recomputing statistics over the whole history
+ * scales with the number of cores. Running aggregations report their progress and can be
+ * cancelled.<br>
+ * The {@link SessionDatabase} uses this class for the rescans of the whole history, e.g. when
+ * rebuilding all {@link Rollup}s.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class SessionAggregator {
+
+    /**
+     * A mergeable aggregate computed over Sessions. Implementations must not keep any state
+     * outside of the aggregates since Sessions are accumulated concurrently.
+     *
+     * @param <A>   Type of the aggregate
+     */
+    public interface Aggregation<A> {
+
+        /**
+         * @return  New, empty aggregate
+         */
+        A create();
+
+        /**
+         * Accumulates a single Session into an aggregate. Called on a worker thread.
+         *
+         * @param aggregate Aggregate of the current partition
+         * @param database  Connection of the current partition
+         * @param id        ID of the Session
+         */
+        void accumulate(A aggregate, SessionDatabase database, int id);
+
+        /**
+         * Merges two partial aggregates. Called on a worker thread.
+         *
+         * @param left  Aggregate of the earlier Sessions, may be modified and returned
+         * @param right Aggregate of the later Sessions
+         * @return      Merged aggregate
+         */
+        A merge(A left, A right);
+    }
+
+    /**
+     * Callback of a running aggregation. Callbacks are invoked on the main thread.
+     *
+     * @param <A>   Type of the aggregate
+     */
+    public interface Callback<A> {
+
+        /**
+         * Called whenever another percent of the Sessions has been accumulated.
+         *
+         * @param done  Number of accumulated Sessions
+         * @param total Total number of Sessions
+         */
+        void onProgress(int done, int total);
+
+        /**
+         * Called once the aggregation has completed. Not called if it was cancelled or failed.
+         *
+         * @param result    Aggregate of all Sessions
+         */
+        void onComplete(A result);
+    }
+
+    /**
+     * Handle of a running aggregation.
+     *
+     * @param <A>   Type of the aggregate
+     */
+    public static class Task<A> {
+
+        private final AtomicBoolean mCancelled = new AtomicBoolean();
+
+        private Partition<A> mRoot;
+
+
+        private Task() {
+            // Created by the SessionAggregator
+        }
+
+
+        /**
+         * Cancels the aggregation. Partitions stop before accumulating their next Session.
+         */
+        public void cancel() {
+            mCancelled.set(true);
+            mRoot.cancel(false);
+        }
+
+        /**
+         * @return  true if the aggregation has been cancelled
+         */
+        public boolean isCancelled() {
+            return mCancelled.get();
+        }
+
+        /**
+         * Waits for the aggregation to complete.
+         *
+         * @return                          Aggregate of all Sessions
+         * @throws CancellationException    If the aggregation has been cancelled
+         */
+        public A join() throws CancellationException {
+            A result = mRoot.join();
+            if (isCancelled()) throw new CancellationException();
+            return result;
+        }
+    }
+
+    /**
+     * Opens the connections partitions read their Sessions through.
+     */
+    interface Connections {
+
+        /**
+         * Called on a worker thread once per partition. The connection is closed once the
+         * partition has been accumulated.
+         *
+         * @return  New connection
+         */
+        SessionDatabase open();
+    }
+
+    // Receives the progress of a running aggregation on the worker threads
+    interface ProgressListener {
+
+        void onProgress(int done, int total);
+    }
+
+
+
+    /**
+     * Merges the heart rate {@link Statistics} of all raw measurements.
+     */
+    public static final Aggregation<Statistics> HEARTRATE_STATISTICS = new Aggregation<Statistics>() {
+        @Override
+        public Statistics create() {
+            return Statistics.forHeartrate();
+        }
+
+        @Override
+        public void accumulate(Statistics aggregate, SessionDatabase database, int id) {
+            Session session = database.get(id);
+            aggregate.addAll(session.getHeartrates(), 0, session.size());
+        }
+
+        @Override
+        public Statistics merge(Statistics left, Statistics right) {
+            left.merge(right);
+            return left;
+        }
+    };
+
+    /**
+     * Merges the time spent in the {@link HeartRateZones#DEFAULT default heart rate zones},
+     * recomputed from the raw measurements.
+     */
+    public static final Aggregation<TimeInZones> TIME_IN_ZONES = new Aggregation<TimeInZones>() {
+        @Override
+        public TimeInZones create() {
+            return new TimeInZones(HeartRateZones.DEFAULT);
+        }
+
+        @Override
+        public void accumulate(TimeInZones aggregate, SessionDatabase database, int id) {
+            Session session = database.get(id);
+            // Each Session is accumulated separately so that no time is attributed between them
+            TimeInZones timeInZones = new TimeInZones(HeartRateZones.DEFAULT);
+            timeInZones.addAll(session.getTimes(), session.getHeartrates(), 0, session.size());
+            aggregate.merge(timeInZones);
+        }
+
+        @Override
+        public TimeInZones merge(TimeInZones left, TimeInZones right) {
+            left.merge(right);
+            return left;
+        }
+    };
+
+
+
+    private static ForkJoinPool sDefaultPool;
+
+
+    private static synchronized ForkJoinPool getDefaultPool() {
+        if (sDefaultPool == null) {
+            sDefaultPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return sDefaultPool;
+    }
+
+
+
+    private final Connections mConnections;
+
+    private final ForkJoinPool mPool;
+
+
+    /**
+     * Creates a new SessionAggregator using a pool with one thread per core.
+     *
+     * @param context   The app's context
+     */
+    public SessionAggregator(Context context) {
+        this(context, getDefaultPool());
+    }
+
+    /**
+     * Creates a new SessionAggregator.
+     *
+     * @param context   The app's context
+     * @param pool      Pool to run aggregations on
+     */
+    public SessionAggregator(Context context, ForkJoinPool pool) {
+        final Context appContext = context.getApplicationContext();
+        mConnections = new Connections() {
+            @Override
+            public SessionDatabase open() {
+                return new SessionDatabase(appContext);
+            }
+        };
+        mPool = pool;
+    }
+
+    /**
+     * Creates a new SessionAggregator reading Sessions through custom connections.
+     *
+     * @param connections   Opens a connection per partition
+     * @param pool          Pool to run aggregations on
+     */
+    SessionAggregator(Connections connections, ForkJoinPool pool) {
+        mConnections = connections;
+        mPool = pool;
+    }
+
+
+    /**
+     * Starts an aggregation over all stored Sessions.
+     *
+     * @param aggregation   Aggregation to compute
+     * @param callback      Callback invoked on the main thread
+     * @param <A>           Type of the aggregate
+     * @return              Handle of the running aggregation
+     */
+    public <A> Task<A> aggregate(Aggregation<A> aggregation, Callback<A> callback) {
+        List<SessionDescription> sessions;
+        try (SessionDatabase database = mConnections.open()) {
+            sessions = database.listSessions();
+        }
+
+        int[] ids = new int[sessions.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = sessions.get(i).id;
+        }
+        return aggregate(aggregation, ids, callback);
+    }
+
+    /**
+     * Starts an aggregation over specific Sessions.
+     *
+     * @param aggregation   Aggregation to compute
+     * @param ids           IDs of the Sessions to aggregate
+     * @param callback      Callback invoked on the main thread
+     * @param <A>           Type of the aggregate
+     * @return              Handle of the running aggregation
+     */
+    public <A> Task<A> aggregate(Aggregation<A> aggregation, int[] ids,
+                                 final Callback<A> callback) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        final Task<A> task = execute(aggregation, ids, new ProgressListener() {
+            @Override
+            public void onProgress(final int done, final int total) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onProgress(done, total);
+                    }
+                });
+            }
+        });
+
+        // Waits for the result on a separate thread to deliver it to the main thread
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final A result = task.join();
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!task.isCancelled()) callback.onComplete(result);
+                        }
+                    });
+                } catch (CancellationException e) {
+                    // Cancelled by the caller
+                }
+            }
+        }, "SessionAggregator").start();
+
+        return task;
+    }
+
+    /**
+     * Computes an aggregation over specific Sessions and waits for its result. Must not be called
+     * on the main thread.
+     *
+     * @param aggregation   Aggregation to compute
+     * @param ids           IDs of the Sessions to aggregate
+     * @param <A>           Type of the aggregate
+     * @return              Aggregate of all Sessions
+     */
+    public <A> A invoke(Aggregation<A> aggregation, int[] ids) {
+        return execute(aggregation, ids, null).join();
+    }
+
+    /**
+     * Starts an aggregation over specific Sessions.
+     *
+     * @param aggregation   Aggregation to compute
+     * @param ids           IDs of the Sessions to aggregate
+     * @param listener      Listener notified on the worker threads or null
+     * @param <A>           Type of the aggregate
+     * @return              Handle of the running aggregation
+     */
+    <A> Task<A> execute(Aggregation<A> aggregation, int[] ids, ProgressListener listener) {
+        Task<A> task = new Task<>();
+        Progress progress = new Progress(ids.length, listener);
+
+        // Enough partitions to balance the load without opening a connection per Session
+        int partitionSize = Math.max(1, ids.length / (mPool.getParallelism() * 4));
+        task.mRoot = new Partition<>(aggregation, ids, 0, ids.length, partitionSize, task,
+                progress);
+        mPool.execute(task.mRoot);
+        return task;
+    }
+
+
+
+    private static class Progress {
+
+        private final AtomicInteger mDone = new AtomicInteger();
+
+        private final int mTotal;
+
+        private final ProgressListener mListener;
+
+
+        private Progress(int total, ProgressListener listener) {
+            mTotal = total;
+            mListener = listener;
+        }
+
+
+        private void increment() {
+            int done = mDone.incrementAndGet();
+            // Reports each percent once
+            if (mListener != null
+                    && (long) done * 100 / mTotal != (long) (done - 1) * 100 / mTotal) {
+                mListener.onProgress(done, mTotal);
+            }
+        }
+    }
+
+
+    private class Partition<A> extends RecursiveTask<A> {
+
+        private final Aggregation<A> mAggregation;
+
+        private final int[] mIds;
+
+        private final int mFrom;
+
+        private final int mTo;
+
+        private final int mPartitionSize;
+
+        private final Task<A> mTask;
+
+        private final Progress mProgress;
+
+
+        private Partition(Aggregation<A> aggregation, int[] ids, int from, int to,
+                          int partitionSize, Task<A> task, Progress progress) {
+            mAggregation = aggregation;
+            mIds = ids;
+            mFrom = from;
+            mTo = to;
+            mPartitionSize = partitionSize;
+            mTask = task;
+            mProgress = progress;
+        }
+
+
+        @Override
+        protected A compute() {
+            if (mTo - mFrom > mPartitionSize) {
+                int middle = (mFrom + mTo) >>> 1;
+                Partition<A> left = new Partition<>(mAggregation, mIds, mFrom, middle,
+                        mPartitionSize, mTask, mProgress);
+                Partition<A> right = new Partition<>(mAggregation, mIds, middle, mTo,
+                        mPartitionSize, mTask, mProgress);
+                right.fork();
+                A leftResult = left.compute();
+                return mAggregation.merge(leftResult, right.join());
+            }
+
+            A aggregate = mAggregation.create();
+            try (SessionDatabase database = mConnections.open()) {
+                for (int i = mFrom; i < mTo; i++) {
+                    if (mTask.isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    mAggregation.accumulate(aggregate, database, mIds[i]);
+                    mProgress.increment();
+                }
+            }
+            return aggregate;
+        }
+    }
+}
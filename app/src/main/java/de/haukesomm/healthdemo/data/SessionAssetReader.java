@@ -13,7 +13,6 @@ package de.haukesomm.healthdemo.data;
 
 import android.content.Context;
 import android.content.res.AssetManager;
-import android.util.JsonReader;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -26,7 +25,7 @@ import java.util.Random;
  * <p>
  * This class parses the mockup session assets (JSON) in '/assets/sessions/ and converts them into
  * {@link Session} objects.<br>
- * It uses the {@link JsonReader} class provided by the Android SDK.
+ * Parsing is done by the {@link SessionJsonReader}.
  * </p>
  *
  * @author Hauke Sommerfeld
@@ -78,70 +77,32 @@ public class SessionAssetReader {
     }
 
     private Session readSession(AssetManager manager, String name) throws IOException {
-        JsonReader reader = new JsonReader(new InputStreamReader(manager.open(name), "UTF-8"));
-        reader.beginObject();
-
-        Session session;
-        reader.nextName();
-        SessionType type = SessionType.get(reader.nextString());
-        reader.nextName();
-        String description = reader.nextString();
-        // TODO Remove ugly workaround
-        session = new Session(Math.abs(new Random().nextInt(1000)), type, description);
-
-        try {
-            reader.nextName();
-            session.addAll(readMeasurementArray(reader));
+        final Session[] session = new Session[1];
+        try (SessionJsonReader reader = new SessionJsonReader(
+                new InputStreamReader(manager.open(name), "UTF-8"))) {
+            reader.read(new SessionGenerator.Sink() {
+                @Override
+                public void begin(String type, String description, int size) {
+                    // TODO Remove ugly workaround
+                    session[0] = new Session(Math.abs(new Random().nextInt(1000)),
+                            SessionType.get(type), description);
+                }
+
+                @Override
+                public void measurement(String timestamp, double latitude, double longitude,
+                                        int heartrate) {
+                    session[0].add(timestamp, latitude, longitude, heartrate);
+                }
+
+                @Override
+                public void end() {
+                    // Do nothing
+                }
+            });
         } catch (IOException e) {
-            reader.close();
+            // Malformed measurements are dropped, the session is kept as far as it could be read
+            if (session[0] == null) throw e;
         }
-
-        reader.endObject();
-
-        return session;
-    }
-
-    private List<Measurement> readMeasurementArray(JsonReader reader) throws IOException {
-        List<Measurement> measurements = new LinkedList<>();
-
-        reader.beginArray();
-        while (reader.hasNext()) {
-            measurements.add(readMeasurement(reader));
-        }
-        reader.endArray();
-
-        return measurements;
-    }
-
-    private Measurement readMeasurement(JsonReader reader) throws IOException {
-        String timestamp = null;
-        double latitide = 0d;
-        double longitude = 0d;
-        int heartrate = 0;
-
-        reader.beginObject();
-        while (reader.hasNext()) {
-            String name = reader.nextName();
-            switch (name) {
-                case "timestamp":
-                    timestamp = reader.nextString();
-                    break;
-                case "latitude":
-                    latitide = reader.nextDouble();
-                    break;
-                case "longitude":
-                    longitude = reader.nextDouble();
-                    break;
-                case "heartrate":
-                    heartrate = reader.nextInt();
-                    break;
-                default:
-                    reader.skipValue();
-                    break;
-            }
-        }
-        reader.endObject();
-
-        return new Measurement(timestamp, latitide, longitude, heartrate);
+        return session[0];
     }
 }
@@ -14,13 +14,36 @@ package de.haukesomm.healthdemo.data;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
+import android.util.LongSparseArray;
+import android.util.SparseArray;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import javax.crypto.SecretKey;
+
+import de.haukesomm.healthdemo.analytics.HeartRateAnomalyDetector;
+import de.haukesomm.healthdemo.analytics.HeartRateZones;
+import de.haukesomm.healthdemo.analytics.Kinematics;
+import de.haukesomm.healthdemo.analytics.RollupPeriod;
+import de.haukesomm.healthdemo.analytics.Statistics;
+import de.haukesomm.healthdemo.analytics.TimeInZones;
+import de.haukesomm.healthdemo.privacy.PrivacyConfigStore;
+import de.haukesomm.healthdemo.privacy.PrivacySettings;
+import de.haukesomm.healthdemo.privacy.StorageTier;
 
 /**
  * Created on 23.08.18
@@ -28,6 +51,21 @@ import java.util.List;
  * This class manages the SQlite database containing all recorded fitness {@link Session}s.
  * It includes methods to add, remove or list Sessions.<br>
  * By default it is populated with mockup data provided by the {@link SessionAssetReader} class.
+ * <br>
+ * Measurements are stored in chronological order, regardless of the order they were recorded or
+ * imported in, so every {@link Session} read from the database {@link Session#isSorted() is
+ * sorted}.<br>
+ * Measurements are encrypted at rest: they are stored in chunks of
+ * {@link MeasurementChunks#CHUNK_SIZE} Measurements, each sealed by the {@link ChunkCipher} of its
+ * Session, whose key in turn is wrapped by a master key held in the Android Keystore (see
+ * {@link SessionKeys}). The time range of each chunk is stored in plain text, so time ranges are
+ * read by decrypting only the chunks overlapping them. Kinematics, which follow single
+ * Measurements just as closely, are sealed under the same key.<br>
+ * How many Measurements are stored depends on the {@link StorageTier} of the active privacy mode.
+ * Aggregates are always derived from the full data before the tier is applied.<br>
+ * A summary of each Session as well as {@link Rollup}s of all Sessions per day, week and month are
+ * maintained as Sessions are added or deleted, so trends can be read without loading any
+ * measurements.
  * </p>
  *
  * @author Hauke Sommerfeld
@@ -36,7 +74,7 @@ public class SessionDatabase extends SQLiteOpenHelper implements AutoCloseable {
 
     private static final String FILE = "sessions.db";
 
-    private static final int VERSION = 1;
+    private static final int VERSION = 9;
 
 
     private static final String TABLE_SESSIONS = "sessions";
@@ -48,6 +86,111 @@ public class SessionDatabase extends SQLiteOpenHelper implements AutoCloseable {
     private static final String TABLE_SESSIONS_DESCRIPTION = "session_description";
 
 
+    private static final String TABLE_ZONES = "session_zones";
+
+    private static final String TABLE_ZONES_SESSION = "session_id";
+
+    private static final String TABLE_ZONES_CONFIGURATION = "zones";
+
+    private static final String TABLE_ZONES_ZONE = "zone";
+
+    private static final String TABLE_ZONES_MILLIS = "millis";
+
+
+    private static final String TABLE_KINEMATICS = "session_kinematics";
+
+    private static final String TABLE_KINEMATICS_SESSION = "session_id";
+
+    private static final String TABLE_KINEMATICS_CHUNK = "chunk";
+
+    // Distances and speeds of the chunk, sealed by the ChunkCipher of the Session
+    private static final String TABLE_KINEMATICS_PAYLOAD = "payload";
+
+    // Samples per row, keeping each row well below the size of a CursorWindow
+    private static final int KINEMATICS_CHUNK_SIZE = 16384;
+
+    // Bytes per sample, a double distance and a float speed
+    private static final int KINEMATICS_SAMPLE_SIZE = 12;
+
+
+    private static final String TABLE_STATISTICS = "session_statistics";
+
+    private static final String TABLE_STATISTICS_SESSION = "session_id";
+
+    private static final String TABLE_STATISTICS_HEARTRATE = "heartrate";
+
+    private static final String TABLE_STATISTICS_ANOMALIES = "anomalies";
+
+
+    private static final String TABLE_SUMMARY = "session_summary";
+
+    private static final String TABLE_SUMMARY_SESSION = "session_id";
+
+    private static final String TABLE_SUMMARY_START = "start";
+
+    private static final String TABLE_SUMMARY_DURATION = "duration";
+
+    private static final String TABLE_SUMMARY_DISTANCE = "distance";
+
+    private static final String TABLE_SUMMARY_HEARTRATE_SUM = "heartrate_sum";
+
+    private static final String TABLE_SUMMARY_HEARTRATE_COUNT = "heartrate_count";
+
+    private static final String TABLE_SUMMARY_HEARTRATE_MAX = "heartrate_max";
+
+
+    private static final String TABLE_ROLLUPS = "rollups";
+
+    private static final String TABLE_ROLLUPS_PERIOD = "period";
+
+    private static final String TABLE_ROLLUPS_START = "start";
+
+    private static final String TABLE_ROLLUPS_END = "end";
+
+    private static final String TABLE_ROLLUPS_SESSIONS = "sessions";
+
+    private static final String TABLE_ROLLUPS_DURATION = "duration";
+
+    private static final String TABLE_ROLLUPS_DISTANCE = "distance";
+
+    private static final String TABLE_ROLLUPS_HEARTRATE_SUM = "heartrate_sum";
+
+    private static final String TABLE_ROLLUPS_HEARTRATE_COUNT = "heartrate_count";
+
+    private static final String TABLE_ROLLUPS_HEARTRATE_MAX = "heartrate_max";
+
+
+    private static final String TABLE_ROLLUP_ZONES = "rollup_zones";
+
+    private static final String TABLE_ROLLUP_ZONES_PERIOD = "period";
+
+    private static final String TABLE_ROLLUP_ZONES_START = "start";
+
+    private static final String TABLE_ROLLUP_ZONES_ZONE = "zone";
+
+    private static final String TABLE_ROLLUP_ZONES_MILLIS = "millis";
+
+
+    private static final String TABLE_ANONYMIZATION = "anonymization";
+
+    private static final String TABLE_ANONYMIZATION_SESSION = "session_id";
+
+    private static final String TABLE_ANONYMIZATION_LAST_CHUNK = "last_chunk";
+
+    private static final String TABLE_ANONYMIZATION_INTERVAL = "interval_start";
+
+    // Checkpoint of a Session whose chunks have all been rewritten
+    private static final long ANONYMIZATION_SESSION_DONE = Long.MIN_VALUE;
+
+
+    private static final String TABLE_KEYS = "session_keys";
+
+    private static final String TABLE_KEYS_SESSION = "session_id";
+
+    private static final String TABLE_KEYS_KEY = "key";
+
+
+    // Data tables of Sessions stored before version 9
     private static final String ID = "id";
 
     private static final String TIMESTAMP = "timestamp";
@@ -58,11 +201,27 @@ public class SessionDatabase extends SQLiteOpenHelper implements AutoCloseable {
 
     private static final String HEARTRATE = "heartrate";
 
+    private static final String TIME = "time";
+
+    private static final String[] MEASUREMENT_COLUMNS =
+            { TIMESTAMP, TIME, LATITUDE, LONGITUDE, HEARTRATE };
+
+
+    // Measurements held in memory while sorting the tables of the version 4 upgrade, larger
+    // tables are sorted externally
+    private static final int SORT_BUFFER_SIZE = 1 << 18;
+
 
     private final Context mContext;
 
     private SQLiteDatabase mDatabase;
 
+    // Unwrapped keys by Session ID, unwrapping requires a round trip to the Keystore
+    private final SparseArray<ChunkCipher> mCiphers = new SparseArray<>();
+
+    // Set when an upgrade dropped plaintext Measurements, see onOpen()
+    private boolean mScrubPending;
+
 
     /**
      * Creates a new SessionDatabase object which can be used to manipulate the database.
@@ -76,6 +235,29 @@ public class SessionDatabase extends SQLiteOpenHelper implements AutoCloseable {
     }
 
 
+    // No Javadoc
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Lets readers on other connections, e.g. of the SessionAggregator or the screens loading
+        // in the background, run concurrently with a writer instead of waiting for its
+        // transactions
+        db.enableWriteAheadLogging();
+    }
+
+    // No Javadoc
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        if (mScrubPending) {
+            // Dropped tables only release their pages, which still hold the plaintext rows until
+            // they are reused. VACUUM rebuilds the file without them and the checkpoint writes
+            // the rebuilt pages back, truncating the log which held copies of the old ones.
+            // Neither can run inside the upgrade's transaction.
+            db.execSQL("VACUUM");
+            pragma(db, "wal_checkpoint(TRUNCATE)");
+            mScrubPending = false;
+        }
+    }
+
     // No Javadoc
     @Override
     public void onCreate(SQLiteDatabase db) {
@@ -84,6 +266,12 @@ public class SessionDatabase extends SQLiteOpenHelper implements AutoCloseable {
                 + TABLE_SESSIONS_TYPE           + " INTEGER NOT NULL,"
                 + TABLE_SESSIONS_DESCRIPTION    + " TEXT NOT NULL);"
         );
+        createZonesTable(db);
+        createKinematicsTable(db);
+        createRollupTables(db);
+        createStatisticsTable(db);
+        createAnonymizationTable(db);
+        createChunkTables(db);
 
         initMockupData(db);
     }
@@ -91,7 +279,266 @@ public class SessionDatabase extends SQLiteOpenHelper implements AutoCloseable {
     // No Javadoc
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Do nothing
+        if (oldVersion < 9) {
+            // Plaintext Measurements and kinematics are about to be rewritten and dropped, zero
+            // them on deletion instead of leaving them in free pages
+            pragma(db, "secure_delete = ON");
+            mScrubPending = true;
+        }
+        if (oldVersion < 2) {
+            // Time in zones of existing sessions is computed on first access
+            createZonesTable(db);
+        }
+        if (oldVersion < 3) {
+            // Kinematics of existing sessions are derived on first access
+            createKinematicsTable(db);
+        }
+        if (oldVersion < 4) {
+            sortDataTables(db);
+        }
+        if (oldVersion < 5) {
+            // Summaries of existing sessions are computed on first access, see ensureSummaries()
+            createRollupTables(db);
+        }
+        if (oldVersion < 6) {
+            // Heart rate statistics of existing sessions are computed on first access
+            createStatisticsTable(db);
+        } else if (oldVersion < 7) {
+            // Existing sessions have not been checked for anomalies
+            db.execSQL("ALTER TABLE " + TABLE_STATISTICS + " ADD COLUMN "
+                    + TABLE_STATISTICS_ANOMALIES + " INTEGER;");
+        }
+        if (oldVersion < 8) {
+            createAnonymizationTable(db);
+        } else if (oldVersion < 9) {
+            // Checkpoints refer to chunks instead of rows. Rewriting anonymized Measurements again
+            // does not change them, so a pending anonymization simply starts over.
+            boolean pending = DatabaseUtils.queryNumEntries(db, TABLE_ANONYMIZATION) > 0;
+            db.execSQL("DROP TABLE " + TABLE_ANONYMIZATION);
+            createAnonymizationTable(db);
+            if (pending) {
+                putAnonymizationRestart(db);
+            }
+        }
+        if (oldVersion < 9) {
+            createChunkTables(db);
+            encryptDataTables(db);
+            // Distances and speeds were stored in plaintext and reveal the shape of the route,
+            // they are derived and sealed again on first access
+            db.execSQL("DROP TABLE " + TABLE_KINEMATICS);
+            createKinematicsTable(db);
+        }
+    }
+
+
+    // PRAGMAs returning a row can not be executed using execSQL()
+    private static void pragma(SQLiteDatabase db, String pragma) {
+        try (Cursor cursor = db.rawQuery("PRAGMA " + pragma, null)) {
+            cursor.moveToFirst();
+        }
+    }
+
+
+    private static void createStatisticsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_STATISTICS + "("
+                + TABLE_STATISTICS_SESSION      + " INTEGER NOT NULL PRIMARY KEY,"
+                + TABLE_STATISTICS_HEARTRATE    + " BLOB NOT NULL,"
+                + TABLE_STATISTICS_ANOMALIES    + " INTEGER);"
+        );
+    }
+
+
+    // Holds at most one row, the checkpoint of a pending anonymization
+    private static void createAnonymizationTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ANONYMIZATION + "("
+                + TABLE_ANONYMIZATION_SESSION    + " INTEGER NOT NULL,"
+                + TABLE_ANONYMIZATION_LAST_CHUNK + " INTEGER NOT NULL,"
+                + TABLE_ANONYMIZATION_INTERVAL   + " INTEGER NOT NULL);"
+        );
+    }
+
+
+    private static void createDataTable(SQLiteDatabase db, String table) {
+        db.execSQL("CREATE TABLE " + table + " ("
+                + ID        + " INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, "
+                + TIMESTAMP + " TEXT NOT NULL, "
+                + LATITUDE  + " REAL NOT NULL, "
+                + LONGITUDE + " REAL NOT NULL, "
+                + HEARTRATE + " INTEGER NOT NULL, "
+                + TIME      + " INTEGER NOT NULL);");
+        db.execSQL("CREATE INDEX " + table + "_" + TIME + " ON " + table + " (" + TIME + ");");
+    }
+
+    /*
+     * Rewrites the data tables of all Sessions stored before version 4 in chronological order and
+     * adds the time column. Stored time in zones and kinematics were computed from unsorted data
+     * and are derived again on first access.
+     */
+    private void sortDataTables(SQLiteDatabase db) {
+        List<Integer> ids = new ArrayList<>();
+        try (Cursor cursor = db.query(TABLE_SESSIONS, new String[] { TABLE_SESSIONS_ID },
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getInt(0));
+            }
+        }
+
+        for (int id : ids) {
+            String table = convertToTableName(id);
+            String unsorted = table + "_unsorted";
+            db.execSQL("ALTER TABLE " + table + " RENAME TO " + unsorted);
+            createDataTable(db, table);
+
+            try (final SQLiteStatement insert = compileInsert(db, table);
+                 Cursor cursor = db.query(unsorted,
+                         new String[] { TIMESTAMP, LATITUDE, LONGITUDE, HEARTRATE },
+                         null, null, null, null, ID)) {
+                SortingSink sink = new SortingSink(new SessionGenerator.Sink() {
+                    @Override
+                    public void begin(String type, String description, int size) {
+                        // Do nothing
+                    }
+
+                    @Override
+                    public void measurement(String timestamp, double latitude, double longitude,
+                                            int heartrate) {
+                        insert(insert, timestamp, Timestamps.parse(timestamp), latitude,
+                                longitude, heartrate);
+                    }
+
+                    @Override
+                    public void end() {
+                        // Do nothing
+                    }
+                }, SORT_BUFFER_SIZE, mContext.getCacheDir());
+
+                sink.begin(null, null, cursor.getCount());
+                while (cursor.moveToNext()) {
+                    sink.measurement(cursor.getString(0), cursor.getDouble(1), cursor.getDouble(2),
+                            cursor.getInt(3));
+                }
+                sink.end();
+            }
+
+            db.execSQL("DROP TABLE " + unsorted);
+        }
+
+        db.delete(TABLE_ZONES, null, null);
+        db.delete(TABLE_KINEMATICS, null, null);
+    }
+
+
+    private static void createChunkTables(SQLiteDatabase db) {
+        db.execSQL(ChunkTable.CREATE);
+        db.execSQL("CREATE TABLE " + TABLE_KEYS + "("
+                + TABLE_KEYS_SESSION    + " INTEGER NOT NULL PRIMARY KEY,"
+                + TABLE_KEYS_KEY        + " BLOB NOT NULL);"
+        );
+    }
+
+    /*
+     * Encrypts the data tables of all Sessions stored before version 9 chunk by chunk and drops
+     * them. Rows are already in chronological order since version 4.
+     */
+    private void encryptDataTables(SQLiteDatabase db) {
+        List<Integer> ids = new ArrayList<>();
+        try (Cursor cursor = db.query(TABLE_SESSIONS, new String[] { TABLE_SESSIONS_ID },
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getInt(0));
+            }
+        }
+
+        int size = MeasurementChunks.CHUNK_SIZE;
+        String[] timestamps = new String[size];
+        long[] times = new long[size];
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        int[] heartrates = new int[size];
+        for (int id : ids) {
+            String table = convertToTableName(id);
+            ChunkCipher cipher = createCipher(db, id);
+
+            try (SQLiteStatement insert = compileChunkInsert(db);
+                 Cursor cursor = db.query(table, MEASUREMENT_COLUMNS,
+                         null, null, null, null, ID)) {
+                int count = 0;
+                int chunk = 0;
+                while (cursor.moveToNext()) {
+                    timestamps[count] = cursor.getString(0);
+                    times[count] = cursor.getLong(1);
+                    latitudes[count] = cursor.getDouble(2);
+                    longitudes[count] = cursor.getDouble(3);
+                    heartrates[count] = cursor.getInt(4);
+                    if (++count == size || cursor.isLast()) {
+                        insertChunk(insert, id, chunk, times, 0, count,
+                                cipher.seal(chunk, MeasurementChunks.encode(timestamps, times,
+                                        latitudes, longitudes, heartrates, 0, count)));
+                        chunk++;
+                        count = 0;
+                    }
+                }
+            }
+
+            db.execSQL("DROP TABLE IF EXISTS " + table);
+        }
+    }
+
+
+    private static void createRollupTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SUMMARY + "("
+                + TABLE_SUMMARY_SESSION         + " INTEGER NOT NULL PRIMARY KEY,"
+                + TABLE_SUMMARY_START           + " INTEGER NOT NULL,"
+                + TABLE_SUMMARY_DURATION        + " INTEGER NOT NULL,"
+                + TABLE_SUMMARY_DISTANCE        + " REAL NOT NULL,"
+                + TABLE_SUMMARY_HEARTRATE_SUM   + " INTEGER NOT NULL,"
+                + TABLE_SUMMARY_HEARTRATE_COUNT + " INTEGER NOT NULL,"
+                + TABLE_SUMMARY_HEARTRATE_MAX   + " INTEGER NOT NULL);"
+        );
+        db.execSQL("CREATE INDEX " + TABLE_SUMMARY + "_" + TABLE_SUMMARY_START + " ON "
+                + TABLE_SUMMARY + " (" + TABLE_SUMMARY_START + ");");
+
+        db.execSQL("CREATE TABLE " + TABLE_ROLLUPS + "("
+                + TABLE_ROLLUPS_PERIOD          + " TEXT NOT NULL,"
+                + TABLE_ROLLUPS_START           + " INTEGER NOT NULL,"
+                + TABLE_ROLLUPS_END             + " INTEGER NOT NULL,"
+                + TABLE_ROLLUPS_SESSIONS        + " INTEGER NOT NULL,"
+                + TABLE_ROLLUPS_DURATION        + " INTEGER NOT NULL,"
+                + TABLE_ROLLUPS_DISTANCE        + " REAL NOT NULL,"
+                + TABLE_ROLLUPS_HEARTRATE_SUM   + " INTEGER NOT NULL,"
+                + TABLE_ROLLUPS_HEARTRATE_COUNT + " INTEGER NOT NULL,"
+                + TABLE_ROLLUPS_HEARTRATE_MAX   + " INTEGER NOT NULL,"
+                + "PRIMARY KEY (" + TABLE_ROLLUPS_PERIOD + ", " + TABLE_ROLLUPS_START + "));"
+        );
+
+        db.execSQL("CREATE TABLE " + TABLE_ROLLUP_ZONES + "("
+                + TABLE_ROLLUP_ZONES_PERIOD     + " TEXT NOT NULL,"
+                + TABLE_ROLLUP_ZONES_START      + " INTEGER NOT NULL,"
+                + TABLE_ROLLUP_ZONES_ZONE       + " INTEGER NOT NULL,"
+                + TABLE_ROLLUP_ZONES_MILLIS     + " INTEGER NOT NULL,"
+                + "PRIMARY KEY (" + TABLE_ROLLUP_ZONES_PERIOD + ", " + TABLE_ROLLUP_ZONES_START
+                + ", " + TABLE_ROLLUP_ZONES_ZONE + "));"
+        );
+    }
+
+    private static void createKinematicsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_KINEMATICS + "("
+                + TABLE_KINEMATICS_SESSION      + " INTEGER NOT NULL,"
+                + TABLE_KINEMATICS_CHUNK        + " INTEGER NOT NULL,"
+                + TABLE_KINEMATICS_PAYLOAD      + " BLOB NOT NULL,"
+                + "PRIMARY KEY (" + TABLE_KINEMATICS_SESSION + ", " + TABLE_KINEMATICS_CHUNK + "));"
+        );
+    }
+
+    private static void createZonesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ZONES + "("
+                + TABLE_ZONES_SESSION       + " INTEGER NOT NULL,"
+                + TABLE_ZONES_CONFIGURATION + " TEXT NOT NULL,"
+                + TABLE_ZONES_ZONE          + " INTEGER NOT NULL,"
+                + TABLE_ZONES_MILLIS        + " INTEGER NOT NULL,"
+                + "PRIMARY KEY (" + TABLE_ZONES_SESSION + ", " + TABLE_ZONES_CONFIGURATION + ", "
+                + TABLE_ZONES_ZONE + "));"
+        );
     }
 
 
@@ -130,9 +577,10 @@ public class SessionDatabase extends SQLiteOpenHelper implements AutoCloseable {
 
     private void initMockupData(SQLiteDatabase db) {
         SessionAssetReader reader = new SessionAssetReader(mContext);
+        PrivacySettings settings = PrivacyConfigStore.getInstance(mContext).get();
         try {
             for (Session session : reader.readMockupSessions()) {
-                add(db, session);
+                add(db, session, settings);
             }
         } catch (IOException e) {
             Log.e("SessionDatabase", "Unable to read mockup data: " + e.getMessage());
@@ -173,85 +621,1309 @@ public class SessionDatabase extends SQLiteOpenHelper implements AutoCloseable {
         return sessions;
     }
 
+    /**
+     * Returns a page of sessions in form of {@link SessionDescription}s, newest (highest ID)
+     * first. Pages are looked up by ID rather than by offset, so reading a page takes the same
+     * time no matter how far into the list it is.
+     *
+     * @param beforeId                  Only Sessions with a lower ID are returned, e.g. the ID of
+     *                                  the last Session of the previous page or
+     *                                  {@link Integer#MAX_VALUE} for the first page
+     * @param limit                     Maximum number of Sessions to return
+     * @return                          List of SessionDescriptions
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public List<SessionDescription> listSessions(int beforeId, int limit)
+            throws IllegalStateException {
+        validateConnection();
+
+        List<SessionDescription> sessions = new ArrayList<>(limit);
+        try (Cursor cursor = mDatabase.query(TABLE_SESSIONS, new String[] {
+                TABLE_SESSIONS_ID, TABLE_SESSIONS_TYPE, TABLE_SESSIONS_DESCRIPTION },
+                TABLE_SESSIONS_ID + " < " + beforeId, null, null, null,
+                TABLE_SESSIONS_ID + " DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                sessions.add(new SessionDescription(
+                        cursor.getInt(0),
+                        SessionType.get(cursor.getString(1)),
+                        cursor.getString(2)));
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Returns a page of sessions in form of {@link SessionDescription}s, newest (highest ID)
+     * first, by its position in the list. Prefer {@link #listSessions(int, int)} if the ID of the
+     * previous page's last Session is known since skipping rows takes time proportional to the
+     * offset.
+     *
+     * @param offset                    Number of Sessions to skip
+     * @param limit                     Maximum number of Sessions to return
+     * @return                          List of SessionDescriptions
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public List<SessionDescription> listSessionsAt(int offset, int limit)
+            throws IllegalStateException {
+        validateConnection();
+
+        List<SessionDescription> sessions = new ArrayList<>(limit);
+        try (Cursor cursor = mDatabase.query(TABLE_SESSIONS, new String[] {
+                TABLE_SESSIONS_ID, TABLE_SESSIONS_TYPE, TABLE_SESSIONS_DESCRIPTION },
+                null, null, null, null, TABLE_SESSIONS_ID + " DESC", offset + "," + limit)) {
+            while (cursor.moveToNext()) {
+                sessions.add(new SessionDescription(
+                        cursor.getInt(0),
+                        SessionType.get(cursor.getString(1)),
+                        cursor.getString(2)));
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Returns the number of available sessions.
+     *
+     * @return                          Number of Sessions
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public int countSessions() throws IllegalStateException {
+        validateConnection();
+        return (int) DatabaseUtils.queryNumEntries(mDatabase, TABLE_SESSIONS);
+    }
+
     /**
      * This method adds a Session to the database.
+     * <br>
+     * Implausible heart rates, e.g. caused by sensor glitches, are detected by a
+     * {@link HeartRateAnomalyDetector} and repaired before anything is derived from them. The number
+     * of repaired samples is available from {@link #getAnomalyCount(int)}. Sorting and repairing
+     * happen on a copy, the given Session is not modified.
+     * <br>
+     * Aggregates are derived from all Measurements, the Measurements themselves are stored
+     * according to the {@link StorageTier} of the active privacy mode.
      *
      * @param session                   Session object
      * @throws IllegalStateException    If there is no active database connection
      */
     public void add(Session session) throws IllegalStateException{
         validateConnection();
-        add(mDatabase, session);
+        add(mDatabase, session.copy(), PrivacyConfigStore.getInstance(mContext).get());
     }
 
-    private void add(SQLiteDatabase db, Session session) {
-        final String table = convertToTableName(session.id);
+    /**
+     * This method deletes a Session and everything derived from it and updates the affected
+     * {@link Rollup}s.
+     *
+     * @param id                        ID of the Session to delete
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public void delete(int id) throws IllegalStateException {
+        validateConnection();
 
-        // Create the actual data-table
-        db.execSQL("CREATE TABLE " + table + " ("
-                + ID        + " INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, "
-                + TIMESTAMP + " TEXT NOT NULL, "
-                + LATITUDE  + " REAL NOT NULL, "
-                + LONGITUDE + " REAL NOT NULL, "
-                + HEARTRATE + " INTEGER NOT NULL);");
+        mDatabase.beginTransaction();
+        try {
+            long start = Timestamps.INVALID;
+            try (Cursor cursor = mDatabase.query(TABLE_SUMMARY, new String[] { TABLE_SUMMARY_START },
+                    TABLE_SUMMARY_SESSION + " = " + id, null, null, null, null)) {
+                if (cursor.moveToFirst()) {
+                    start = cursor.getLong(0);
+                }
+            }
 
-        // Insert measurement data into the table
-        for (Measurement measurement : session.getMeasurements()) {
-            ContentValues values = new ContentValues();
-            values.put(TIMESTAMP, measurement.timestamp);
-            values.put(LATITUDE, measurement.latitude);
-            values.put(LONGITUDE, measurement.longitude);
-            values.put(HEARTRATE, measurement.heartrate);
-            db.insert(table, null, values);
+            mDatabase.delete(TABLE_SESSIONS, TABLE_SESSIONS_ID + " = " + id, null);
+            deleteMeasurements(mDatabase, id);
+            mDatabase.delete(TABLE_ZONES, TABLE_ZONES_SESSION + " = " + id, null);
+            mDatabase.delete(TABLE_SUMMARY, TABLE_SUMMARY_SESSION + " = " + id, null);
+            mDatabase.delete(TABLE_STATISTICS, TABLE_STATISTICS_SESSION + " = " + id, null);
+
+            if (start != Timestamps.INVALID) {
+                updateRollups(mDatabase, start);
+            }
+
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    // Sessions stored as aggregates only have no Measurements to derive anything from
+    private boolean hasMeasurements(int id) {
+        return DatabaseUtils.queryNumEntries(mDatabase, ChunkTable.TABLE,
+                ChunkTable.SESSION + " = " + id) > 0;
+    }
+
+    // Deletes the stored Measurements of a Session and everything referring to single ones
+    private void deleteMeasurements(SQLiteDatabase db, int id) {
+        db.delete(ChunkTable.TABLE, ChunkTable.SESSION + " = " + id, null);
+        db.delete(TABLE_KEYS, TABLE_KEYS_SESSION + " = " + id, null);
+        db.delete(TABLE_KINEMATICS, TABLE_KINEMATICS_SESSION + " = " + id, null);
+        synchronized (mCiphers) {
+            mCiphers.remove(id);
+        }
+    }
+
+    // Sorts the Session and repairs its heart rates in place, callers pass Sessions they own
+    private void add(SQLiteDatabase db, Session session, PrivacySettings settings) {
+        // Measurements are stored in chronological order. This is a no-op for sorted Sessions.
+        session.sort();
+        int anomalies = new HeartRateAnomalyDetector()
+                .apply(session.getHeartrates(), session.size(), null, true);
+
+        // All rows are written in a single transaction instead of committing each one on its own
+        db.beginTransaction();
+        try {
+            String[] timestamps = session.getTimestamps();
+            long[] times = session.getTimes();
+            double[] latitudes = session.getLatitudes();
+            double[] longitudes = session.getLongitudes();
+            int[] heartrates = session.getHeartrates();
+
+            TimeInZones timeInZones = new TimeInZones(HeartRateZones.DEFAULT);
+            for (int i = 0; i < session.size(); i++) {
+                timeInZones.add(times[i], heartrates[i]);
+            }
+            // Rows of other zone configurations were derived from the Session being replaced
+            db.delete(TABLE_ZONES, TABLE_ZONES_SESSION + " = " + session.id, null);
+            putTimeInZones(db, session.id, timeInZones);
+            Statistics statistics = Statistics.forHeartrate();
+            statistics.addAll(heartrates, 0, session.size());
+            putHeartrateStatistics(db, session.id, statistics, anomalies);
+            Kinematics kinematics = Kinematics.derive(times, latitudes, longitudes, session.size());
+            SessionSummary summary = SessionSummary.of(session, kinematics, timeInZones);
+            putSummary(db, summary);
+            if (summary.start != Timestamps.INVALID) {
+                updateRollups(db, summary.start);
+            }
+
+            deleteMeasurements(db, session.id);
+            switch (settings.getStorageTier()) {
+                case RAW:
+                    putChunks(db, session);
+                    putKinematics(db, session.id, kinematics, getCipher(session.id));
+                    break;
+
+                // Kinematics are derived from the stored Measurements on first access
+                case DOWNSAMPLED:
+                    putChunks(db, downsample(session, settings));
+                    break;
+
+                default:
+                    break;
+            }
+
+            // Create entry in the session-table (old id will be overridden!)
+            ContentValues sessionInfo = new ContentValues();
+            sessionInfo.put(TABLE_SESSIONS_ID, session.id);
+            sessionInfo.put(TABLE_SESSIONS_TYPE, session.type.alias);
+            sessionInfo.put(TABLE_SESSIONS_DESCRIPTION, session.description);
+            db.insert(TABLE_SESSIONS, null, sessionInfo);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Keeps the first Measurement with a valid timestamp per collection interval
+    private static Session downsample(Session session, PrivacySettings settings) {
+        if (settings.getInterval() <= 0) return session;
+
+        Session downsampled = new Session(session.id, session.type, session.description);
+        String[] timestamps = session.getTimestamps();
+        long[] times = session.getTimes();
+        double[] latitudes = session.getLatitudes();
+        double[] longitudes = session.getLongitudes();
+        int[] heartrates = session.getHeartrates();
+        long intervalStart = Timestamps.INVALID;
+        for (int i = 0; i < session.size(); i++) {
+            if (times[i] == Timestamps.INVALID) continue;
+            long start = settings.getIntervalStart(times[i]);
+            if (start == intervalStart) continue;
+            intervalStart = start;
+            downsampled.add(timestamps[i], times[i], latitudes[i], longitudes[i], heartrates[i]);
+        }
+        return downsampled;
+    }
+
+    // Replaces the chunks of a Session, see ChunkTable#seal()
+    private void putChunks(SQLiteDatabase db, final Session session) {
+        db.delete(ChunkTable.TABLE, ChunkTable.SESSION + " = " + session.id, null);
+        ChunkCipher cipher = createCipher(db, session.id);
+        try (final SQLiteStatement insert = compileChunkInsert(db)) {
+            ChunkTable.seal(session.getTimestamps(), session.getTimes(), session.getLatitudes(),
+                    session.getLongitudes(), session.getHeartrates(), session.size(), cipher,
+                    new ChunkTable.Writer() {
+                        @Override
+                        public void write(int chunk, long start, long end, int count,
+                                          byte[] payload) {
+                            insertChunk(insert, session.id, chunk, start, end, count, payload);
+                        }
+                    });
+        }
+    }
+
+    private static SQLiteStatement compileChunkInsert(SQLiteDatabase db) {
+        return db.compileStatement(ChunkTable.INSERT);
+    }
+
+    private static void insertChunk(SQLiteStatement insert, int id, int chunk, long[] times,
+                                    int from, int to, byte[] payload) {
+        insertChunk(insert, id, chunk, ChunkTable.start(times, from, to),
+                ChunkTable.end(times, from, to), to - from, payload);
+    }
+
+    private static void insertChunk(SQLiteStatement insert, int id, int chunk, long start,
+                                    long end, int count, byte[] payload) {
+        insert.bindLong(1, id);
+        insert.bindLong(2, chunk);
+        insert.bindLong(3, start);
+        insert.bindLong(4, end);
+        insert.bindLong(5, count);
+        insert.bindBlob(6, payload);
+        insert.executeInsert();
+    }
+
+
+    // Generates and stores a new key, replacing any previous key of the Session
+    private ChunkCipher createCipher(SQLiteDatabase db, int id) {
+        SecretKey key = ChunkCipher.generateKey();
+        ContentValues values = new ContentValues();
+        values.put(TABLE_KEYS_SESSION, id);
+        values.put(TABLE_KEYS_KEY, SessionKeys.wrap(key));
+        db.insertWithOnConflict(TABLE_KEYS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+
+        ChunkCipher cipher = new ChunkCipher(key, id);
+        synchronized (mCiphers) {
+            mCiphers.put(id, cipher);
         }
+        return cipher;
+    }
 
-        // Create entry in the session-table (old id will be overridden!)
-        ContentValues sessionInfo = new ContentValues();
-        sessionInfo.put(TABLE_SESSIONS_ID, session.id);
-        sessionInfo.put(TABLE_SESSIONS_TYPE, session.type.alias);
-        sessionInfo.put(TABLE_SESSIONS_DESCRIPTION, session.description);
-        db.insert(TABLE_SESSIONS, null, sessionInfo);
+    private ChunkCipher getCipher(int id) throws IllegalStateException {
+        ChunkCipher cipher = findCipher(id);
+        if (cipher == null) {
+            throw new IllegalStateException("No key stored for session " + id + "!");
+        }
+        return cipher;
     }
 
     /**
-     * This method returns a specific Session that matches the specified ID.
+     * Returns the cipher protecting the Measurements of a Session, so data derived from them can
+     * be kept at rest under the same key.
      *
-     * @param id                        ID of the Session to return
-     * @return                          Session object
-     * @throws IllegalStateException    If there is no active database connection
+     * @param id                        ID of the Session
+     * @return                          Cipher of the Session or null if it has no Measurements
+     * @throws IllegalStateException    If there is no active database connection or the Keystore
+     *                                  is not available
      */
-    public Session get(int id) throws IllegalStateException {
-        validateConnection();
+    ChunkCipher findCipher(int id) throws IllegalStateException {
+        synchronized (mCiphers) {
+            ChunkCipher cipher = mCiphers.get(id);
+            if (cipher != null) return cipher;
+        }
 
+        validateConnection();
+        ChunkCipher cipher;
+        try (Cursor cursor = mDatabase.query(TABLE_KEYS, new String[] { TABLE_KEYS_KEY },
+                TABLE_KEYS_SESSION + " = " + id, null, null, null, null)) {
+            if (!cursor.moveToFirst()) return null;
+            cipher = new ChunkCipher(SessionKeys.unwrap(cursor.getBlob(0)), id);
+        }
+        synchronized (mCiphers) {
+            mCiphers.put(id, cipher);
+        }
+        return cipher;
+    }
 
-        try (Cursor sessionCursor = mDatabase.query(TABLE_SESSIONS, null,
-                TABLE_SESSIONS_ID + " = " + id, null, null, null, null)) {
 
-            sessionCursor.moveToFirst();
+    private static SQLiteStatement compileInsert(SQLiteDatabase db, String table) {
+        return db.compileStatement("INSERT INTO " + table + " ("
+                + TIMESTAMP + ", " + TIME + ", " + LATITUDE + ", " + LONGITUDE + ", " + HEARTRATE
+                + ") VALUES (?, ?, ?, ?, ?)");
+    }
 
-            Session session = new Session(
-                    id,
-                    SessionType.get(sessionCursor.getString(1)),
-                    sessionCursor.getString(2));
+    private static void insert(SQLiteStatement insert, String timestamp, long time,
+                               double latitude, double longitude, int heartrate) {
+        insert.bindString(1, timestamp);
+        insert.bindLong(2, time);
+        insert.bindDouble(3, latitude);
+        insert.bindDouble(4, longitude);
+        insert.bindLong(5, heartrate);
+        insert.executeInsert();
+    }
 
-            try (Cursor measurementCursor = mDatabase.query(convertToTableName(id), null, null, null,
-                    null, null, null)) {
-
-                if (measurementCursor.moveToFirst()) {
-                    while (!measurementCursor.isAfterLast()) {
-                        session.add(new Measurement(
-                                // 0 is reserved for the ID!
-                                measurementCursor.getString(1),
-                                measurementCursor.getDouble(2),
-                                measurementCursor.getDouble(3),
-                                measurementCursor.getInt(4)
-                        ));
-                        measurementCursor.moveToNext();
-                    }
-                }
-            }
+    /**
+     * This method bulk-loads synthetic Sessions created by a {@link SessionGenerator} into the
+     * database. The Sessions are assigned consecutive IDs following the highest existing ID.
+     * Each Session is held in memory once and sorted using {@link TimeOrder} before it is stored,
+     * which takes linear time for the mostly ordered Measurements of a generator.
+     *
+     * @param generator                 Generator used to create the Sessions
+     * @param count                     Number of Sessions to add
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public void populate(SessionGenerator generator, int count) throws IllegalStateException {
+        validateConnection();
+        final PrivacySettings settings = PrivacyConfigStore.getInstance(mContext).get();
+
+        int firstId;
+        try (Cursor cursor = mDatabase.rawQuery(
+                "SELECT MAX(" + TABLE_SESSIONS_ID + ") FROM " + TABLE_SESSIONS, null)) {
+            firstId = cursor.moveToFirst() ? cursor.getInt(0) + 1 : 0;
+        }
+
+        for (int i = 0; i < count; i++) {
+            final int id = firstId + i;
+            generator.generate(id, new SessionGenerator.Sink() {
+                private Session _session;
+
+                @Override
+                public void begin(String type, String description, int size) {
+                    _session = new Session(id, SessionType.get(type), description);
+                    if (size > 0) _session.ensureCapacity(size);
+                }
+
+                @Override
+                public void measurement(String timestamp, double latitude, double longitude,
+                                        int heartrate) {
+                    _session.add(timestamp, Timestamps.parse(timestamp), latitude, longitude,
+                            heartrate);
+                }
+
+                @Override
+                public void end() {
+                    add(mDatabase, _session, settings);
+                }
+            });
+        }
+    }
+
+    /**
+     * This method returns a specific Session that matches the specified ID.
+     *
+     * @param id                        ID of the Session to return
+     * @return                          Session object
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public Session get(int id) throws IllegalStateException {
+        // Malformed timestamps are stored as Timestamps.INVALID, i.e. Long.MIN_VALUE
+        return get(id, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * This method returns the part of a specific Session recorded within a time range. Only the
+     * chunks overlapping the range are read from the database and decrypted.
+     *
+     * @param id                        ID of the Session to return
+     * @param from                      Start of the range in milliseconds since the epoch,
+     *                                  inclusive
+     * @param to                        End of the range in milliseconds since the epoch, exclusive
+     * @return                          Session object containing the Measurements within the range
+     * @throws IllegalStateException    If there is no active database connection or the stored
+     *                                  data has been tampered with
+     */
+    public Session get(int id, final long from, final long to) throws IllegalStateException {
+        validateConnection();
+
+
+        Session session;
+        try (Cursor sessionCursor = mDatabase.query(TABLE_SESSIONS, null,
+                TABLE_SESSIONS_ID + " = " + id, null, null, null, null)) {
+
+            sessionCursor.moveToFirst();
+
+            session = new Session(
+                    id,
+                    SessionType.get(sessionCursor.getString(1)),
+                    sessionCursor.getString(2));
+        }
+
+        // Sessions stored as aggregates only have neither chunks nor a key
+        ChunkTable.Reader reader = null;
+        try (Cursor cursor = mDatabase.rawQuery(ChunkTable.select(id, from, to), null)) {
+            while (cursor.moveToNext()) {
+                if (reader == null) reader = new ChunkTable.Reader(getCipher(id));
+                reader.add(cursor.getInt(0), cursor.getInt(1), cursor.getBlob(2));
+            }
+        }
+        if (reader == null) return session;
+
+        final Session target = session;
+        try {
+            reader.read(from, to, new ChunkTable.Target() {
+                @Override
+                public void ensureCapacity(int size) {
+                    target.ensureCapacity(size);
+                }
+
+                @Override
+                public void add(String timestamp, long time, double latitude, double longitude,
+                                int heartrate) {
+                    target.add(timestamp, time, latitude, longitude, heartrate);
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Stored data of session " + id + " is corrupt: "
+                    + e.getMessage(), e);
+        }
+
+        return session;
+    }
+
+    /**
+     * This method returns the heart rate {@link Statistics} of a specific Session without loading
+     * the Session itself.
+     * <br>
+     * Statistics are computed once when a Session is added and stored alongside it. Sessions
+     * stored before are computed in a single pass over the database on first access, unless their
+     * Measurements are no longer stored.
+     *
+     * @param id                        ID of the Session
+     * @return                          Heart rate statistics or null if they are unavailable
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public Statistics getHeartrateStatistics(int id) throws IllegalStateException {
+        validateConnection();
+
+        try (Cursor cursor = mDatabase.query(TABLE_STATISTICS,
+                new String[] { TABLE_STATISTICS_HEARTRATE },
+                TABLE_STATISTICS_SESSION + " = " + id, null, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                return Statistics.fromBytes(cursor.getBlob(0));
+            }
+        }
+
+        // Statistics of an empty Session would replace the real ones for good
+        if (!hasMeasurements(id)) return null;
+
+        Session session = get(id);
+        Statistics statistics = Statistics.forHeartrate();
+        statistics.addAll(session.getHeartrates(), 0, session.size());
+        putHeartrateStatistics(mDatabase, id, statistics, -1);
+        return statistics;
+    }
+
+    /**
+     * This method merges the heart rate {@link Statistics} of multiple Sessions, e.g. to answer
+     * percentile queries across them. No measurements are read. Sessions whose statistics are
+     * unavailable are skipped.
+     *
+     * @param ids                       IDs of the Sessions
+     * @return                          Merged heart rate statistics
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public Statistics getHeartrateStatistics(int[] ids) throws IllegalStateException {
+        Statistics statistics = Statistics.forHeartrate();
+        for (int id : ids) {
+            Statistics session = getHeartrateStatistics(id);
+            if (session != null) {
+                statistics.merge(session);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * This method merges the heart rate {@link Statistics} of all Sessions of a type started
+     * within a time range, e.g. all runs of a year. No measurements are read. Sessions whose
+     * statistics are unavailable are skipped.
+     *
+     * @param type                      Type of the Sessions or null for all types
+     * @param from                      Start of the range in milliseconds since the epoch,
+     *                                  inclusive
+     * @param to                        End of the range in milliseconds since the epoch, exclusive
+     * @return                          Merged heart rate statistics
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public Statistics getHeartrateStatistics(SessionType type, long from, long to)
+            throws IllegalStateException {
+        validateConnection();
+        ensureSummaries();
+
+        String query = "SELECT s." + TABLE_SESSIONS_ID + ", st." + TABLE_STATISTICS_HEARTRATE
+                + " FROM " + TABLE_SESSIONS + " s"
+                + " JOIN " + TABLE_SUMMARY + " su ON su." + TABLE_SUMMARY_SESSION
+                + " = s." + TABLE_SESSIONS_ID
+                + " LEFT JOIN " + TABLE_STATISTICS + " st ON st." + TABLE_STATISTICS_SESSION
+                + " = s." + TABLE_SESSIONS_ID
+                + " WHERE su." + TABLE_SUMMARY_START + " >= " + from
+                + " AND su." + TABLE_SUMMARY_START + " < " + to;
+        String[] args = null;
+        if (type != null) {
+            query += " AND s." + TABLE_SESSIONS_TYPE + " = ?";
+            args = new String[] { type.alias };
+        }
+
+        Statistics statistics = Statistics.forHeartrate();
+        List<Integer> missing = new ArrayList<>();
+        try (Cursor cursor = mDatabase.rawQuery(query, args)) {
+            while (cursor.moveToNext()) {
+                if (cursor.isNull(1)) {
+                    missing.add(cursor.getInt(0));
+                } else {
+                    statistics.merge(Statistics.fromBytes(cursor.getBlob(1)));
+                }
+            }
+        }
+        for (int id : missing) {
+            Statistics session = getHeartrateStatistics(id);
+            if (session != null) {
+                statistics.merge(session);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * This method returns the number of implausible heart rates repaired when a Session was added.
+     *
+     * @param id                        ID of the Session
+     * @return                          Number of anomalies or -1 if the Session was added before
+     *                                  anomalies were detected
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public int getAnomalyCount(int id) throws IllegalStateException {
+        validateConnection();
+
+        try (Cursor cursor = mDatabase.query(TABLE_STATISTICS,
+                new String[] { TABLE_STATISTICS_ANOMALIES },
+                TABLE_STATISTICS_SESSION + " = " + id, null, null, null, null)) {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getInt(0) : -1;
+        }
+    }
+
+    // Anomalies are stored as unknown if negative
+    private static void putHeartrateStatistics(SQLiteDatabase db, int id, Statistics statistics,
+                                               int anomalies) {
+        ContentValues values = new ContentValues();
+        values.put(TABLE_STATISTICS_SESSION, id);
+        values.put(TABLE_STATISTICS_HEARTRATE, statistics.toBytes());
+        if (anomalies >= 0) {
+            values.put(TABLE_STATISTICS_ANOMALIES, anomalies);
+        } else {
+            values.putNull(TABLE_STATISTICS_ANOMALIES);
+        }
+        db.insertWithOnConflict(TABLE_STATISTICS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+
+    /**
+     * This method returns the time a Session spent in each of the {@link HeartRateZones#DEFAULT
+     * default heart rate zones}.
+     *
+     * @param id                        ID of the Session
+     * @return                          Time in zones or null if it is unavailable
+     * @throws IllegalStateException    If there is no active database connection
+     * @see #getTimeInZones(int, HeartRateZones)
+     */
+    public TimeInZones getTimeInZones(int id) throws IllegalStateException {
+        return getTimeInZones(id, HeartRateZones.DEFAULT);
+    }
+
+    /**
+     * This method returns the time a Session spent in each of the specified heart rate zones.
+     * <br>
+     * Time in zones is stored per Session and zone configuration. If it has not been stored yet,
+     * it is computed from the Session's measurements once and stored for subsequent calls. It is
+     * unavailable if the Measurements are no longer stored, e.g. for Sessions stored as
+     * aggregates only.
+     *
+     * @param id                        ID of the Session
+     * @param zones                     Heart rate zones
+     * @return                          Time in zones or null if it is unavailable
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public TimeInZones getTimeInZones(int id, HeartRateZones zones) throws IllegalStateException {
+        validateConnection();
+
+        long[] millis = new long[zones.size()];
+        try (Cursor cursor = mDatabase.query(TABLE_ZONES,
+                new String[] { TABLE_ZONES_ZONE, TABLE_ZONES_MILLIS },
+                TABLE_ZONES_SESSION + " = " + id + " AND " + TABLE_ZONES_CONFIGURATION + " = ?",
+                new String[] { zones.getKey() }, null, null, null)) {
+            if (cursor.getCount() == zones.size()) {
+                while (cursor.moveToNext()) {
+                    millis[cursor.getInt(0)] = cursor.getLong(1);
+                }
+                return new TimeInZones(zones, millis);
+            }
+        }
+
+        if (!hasMeasurements(id)) return null;
+
+        Session session = get(id);
+        long[] times = session.getTimes();
+        int[] heartrates = session.getHeartrates();
+        TimeInZones timeInZones = new TimeInZones(zones);
+        for (int i = 0; i < session.size(); i++) {
+            timeInZones.add(times[i], heartrates[i]);
+        }
+        putTimeInZones(mDatabase, id, timeInZones);
+        return timeInZones;
+    }
+
+    // The default zones are kept since summaries and Rollups are built from them
+    private static void deleteCustomTimeInZones(SQLiteDatabase db, int id) {
+        db.delete(TABLE_ZONES, TABLE_ZONES_SESSION + " = " + id + " AND "
+                + TABLE_ZONES_CONFIGURATION + " != ?",
+                new String[] { HeartRateZones.DEFAULT.getKey() });
+    }
+
+    private static void putTimeInZones(SQLiteDatabase db, int id, TimeInZones timeInZones) {
+        String key = timeInZones.getZones().getKey();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_ZONES, TABLE_ZONES_SESSION + " = " + id + " AND "
+                    + TABLE_ZONES_CONFIGURATION + " = ?", new String[] { key });
+            for (int zone = 0; zone < timeInZones.getZones().size(); zone++) {
+                ContentValues values = new ContentValues();
+                values.put(TABLE_ZONES_SESSION, id);
+                values.put(TABLE_ZONES_CONFIGURATION, key);
+                values.put(TABLE_ZONES_ZONE, zone);
+                values.put(TABLE_ZONES_MILLIS, timeInZones.getMillis(zone));
+                db.insert(TABLE_ZONES, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+
+    /**
+     * This method returns the {@link Kinematics} (distance, speed and pace) of a Session.
+     * <br>
+     * Kinematics are derived once when a Session is added and stored alongside it. Sessions stored
+     * before or resampled since are derived on first access. They are unavailable if the
+     * Measurements are no longer stored, e.g. for Sessions stored as aggregates only.
+     *
+     * @param id                        ID of the Session
+     * @return                          Kinematics of the Session or null if they are unavailable
+     * @throws IllegalStateException    If there is no active database connection or the stored
+     *                                  data has been tampered with
+     */
+    public Kinematics getKinematics(int id) throws IllegalStateException {
+        validateConnection();
+
+        int size = 0;
+        List<ByteBuffer> chunks = new ArrayList<>();
+        try (Cursor cursor = mDatabase.query(TABLE_KINEMATICS,
+                new String[] { TABLE_KINEMATICS_CHUNK, TABLE_KINEMATICS_PAYLOAD },
+                TABLE_KINEMATICS_SESSION + " = " + id, null, null, null, TABLE_KINEMATICS_CHUNK)) {
+            while (cursor.moveToNext()) {
+                ByteBuffer chunk = ByteBuffer.wrap(getCipher(id).open(ChunkCipher.KINEMATICS,
+                        cursor.getInt(0), cursor.getBlob(1)));
+                chunks.add(chunk);
+                size += chunk.remaining() / KINEMATICS_SAMPLE_SIZE;
+            }
+        }
+
+        if (chunks.isEmpty()) {
+            if (!hasMeasurements(id)) return null;
+
+            Session session = get(id);
+            Kinematics kinematics = Kinematics.derive(session.getTimes(), session.getLatitudes(),
+                    session.getLongitudes(), session.size());
+            putKinematics(mDatabase, id, kinematics, getCipher(id));
+            return kinematics;
+        }
+
+        // Each chunk holds its distances followed by its speeds
+        double[] distances = new double[size];
+        float[] speeds = new float[size];
+        int offset = 0;
+        for (ByteBuffer chunk : chunks) {
+            int length = chunk.remaining() / KINEMATICS_SAMPLE_SIZE;
+            chunk.asDoubleBuffer().get(distances, offset, length);
+            chunk.position(chunk.position() + length * 8);
+            chunk.asFloatBuffer().get(speeds, offset, length);
+            offset += length;
+        }
+        return new Kinematics(distances, speeds);
+    }
+
+    private static void putKinematics(SQLiteDatabase db, int id, Kinematics kinematics,
+                                      ChunkCipher cipher) {
+        double[] distances = kinematics.getCumulativeDistances();
+        float[] speeds = kinematics.getSpeeds();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_KINEMATICS, TABLE_KINEMATICS_SESSION + " = " + id, null);
+            for (int from = 0, chunk = 0; from < kinematics.size();
+                 from += KINEMATICS_CHUNK_SIZE, chunk++) {
+                int to = Math.min(kinematics.size(), from + KINEMATICS_CHUNK_SIZE);
+                ByteBuffer plaintext = ByteBuffer.allocate((to - from) * KINEMATICS_SAMPLE_SIZE);
+                plaintext.asDoubleBuffer().put(distances, from, to - from);
+                plaintext.position((to - from) * 8);
+                plaintext.asFloatBuffer().put(speeds, from, to - from);
+
+                ContentValues values = new ContentValues();
+                values.put(TABLE_KINEMATICS_SESSION, id);
+                values.put(TABLE_KINEMATICS_CHUNK, chunk);
+                values.put(TABLE_KINEMATICS_PAYLOAD,
+                        cipher.seal(ChunkCipher.KINEMATICS, chunk, plaintext.array()));
+                db.insert(TABLE_KINEMATICS, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+
+    /**
+     * This method returns the {@link Rollup}s of a period within a time range in chronological
+     * order. Periods without any Sessions are omitted.
+     *
+     * @param period                    Period to return Rollups of
+     * @param from                      Start of the range in milliseconds since the epoch,
+     *                                  inclusive
+     * @param to                        End of the range in milliseconds since the epoch, exclusive
+     * @return                          Rollups starting within the range
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public List<Rollup> listRollups(RollupPeriod period, long from, long to)
+            throws IllegalStateException {
+        validateConnection();
+        ensureSummaries();
+
+        String selection = " = ? AND " + TABLE_ROLLUPS_START + " >= ? AND "
+                + TABLE_ROLLUPS_START + " < ?";
+        String[] selectionArgs = { period.alias, String.valueOf(from), String.valueOf(to) };
+
+        HeartRateZones zones = HeartRateZones.DEFAULT;
+        LongSparseArray<long[]> millis = new LongSparseArray<>();
+        try (Cursor cursor = mDatabase.query(TABLE_ROLLUP_ZONES, new String[] {
+                TABLE_ROLLUP_ZONES_START, TABLE_ROLLUP_ZONES_ZONE, TABLE_ROLLUP_ZONES_MILLIS },
+                TABLE_ROLLUP_ZONES_PERIOD + selection, selectionArgs, null, null, null)) {
+            while (cursor.moveToNext()) {
+                long[] values = millis.get(cursor.getLong(0));
+                if (values == null) {
+                    values = new long[zones.size()];
+                    millis.put(cursor.getLong(0), values);
+                }
+                values[cursor.getInt(1)] = cursor.getLong(2);
+            }
+        }
+
+        List<Rollup> rollups = new ArrayList<>();
+        try (Cursor cursor = mDatabase.query(TABLE_ROLLUPS, new String[] {
+                TABLE_ROLLUPS_START, TABLE_ROLLUPS_END, TABLE_ROLLUPS_SESSIONS,
+                TABLE_ROLLUPS_DURATION, TABLE_ROLLUPS_DISTANCE, TABLE_ROLLUPS_HEARTRATE_SUM,
+                TABLE_ROLLUPS_HEARTRATE_COUNT, TABLE_ROLLUPS_HEARTRATE_MAX },
+                TABLE_ROLLUPS_PERIOD + selection, selectionArgs, null, null,
+                TABLE_ROLLUPS_START)) {
+            while (cursor.moveToNext()) {
+                long[] values = millis.get(cursor.getLong(0));
+                rollups.add(new Rollup(period, cursor.getLong(0), cursor.getLong(1),
+                        cursor.getInt(2), cursor.getLong(3), cursor.getDouble(4),
+                        cursor.getLong(5), cursor.getLong(6), cursor.getInt(7),
+                        new TimeInZones(zones, values != null ? values : new long[zones.size()])));
+            }
+        }
+        return rollups;
+    }
+
+    /**
+     * This method recomputes all {@link Rollup}s from the Session summaries. Rollups are kept up
+     * to date as Sessions are added or deleted, but have to be rebuilt when the device's time
+     * zone changed since periods are aligned to the local calendar.
+     * <br>
+     * The summaries are grouped into Rollups in parallel by a {@link SessionAggregator}. Must not
+     * be called on the main thread.
+     *
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public void rebuildRollups() throws IllegalStateException {
+        validateConnection();
+        ensureSummaries();
+
+        int[] ids;
+        try (Cursor cursor = mDatabase.query(TABLE_SUMMARY, new String[] { TABLE_SUMMARY_SESSION },
+                TABLE_SUMMARY_START + " != " + Timestamps.INVALID, null, null, null, null)) {
+            ids = new int[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getInt(0);
+            }
+        }
+        Map<String, Rollup> rollups = new SessionAggregator(mContext)
+                .invoke(createRollupAggregation(TimeZone.getDefault()), ids);
+
+        mDatabase.beginTransaction();
+        try {
+            mDatabase.delete(TABLE_ROLLUPS, null, null);
+            mDatabase.delete(TABLE_ROLLUP_ZONES, null, null);
+            for (Rollup rollup : rollups.values()) {
+                putRollup(mDatabase, rollup);
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+
+    /*
+     * Computes the summaries of Sessions stored before version 5 in parallel and updates the
+     * affected Rollups. Sessions stored as aggregates only have no Measurements to summarize.
+     */
+    private void ensureSummaries() {
+        int[] missing;
+        try (Cursor cursor = mDatabase.rawQuery("SELECT " + TABLE_SESSIONS_ID + " FROM "
+                + TABLE_SESSIONS + " WHERE " + TABLE_SESSIONS_ID + " NOT IN (SELECT "
+                + TABLE_SUMMARY_SESSION + " FROM " + TABLE_SUMMARY + ") AND " + TABLE_SESSIONS_ID
+                + " IN (SELECT " + ChunkTable.SESSION + " FROM " + ChunkTable.TABLE + ")", null)) {
+            missing = new int[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                missing[i] = cursor.getInt(0);
+            }
+        }
+        if (missing.length == 0) return;
+
+        List<SessionSummary> summaries = new SessionAggregator(mContext)
+                .invoke(createSummaryAggregation(), missing);
+
+        mDatabase.beginTransaction();
+        try {
+            TimeZone zone = TimeZone.getDefault();
+            Set<String> updated = new HashSet<>();
+            for (SessionSummary summary : summaries) {
+                // Stores the time in zones the Rollups are computed from
+                putTimeInZones(mDatabase, summary.id, summary.timeInZones);
+                putSummary(mDatabase, summary);
+            }
+            for (SessionSummary summary : summaries) {
+                if (summary.start == Timestamps.INVALID) continue;
+                for (RollupPeriod period : RollupPeriod.values()) {
+                    long start = period.getStart(summary.start, zone);
+                    if (updated.add(period.alias + start)) {
+                        updateRollup(mDatabase, period, start, period.getNext(start, zone));
+                    }
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    // Summarizes Sessions from their Measurements on the connection of each partition
+    private static SessionAggregator.Aggregation<List<SessionSummary>> createSummaryAggregation() {
+        return new SessionAggregator.Aggregation<List<SessionSummary>>() {
+            @Override
+            public List<SessionSummary> create() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public void accumulate(List<SessionSummary> aggregate, SessionDatabase database,
+                                   int id) {
+                Session session = database.get(id);
+                long[] times = session.getTimes();
+                TimeInZones timeInZones = new TimeInZones(HeartRateZones.DEFAULT);
+                timeInZones.addAll(times, session.getHeartrates(), 0, session.size());
+                aggregate.add(SessionSummary.of(session, Kinematics.derive(times,
+                        session.getLatitudes(), session.getLongitudes(), session.size()),
+                        timeInZones));
+            }
+
+            @Override
+            public List<SessionSummary> merge(List<SessionSummary> left,
+                                              List<SessionSummary> right) {
+                left.addAll(right);
+                return left;
+            }
+        };
+    }
+
+    // Groups the stored summaries of Sessions into Rollups keyed by period and start
+    private static SessionAggregator.Aggregation<Map<String, Rollup>> createRollupAggregation(
+            final TimeZone zone) {
+        return new SessionAggregator.Aggregation<Map<String, Rollup>>() {
+            @Override
+            public Map<String, Rollup> create() {
+                return new HashMap<>();
+            }
+
+            @Override
+            public void accumulate(Map<String, Rollup> aggregate, SessionDatabase database,
+                                   int id) {
+                SessionSummary summary = database.findSummary(id);
+                if (summary == null) return;
+                for (RollupPeriod period : RollupPeriod.values()) {
+                    Rollup rollup = summary.toRollup(period, zone);
+                    if (rollup != null) {
+                        addRollup(aggregate, rollup);
+                    }
+                }
+            }
+
+            @Override
+            public Map<String, Rollup> merge(Map<String, Rollup> left,
+                                             Map<String, Rollup> right) {
+                for (Rollup rollup : right.values()) {
+                    addRollup(left, rollup);
+                }
+                return left;
+            }
+
+            private void addRollup(Map<String, Rollup> rollups, Rollup rollup) {
+                String key = rollup.period.alias + rollup.start;
+                Rollup existing = rollups.get(key);
+                rollups.put(key, existing == null ? rollup : existing.merge(rollup));
+            }
+        };
+    }
+
+    // Returns the stored summary of a Session or null if it has none
+    private SessionSummary findSummary(int id) {
+        validateConnection();
+
+        HeartRateZones zones = HeartRateZones.DEFAULT;
+        long[] millis = new long[zones.size()];
+        try (Cursor cursor = mDatabase.query(TABLE_ZONES,
+                new String[] { TABLE_ZONES_ZONE, TABLE_ZONES_MILLIS },
+                TABLE_ZONES_SESSION + " = " + id + " AND " + TABLE_ZONES_CONFIGURATION + " = ?",
+                new String[] { zones.getKey() }, null, null, null)) {
+            while (cursor.moveToNext()) {
+                millis[cursor.getInt(0)] = cursor.getLong(1);
+            }
+        }
+
+        try (Cursor cursor = mDatabase.query(TABLE_SUMMARY, new String[] {
+                TABLE_SUMMARY_START, TABLE_SUMMARY_DURATION, TABLE_SUMMARY_DISTANCE,
+                TABLE_SUMMARY_HEARTRATE_SUM, TABLE_SUMMARY_HEARTRATE_COUNT,
+                TABLE_SUMMARY_HEARTRATE_MAX },
+                TABLE_SUMMARY_SESSION + " = " + id, null, null, null, null)) {
+            if (!cursor.moveToFirst()) return null;
+            return new SessionSummary(id, cursor.getLong(0), cursor.getLong(1),
+                    cursor.getDouble(2), cursor.getLong(3), cursor.getLong(4), cursor.getInt(5),
+                    new TimeInZones(zones, millis));
+        }
+    }
+
+    private static void putSummary(SQLiteDatabase db, SessionSummary summary) {
+        ContentValues values = new ContentValues();
+        values.put(TABLE_SUMMARY_SESSION, summary.id);
+        values.put(TABLE_SUMMARY_START, summary.start);
+        values.put(TABLE_SUMMARY_DURATION, summary.duration);
+        values.put(TABLE_SUMMARY_DISTANCE, summary.distance);
+        values.put(TABLE_SUMMARY_HEARTRATE_SUM, summary.heartrateSum);
+        values.put(TABLE_SUMMARY_HEARTRATE_COUNT, summary.heartrateCount);
+        values.put(TABLE_SUMMARY_HEARTRATE_MAX, summary.maxHeartrate);
+        db.insertWithOnConflict(TABLE_SUMMARY, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    // Recomputes the Rollups of all periods containing the specified point in time
+    private static void updateRollups(SQLiteDatabase db, long time) {
+        TimeZone zone = TimeZone.getDefault();
+        for (RollupPeriod period : RollupPeriod.values()) {
+            long start = period.getStart(time, zone);
+            updateRollup(db, period, start, period.getNext(start, zone));
+        }
+    }
+
+    /*
+     * Recomputes a single Rollup from the summaries of the Sessions started within its period.
+     * Only a handful of rows is aggregated, which is cheaper and more robust than maintaining
+     * running totals, especially for the maximum heart rate when a Session is deleted.
+     */
+    private static void updateRollup(SQLiteDatabase db, RollupPeriod period, long start,
+                                     long end) {
+        String[] keys = { period.alias, String.valueOf(start) };
+        db.delete(TABLE_ROLLUPS, TABLE_ROLLUPS_PERIOD + " = ? AND " + TABLE_ROLLUPS_START + " = ?",
+                keys);
+        db.delete(TABLE_ROLLUP_ZONES, TABLE_ROLLUP_ZONES_PERIOD + " = ? AND "
+                + TABLE_ROLLUP_ZONES_START + " = ?", keys);
+
+        String range = TABLE_SUMMARY_START + " >= " + start + " AND "
+                + TABLE_SUMMARY_START + " < " + end;
+        HeartRateZones zones = HeartRateZones.DEFAULT;
+        long[] millis = new long[zones.size()];
+        try (Cursor cursor = db.rawQuery("SELECT z." + TABLE_ZONES_ZONE + ", SUM(z."
+                + TABLE_ZONES_MILLIS + ") FROM " + TABLE_ZONES + " z JOIN " + TABLE_SUMMARY
+                + " s ON z." + TABLE_ZONES_SESSION + " = s." + TABLE_SUMMARY_SESSION
+                + " WHERE z." + TABLE_ZONES_CONFIGURATION + " = ? AND s." + TABLE_SUMMARY_START
+                + " >= " + start + " AND s." + TABLE_SUMMARY_START + " < " + end
+                + " GROUP BY z." + TABLE_ZONES_ZONE,
+                new String[] { zones.getKey() })) {
+            while (cursor.moveToNext()) {
+                millis[cursor.getInt(0)] = cursor.getLong(1);
+            }
+        }
+
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*), SUM(" + TABLE_SUMMARY_DURATION
+                + "), SUM(" + TABLE_SUMMARY_DISTANCE + "), SUM(" + TABLE_SUMMARY_HEARTRATE_SUM
+                + "), SUM(" + TABLE_SUMMARY_HEARTRATE_COUNT + "), MAX("
+                + TABLE_SUMMARY_HEARTRATE_MAX + ") FROM " + TABLE_SUMMARY + " WHERE " + range,
+                null)) {
+            if (!cursor.moveToFirst() || cursor.getInt(0) == 0) {
+                return;
+            }
+
+            putRollup(db, new Rollup(period, start, end, cursor.getInt(0), cursor.getLong(1),
+                    cursor.getDouble(2), cursor.getLong(3), cursor.getLong(4), cursor.getInt(5),
+                    new TimeInZones(zones, millis)));
+        }
+    }
+
+    private static void putRollup(SQLiteDatabase db, Rollup rollup) {
+        ContentValues values = new ContentValues();
+        values.put(TABLE_ROLLUPS_PERIOD, rollup.period.alias);
+        values.put(TABLE_ROLLUPS_START, rollup.start);
+        values.put(TABLE_ROLLUPS_END, rollup.end);
+        values.put(TABLE_ROLLUPS_SESSIONS, rollup.sessions);
+        values.put(TABLE_ROLLUPS_DURATION, rollup.duration);
+        values.put(TABLE_ROLLUPS_DISTANCE, rollup.distance);
+        values.put(TABLE_ROLLUPS_HEARTRATE_SUM, rollup.getHeartrateSum());
+        values.put(TABLE_ROLLUPS_HEARTRATE_COUNT, rollup.getHeartrateCount());
+        values.put(TABLE_ROLLUPS_HEARTRATE_MAX, rollup.maxHeartrate);
+        db.insert(TABLE_ROLLUPS, null, values);
+
+        for (int zone = 0; zone < rollup.timeInZones.getZones().size(); zone++) {
+            values = new ContentValues();
+            values.put(TABLE_ROLLUP_ZONES_PERIOD, rollup.period.alias);
+            values.put(TABLE_ROLLUP_ZONES_START, rollup.start);
+            values.put(TABLE_ROLLUP_ZONES_ZONE, zone);
+            values.put(TABLE_ROLLUP_ZONES_MILLIS, rollup.timeInZones.getMillis(zone));
+            db.insert(TABLE_ROLLUP_ZONES, null, values);
+        }
+    }
+
+
+    /**
+     * This method schedules compacting the Measurements of all stored Sessions, e.g. after the user
+     * has chosen a more restrictive privacy mode. The actual work is done in batches by
+     * {@link #anonymize(PrivacySettings, int)}. A pending anonymization starts over.
+     *
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public void startAnonymization() throws IllegalStateException {
+        validateConnection();
+
+        mDatabase.beginTransaction();
+        try {
+            mDatabase.delete(TABLE_ANONYMIZATION, null, null);
+            putAnonymizationRestart(mDatabase);
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    private static void putAnonymizationRestart(SQLiteDatabase db) {
+        ContentValues checkpoint = new ContentValues();
+        // Continues with the first Session
+        checkpoint.put(TABLE_ANONYMIZATION_SESSION, Integer.MIN_VALUE);
+        checkpoint.put(TABLE_ANONYMIZATION_LAST_CHUNK, ANONYMIZATION_SESSION_DONE);
+        checkpoint.put(TABLE_ANONYMIZATION_INTERVAL, Timestamps.INVALID);
+        db.insert(TABLE_ANONYMIZATION, null, checkpoint);
+    }
+
+    /**
+     * This method cancels a pending anonymization. Measurements which have already been compacted
+     * stay compacted.
+     *
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public void cancelAnonymization() throws IllegalStateException {
+        validateConnection();
+        mDatabase.delete(TABLE_ANONYMIZATION, null, null);
+    }
+
+    /**
+     * @return                          true if an anonymization has been started but not finished
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public boolean isAnonymizationPending() throws IllegalStateException {
+        validateConnection();
+        return DatabaseUtils.queryNumEntries(mDatabase, TABLE_ANONYMIZATION) > 0;
+    }
+
+    /**
+     * This method returns the progress of a pending anonymization.
+     *
+     * @return                          Progress between 0 and 1, or 1 if no anonymization is
+     *                                  pending
+     * @throws IllegalStateException    If there is no active database connection
+     */
+    public float getAnonymizationProgress() throws IllegalStateException {
+        validateConnection();
+
+        try (Cursor cursor = mDatabase.rawQuery("SELECT"
+                + " (SELECT COUNT(*) FROM " + TABLE_SESSIONS + " WHERE " + TABLE_SESSIONS_ID
+                + " < a." + TABLE_ANONYMIZATION_SESSION + "),"
+                + " (SELECT COUNT(*) FROM " + TABLE_SESSIONS + ")"
+                + " FROM " + TABLE_ANONYMIZATION + " a", null)) {
+            if (!cursor.moveToFirst() || cursor.getInt(1) == 0) return 1f;
+            return (float) cursor.getInt(0) / cursor.getInt(1);
+        }
+    }
+
+    /**
+     * This method compacts the next batch of Measurements of a pending anonymization according to
+     * the {@link StorageTier} of the specified settings: Sessions are resampled to the collection
+     * interval or their Measurements are deleted altogether, keeping only aggregates.
+     * <br>
+     * Measurements are resampled in whole chunks, which are decrypted and sealed again, so a batch
+     * contains at least one chunk. Each batch is committed together with a checkpoint, so an
+     * anonymization interrupted at any point, e.g. because the process was killed, continues where
+     * it left off. Derived data of compacted Sessions which refers to single Measurements, like
+     * kinematics or the time in custom heart rate zones, is derived again on next access,
+     * summaries and Rollups are kept. Cached
+     * {@link ProjectionCache projections} of a Session are dropped with every committed batch.
+     *
+     * @param settings                  Privacy settings to apply
+     * @param batchSize                 Number of Measurements to process at least
+     * @return                          false if the anonymization has finished or none is pending
+     * @throws IllegalStateException    If there is no active database connection or the stored
+     *                                  data has been tampered with
+     */
+    public boolean anonymize(PrivacySettings settings, int batchSize)
+            throws IllegalStateException {
+        validateConnection();
+
+        StorageTier tier = settings.getStorageTier();
+        boolean resample = tier == StorageTier.DOWNSAMPLED && settings.getInterval() > 0;
+
+        int compacted = -1;
+        mDatabase.beginTransaction();
+        try {
+            int id;
+            long lastChunk;
+            long intervalStart;
+            try (Cursor cursor = mDatabase.query(TABLE_ANONYMIZATION, new String[] {
+                    TABLE_ANONYMIZATION_SESSION, TABLE_ANONYMIZATION_LAST_CHUNK,
+                    TABLE_ANONYMIZATION_INTERVAL }, null, null, null, null, null)) {
+                if (!cursor.moveToFirst()) {
+                    mDatabase.setTransactionSuccessful();
+                    return false;
+                }
+                id = cursor.getInt(0);
+                lastChunk = cursor.getLong(1);
+                intervalStart = cursor.getLong(2);
+            }
+
+            // Nothing to compact, e.g. the mode has been changed back while the job was pending
+            if (tier != StorageTier.AGGREGATES && !resample) {
+                mDatabase.delete(TABLE_ANONYMIZATION, null, null);
+                mDatabase.setTransactionSuccessful();
+                return false;
+            }
+
+            if (lastChunk == ANONYMIZATION_SESSION_DONE) {
+                try (Cursor cursor = mDatabase.rawQuery("SELECT MIN(" + TABLE_SESSIONS_ID
+                        + ") FROM " + TABLE_SESSIONS + " WHERE " + TABLE_SESSIONS_ID + " > " + id,
+                        null)) {
+                    if (!cursor.moveToFirst() || cursor.isNull(0)) {
+                        mDatabase.delete(TABLE_ANONYMIZATION, null, null);
+                        mDatabase.setTransactionSuccessful();
+                        return false;
+                    }
+                    id = cursor.getInt(0);
+                }
+                lastChunk = -1L;
+                intervalStart = Timestamps.INVALID;
+            }
+
+            if (tier == StorageTier.AGGREGATES) {
+                deleteMeasurements(mDatabase, id);
+                deleteCustomTimeInZones(mDatabase, id);
+                lastChunk = ANONYMIZATION_SESSION_DONE;
+            } else {
+                // Read first, rows must not be modified while a cursor is iterating over them
+                int limit = Math.max(1, batchSize / MeasurementChunks.CHUNK_SIZE);
+                int[] indices = new int[limit];
+                byte[][] payloads = new byte[limit][];
+                int rows = 0;
+                try (Cursor cursor = mDatabase.query(ChunkTable.TABLE,
+                        new String[] { ChunkTable.INDEX, ChunkTable.PAYLOAD },
+                        ChunkTable.SESSION + " = " + id + " AND " + ChunkTable.INDEX + " > "
+                        + lastChunk, null, null, null, ChunkTable.INDEX,
+                        String.valueOf(limit))) {
+                    while (cursor.moveToNext()) {
+                        indices[rows] = cursor.getInt(0);
+                        payloads[rows] = cursor.getBlob(1);
+                        rows++;
+                    }
+                }
+
+                try (SQLiteStatement insert = compileChunkInsert(mDatabase)) {
+                    for (int row = 0; row < rows; row++) {
+                        lastChunk = indices[row];
+                        intervalStart = resample(id, indices[row], payloads[row], settings,
+                                intervalStart, insert);
+                    }
+                }
+
+                if (rows < limit) {
+                    lastChunk = ANONYMIZATION_SESSION_DONE;
+                    mDatabase.delete(TABLE_KINEMATICS, TABLE_KINEMATICS_SESSION + " = " + id,
+                            null);
+                    deleteCustomTimeInZones(mDatabase, id);
+                }
+            }
+
+            ContentValues checkpoint = new ContentValues();
+            checkpoint.put(TABLE_ANONYMIZATION_SESSION, id);
+            checkpoint.put(TABLE_ANONYMIZATION_LAST_CHUNK, lastChunk);
+            checkpoint.put(TABLE_ANONYMIZATION_INTERVAL, intervalStart);
+            mDatabase.update(TABLE_ANONYMIZATION, checkpoint, null, null);
+
+            mDatabase.setTransactionSuccessful();
+            compacted = id;
+            return true;
+        } finally {
+            mDatabase.endTransaction();
+            if (compacted != -1) {
+                // Cached projections refer to Measurements which no longer exist
+                ProjectionCache.getInstance(mContext).invalidate(compacted);
+            }
+        }
+    }
+
+    /*
+     * Keeps the first Measurement per collection interval of a stored chunk and returns the start
+     * of the last interval, which continues in the next chunk. Chunks left unchanged are not
+     * sealed again, empty chunks are deleted.
+     */
+    private long resample(int id, int index, byte[] payload, PrivacySettings settings,
+                          long intervalStart, SQLiteStatement insert) {
+        MeasurementChunks.Chunk chunk;
+        try {
+            chunk = MeasurementChunks.decode(getCipher(id).open(index, payload));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Stored data of session " + id + " is corrupt: "
+                    + e.getMessage(), e);
+        }
+
+        // Rewritten in place, each Measurement is read before it is overwritten
+        int count = 0;
+        for (int i = 0; i < chunk.size(); i++) {
+            long time = chunk.times[i];
+            if (time == Timestamps.INVALID) continue;
+            long start = settings.getIntervalStart(time);
+            if (start == intervalStart) continue;
+            intervalStart = start;
+
+            chunk.timestamps[count] = chunk.timestamps[i];
+            chunk.times[count] = time;
+            chunk.latitudes[count] = chunk.latitudes[i];
+            chunk.longitudes[count] = chunk.longitudes[i];
+            chunk.heartrates[count] = chunk.heartrates[i];
+            count++;
+        }
+        if (count == chunk.size()) return intervalStart;
 
-            return session;
+        mDatabase.delete(ChunkTable.TABLE, ChunkTable.SESSION + " = " + id + " AND "
+                + ChunkTable.INDEX + " = " + index, null);
+        if (count > 0) {
+            insertChunk(insert, id, index, chunk.times, 0, count,
+                    getCipher(id).seal(index, MeasurementChunks.encode(chunk.timestamps,
+                            chunk.times, chunk.latitudes, chunk.longitudes, chunk.heartrates,
+                            0, count)));
         }
+        return intervalStart;
     }
 }
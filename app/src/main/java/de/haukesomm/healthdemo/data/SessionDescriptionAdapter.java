@@ -11,17 +11,31 @@
 
 package de.haukesomm.healthdemo.data;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.recyclerview.extensions.AsyncListDiffer;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import de.haukesomm.healthdemo.R;
 import de.haukesomm.healthdemo.ui.DataActivity;
@@ -29,107 +43,431 @@ import de.haukesomm.healthdemo.ui.DataActivity;
 /**
  * Created on 29.08.18
  * <p>
- * This class is a subclass of {@link BaseAdapter} and functions as a List- or Spinner-Adapter for
- * session data in form of {@link SessionDescription}s.<br>
- * For each cache entry a view representing the basic session info will be generated.
+ * This class is a {@link RecyclerView.Adapter} for session data in form of
+ * {@link SessionDescription}s, newest first.<br>
+ * The adapter always reports the total number of Sessions but only keeps the pages around the
+ * viewport in memory. Rows of pages that have not been loaded (yet) are bound as empty
+ * placeholders. Pages are read from the {@link SessionDatabase} on a background thread ahead of
+ * the viewport, the faster the user scrolls the further ahead. Pages that have scrolled far out
+ * of view are evicted and loaded again when needed.<br>
+ * Changes are computed by {@link DiffUtil} off the main thread and only the affected rows are
+ * rebound. Item IDs are the stable Session IDs. Each row shows a thumbnail of the Session's route
+ * from the {@link RouteThumbnailCache}.
  *
  * @author Hauke Sommerfeld
  */
-public class SessionDescriptionAdapter extends BaseAdapter {
+public class SessionDescriptionAdapter
+        extends RecyclerView.Adapter<SessionDescriptionAdapter.ViewHolder> {
 
     /**
-     * This constructor takes the app's context and a list of JSONObjects representing the cache-
-     * entries. If created with this constructor the adapter can be used as is with no further
-     * action needed.
+     * Limit to show all Sessions
+     */
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+
+    private static final int PAGE_SIZE = 50;
+
+    // Rows loaded around the viewport while not scrolling
+    private static final int MIN_PREFETCH = PAGE_SIZE / 2;
+
+    private static final int MAX_PREFETCH = 4 * PAGE_SIZE;
+
+    // Scrolling time the prefetched rows should last at the current velocity
+    private static final long PREFETCH_HORIZON_MS = 1000;
+
+    // Weight of the latest sample in the smoothed scroll velocity
+    private static final float VELOCITY_SMOOTHING = 0.3f;
+
+    // Scroll events further apart than this start a new velocity estimate
+    private static final long VELOCITY_TIMEOUT_MS = 250;
+
+    // Loaded pages further away from the prefetched range than this are evicted
+    private static final int RETAINED_PAGES = 2;
+
+
+    private static final DiffUtil.ItemCallback<SessionDescription> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<SessionDescription>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull SessionDescription oldItem,
+                                               @NonNull SessionDescription newItem) {
+                    return oldItem.id == newItem.id;
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull SessionDescription oldItem,
+                                                  @NonNull SessionDescription newItem) {
+                    return oldItem.type == newItem.type
+                            && oldItem.description.equals(newItem.description);
+                }
+            };
+
+
+    private static final ExecutorService sLoader = Executors.newSingleThreadExecutor();
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+
+
+    /**
+     * Creates a new, empty adapter. Call {@link #refresh()} to load the first page.
      *
      * @param context   The app's context
-     * @param sessions    List of tables to display
+     * @param limit     Maximum number of Sessions to show or {@link #NO_LIMIT}
      */
-    public SessionDescriptionAdapter(@NonNull Context context, @NonNull List<SessionDescription> sessions) {
-        mContext = context;
-        mSessionDescriptions = sessions;
+    public SessionDescriptionAdapter(@NonNull Context context, int limit) {
+        mContext = context.getApplicationContext();
+        mLimit = limit;
+        mThumbnails = RouteThumbnailCache.getInstance(context);
+        setHasStableIds(true);
     }
 
 
 
     private final Context mContext;
 
+    private final int mLimit;
+
+    private final RouteThumbnailCache mThumbnails;
+
+    private final AsyncListDiffer<SessionDescription> mDiffer =
+            new AsyncListDiffer<>(this, DIFF_CALLBACK);
+
+
+    // The following fields are only accessed on the main thread
+
+    private int mCount;
+
+    private final SparseArray<List<SessionDescription>> mPages = new SparseArray<>();
+
+    private final SparseBooleanArray mPendingPages = new SparseBooleanArray();
+
+    // ID of the last Session of the previous page by page, used to look up pages by ID
+    private final SparseIntArray mPageBoundaries = new SparseIntArray();
+
+    // Pages requested before the last refresh are discarded
+    private int mGeneration;
+
+
+    private int mFirstVisible;
 
+    private int mLastVisible;
 
-    private final List<SessionDescription> mSessionDescriptions;
+    private long mLastScrollTime;
+
+    // Smoothed scroll velocity in rows per millisecond, positive towards older Sessions
+    private float mVelocity;
+
+
+    // Pages that should be loaded and pages that are kept once loaded
+    private int mFirstPage;
+
+    private int mLastPage;
+
+    private int mFirstRetainedPage;
+
+    private int mLastRetainedPage;
+
+
+    private final RecyclerView.OnScrollListener mScrollListener =
+            new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                    RecyclerView.LayoutManager manager = recyclerView.getLayoutManager();
+                    if (!(manager instanceof LinearLayoutManager)) return;
+
+                    LinearLayoutManager layout = (LinearLayoutManager) manager;
+                    onViewportChanged(layout.findFirstVisibleItemPosition(),
+                            layout.findLastVisibleItemPosition());
+                }
+
+                @Override
+                public void onScrollStateChanged(RecyclerView recyclerView, int state) {
+                    if (state == RecyclerView.SCROLL_STATE_IDLE) {
+                        mVelocity = 0f;
+                        loadAndEvictPages();
+                    }
+                }
+            };
 
 
     /**
-     * This method returns the number of objects the adapter is working with.
-     *
-     * @return  Number of objects
+     * This method reloads the Sessions around the viewport, e.g. after Sessions have been added
+     * or deleted. Call this method on the main thread.
      */
-    @Override
-    public int getCount() {
-        return mSessionDescriptions.size();
+    public void refresh() {
+        mGeneration++;
+        mPendingPages.clear();
+        updatePageRange();
+
+        final int generation = mGeneration;
+        final int firstPage = mFirstPage;
+        final int lastPage = mLastPage;
+        sLoader.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int count;
+                final SparseArray<List<SessionDescription>> pages = new SparseArray<>();
+                try (SessionDatabase database = new SessionDatabase(mContext)) {
+                    count = Math.min(mLimit, database.countSessions());
+                    for (int page = firstPage; page <= lastPage && page * PAGE_SIZE < count;
+                         page++) {
+                        pages.put(page, database.listSessionsAt(page * PAGE_SIZE,
+                                Math.min(PAGE_SIZE, count - page * PAGE_SIZE)));
+                    }
+                }
+
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) return;
+
+                        mCount = count;
+                        mPages.clear();
+                        mPageBoundaries.clear();
+                        mPageBoundaries.put(0, Integer.MAX_VALUE);
+                        for (int i = 0; i < pages.size(); i++) {
+                            putPage(pages.keyAt(i), pages.valueAt(i));
+                        }
+                        publish();
+                        loadAndEvictPages();
+                    }
+                });
+            }
+        });
     }
 
+    private void onViewportChanged(int first, int last) {
+        if (first == RecyclerView.NO_POSITION) return;
 
-    /**
-     * This method returns the corresponding object to a position in the list.
-     *
-     * @param position  Position of the object which should be returned
-     * @return          The corresponding object
-     */
+        long now = SystemClock.uptimeMillis();
+        long elapsed = now - mLastScrollTime;
+        if (elapsed > VELOCITY_TIMEOUT_MS) {
+            mVelocity = 0f;
+        } else if (elapsed > 0) {
+            float sample = (float) (first - mFirstVisible) / elapsed;
+            mVelocity += VELOCITY_SMOOTHING * (sample - mVelocity);
+        }
+        mLastScrollTime = now;
+        mFirstVisible = first;
+        mLastVisible = last;
+
+        loadAndEvictPages();
+    }
+
+    // Extends the viewport by the prefetch distance in scroll direction
+    private void updatePageRange() {
+        int lookahead = Math.min(MAX_PREFETCH,
+                MIN_PREFETCH + Math.round(Math.abs(mVelocity) * PREFETCH_HORIZON_MS));
+        int from = mFirstVisible - (mVelocity < 0 ? lookahead : MIN_PREFETCH);
+        int to = mLastVisible + (mVelocity > 0 ? lookahead : MIN_PREFETCH);
+
+        mFirstPage = Math.max(0, from) / PAGE_SIZE;
+        mLastPage = Math.max(mFirstPage, Math.min(to, mCount - 1) / PAGE_SIZE);
+        mFirstRetainedPage = mFirstPage - RETAINED_PAGES;
+        mLastRetainedPage = mLastPage + RETAINED_PAGES;
+    }
+
+    private void loadAndEvictPages() {
+        if (mCount == 0) return;
+        updatePageRange();
+
+        for (int page = mFirstPage; page <= mLastPage; page++) {
+            loadPage(page);
+        }
+
+        boolean evicted = false;
+        for (int i = mPages.size() - 1; i >= 0; i--) {
+            int page = mPages.keyAt(i);
+            if (page < mFirstRetainedPage || page > mLastRetainedPage) {
+                mPages.removeAt(i);
+                evicted = true;
+            }
+        }
+        if (evicted) publish();
+    }
+
+    private void loadPage(final int page) {
+        if (mPages.get(page) != null || mPendingPages.get(page)) return;
+        mPendingPages.put(page, true);
+
+        final int generation = mGeneration;
+        final int index = mPageBoundaries.indexOfKey(page);
+        final int beforeId = index >= 0 ? mPageBoundaries.valueAt(index) : 0;
+        final int size = Math.min(PAGE_SIZE, mCount - page * PAGE_SIZE);
+        sLoader.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<SessionDescription> sessions;
+                try (SessionDatabase database = new SessionDatabase(mContext)) {
+                    sessions = index >= 0
+                            ? database.listSessions(beforeId, size)
+                            : database.listSessionsAt(page * PAGE_SIZE, size);
+                }
+
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) return;
+
+                        mPendingPages.delete(page);
+                        // The page may have scrolled out of range while it was loading
+                        if (page < mFirstRetainedPage || page > mLastRetainedPage) return;
+
+                        putPage(page, sessions);
+                        publish();
+                    }
+                });
+            }
+        });
+    }
+
+    private void putPage(int page, List<SessionDescription> sessions) {
+        mPages.put(page, sessions);
+        if (!sessions.isEmpty()) {
+            mPageBoundaries.put(page + 1, sessions.get(sessions.size() - 1).id);
+        }
+    }
+
+    // Submits all loaded pages, padded with placeholders, to the differ
+    private void publish() {
+        List<SessionDescription> sessions = new ArrayList<>(mCount);
+        for (int page = 0; page * PAGE_SIZE < mCount; page++) {
+            List<SessionDescription> loaded = mPages.get(page);
+            int size = Math.min(PAGE_SIZE, mCount - page * PAGE_SIZE);
+            for (int i = 0; i < size; i++) {
+                sessions.add(loaded != null && i < loaded.size() ? loaded.get(i) : null);
+            }
+        }
+        mDiffer.submitList(sessions);
+    }
+
+
+    // No Javadoc
     @Override
-    public Object getItem(int position) {
-        return mSessionDescriptions.get(position);
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(mScrollListener);
     }
 
+    // No Javadoc
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(mScrollListener);
+    }
 
-    /**
-     * @deprecated
-     * This method does nothing and should not be used.
-     */
-    @Deprecated
+    // No Javadoc
+    @Override
+    public int getItemCount() {
+        return mDiffer.getCurrentList().size();
+    }
+
+    // No Javadoc
     @Override
     public long getItemId(int position) {
-        return 0;
+        SessionDescription description = mDiffer.getCurrentList().get(position);
+        // Session IDs are positive
+        return description != null ? description.id : -1L - position;
+    }
+
+    // No Javadoc
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new ViewHolder(LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.view_adapter_sessioninfo, parent, false), mThumbnails);
+    }
+
+    // No Javadoc
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        SessionDescription description = mDiffer.getCurrentList().get(position);
+        holder.bind(description);
+
+        // Rows can be bound before any scroll event, e.g. after a jump
+        if (description == null && mCount > 0) {
+            loadPage(position / PAGE_SIZE);
+        }
+    }
+
+    // No Javadoc
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        holder.cancelThumbnail();
     }
 
 
 
     /**
-     * This method generates the actual view for each object.
-     *
-     * @return The actual view
+     * This class holds the Views of a single row.
      */
-    @SuppressLint({"InflateParams", "SetTextI18n", "SimpleDateFormat"})
-    @Override
-    public View getView(final int position, View convertView, ViewGroup parent) {
-
-        View view = convertView;
-        if (view == null)
-        {
-            view = LayoutInflater.from(mContext).inflate(R.layout.view_adapter_sessioninfo, null, false);
-        } else {
-            return view;
-        }
+    public static class ViewHolder extends RecyclerView.ViewHolder {
 
+        private final TextView mTitle;
 
-        SessionDescription description = mSessionDescriptions.get(position);
+        private final TextView mSummary;
 
-        TextView title = view.findViewById(R.id.view_adapter_sessioninfo_title);
-        title.setText(description.description);
+        private final ImageView mRoute;
 
-        TextView summary = view.findViewById(R.id.view_adapter_sessioninfo_summary);
-        summary.setText(description.type.descriptionRes);
+        private final RouteThumbnailCache mThumbnails;
 
-        view.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View view) {
-                Intent intent = new Intent(mContext, DataActivity.class);
-                intent.putExtra(DataActivity.EXTRA_SESSION_ID, mSessionDescriptions.get(position).id);
-                mContext.startActivity(intent);
+        private RouteThumbnailCache.Request mThumbnailRequest;
+
+
+        private ViewHolder(View view, RouteThumbnailCache thumbnails) {
+            super(view);
+            mTitle = view.findViewById(R.id.view_adapter_sessioninfo_title);
+            mSummary = view.findViewById(R.id.view_adapter_sessioninfo_summary);
+            mRoute = view.findViewById(R.id.view_adapter_sessioninfo_route);
+            mThumbnails = thumbnails;
+
+            view.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view) {
+                    // The row may have been removed or be a placeholder
+                    if (getAdapterPosition() == RecyclerView.NO_POSITION || getItemId() < 0) {
+                        return;
+                    }
+
+                    Intent intent = new Intent(view.getContext(), DataActivity.class);
+                    intent.putExtra(DataActivity.EXTRA_SESSION_ID, (int) getItemId());
+                    view.getContext().startActivity(intent);
+                }
+            });
+        }
+
+
+        private void bind(@Nullable SessionDescription description) {
+            cancelThumbnail();
+            if (description == null) {
+                mTitle.setText(null);
+                mSummary.setText(null);
+                mRoute.setImageBitmap(null);
+                return;
             }
-        });
 
+            mTitle.setText(description.description);
+            mSummary.setText(description.type.descriptionRes);
 
-        return view;
+            int width = mRoute.getLayoutParams().width;
+            int height = mRoute.getLayoutParams().height;
+            Bitmap thumbnail = mThumbnails.getCached(description.id, width, height);
+            mRoute.setImageBitmap(thumbnail);
+            if (thumbnail == null) {
+                mThumbnailRequest = mThumbnails.load(description.id, width, height,
+                        new RouteThumbnailCache.Callback() {
+                            @Override
+                            public void onThumbnailLoaded(@Nullable Bitmap thumbnail) {
+                                mThumbnailRequest = null;
+                                mRoute.setImageBitmap(thumbnail);
+                            }
+                        });
+            }
+        }
+
+        private void cancelThumbnail() {
+            if (mThumbnailRequest != null) {
+                mThumbnailRequest.cancel();
+                mThumbnailRequest = null;
+            }
+        }
     }
 }
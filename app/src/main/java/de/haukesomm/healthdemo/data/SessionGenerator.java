@@ -0,0 +1,225 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import java.util.Random;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class generates synthetic but plausible fitness sessions for load testing. Each session
+ * consists of a GPS track following a smooth random walk around Hamburg and a heart rate curve
+ * with warm-up, interval and cool-down phases, sampled in a fixed interval.<br>
+ * The generator is deterministic: the same seed and session index always produce the same session,
+ * independently of any other session. Generated data is passed to a {@link Sink} sample by sample
+ * so even huge sessions never have to be held in memory. This class does not depend on any
+ * Android APIs so it can be used on a desktop JVM as well.
+ * </p>
+ *
+ * @see SessionJsonWriter
+ * @see SessionDatabase#populate(SessionGenerator, int)
+ *
+ * @author Hauke Sommerfeld
+ */
+public class SessionGenerator {
+
+    /**
+     * Receiver of generated session data.
+     */
+    public interface Sink {
+
+        /**
+         * Called once before the measurements of a session are emitted.
+         *
+         * @param type          Alias of the {@link SessionType}
+         * @param description   Session description
+         * @param size          Number of measurements that will follow or -1 if not known in
+         *                      advance
+         */
+        void begin(String type, String description, int size);
+
+        /**
+         * Called for each measurement of the session in chronological order.
+         *
+         * @param timestamp Timestamp in the ISO-8601 date format
+         * @param latitude  Latitude in degrees
+         * @param longitude Longitude in degrees
+         * @param heartrate Heart rate in beats per minute
+         */
+        void measurement(String timestamp, double latitude, double longitude, int heartrate);
+
+        /**
+         * Called once after the last measurement of the session.
+         */
+        void end();
+    }
+
+    private static final String[] TYPES = { "walk", "run", "bicycle" };
+
+    private static final String[] TYPE_NAMES = { "Walk", "Run", "Ride" };
+
+    // Average speed in m/s and average heart rate in bpm for each type
+    private static final double[] TYPE_SPEEDS = { 1.4, 2.9, 6.0 };
+
+    private static final int[] TYPE_HEARTRATES = { 105, 155, 140 };
+
+
+    private static final double CENTER_LATITUDE = 53.5511;
+
+    private static final double CENTER_LONGITUDE = 9.9937;
+
+    private static final double METERS_PER_DEGREE = 111320d;
+
+    // 2018-01-01T00:00:00Z
+    private static final long EPOCH = 1514764800000L;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private final long mSeed;
+
+    private int mMinLength = 100;
+
+    private int mMaxLength = 100;
+
+    private int mIntervalSeconds = 1;
+
+    private double mGlitchRate = 0d;
+
+
+    /**
+     * Creates a new SessionGenerator which generates sessions of 100 measurements each by default.
+     *
+     * @param seed  Seed used to derive all random values
+     */
+    public SessionGenerator(long seed) {
+        mSeed = seed;
+    }
+
+
+    /**
+     * Sets the range of session lengths. The length of each session is chosen uniformly.
+     *
+     * @param min   Minimum number of measurements per session
+     * @param max   Maximum number of measurements per session
+     */
+    public void setLength(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Invalid session length range: " + min + " - " + max);
+        }
+        mMinLength = min;
+        mMaxLength = max;
+    }
+
+    /**
+     * Sets the time between two consecutive measurements. The default is one second.
+     *
+     * @param seconds   Sampling interval in seconds
+     */
+    public void setInterval(int seconds) {
+        if (seconds < 1) {
+            throw new IllegalArgumentException("Invalid sampling interval: " + seconds);
+        }
+        mIntervalSeconds = seconds;
+    }
+
+    /**
+     * Sets the probability of a measurement containing a sensor glitch, which is either a lost GPS
+     * fix (reported at 0/0) or an implausible heart rate spike. The default is zero.
+     *
+     * @param rate  Probability between 0 and 1
+     */
+    public void setGlitchRate(double rate) {
+        if (rate < 0d || rate > 1d) {
+            throw new IllegalArgumentException("Invalid glitch rate: " + rate);
+        }
+        mGlitchRate = rate;
+    }
+
+
+    /**
+     * Generates the session with the specified index and emits it to the given {@link Sink}.
+     *
+     * @param index Index of the session, used together with the seed to derive its data
+     * @param sink  Receiver of the generated data
+     */
+    public void generate(int index, Sink sink) {
+        Random random = new Random(mSeed * 0x9E3779B97F4A7C15L + index);
+
+        int type = random.nextInt(TYPES.length);
+        int size = mMinLength + random.nextInt(mMaxLength - mMinLength + 1);
+
+        int hour = 6 + random.nextInt(16);
+        long start = EPOCH + random.nextInt(730) * MILLIS_PER_DAY
+                + (hour * 60 + random.nextInt(60)) * 60 * 1000L;
+        // Roughly CET/CEST
+        int month = (int) ((start - EPOCH) / MILLIS_PER_DAY % 365 / 30.5);
+        int offset = month >= 3 && month <= 9 ? 120 : 60;
+
+        sink.begin(TYPES[type], describe(hour, TYPE_NAMES[type]), size);
+
+        double latitude = CENTER_LATITUDE + (random.nextDouble() - 0.5) * 0.1;
+        double longitude = CENTER_LONGITUDE + (random.nextDouble() - 0.5) * 0.1;
+        double heading = random.nextDouble() * 2 * Math.PI;
+        double speed = TYPE_SPEEDS[type] * (0.85 + random.nextDouble() * 0.3);
+
+        double resting = 60 + random.nextInt(15);
+        double target = TYPE_HEARTRATES[type] + random.nextGaussian() * 8;
+        double intervalPeriod = 120 + random.nextInt(480);
+        double heartrate = resting;
+        double noise = 0d;
+
+        for (int i = 0; i < size; i++) {
+            // Smooth random walk with persistent heading
+            heading += random.nextGaussian() * 0.08;
+            double distance = speed * mIntervalSeconds * (1 + random.nextGaussian() * 0.1);
+            latitude += distance * Math.cos(heading) / METERS_PER_DEGREE;
+            longitude += distance * Math.sin(heading)
+                    / (METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude)));
+
+            // Warm-up, intervals and cool-down with autocorrelated noise
+            double progress = (double) i / size;
+            double goal = progress > 0.95
+                    ? resting + (target - resting) * 0.6
+                    : target + 8 * Math.sin(2 * Math.PI * i * mIntervalSeconds / intervalPeriod);
+            heartrate += (goal - heartrate) * Math.min(1d, 0.02 * mIntervalSeconds);
+            noise = noise * 0.9 + random.nextGaussian() * 1.5;
+            int bpm = (int) Math.round(Math.max(40, Math.min(210, heartrate + noise)));
+
+            double reportedLatitude = latitude + random.nextGaussian() * 3 / METERS_PER_DEGREE;
+            double reportedLongitude = longitude + random.nextGaussian() * 3 / METERS_PER_DEGREE;
+            if (mGlitchRate > 0d && random.nextDouble() < mGlitchRate) {
+                if (random.nextBoolean()) {
+                    reportedLatitude = 0d;
+                    reportedLongitude = 0d;
+                } else {
+                    bpm = random.nextBoolean() ? 30 + random.nextInt(10) : 220 + random.nextInt(30);
+                }
+            }
+
+            sink.measurement(Timestamps.format(start + i * mIntervalSeconds * 1000L, offset),
+                    reportedLatitude, reportedLongitude, bpm);
+        }
+
+        sink.end();
+    }
+
+
+    private static String describe(int hour, String type) {
+        if (hour < 12) {
+            return "Morning " + type;
+        } else if (hour < 17) {
+            return "Afternoon " + type;
+        } else {
+            return "Evening " + type;
+        }
+    }
+}
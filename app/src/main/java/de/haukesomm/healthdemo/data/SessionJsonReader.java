@@ -0,0 +1,115 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import android.util.JsonReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class reads a single session from a JSON document using the schema of the mockup session
+ * assets and passes it on to a {@link SessionGenerator.Sink}, the counterpart of the
+ * {@link SessionJsonWriter}.<br>
+ * Measurements are passed on as they are parsed, so the size of a session is not limited by the
+ * available memory. Unknown fields of a measurement are skipped.<br>
+ * It uses the {@link JsonReader} class provided by the Android SDK, which has a drop-in
+ * counterpart on desktop JVMs, and does not depend on any other Android APIs.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class SessionJsonReader implements Closeable {
+
+    private final JsonReader mReader;
+
+
+    /**
+     * Creates a new SessionJsonReader.
+     *
+     * @param reader    Reader to read the JSON document from. Closed by {@link #close()}.
+     */
+    public SessionJsonReader(Reader reader) {
+        mReader = new JsonReader(reader);
+    }
+
+
+    /**
+     * Reads the session and passes it on to a Sink. The number of measurements is not known in
+     * advance, so the Sink's {@link SessionGenerator.Sink#begin(String, String, int) begin()}
+     * call receives -1 as size. {@link SessionGenerator.Sink#end()} is only called if the whole
+     * document could be read.
+     *
+     * @param sink          Sink receiving the session
+     * @throws IOException  If the document could not be read or is malformed
+     */
+    public void read(SessionGenerator.Sink sink) throws IOException {
+        mReader.beginObject();
+        mReader.nextName();
+        String type = mReader.nextString();
+        mReader.nextName();
+        String description = mReader.nextString();
+        sink.begin(type, description, -1);
+
+        mReader.nextName();
+        mReader.beginArray();
+        while (mReader.hasNext()) {
+            readMeasurement(sink);
+        }
+        mReader.endArray();
+
+        mReader.endObject();
+        sink.end();
+    }
+
+    private void readMeasurement(SessionGenerator.Sink sink) throws IOException {
+        String timestamp = null;
+        double latitide = 0d;
+        double longitude = 0d;
+        int heartrate = 0;
+
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            String name = mReader.nextName();
+            switch (name) {
+                case "timestamp":
+                    timestamp = mReader.nextString();
+                    break;
+                case "latitude":
+                    latitide = mReader.nextDouble();
+                    break;
+                case "longitude":
+                    longitude = mReader.nextDouble();
+                    break;
+                case "heartrate":
+                    heartrate = mReader.nextInt();
+                    break;
+                default:
+                    mReader.skipValue();
+                    break;
+            }
+        }
+        mReader.endObject();
+
+        sink.measurement(timestamp, latitide, longitude, heartrate);
+    }
+
+
+    // No Javadoc
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This {@link SessionGenerator.Sink} writes a single session as a JSON document using the same
+ * schema as the mockup session assets read by {@link SessionAssetReader}.<br>
+ * Measurements are written as they are generated, so the size of a session is not limited by the
+ * available memory. I/O errors are rethrown as {@link IllegalStateException}s since the
+ * {@link SessionGenerator.Sink} interface does not declare any checked exceptions.<br>
+ * The Writer is not closed by this class.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class SessionJsonWriter implements SessionGenerator.Sink {
+
+    private final Writer mWriter;
+
+    private boolean mFirst;
+
+
+    /**
+     * Creates a new SessionJsonWriter.
+     *
+     * @param writer    Writer to write the JSON document to. Should be buffered.
+     */
+    public SessionJsonWriter(Writer writer) {
+        mWriter = writer;
+    }
+
+
+    // No Javadoc
+    @Override
+    public void begin(String type, String description, int size) {
+        mFirst = true;
+        write("{\n\t\"type\": \"" + escape(type) + "\",\n\t\"description\": \""
+                + escape(description) + "\",\n\t\"measurements\": [");
+    }
+
+    // No Javadoc
+    @Override
+    public void measurement(String timestamp, double latitude, double longitude, int heartrate) {
+        write((mFirst ? "\n" : ",\n")
+                + "\t\t{\n\t\t\t\"timestamp\": \"" + timestamp
+                + "\",\n\t\t\t\"latitude\": \"" + latitude
+                + "\",\n\t\t\t\"longitude\": \"" + longitude
+                + "\",\n\t\t\t\"heartrate\": " + heartrate + "\n\t\t}");
+        mFirst = false;
+    }
+
+    // No Javadoc
+    @Override
+    public void end() {
+        write("\n\t]\n}\n");
+        try {
+            mWriter.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write session: " + e.getMessage(), e);
+        }
+    }
+
+
+    private void write(String json) {
+        try {
+            mWriter.write(json);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write session: " + e.getMessage(), e);
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class protects the keys of the {@link ChunkCipher}s used to encrypt Sessions at rest.<br>
+ * Every Session has a key of its own which is stored in the database, wrapped by a master key
+ * held in the Android Keystore. The master key never leaves the Keystore, so the database on its
+ * own is useless. Wrapping happens once per Session, the Measurements themselves are encrypted in
+ * process.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+final class SessionKeys {
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+
+    private static final String MASTER_KEY_ALIAS = "session_master_key";
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final int IV_SIZE = 12;
+
+    private static final int TAG_SIZE = 128;
+
+
+    private static SecretKey sMasterKey;
+
+
+    private SessionKeys() {
+        // Utility class
+    }
+
+
+    /**
+     * Encrypts the key of a Session with the master key.
+     *
+     * @param key                       Key of the Session
+     * @return                          IV followed by the wrapped key
+     * @throws IllegalStateException    If the Keystore is not available
+     */
+    static byte[] wrap(SecretKey key) throws IllegalStateException {
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            // The Keystore chooses the IV
+            cipher.init(Cipher.ENCRYPT_MODE, getMasterKey());
+            byte[] iv = cipher.getIV();
+            byte[] encrypted = cipher.doFinal(key.getEncoded());
+
+            byte[] wrapped = Arrays.copyOf(iv, IV_SIZE + encrypted.length);
+            System.arraycopy(encrypted, 0, wrapped, IV_SIZE, encrypted.length);
+            return wrapped;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to wrap session key: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decrypts the key of a Session wrapped by {@link #wrap(SecretKey)}.
+     *
+     * @param wrapped                   IV followed by the wrapped key
+     * @return                          Key of the Session
+     * @throws IllegalStateException    If the Keystore is not available or the key has been
+     *                                  tampered with
+     */
+    static SecretKey unwrap(byte[] wrapped) throws IllegalStateException {
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, getMasterKey(),
+                    new GCMParameterSpec(TAG_SIZE, wrapped, 0, IV_SIZE));
+            byte[] key = cipher.doFinal(wrapped, IV_SIZE, wrapped.length - IV_SIZE);
+            return new SecretKeySpec(key, KeyProperties.KEY_ALGORITHM_AES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to unwrap session key: " + e.getMessage(), e);
+        }
+    }
+
+
+    private static synchronized SecretKey getMasterKey()
+            throws GeneralSecurityException, IllegalStateException {
+        if (sMasterKey != null) return sMasterKey;
+
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        try {
+            keyStore.load(null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load keystore: " + e.getMessage(), e);
+        }
+
+        if (keyStore.containsAlias(MASTER_KEY_ALIAS)) {
+            sMasterKey = (SecretKey) keyStore.getKey(MASTER_KEY_ALIAS, null);
+        } else {
+            KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES,
+                    KEYSTORE);
+            generator.init(new KeyGenParameterSpec.Builder(MASTER_KEY_ALIAS,
+                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                    .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                    .setKeySize(256)
+                    .build());
+            sMasterKey = generator.generateKey();
+        }
+        return sMasterKey;
+    }
+}
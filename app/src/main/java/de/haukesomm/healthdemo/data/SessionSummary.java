@@ -0,0 +1,113 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import java.util.TimeZone;
+
+import de.haukesomm.healthdemo.analytics.HeartRateZones;
+import de.haukesomm.healthdemo.analytics.Kinematics;
+import de.haukesomm.healthdemo.analytics.RollupPeriod;
+import de.haukesomm.healthdemo.analytics.TimeInZones;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This is a data class representing the summary the {@link SessionDatabase} stores for each
+ * Session and builds its {@link Rollup}s from.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+final class SessionSummary {
+
+    /**
+     * Summarizes a sorted Session.
+     *
+     * @param session       Sorted Session
+     * @param kinematics    Kinematics of the Session
+     * @param timeInZones   Time the Session spent in the default heart rate zones
+     * @return              Summary of the Session
+     */
+    static SessionSummary of(Session session, Kinematics kinematics, TimeInZones timeInZones) {
+        long[] times = session.getTimes();
+        int[] heartrates = session.getHeartrates();
+
+        // Sessions are sorted with malformed timestamps first
+        long start = Timestamps.INVALID;
+        for (int i = 0; i < session.size() && start == Timestamps.INVALID; i++) {
+            start = times[i];
+        }
+
+        long heartrateSum = 0;
+        int heartrateMax = 0;
+        for (int i = 0; i < session.size(); i++) {
+            heartrateSum += heartrates[i];
+            heartrateMax = Math.max(heartrateMax, heartrates[i]);
+        }
+
+        return new SessionSummary(session.id, start, session.getDuration(),
+                kinematics.getTotalDistance(), heartrateSum, session.size(), heartrateMax,
+                timeInZones);
+    }
+
+
+
+    final int id;
+
+    /**
+     * Time of the first Measurement with a valid timestamp or {@link Timestamps#INVALID}
+     */
+    final long start;
+
+    final long duration;
+
+    final double distance;
+
+    final long heartrateSum;
+
+    final long heartrateCount;
+
+    final int maxHeartrate;
+
+    /**
+     * Time spent in the {@link HeartRateZones#DEFAULT default heart rate zones}
+     */
+    final TimeInZones timeInZones;
+
+
+    SessionSummary(int id, long start, long duration, double distance, long heartrateSum,
+                   long heartrateCount, int maxHeartrate, TimeInZones timeInZones) {
+        this.id = id;
+        this.start = start;
+        this.duration = duration;
+        this.distance = distance;
+        this.heartrateSum = heartrateSum;
+        this.heartrateCount = heartrateCount;
+        this.maxHeartrate = maxHeartrate;
+        this.timeInZones = timeInZones;
+    }
+
+
+    /**
+     * Creates a Rollup of the period the Session was started in which only contains this Session.
+     *
+     * @param period    Period of the Rollup
+     * @param zone      Time zone periods are aligned to
+     * @return          Rollup or null if the Session has no valid start
+     */
+    Rollup toRollup(RollupPeriod period, TimeZone zone) {
+        if (start == Timestamps.INVALID) return null;
+        long periodStart = period.getStart(start, zone);
+        return new Rollup(period, periodStart, period.getNext(periodStart, zone), 1, duration,
+                distance, heartrateSum, heartrateCount, maxHeartrate, timeInZones);
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This {@link SessionGenerator.Sink} passes measurements on to another Sink in chronological
+ * order, regardless of the order they arrive in.<br>
+ * Measurements are buffered in memory and ordered using {@link TimeOrder}, which is almost free for
+ * data arriving in order or with few late samples. Sessions exceeding the buffer are sorted
+ * externally: each full buffer is sorted and written to a temporary file as a sorted run, and all
+ * runs are merged once the session ends. Measurements with malformed timestamps are ordered
+ * first. Runs are encrypted with a key which only lives in memory for the duration of the session,
+ * so Measurements never touch the disk in plaintext and leftover runs are unreadable.<br>
+ * The downstream Sink receives its {@link SessionGenerator.Sink#begin(String, String, int)} call
+ * once the session has ended since the order of the measurements is not known before. I/O errors
+ * are rethrown as {@link IllegalStateException}s.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class SortingSink implements SessionGenerator.Sink {
+
+    // Runs are read back sequentially, so a stream cipher without padding fits
+    private static final String TRANSFORMATION = "AES/CTR/NoPadding";
+
+    private static final int IV_SIZE = 16;
+
+
+    private static final SecureRandom sRandom = new SecureRandom();
+
+
+    private final SessionGenerator.Sink mDownstream;
+
+    private final int mBufferSize;
+
+    private final File mDirectory;
+
+
+    private String mType;
+
+    private String mDescription;
+
+    private int mSize;
+
+
+    private long[] mTimes;
+
+    private String[] mTimestamps;
+
+    private double[] mLatitudes;
+
+    private double[] mLongitudes;
+
+    private int[] mHeartrates;
+
+    private int mBuffered;
+
+    private final List<File> mRuns = new ArrayList<>();
+
+    private final List<byte[]> mIvs = new ArrayList<>();
+
+    private SecretKey mKey;
+
+
+    /**
+     * Creates a new SortingSink.
+     *
+     * @param downstream    Sink receiving the ordered measurements
+     * @param bufferSize    Maximum number of measurements held in memory
+     * @param directory     Directory for temporary files, e.g. the app's cache directory
+     */
+    public SortingSink(SessionGenerator.Sink downstream, int bufferSize, File directory) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        mDownstream = downstream;
+        mBufferSize = bufferSize;
+        mDirectory = directory;
+    }
+
+
+    // No Javadoc
+    @Override
+    public void begin(String type, String description, int size) {
+        mType = type;
+        mDescription = description;
+        mSize = 0;
+        mBuffered = 0;
+        mRuns.clear();
+        mIvs.clear();
+        mKey = null;
+
+        int capacity = Math.max(1, Math.min(size, mBufferSize));
+        mTimes = new long[capacity];
+        mTimestamps = new String[capacity];
+        mLatitudes = new double[capacity];
+        mLongitudes = new double[capacity];
+        mHeartrates = new int[capacity];
+    }
+
+    // No Javadoc
+    @Override
+    public void measurement(String timestamp, double latitude, double longitude, int heartrate) {
+        if (mBuffered == mBufferSize) {
+            spill();
+        }
+        if (mBuffered == mTimes.length) {
+            int capacity = Math.min(mBufferSize, mBuffered + (mBuffered >> 1) + 1);
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mTimestamps = Arrays.copyOf(mTimestamps, capacity);
+            mLatitudes = Arrays.copyOf(mLatitudes, capacity);
+            mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+            mHeartrates = Arrays.copyOf(mHeartrates, capacity);
+        }
+
+        mTimes[mBuffered] = Timestamps.parse(timestamp);
+        mTimestamps[mBuffered] = timestamp;
+        mLatitudes[mBuffered] = latitude;
+        mLongitudes[mBuffered] = longitude;
+        mHeartrates[mBuffered] = heartrate;
+        mBuffered++;
+        mSize++;
+    }
+
+    // No Javadoc
+    @Override
+    public void end() {
+        mDownstream.begin(mType, mDescription, mSize);
+
+        if (mRuns.isEmpty()) {
+            int[] order = TimeOrder.sort(mTimes, mBuffered);
+            for (int i = 0; i < mBuffered; i++) {
+                int j = order == null ? i : order[i];
+                mDownstream.measurement(mTimestamps[j], mLatitudes[j], mLongitudes[j],
+                        mHeartrates[j]);
+            }
+        } else {
+            if (mBuffered > 0) spill();
+            merge();
+        }
+
+        mTimes = null;
+        mTimestamps = null;
+        mLatitudes = null;
+        mLongitudes = null;
+        mHeartrates = null;
+        mKey = null;
+
+        mDownstream.end();
+    }
+
+
+    // Writes the buffer to a temporary file as a sorted run
+    private void spill() {
+        int[] order = TimeOrder.sort(mTimes, mBuffered);
+        if (mKey == null) {
+            mKey = ChunkCipher.generateKey();
+        }
+        byte[] iv = new byte[IV_SIZE];
+        sRandom.nextBytes(iv);
+        Cipher cipher = createCipher(Cipher.ENCRYPT_MODE, mKey, iv);
+        try {
+            File file = File.createTempFile("run", ".tmp", mDirectory);
+            mRuns.add(file);
+            mIvs.add(iv);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CipherOutputStream(new FileOutputStream(file), cipher)))) {
+                for (int i = 0; i < mBuffered; i++) {
+                    int j = order == null ? i : order[i];
+                    out.writeLong(mTimes[j]);
+                    out.writeUTF(mTimestamps[j]);
+                    out.writeDouble(mLatitudes[j]);
+                    out.writeDouble(mLongitudes[j]);
+                    out.writeInt(mHeartrates[j]);
+                }
+            }
+        } catch (IOException e) {
+            deleteRuns();
+            throw new IllegalStateException("Unable to write sorted run: " + e.getMessage(), e);
+        }
+        mBuffered = 0;
+    }
+
+    // Merges all sorted runs, preferring earlier runs on equal times to keep the order stable
+    private void merge() {
+        PriorityQueue<Run> queue = new PriorityQueue<>(mRuns.size(), new Comparator<Run>() {
+            @Override
+            public int compare(Run a, Run b) {
+                if (a.time != b.time) return a.time < b.time ? -1 : 1;
+                return a.index - b.index;
+            }
+        });
+
+        // Runs leave the queue while being read, so all opened ones are tracked for closing
+        List<Run> opened = new ArrayList<>(mRuns.size());
+        try {
+            for (int i = 0; i < mRuns.size(); i++) {
+                Run run = new Run(mRuns.get(i), createCipher(Cipher.DECRYPT_MODE, mKey,
+                        mIvs.get(i)), i);
+                opened.add(run);
+                if (run.next()) {
+                    queue.add(run);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                mDownstream.measurement(run.timestamp, run.latitude, run.longitude,
+                        run.heartrate);
+                if (run.next()) {
+                    queue.add(run);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read sorted run: " + e.getMessage(), e);
+        } finally {
+            for (Run run : opened) {
+                run.close();
+            }
+            deleteRuns();
+        }
+    }
+
+    private void deleteRuns() {
+        for (File file : mRuns) {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+        mRuns.clear();
+        mIvs.clear();
+    }
+
+    private static Cipher createCipher(int mode, SecretKey key, byte[] iv) {
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(mode, key, new IvParameterSpec(iv));
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to encrypt sorted run: " + e.getMessage(), e);
+        }
+    }
+
+
+    private static class Run {
+
+        private final DataInputStream in;
+
+        private final int index;
+
+        private long time;
+
+        private String timestamp;
+
+        private double latitude;
+
+        private double longitude;
+
+        private int heartrate;
+
+
+        private Run(File file, Cipher cipher, int index) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(
+                    new CipherInputStream(new FileInputStream(file), cipher)));
+            this.index = index;
+        }
+
+
+        private boolean next() throws IOException {
+            try {
+                time = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            timestamp = in.readUTF();
+            latitude = in.readDouble();
+            longitude = in.readDouble();
+            heartrate = in.readInt();
+            return true;
+        }
+
+        private void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Nothing left to read
+            }
+        }
+    }
+}
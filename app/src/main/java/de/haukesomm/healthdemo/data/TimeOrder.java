@@ -0,0 +1,110 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class computes the chronological order of samples arriving mostly, but not necessarily, in
+ * chronological order.<br>
+ * Samples are split into the run of samples in order and a buffer of late samples arriving after a
+ * newer one. Only the late samples are sorted, and then merged with the in-order run. In-order
+ * input is therefore detected in a single pass, and data with few late samples is ordered in
+ * almost linear time. The order is stable, i.e. samples with equal times keep their arrival
+ * order.
+ * </p>
+ *
+ * @see SortingSink
+ *
+ * @author Hauke Sommerfeld
+ */
+final class TimeOrder {
+
+    private TimeOrder() {
+        // Utility class
+    }
+
+
+    /**
+     * Computes the chronological order of the specified times.
+     *
+     * @param times Times, e.g. in milliseconds since the epoch
+     * @param size  Number of times
+     * @return      Permutation of indices listing the times in ascending order or null if the
+     *              times already are in ascending order
+     */
+    static int[] sort(long[] times, int size) {
+        int[] inOrder = new int[size];
+        int inOrderSize = 0;
+        int[] late = null;
+        int lateSize = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (inOrderSize == 0 || times[i] >= times[inOrder[inOrderSize - 1]]) {
+                inOrder[inOrderSize++] = i;
+            } else {
+                if (late == null) late = new int[size - i];
+                late[lateSize++] = i;
+            }
+        }
+
+        if (lateSize == 0) {
+            return null;
+        }
+
+        sortIndices(times, late, lateSize);
+
+        // Merge both sorted sequences, preferring the earlier arrival on equal times
+        int[] order = new int[size];
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < size; i++) {
+            if (b == lateSize || (a < inOrderSize && (times[inOrder[a]] < times[late[b]]
+                    || (times[inOrder[a]] == times[late[b]] && inOrder[a] < late[b])))) {
+                order[i] = inOrder[a++];
+            } else {
+                order[i] = late[b++];
+            }
+        }
+        return order;
+    }
+
+
+    // Stable bottom-up merge sort of indices by their times
+    private static void sortIndices(long[] times, int[] indices, int size) {
+        int[] source = indices;
+        int[] target = new int[size];
+
+        for (int width = 1; width < size; width *= 2) {
+            for (int from = 0; from < size; from += 2 * width) {
+                int middle = Math.min(from + width, size);
+                int to = Math.min(from + 2 * width, size);
+                int a = from;
+                int b = middle;
+                for (int i = from; i < to; i++) {
+                    if (b == to || (a < middle && times[source[a]] <= times[source[b]])) {
+                        target[i] = source[a++];
+                    } else {
+                        target[i] = source[b++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+
+        if (source != indices) {
+            System.arraycopy(source, 0, indices, 0, size);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This BroadcastReceiver rebuilds the {@link Rollup}s once the device's time zone changed, since
+ * their periods are aligned to the local calendar, see {@link SessionDatabase#rebuildRollups()}.
+ * <br>
+ * Rebuilding only reads the stored Session summaries and runs in the background while the
+ * broadcast is kept pending.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class TimeZoneReceiver extends BroadcastReceiver {
+
+    // Rebuilds one at a time if the time zone changes repeatedly
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+
+    // No Javadoc
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction())) return;
+
+        final Context appContext = context.getApplicationContext();
+        final PendingResult result = goAsync();
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try (SessionDatabase database = new SessionDatabase(appContext)) {
+                    database.rebuildRollups();
+                } catch (IllegalStateException e) {
+                    Log.w("TimeZoneReceiver", "Unable to rebuild rollups: " + e.getMessage());
+                } finally {
+                    result.finish();
+                }
+            }
+        });
+    }
+}
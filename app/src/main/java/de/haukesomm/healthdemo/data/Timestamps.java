@@ -0,0 +1,196 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class converts between epoch milliseconds and the ISO-8601 timestamps used by
+ * {@link Measurement}s (e.g. <code>2018-12-07T06:12:32-08:00</code>).<br>
+ * It does not depend on any Android APIs and avoids {@link java.text.SimpleDateFormat} since the
+ * 'XXX' zone pattern is not available on all supported API levels.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public final class Timestamps {
+
+    /**
+     * Value returned by {@link #parse(String)} for missing or malformed timestamps
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+
+    private Timestamps() {
+        // Utility class
+    }
+
+
+    /**
+     * Formats epoch milliseconds as an ISO-8601 timestamp with second precision.
+     *
+     * @param epochMillis   Milliseconds since 1970-01-01T00:00:00Z
+     * @param offsetMinutes Offset of the local time zone from UTC in minutes
+     * @return              ISO-8601 timestamp
+     */
+    public static String format(long epochMillis, int offsetMinutes) {
+        long local = epochMillis + offsetMinutes * MILLIS_PER_MINUTE;
+        long days = floorDiv(local, MILLIS_PER_DAY);
+        int secondOfDay = (int) ((local - days * MILLIS_PER_DAY) / 1000L);
+
+        // Civil date from days since epoch (H. Hinnant, "chrono-Compatible Low-Level Date Algorithms")
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        StringBuilder builder = new StringBuilder(25);
+        builder.append(year).append('-');
+        appendTwoDigits(builder, month).append('-');
+        appendTwoDigits(builder, day).append('T');
+        appendTwoDigits(builder, secondOfDay / 3600).append(':');
+        appendTwoDigits(builder, secondOfDay / 60 % 60).append(':');
+        appendTwoDigits(builder, secondOfDay % 60);
+        builder.append(offsetMinutes < 0 ? '-' : '+');
+        appendTwoDigits(builder, Math.abs(offsetMinutes) / 60).append(':');
+        appendTwoDigits(builder, Math.abs(offsetMinutes) % 60);
+        return builder.toString();
+    }
+
+    /**
+     * Parses an ISO-8601 timestamp of the form <code>yyyy-MM-ddTHH:mm:ss[.SSS](Z|+HH:mm)</code>.
+     *
+     * @param timestamp ISO-8601 timestamp
+     * @return          Milliseconds since 1970-01-01T00:00:00Z or {@link #INVALID}
+     */
+    public static long parse(String timestamp) {
+        if (timestamp == null || timestamp.length() < 20
+                || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-'
+                || timestamp.charAt(10) != 'T' || timestamp.charAt(13) != ':'
+                || timestamp.charAt(16) != ':') {
+            return INVALID;
+        }
+
+        int year = digits(timestamp, 0, 4);
+        int month = digits(timestamp, 5, 2);
+        int day = digits(timestamp, 8, 2);
+        int hour = digits(timestamp, 11, 2);
+        int minute = digits(timestamp, 14, 2);
+        int second = digits(timestamp, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return INVALID;
+        }
+
+        int position = 19;
+        int millis = 0;
+        if (timestamp.charAt(position) == '.') {
+            int scale = 100;
+            position++;
+            while (position < timestamp.length() && Character.isDigit(timestamp.charAt(position))) {
+                millis += (timestamp.charAt(position++) - '0') * scale;
+                scale /= 10;
+            }
+        }
+
+        int offsetMinutes;
+        if (position == timestamp.length() - 1 && timestamp.charAt(position) == 'Z') {
+            offsetMinutes = 0;
+        } else if (position == timestamp.length() - 6 && timestamp.charAt(position + 3) == ':') {
+            int sign = timestamp.charAt(position) == '-' ? -1 : 1;
+            int offsetHours = digits(timestamp, position + 1, 2);
+            int offsetMinute = digits(timestamp, position + 4, 2);
+            if (offsetHours < 0 || offsetMinute < 0
+                    || (timestamp.charAt(position) != '+' && sign > 0)) {
+                return INVALID;
+            }
+            offsetMinutes = sign * (offsetHours * 60 + offsetMinute);
+        } else {
+            return INVALID;
+        }
+
+        // Days since epoch from civil date (H. Hinnant)
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * 146097 + dayOfEra - 719468;
+
+        return days * MILLIS_PER_DAY + ((hour * 60L + minute) * 60L + second) * 1000L + millis
+                - offsetMinutes * MILLIS_PER_MINUTE;
+    }
+
+    /**
+     * Returns the offset from UTC of an ISO-8601 timestamp.
+     *
+     * @param timestamp ISO-8601 timestamp
+     * @return          Offset in minutes or 0 if the timestamp has no valid offset
+     */
+    public static int offsetMinutes(String timestamp) {
+        if (timestamp == null || timestamp.length() < 20) return 0;
+
+        int length = timestamp.length();
+        char sign = timestamp.charAt(length - 6);
+        if (timestamp.charAt(length - 3) != ':' || (sign != '+' && sign != '-')) return 0;
+
+        int hours = digits(timestamp, length - 5, 2);
+        int minutes = digits(timestamp, length - 2, 2);
+        if (hours < 0 || minutes < 0) return 0;
+        return (sign == '-' ? -1 : 1) * (hours * 60 + minutes);
+    }
+
+    /**
+     * Truncates epoch milliseconds to a precision in local time, e.g. to the full hour.
+     *
+     * @param epochMillis   Milliseconds since 1970-01-01T00:00:00Z or {@link #INVALID}
+     * @param offsetMinutes Offset of the local time zone from UTC in minutes
+     * @param precision     Precision in milliseconds, 0 or less to keep the exact time
+     * @return              Truncated milliseconds since the epoch or {@link #INVALID}
+     */
+    public static long truncate(long epochMillis, int offsetMinutes, long precision) {
+        if (epochMillis == INVALID || precision <= 0) return epochMillis;
+        long offset = offsetMinutes * MILLIS_PER_MINUTE;
+        return floorDiv(epochMillis + offset, precision) * precision - offset;
+    }
+
+    // Returns -1 if the range contains anything but digits
+    private static int digits(String string, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Math.floorDiv() requires API level 24
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder builder, int value) {
+        return builder.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
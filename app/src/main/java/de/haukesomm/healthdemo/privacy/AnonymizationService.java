@@ -0,0 +1,298 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.privacy;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.haukesomm.healthdemo.data.ProjectionCache;
+import de.haukesomm.healthdemo.data.RouteCache;
+import de.haukesomm.healthdemo.data.RouteThumbnailCache;
+import de.haukesomm.healthdemo.data.SessionDatabase;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This JobService compacts all stored measurements after the user has switched to a PrivacyMode
+ * with a more restrictive {@link StorageTier}, so the history matches the new mode.<br>
+ * Measurements are compacted in batches by {@link SessionDatabase#anonymize(PrivacySettings, int)},
+ * each committed together with a checkpoint. The job is throttled to a fixed number of
+ * measurements per second and continues from the last checkpoint after it has been stopped or the
+ * process has died. Progress is published to {@link ProgressListener}s on the main thread.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class AnonymizationService extends JobService {
+
+    /**
+     * Listener for the progress of the anonymization. Listeners are invoked on the main thread.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called when the anonymization has made progress.
+         *
+         * @param progress  Progress between 0 and 1
+         */
+        void onAnonymizationProgress(float progress);
+
+        /**
+         * Called when the anonymization has finished or has been cancelled.
+         */
+        void onAnonymizationFinished();
+    }
+
+
+
+    private static final int JOB_ID = 1;
+
+    // One chunk of Measurements, see SessionDatabase#anonymize()
+    private static final int BATCH_SIZE = 4096;
+
+    // I/O budget, keeps the app responsive while the job is running
+    private static final int MAX_MEASUREMENTS_PER_SECOND = 16384;
+
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    // Accesses the database on behalf of callers on the main thread, in order of their calls
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private static final List<ProgressListener> sListeners = new ArrayList<>();
+
+    // Progress of the running job or NaN, only accessed on the main thread
+    private static float sProgress = Float.NaN;
+
+
+    /**
+     * Starts the anonymization in the background if the specified mode requires one. A running
+     * anonymization starts over, e.g. with stricter rules.
+     *
+     * @param context   The app's context
+     * @param mode      New PrivacyMode
+     */
+    public static void start(Context context, PrivacyMode mode) {
+        if (!requiresAnonymization(mode)) return;
+
+        final Context appContext = context.getApplicationContext();
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try (SessionDatabase database = new SessionDatabase(appContext)) {
+                    database.startAnonymization();
+                }
+                schedule(appContext);
+            }
+        });
+    }
+
+    /**
+     * Schedules the job again in the background if an anonymization is pending but the job is
+     * not, e.g. after the app has been updated. Call this method on app start.
+     *
+     * @param context   The app's context
+     */
+    public static void resume(Context context) {
+        final Context appContext = context.getApplicationContext();
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                JobScheduler scheduler = (JobScheduler)
+                        appContext.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+                for (JobInfo job : scheduler.getAllPendingJobs()) {
+                    if (job.getId() == JOB_ID) return;
+                }
+
+                boolean pending;
+                try (SessionDatabase database = new SessionDatabase(appContext)) {
+                    pending = database.isAnonymizationPending();
+                }
+                if (pending) {
+                    schedule(appContext);
+                }
+            }
+        });
+    }
+
+    private static void schedule(Context context) {
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        scheduler.schedule(new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, AnonymizationService.class))
+                .setOverrideDeadline(0)
+                .setPersisted(true)
+                .build());
+    }
+
+    private static boolean requiresAnonymization(PrivacyMode mode) {
+        return StorageTier.of(mode) != StorageTier.RAW;
+    }
+
+
+    /**
+     * Registers a ProgressListener. If the job is running, the listener is notified about the
+     * current progress right away.
+     *
+     * @param listener  Listener to add
+     */
+    public static void addProgressListener(ProgressListener listener) {
+        sListeners.add(listener);
+        if (!Float.isNaN(sProgress)) {
+            listener.onAnonymizationProgress(sProgress);
+        }
+    }
+
+    /**
+     * @param listener  Listener to remove
+     */
+    public static void removeProgressListener(ProgressListener listener) {
+        sListeners.remove(listener);
+    }
+
+    private static void publish(final float progress, final boolean finished) {
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                sProgress = finished ? Float.NaN : progress;
+                for (ProgressListener listener : new ArrayList<>(sListeners)) {
+                    if (finished) {
+                        listener.onAnonymizationFinished();
+                    } else {
+                        listener.onAnonymizationProgress(progress);
+                    }
+                }
+            }
+        });
+    }
+
+
+
+    // Worker of the current job, only accessed on the main thread
+    private Worker mWorker;
+
+
+    // No Javadoc
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        if (mWorker != null) {
+            mWorker.cancel();
+        }
+        mWorker = new Worker(params, mWorker);
+        mWorker.start();
+        return true;
+    }
+
+    // No Javadoc
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        if (mWorker != null) {
+            mWorker.cancel();
+            mWorker = null;
+        }
+        // Continue from the last checkpoint later on
+        return true;
+    }
+
+
+    // Returns false if the worker has been cancelled before it could finish
+    private boolean anonymize(Worker worker) {
+        try (SessionDatabase database = new SessionDatabase(this)) {
+            PrivacySettings settings = PrivacyConfigStore.getInstance(this).get();
+            if (!requiresAnonymization(settings.getMode())) {
+                // The user has switched back to a less restrictive mode in the meantime
+                database.cancelAnonymization();
+                return true;
+            }
+
+            long batchMillis = BATCH_SIZE * 1000L / MAX_MEASUREMENTS_PER_SECOND;
+            while (!worker.isCancelled()) {
+                long start = SystemClock.uptimeMillis();
+                if (!database.anonymize(settings, BATCH_SIZE)) {
+                    return true;
+                }
+                publish(database.getAnonymizationProgress(), false);
+
+                long remaining = batchMillis - (SystemClock.uptimeMillis() - start);
+                if (remaining > 0) {
+                    SystemClock.sleep(remaining);
+                }
+            }
+            return false;
+        }
+    }
+
+
+
+    /*
+     * Runs a single job. Every job has a worker and a stop flag of its own, so a worker cancelled
+     * by onStopJob() never continues even if the next job starts before it has noticed. Workers
+     * wait for their predecessor to finish its batch, so batches never run concurrently.
+     */
+    private class Worker extends Thread {
+
+        private final JobParameters mParams;
+
+        private final Worker mPrevious;
+
+        private volatile boolean mCancelled;
+
+
+        private Worker(JobParameters params, Worker previous) {
+            super("AnonymizationService");
+            mParams = params;
+            mPrevious = previous;
+        }
+
+
+        // No Javadoc
+        @Override
+        public void run() {
+            if (mPrevious != null) {
+                try {
+                    mPrevious.join();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            boolean finished = anonymize(this);
+            if (finished && !mCancelled) {
+                ProjectionCache.getInstance(AnonymizationService.this).invalidate();
+                RouteCache.getInstance().invalidate();
+                RouteThumbnailCache.getInstance(AnonymizationService.this).invalidate();
+                publish(1f, true);
+                jobFinished(mParams, false);
+            }
+        }
+
+        private void cancel() {
+            mCancelled = true;
+        }
+
+        private boolean isCancelled() {
+            return mCancelled;
+        }
+    }
+}
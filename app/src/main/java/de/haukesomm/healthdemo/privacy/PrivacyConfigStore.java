@@ -0,0 +1,183 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.privacy;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.haukesomm.healthdemo.R;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class holds the process-wide {@link PrivacySettings} of the user.<br>
+ * The settings are read from the SharedPreferences once and published as an immutable snapshot
+ * whenever the mode, the data toggles or the collection interval change, no matter whether they
+ * are changed through {@link #setMode(PrivacyMode)} or the preference screens. Reading the
+ * current settings via {@link #get()} costs a single volatile load and can be done on any thread,
+ * e.g. on hot data paths. {@link Listener}s are notified on the main thread.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public final class PrivacyConfigStore {
+
+    /**
+     * This Interface is used to notify about changed {@link PrivacySettings}.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the main thread after the settings have changed.
+         *
+         * @param settings  New settings
+         */
+        void onPrivacySettingsChanged(PrivacySettings settings);
+    }
+
+
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private static PrivacyConfigStore sInstance;
+
+
+    /**
+     * @param context   The app's context
+     * @return          Process-wide PrivacyConfigStore
+     */
+    public static synchronized PrivacyConfigStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PrivacyConfigStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+
+
+    private final Context mContext;
+
+    private final SharedPreferences mPrefs;
+
+    private final AtomicReference<PrivacySettings> mSettings;
+
+    // Only accessed on the main thread
+    private final List<Listener> mListeners = new ArrayList<>();
+
+
+    // SharedPreferences only keep a weak reference to their listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener mPreferenceListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+                    if (isPrivacyKey(key)) {
+                        publish(PrivacySettings.fromPreferences(mContext));
+                    }
+                }
+            };
+
+
+    private PrivacyConfigStore(Context context) {
+        mContext = context;
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        mSettings = new AtomicReference<>(PrivacySettings.fromPreferences(context));
+        mPrefs.registerOnSharedPreferenceChangeListener(mPreferenceListener);
+    }
+
+
+    private boolean isPrivacyKey(String key) {
+        return mContext.getString(R.string.pref_int_privacy_lastModeID).equals(key)
+                || mContext.getString(R.string.pref_int_privacy_general_interval).equals(key)
+                || mContext.getString(R.string.pref_bool_privacy_data_time).equals(key)
+                || mContext.getString(R.string.pref_bool_privacy_data_gps).equals(key)
+                || mContext.getString(R.string.pref_bool_privacy_data_heart).equals(key);
+    }
+
+
+    /**
+     * @return  Current settings
+     */
+    public PrivacySettings get() {
+        return mSettings.get();
+    }
+
+    /**
+     * @return  Current PrivacyMode
+     */
+    public PrivacyMode getMode() {
+        return mSettings.get().getMode();
+    }
+
+    /**
+     * Persists a new PrivacyMode and publishes the resulting settings right away.
+     *
+     * @param mode  New PrivacyMode
+     * @return      true if the mode has actually changed
+     */
+    public boolean setMode(PrivacyMode mode) {
+        synchronized (mPrefs) {
+            if (mSettings.get().getMode() == mode) return false;
+            mPrefs.edit()
+                    .putInt(mContext.getString(R.string.pref_int_privacy_lastModeID), mode.getID())
+                    .apply();
+            // apply() updates the in-memory preferences synchronously
+            publish(PrivacySettings.fromPreferences(mContext));
+            return true;
+        }
+    }
+
+    private void publish(final PrivacySettings settings) {
+        // Equal settings keep the published instance, so listeners are notified once
+        PrivacySettings previous;
+        do {
+            previous = mSettings.get();
+            if (settings.equals(previous)) return;
+        } while (!mSettings.compareAndSet(previous, settings));
+
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // A newer snapshot has been published in the meantime
+                if (mSettings.get() != settings) return;
+                for (Listener listener : new ArrayList<>(mListeners)) {
+                    listener.onPrivacySettingsChanged(settings);
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Registers a Listener. Call this method on the main thread.
+     *
+     * @param listener  Listener to add
+     */
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * Call this method on the main thread.
+     *
+     * @param listener  Listener to remove
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+}
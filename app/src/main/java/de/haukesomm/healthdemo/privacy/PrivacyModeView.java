@@ -22,6 +22,7 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import de.haukesomm.healthdemo.R;
@@ -34,7 +35,11 @@ import de.haukesomm.healthdemo.ui.PrivacyPreferenceActivity;
  * All available Privacy modes are listed in the {@link PrivacyMode} enum and can either be set
  * programmatically via {@link #setMode(PrivacyMode)} or in the XML file using the 'score' attribute.
  * <br>
- * In case no mode was set the View displays a placeholder without any information.
+ * In case no mode was set the View displays a placeholder without any information.<br>
+ * While attached to a window, the View displays the current mode of the
+ * {@link PrivacyConfigStore} and follows its changes.<br>
+ * While the stored data is rewritten to match a new mode, the View shows the progress of the
+ * {@link AnonymizationService}.
  *
  * @author Hauke Sommerfeld
  */
@@ -90,6 +95,12 @@ public class PrivacyModeView extends LinearLayout {
     private Button mPrivacySettingsButton;
 
 
+    private TextView mAnonymizing;
+
+
+    private ProgressBar mProgress;
+
+
 
     private void init() {
         mActivityContext = getContext() instanceof AppCompatActivity;
@@ -98,6 +109,8 @@ public class PrivacyModeView extends LinearLayout {
         mIcon                    = findViewById(R.id.privacy_mode_overview_icon);
         mText                    = findViewById(R.id.privacy_mode_overview_text);
         mPrivacySettingsButton   = findViewById(R.id.privacy_mode_overview_settings);
+        mAnonymizing             = findViewById(R.id.privacy_mode_overview_anonymizing);
+        mProgress                = findViewById(R.id.privacy_mode_overview_progress);
         mPrivacySettingsButton.setOnClickListener(new OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -124,4 +137,49 @@ public class PrivacyModeView extends LinearLayout {
         mText.setText(mode.getNameRes());
     }
 
+
+
+    private final AnonymizationService.ProgressListener mProgressListener =
+            new AnonymizationService.ProgressListener() {
+                @Override
+                public void onAnonymizationProgress(float progress) {
+                    mAnonymizing.setVisibility(VISIBLE);
+                    mProgress.setVisibility(VISIBLE);
+                    mProgress.setProgress(Math.round(progress * 100f));
+                }
+
+                @Override
+                public void onAnonymizationFinished() {
+                    mAnonymizing.setVisibility(GONE);
+                    mProgress.setVisibility(GONE);
+                }
+            };
+
+
+    private final PrivacyConfigStore.Listener mSettingsListener =
+            new PrivacyConfigStore.Listener() {
+                @Override
+                public void onPrivacySettingsChanged(PrivacySettings settings) {
+                    setMode(settings.getMode());
+                }
+            };
+
+
+    // No Javadoc
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        PrivacyConfigStore store = PrivacyConfigStore.getInstance(getContext());
+        store.addListener(mSettingsListener);
+        setMode(store.getMode());
+        AnonymizationService.addProgressListener(mProgressListener);
+    }
+
+    // No Javadoc
+    @Override
+    protected void onDetachedFromWindow() {
+        AnonymizationService.removeProgressListener(mProgressListener);
+        PrivacyConfigStore.getInstance(getContext()).removeListener(mSettingsListener);
+        super.onDetachedFromWindow();
+    }
 }
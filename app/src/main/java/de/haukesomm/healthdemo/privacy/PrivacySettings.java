@@ -0,0 +1,346 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.privacy;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.preference.PreferenceManager;
+
+import de.haukesomm.healthdemo.R;
+import de.haukesomm.healthdemo.data.PrivacyProjection;
+import de.haukesomm.healthdemo.data.Timestamps;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This immutable class describes how the active {@link PrivacyMode} restricts measurement data.
+ * <br>
+ * Each mode maps to a set of rules: which fields (timestamps, GPS location, heart rate) are
+ * available, to which precision timestamps are truncated and coordinates are coarsened, and the
+ * interval measurements are resampled to. Only {@link PrivacyMode#USER_DEFINED} takes the data
+ * toggles of the user into account. The collection interval applies to all modes but
+ * {@link PrivacyMode#MAXIMUM_DATA}.<br>
+ * The rules for single values are applied by the <code>project...</code> methods, e.g.
+ * {@link #projectCoordinate(double)}.
+ * </p>
+ *
+ * @see de.haukesomm.healthdemo.data.PrivacyProjection
+ *
+ * @author Hauke Sommerfeld
+ */
+public final class PrivacySettings {
+
+    /**
+     * Settings which do not restrict any data
+     */
+    public static final PrivacySettings UNRESTRICTED =
+            new PrivacySettings(PrivacyMode.MAXIMUM_DATA, true, true, true, 0L);
+
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+
+    // Roughly 1 km and 10 km
+    private static final double COARSE_DEGREES = 0.01d;
+
+    private static final double OBFUSCATED_DEGREES = 0.1d;
+
+    private static final int DEFAULT_INTERVAL_MINUTES = 1;
+
+
+    /**
+     * Reads the settings stored in the default SharedPreferences. Use the
+     * {@link PrivacyConfigStore} to get the current settings instead.
+     *
+     * @param context   The app's context
+     * @return          Settings of the active PrivacyMode
+     */
+    static PrivacySettings fromPreferences(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+
+        PrivacyMode mode = PrivacyMode.fromID(prefs.getInt(
+                context.getString(R.string.pref_int_privacy_lastModeID),
+                PrivacyMode.MAXIMUM_DATA.getID()));
+
+        // Stored as a String by the ListPreference
+        int interval;
+        try {
+            interval = Integer.parseInt(prefs.getString(
+                    context.getString(R.string.pref_int_privacy_general_interval),
+                    String.valueOf(DEFAULT_INTERVAL_MINUTES)));
+        } catch (NumberFormatException e) {
+            interval = DEFAULT_INTERVAL_MINUTES;
+        }
+
+        // Defaults match the preference screen, which only stores values once they are changed
+        Resources res = context.getResources();
+        return new PrivacySettings(mode,
+                prefs.getBoolean(context.getString(R.string.pref_bool_privacy_data_time),
+                        res.getBoolean(R.bool.pref_bool_privacy_data_time_default)),
+                prefs.getBoolean(context.getString(R.string.pref_bool_privacy_data_gps),
+                        res.getBoolean(R.bool.pref_bool_privacy_data_gps_default)),
+                prefs.getBoolean(context.getString(R.string.pref_bool_privacy_data_heart),
+                        res.getBoolean(R.bool.pref_bool_privacy_data_heart_default)),
+                Math.max(0, interval) * MILLIS_PER_MINUTE);
+    }
+
+
+
+    private final PrivacyMode mMode;
+
+    private final boolean mTime;
+
+    private final boolean mLocation;
+
+    private final boolean mHeartrate;
+
+    private final long mTimePrecision;
+
+    private final double mCoordinatePrecision;
+
+    private final long mInterval;
+
+
+    /**
+     * Creates new PrivacySettings.
+     *
+     * @param mode      Active PrivacyMode
+     * @param time      Whether the user allows timestamps, only used by
+     *                  {@link PrivacyMode#USER_DEFINED}
+     * @param location  Whether the user allows GPS locations, only used by
+     *                  {@link PrivacyMode#USER_DEFINED}
+     * @param heartrate Whether the user allows heart rates, only used by
+     *                  {@link PrivacyMode#USER_DEFINED}
+     * @param interval  Data collection interval in milliseconds or 0 to keep all measurements
+     */
+    public PrivacySettings(PrivacyMode mode, boolean time, boolean location, boolean heartrate,
+                           long interval) {
+        mMode = mode;
+        switch (mode) {
+            case MAXIMUM_DATA:
+                mTime = true;
+                mLocation = true;
+                mHeartrate = true;
+                mTimePrecision = 0L;
+                mCoordinatePrecision = 0d;
+                mInterval = 0L;
+                break;
+
+            case USER_DEFINED:
+                mTime = time;
+                mLocation = location;
+                mHeartrate = heartrate;
+                mTimePrecision = 0L;
+                mCoordinatePrecision = 0d;
+                mInterval = interval;
+                break;
+
+            case MINIMUM_DATA:
+                mTime = true;
+                mLocation = true;
+                mHeartrate = true;
+                mTimePrecision = MILLIS_PER_MINUTE;
+                mCoordinatePrecision = COARSE_DEGREES;
+                mInterval = interval;
+                break;
+
+            case OBFUSCATION:
+                mTime = true;
+                mLocation = true;
+                mHeartrate = false;
+                mTimePrecision = MILLIS_PER_HOUR;
+                mCoordinatePrecision = OBFUSCATED_DEGREES;
+                mInterval = interval;
+                break;
+
+            // Unknown modes are treated as restrictive as possible
+            default:
+                mTime = false;
+                mLocation = false;
+                mHeartrate = false;
+                mTimePrecision = MILLIS_PER_HOUR;
+                mCoordinatePrecision = OBFUSCATED_DEGREES;
+                mInterval = interval;
+                break;
+        }
+    }
+
+
+    /**
+     * @return  Active PrivacyMode
+     */
+    public PrivacyMode getMode() {
+        return mMode;
+    }
+
+    /**
+     * @return  true if timestamps are available
+     */
+    public boolean isTimeEnabled() {
+        return mTime;
+    }
+
+    /**
+     * @return  true if GPS locations are available
+     */
+    public boolean isLocationEnabled() {
+        return mLocation;
+    }
+
+    /**
+     * @return  true if heart rates are available
+     */
+    public boolean isHeartrateEnabled() {
+        return mHeartrate;
+    }
+
+    /**
+     * @return  Milliseconds timestamps are truncated to (in local time) or 0 for exact timestamps
+     */
+    public long getTimePrecision() {
+        return mTimePrecision;
+    }
+
+    /**
+     * @return  Size of the grid cells coordinates are coarsened to in degrees or 0 for exact
+     *          coordinates
+     */
+    public double getCoordinatePrecision() {
+        return mCoordinatePrecision;
+    }
+
+    /**
+     * @return  Interval measurements are resampled to in milliseconds or 0 to keep all
+     *          measurements
+     */
+    public long getInterval() {
+        return mInterval;
+    }
+
+    /**
+     * Applies the timestamp rules to a time.
+     *
+     * @param time          Milliseconds since the epoch or {@link Timestamps#INVALID}
+     * @param offsetMinutes Offset of the Measurement's time zone from UTC in minutes, see
+     *                      {@link Timestamps#offsetMinutes(String)}
+     * @return              Truncated time or {@link Timestamps#INVALID} if timestamps are not
+     *                      available
+     */
+    public long projectTime(long time, int offsetMinutes) {
+        if (!mTime) return Timestamps.INVALID;
+        return Timestamps.truncate(time, offsetMinutes, mTimePrecision);
+    }
+
+    /**
+     * Applies the timestamp rules to an ISO-8601 timestamp.
+     *
+     * @param timestamp ISO-8601 timestamp
+     * @return          Truncated timestamp or null if timestamps are not available or a malformed
+     *                  timestamp would have to be truncated
+     */
+    public String projectTimestamp(String timestamp) {
+        if (!mTime) return null;
+        if (mTimePrecision == 0L) return timestamp;
+
+        long time = Timestamps.parse(timestamp);
+        if (time == Timestamps.INVALID) return null;
+        int offset = Timestamps.offsetMinutes(timestamp);
+        return Timestamps.format(Timestamps.truncate(time, offset, mTimePrecision), offset);
+    }
+
+    /**
+     * Applies the location rules to a latitude or longitude. Coarsened coordinates are moved to
+     * the center of their grid cell.
+     *
+     * @param coordinate    Latitude or longitude in degrees
+     * @return              Coarsened coordinate or NaN if GPS locations are not available
+     */
+    public double projectCoordinate(double coordinate) {
+        if (!mLocation) return Double.NaN;
+        if (mCoordinatePrecision == 0d) return coordinate;
+        return (Math.floor(coordinate / mCoordinatePrecision) + 0.5) * mCoordinatePrecision;
+    }
+
+    /**
+     * Applies the heart rate rules to a heart rate.
+     *
+     * @param heartrate Heart rate in beats per minute
+     * @return          Heart rate or {@link PrivacyProjection#NO_HEARTRATE} if heart rates are not
+     *                  available
+     */
+    public int projectHeartrate(int heartrate) {
+        return mHeartrate ? heartrate : PrivacyProjection.NO_HEARTRATE;
+    }
+
+    /**
+     * Returns the start of the collection interval containing a time. Of all Measurements within
+     * the same interval only the first one is kept.
+     *
+     * @param time  Milliseconds since the epoch
+     * @return      Start of the interval or the time itself if measurements are not resampled
+     */
+    public long getIntervalStart(long time) {
+        return Timestamps.truncate(time, 0, mInterval);
+    }
+
+    /**
+     * @return  How much measurement data is kept in storage, see {@link StorageTier#of(PrivacyMode)}
+     */
+    public StorageTier getStorageTier() {
+        return StorageTier.of(mMode);
+    }
+
+    /**
+     * This method returns whether these settings leave all data untouched.
+     *
+     * @return  true if no data is restricted
+     */
+    public boolean isUnrestricted() {
+        return mTime && mLocation && mHeartrate && mTimePrecision == 0L
+                && mCoordinatePrecision == 0d && mInterval == 0L;
+    }
+
+    /**
+     * This method returns a String identifying the rules of these settings. Settings applying the
+     * same rules to data have the same fingerprint, even if they belong to different modes.
+     *
+     * @return  Fingerprint
+     */
+    public String getFingerprint() {
+        return (mTime ? "t" : "-") + (mLocation ? "g" : "-") + (mHeartrate ? "h" : "-")
+                + ":" + mTimePrecision + ":" + mCoordinatePrecision + ":" + mInterval;
+    }
+
+
+    // No Javadoc
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PrivacySettings)) return false;
+        PrivacySettings other = (PrivacySettings) o;
+        return mMode == other.mMode && getFingerprint().equals(other.getFingerprint());
+    }
+
+    // No Javadoc
+    @Override
+    public int hashCode() {
+        return 31 * mMode.hashCode() + getFingerprint().hashCode();
+    }
+
+    // No JavaDoc
+    @Override
+    public String toString() {
+        return "Mode: " + mMode + ", Rules: " + getFingerprint();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.privacy;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This enum defines how much of a Session's measurement data is kept in storage. The tier is
+ * determined by the {@link PrivacyMode}, see {@link #of(PrivacyMode)}.<br>
+ * Aggregates such as summaries, heart rate statistics and time in zones are computed from the
+ * full measurement data when a Session is added and kept in every tier.<br>
+ * Switching to a more restrictive tier compacts all stored Sessions, which is a one-way change:
+ * Measurements deleted by resampling or dropped altogether can not be restored by switching back.
+ * Tiers are ordered from the least to the most restrictive.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public enum StorageTier {
+    /**
+     * Every measurement is stored.
+     */
+    RAW,
+
+    /**
+     * Measurements are resampled to the data collection interval, only the first measurement per
+     * interval is stored.
+     */
+    DOWNSAMPLED,
+
+    /**
+     * No measurements are stored at all, only aggregates.
+     */
+    AGGREGATES;
+
+
+    /**
+     * This method returns the StorageTier of a PrivacyMode. Unknown modes are treated as
+     * restrictive as possible.<br>
+     * The data toggles of {@link PrivacyMode#USER_DEFINED} are deliberately not taken into
+     * account: they are applied when reading (see {@link PrivacySettings}), so toggling a field
+     * off and on again hides and restores it instead of deleting it. Only resampling to the
+     * collection interval reduces what is stored.
+     *
+     * @param mode  PrivacyMode
+     * @return      StorageTier of the mode
+     */
+    public static StorageTier of(PrivacyMode mode) {
+        switch (mode) {
+            case MAXIMUM_DATA:
+                return RAW;
+
+            case USER_DEFINED:
+                return DOWNSAMPLED;
+
+            default:
+                return AGGREGATES;
+        }
+    }
+}
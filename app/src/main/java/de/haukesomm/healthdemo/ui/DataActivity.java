@@ -11,15 +11,17 @@
 
 package de.haukesomm.healthdemo.ui;
 
-import android.graphics.Paint;
-import android.location.Address;
-import android.location.Geocoder;
+import android.content.Context;
+import android.content.DialogInterface;
 import android.os.Bundle;
+import android.support.annotation.Nullable;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -27,26 +29,39 @@ import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
+import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
 import com.google.android.gms.maps.model.PolylineOptions;
-import com.jjoe64.graphview.series.DataPoint;
-import com.jjoe64.graphview.series.LineGraphSeries;
 
-import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import de.haukesomm.healthdemo.R;
+import de.haukesomm.healthdemo.analytics.ExponentialSmoothing;
+import de.haukesomm.healthdemo.analytics.Kinematics;
+import de.haukesomm.healthdemo.analytics.RouteSimplifier;
+import de.haukesomm.healthdemo.analytics.Statistics;
+import de.haukesomm.healthdemo.data.GeocodingCache;
 import de.haukesomm.healthdemo.data.Measurement;
+import de.haukesomm.healthdemo.data.PrivacyProjection;
+import de.haukesomm.healthdemo.data.ProjectionCache;
+import de.haukesomm.healthdemo.data.RouteCache;
+import de.haukesomm.healthdemo.data.RouteThumbnailCache;
 import de.haukesomm.healthdemo.data.Session;
 import de.haukesomm.healthdemo.data.SessionDatabase;
+import de.haukesomm.healthdemo.privacy.PrivacyConfigStore;
 
 /**
  * Created on 09.12.17
  * <p>
- * This Activity displays detailed information about a {@link Session}.
+ * This Activity displays detailed information about a {@link Session}.<br>
+ * All measurements are displayed through a {@link PrivacyProjection} of the active privacy mode,
+ * which is loaded in the background. The views are filled in once it has arrived.
  *
  * @author Hauke Sommerfeld
  */
@@ -72,16 +87,29 @@ public class DataActivity extends AppCompatActivity {
         setContentView(R.layout.activity_data);
         bindActivity();
 
-
-        initData();
-
         setSupportActionBar(mToolbar);
         if (getSupportActionBar() != null) {
-            getSupportActionBar().setTitle(mSession.description);
+            getSupportActionBar().setTitle(null);
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
         initMap();
+        initData();
+    }
+
+
+    /*
+     * Called on the main thread once the Session has been loaded. The map may have become ready
+     * before, it shows the route as soon as both are available.
+     */
+    private void onDataLoaded() {
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setTitle(mProjection.getDescription().description);
+        }
+
+        if (mMap != null) {
+            updateRoute();
+        }
         initRoute();
         initGraphs();
     }
@@ -109,9 +137,20 @@ public class DataActivity extends AppCompatActivity {
                 return true;
 
             case R.id.activity_data_menuAction_delete:
-                // TODO Implement
-                Toast.makeText(getApplicationContext(), "This feature was not yet implemented.",
-                        Toast.LENGTH_LONG).show();
+                // Nothing to delete before the Session has been loaded
+                if (mProjection == null) return true;
+
+                new AlertDialog.Builder(this)
+                        .setTitle(R.string.data_delete_title)
+                        .setMessage(R.string.data_delete_message)
+                        .setPositiveButton(R.string.data_delete, new DialogInterface.OnClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialog, int which) {
+                                deleteSession();
+                            }
+                        })
+                        .setNegativeButton(R.string.cancel, null)
+                        .show();
                 return true;
         }
 
@@ -120,6 +159,18 @@ public class DataActivity extends AppCompatActivity {
 
 
 
+    private void deleteSession() {
+        try (SessionDatabase database = new SessionDatabase(this)) {
+            database.delete(mProjection.getDescription().id);
+        }
+        RouteCache.getInstance().invalidate(mProjection.getDescription().id);
+        ProjectionCache.getInstance(this).invalidate(mProjection.getDescription().id);
+        RouteThumbnailCache.getInstance(this).invalidate(mProjection.getDescription().id);
+        finish();
+    }
+
+
+
     private Toolbar mToolbar;
 
 
@@ -130,6 +181,12 @@ public class DataActivity extends AppCompatActivity {
     private TextView mRouteDestination;
 
 
+    private TelematicsGraphView mGraphHeartrate;
+
+
+    private TextView mAnomalies;
+
+
     private TelematicsGraphView mGraphSpeed;
 
 
@@ -138,18 +195,28 @@ public class DataActivity extends AppCompatActivity {
 
         mRouteStart = findViewById(R.id.activity_data_route_start);
         mRouteDestination = findViewById(R.id.activity_data_route_destination);
+        mGraphHeartrate = findViewById(R.id.activity_data_graph_heartrate);
+        mAnomalies = findViewById(R.id.activity_data_anomalies);
         mGraphSpeed = findViewById(R.id.activity_data_graph_speed);
     }
 
 
 
-    private Session mSession;
+    private PrivacyProjection mProjection;
 
     private List<Measurement> mMeasurements;
 
+    private Kinematics mKinematics;
+
+    private int mAnomalyCount;
+
+
+    // Loads Sessions in the background, one at a time
+    private static final ExecutorService sLoader = Executors.newSingleThreadExecutor();
+
 
     private void initData() {
-        int id = getIntent().getIntExtra(EXTRA_SESSION_ID, -1);
+        final int id = getIntent().getIntExtra(EXTRA_SESSION_ID, -1);
 
         if (id == -1) {
             Log.e("DataActivity", "No Session ID specified!");
@@ -158,50 +225,119 @@ public class DataActivity extends AppCompatActivity {
             return;
         }
 
-
-        try (SessionDatabase database = new SessionDatabase(this)) {
-            mSession = database.get(id);
-            mMeasurements = mSession.getMeasurements();
-        }
+        final Context context = getApplicationContext();
+        sLoader.execute(new Runnable() {
+            @Override
+            public void run() {
+                final PrivacyProjection projection;
+                final Kinematics kinematics;
+                final int anomalies;
+                try (SessionDatabase database = new SessionDatabase(context)) {
+                    projection = ProjectionCache.getInstance(context)
+                            .get(database, id, PrivacyConfigStore.getInstance(context).get());
+                    kinematics = database.getKinematics(id);
+                    anomalies = database.getAnomalyCount(id);
+                }
+
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isDestroyed()) return;
+                        mProjection = projection;
+                        mMeasurements = projection.getMeasurements();
+                        mKinematics = kinematics;
+                        mAnomalyCount = anomalies;
+                        onDataLoaded();
+                    }
+                });
+            }
+        });
     }
 
 
 
-    private GoogleMap mMap;
+    private static final int ROUTE_MAX_VERTICES = 2000;
 
 
-    private void initMap() {
-        final List<LatLng> positions = new LinkedList<>();
+    private static final double ROUTE_TOLERANCE_PIXELS = 1d;
 
-        for (Measurement measurement : mMeasurements) {
-            LatLng position = new LatLng(measurement.latitude, measurement.longitude);
-            positions.add(position);
-        }
 
+    private static final int MAP_SIZE = 1000;
 
-        LatLngBounds.Builder builder = LatLngBounds.builder();
-        for (LatLng position : positions) {
-            builder.include(position);
-        }
-        final LatLngBounds bounds = builder.build();
+
+    private static final int MAP_PADDING = 200;
+
+
+    private GoogleMap mMap;
+
+
+    private Polyline mRoute;
+
+
+    private float mRouteZoom = Float.NaN;
 
 
+    private void initMap() {
         SupportMapFragment map = (SupportMapFragment) getSupportFragmentManager().findFragmentById(R.id.activity_data_map);
         map.getMapAsync(new OnMapReadyCallback() {
             @Override
             public void onMapReady(GoogleMap googleMap) {
                 mMap = googleMap;
                 mMap.getUiSettings().setAllGesturesEnabled(false);
-                initMapMarkers(bounds, positions);
+                mMap.setOnCameraIdleListener(new GoogleMap.OnCameraIdleListener() {
+                    @Override
+                    public void onCameraIdle() {
+                        updateRoute();
+                    }
+                });
+                // Otherwise the route is requested once the Session has been loaded
+                if (mProjection != null) {
+                    updateRoute();
+                }
             }
         });
     }
 
 
-    private void initMapMarkers(LatLngBounds bounds, List<LatLng> positions) {
-        PolylineOptions path = new PolylineOptions()
-                .color(getColor(R.color.colorAccent))
-                .width(20f);
+    /*
+     * Requests the route simplified for the current zoom level. The first route is requested at
+     * the initial, coarse zoom level and only used to place the markers and the camera. Moving the
+     * camera then requests a route matching the final zoom level.
+     */
+    private void updateRoute() {
+        if (mProjection == null) return;
+
+        CameraPosition camera = mMap.getCameraPosition();
+        if (camera.zoom == mRouteZoom) {
+            return;
+        }
+        mRouteZoom = camera.zoom;
+
+        double tolerance = RouteSimplifier.toleranceForZoom(
+                camera.zoom, camera.target.latitude, ROUTE_TOLERANCE_PIXELS);
+        RouteCache.getInstance().simplify(mProjection, tolerance, ROUTE_MAX_VERTICES,
+                new RouteCache.Callback() {
+                    @Override
+                    public void onRouteSimplified(RouteSimplifier simplifier,
+                                                  RouteSimplifier.Route route) {
+                        if (!isDestroyed() && route.size() > 0) {
+                            showRoute(simplifier, route);
+                        }
+                    }
+                });
+    }
+
+
+    private void showRoute(RouteSimplifier simplifier, RouteSimplifier.Route route) {
+        List<LatLng> positions = new ArrayList<>(route.size());
+        for (int i = 0; i < route.size(); i++) {
+            positions.add(new LatLng(route.latitudes[i], route.longitudes[i]));
+        }
+
+        if (mRoute != null) {
+            mRoute.setPoints(positions);
+            return;
+        }
 
         // Starting position
         mMap.addMarker(
@@ -210,60 +346,136 @@ public class DataActivity extends AppCompatActivity {
         mMap.addMarker(
                 new MarkerOptions().position(positions.get(positions.size() - 1)));
 
-        for (LatLng position : positions) {
-            path.add(position);
+        mRoute = mMap.addPolyline(new PolylineOptions()
+                .color(getColor(R.color.colorAccent))
+                .width(20f)
+                .addAll(positions));
+
+        LatLngBounds bounds = LatLngBounds.builder()
+                .include(new LatLng(simplifier.getSouth(), simplifier.getWest()))
+                .include(new LatLng(simplifier.getNorth(), simplifier.getEast()))
+                .build();
+        mMap.moveCamera(CameraUpdateFactory.newLatLngBounds(bounds, MAP_SIZE, MAP_SIZE, MAP_PADDING));
+    }
+
+
+
+    private void initRoute() {
+        if (mMeasurements.isEmpty() || !mProjection.isLocationAvailable()) {
+            mRouteStart.setText(R.string.unknown);
+            mRouteDestination.setText(R.string.unknown);
+            return;
         }
 
-        mMap.moveCamera(CameraUpdateFactory.newLatLngBounds(bounds, 1000, 1000, 200));
-        mMap.addPolyline(path);
+        Measurement start = mMeasurements.get(0);
+        Measurement destination = mMeasurements.get(mMeasurements.size() - 1);
+        showAddress(mRouteStart, start.latitude, start.longitude);
+        showAddress(mRouteDestination, destination.latitude, destination.longitude);
     }
 
 
+    // Addresses of previously seen areas are shown immediately, others once resolved
+    private void showAddress(final TextView view, double lat, double lng) {
+        view.setText(R.string.unknown);
+        GeocodingCache.getInstance(this).resolve(lat, lng, new GeocodingCache.Callback() {
+            @Override
+            public void onAddressResolved(@Nullable String address) {
+                if (isDestroyed()) return;
+                if (address != null) {
+                    view.setText(address);
+                } else {
+                    view.setText(R.string.unknown);
+                }
+            }
+        });
+    }
 
-    private Geocoder mGeocoder;
 
 
-    private void initRoute() {
-        mGeocoder = new Geocoder(this);
+    private static final int GRAPH_DEFAULT_THICKNESS = 7;
 
-        double startLat = mMeasurements.get(0).latitude;
-        double startLng = mMeasurements.get(0).longitude;
-        double destLat = mMeasurements.get(mMeasurements.size() - 1).latitude;
-        double destLng = mMeasurements.get(mMeasurements.size() - 1).longitude;
 
-        mRouteStart.setText(getAddressFromLatLng(startLat, startLng));
-        mRouteDestination.setText(getAddressFromLatLng(destLat, destLng));
-    }
+    private static final long HEARTRATE_SMOOTHING_MILLIS = 30 * 1000L;
+
 
+    private static final double SPEED_MAX_KPH = 100d;
 
-    private String getAddressFromLatLng(double lat, double lng) {
-        try {
-            Address address = mGeocoder.getFromLocation(lat, lng, 1).get(0);
-            return address.getAddressLine(0);
-        } catch (IndexOutOfBoundsException | IOException e) {
-            return getString(R.string.unknown);
+
+    private void initGraphs() {
+        int size = mProjection.size();
+
+        // Sessions may be stored as aggregates only, depending on the privacy mode
+        if (mProjection.isHeartrateAvailable() && size > 0) {
+            initHeartrateGraph(size);
+        } else {
+            mGraphHeartrate.setVisibility(View.GONE);
+        }
+
+        // Kinematics are unavailable if they were never derived before the Session was compacted
+        if (mProjection.isLocationAvailable() && size > 0 && mKinematics != null
+                && mKinematics.size() == mProjection.getSourceSize()) {
+            initSpeedGraph(size);
+        } else {
+            if (mKinematics != null && mKinematics.size() != mProjection.getSourceSize()) {
+                // The Session has been compacted since it was projected, speeds can't be matched
+                Log.w("DataActivity", "Kinematics of " + mKinematics.size()
+                        + " measurements do not match projection of "
+                        + mProjection.getSourceSize());
+            }
+            mGraphSpeed.setVisibility(View.GONE);
         }
     }
 
 
+    private void initHeartrateGraph(int size) {
+        int[] heartrates = mProjection.getHeartrates();
+        double[] heartrateValues = new double[size];
+        for (int i = 0; i < size; i++) {
+            heartrateValues[i] = heartrates[i];
+        }
 
-    private static final int GRAPH_DEFAULT_THICKNESS = 7;
+        Statistics heartrateStatistics = Statistics.forHeartrate();
+        heartrateStatistics.addAll(heartrates, 0, size);
 
+        mGraphHeartrate.setData(createSeries(heartrateValues, size, R.color.colorAccent),
+                heartrateStatistics);
 
-    private void initGraphs() {
-        LineGraphSeries<DataPoint> speedValues = new LineGraphSeries<>();
+        // Smoothed heart rate, samples without a valid timestamp keep their raw value
+        double[] smoothedHeartrates = new double[size];
+        ExponentialSmoothing.apply(mProjection.getTimes(), heartrates, size,
+                HEARTRATE_SMOOTHING_MILLIS, smoothedHeartrates);
+        for (int i = 0; i < size; i++) {
+            if (Double.isNaN(smoothedHeartrates[i])) smoothedHeartrates[i] = heartrates[i];
+        }
+        mGraphHeartrate.setOverlay(
+                createSeries(smoothedHeartrates, size, R.color.graphOverlay));
+
+        // Unknown for Sessions stored before anomalies were detected
+        if (mAnomalyCount > 0) {
+            mAnomalies.setText(getResources().getQuantityString(R.plurals.data_anomalies,
+                    mAnomalyCount, mAnomalyCount));
+            mAnomalies.setVisibility(View.VISIBLE);
+        }
+    }
 
-        Paint color = new Paint();
-        color.setColor(getColor(R.color.colorAccent));
-        color.setStrokeWidth((float) GRAPH_DEFAULT_THICKNESS);
-        speedValues.setCustomPaint(color);
 
-        for (int i = 0; i < mMeasurements.size(); i++) {
-            Measurement data = mMeasurements.get(i);
-            double speed = data.heartrate;
-            speedValues.appendData(new DataPoint(i, speed), true, mMeasurements.size(), true);
+    private void initSpeedGraph(int size) {
+        Statistics speedStatistics = new Statistics(0d, SPEED_MAX_KPH, (int) SPEED_MAX_KPH * 10);
+        float[] speeds = mKinematics.getSpeeds();
+        double[] speedValues = new double[size];
+        for (int i = 0; i < size; i++) {
+            // m/s to km/h, speeds are derived from the full Session
+            speedValues[i] = speeds[mProjection.getSourceIndex(i)] * 3.6;
         }
+        speedStatistics.addAll(speedValues, 0, size);
+
+        mGraphSpeed.setData(createSeries(speedValues, size, R.color.colorAccent),
+                speedStatistics);
+    }
+
 
-        mGraphSpeed.setData(speedValues);
+    private GraphSeries createSeries(double[] values, int size, int colorResource) {
+        return new GraphSeries(values, size, getColor(colorResource),
+                (float) GRAPH_DEFAULT_THICKNESS);
     }
 }
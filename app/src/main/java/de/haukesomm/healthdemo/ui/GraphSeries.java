@@ -0,0 +1,112 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.ui;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+
+import de.haukesomm.healthdemo.analytics.LineProjection;
+import de.haukesomm.healthdemo.analytics.MinMaxPyramid;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class is a series of values drawn as a line by a {@link LineGraphView}. Values are expected
+ * to be sampled in equal intervals, their index is used as the x coordinate.<br>
+ * The series keeps a {@link MinMaxPyramid} of its values. Whenever the graph's visible window or
+ * size changes, the window is projected into a reused buffer of pixel coordinates by a
+ * {@link LineProjection}, so the cost only depends on the graph's width and not on the number of
+ * values or the zoom level. Drawing a frame only passes that buffer to
+ * {@link Canvas#drawLines(float[], int, int, Paint)} without allocating anything.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public final class GraphSeries {
+
+    private final MinMaxPyramid mPyramid;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+
+    private final LineProjection mProjection = new LineProjection();
+
+
+    /**
+     * Creates a new series.
+     *
+     * @param values    Values of the series
+     * @param size      Number of values
+     * @param color     Color of the line
+     * @param thickness Thickness of the line in pixels
+     */
+    public GraphSeries(@NonNull double[] values, int size, @ColorInt int color, float thickness) {
+        mPyramid = new MinMaxPyramid(values, size);
+
+        mPaint.setColor(color);
+        mPaint.setStrokeWidth(thickness);
+        mPaint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+
+    /**
+     * @return  Number of values
+     */
+    public int size() {
+        return mPyramid.size();
+    }
+
+    /**
+     * @return  Smallest X value, i.e. 0
+     */
+    public float getMinX() {
+        return 0f;
+    }
+
+    /**
+     * @return  Largest X value, i.e. the index of the last value or 0 if the series is empty
+     */
+    public float getMaxX() {
+        return Math.max(0, mPyramid.size() - 1);
+    }
+
+
+    /**
+     * Converts the visible window of the series into pixel coordinates within an area of the
+     * graph. Values just outside of the window are included so the line reaches the edges.
+     *
+     * @param area  Area of the graph in pixels
+     * @param minX  X value at the left edge of the area
+     * @param maxX  X value at the right edge of the area
+     * @param minY  Y value at the bottom edge of the area
+     * @param maxY  Y value at the top edge of the area
+     */
+    void project(RectF area, float minX, float maxX, float minY, float maxY) {
+        mProjection.project(mPyramid, area.left, area.top, area.right, area.bottom, minX, maxX,
+                minY, maxY);
+    }
+
+    /**
+     * Draws the series as projected by the last call to
+     * {@link #project(RectF, float, float, float, float)}.
+     *
+     * @param canvas    Canvas to draw on
+     */
+    void draw(Canvas canvas) {
+        if (mProjection.getLineCount() > 0) {
+            canvas.drawLines(mProjection.getLines(), 0, mProjection.getLineCount(), mPaint);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.ui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import java.text.DecimalFormat;
+
+import de.haukesomm.healthdemo.R;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This View draws {@link GraphSeries} as line graphs on top of a horizontal grid with labeled
+ * values.<br>
+ * The user can zoom in horizontally by pinching and pan by dragging, a double tap shows the whole
+ * series again. Everything is laid out whenever the data, the visible window or the View's size
+ * changes. Drawing a frame only passes precomputed coordinates to the {@link Canvas} and does not
+ * allocate any objects.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class LineGraphView extends View {
+
+    // Including the lines at the bottom and the top
+    private static final int GRID_LINES = 5;
+
+    private static final float LABEL_TEXT_SIZE_SP = 12f;
+
+    // Smallest visible window in values
+    private static final float MIN_WINDOW = 16f;
+
+
+    /**
+     * Use this constructor to create the View programmatically.
+     *
+     * @param context   The app's context
+     */
+    public LineGraphView(@NonNull Context context) {
+        this(context, null);
+    }
+
+    /**
+     * This constructor is used when the View is created from XML.
+     *
+     * @param context   The app's context
+     * @param attrs     {@link AttributeSet} containing the XML-attributes
+     */
+    public LineGraphView(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+
+        mGridPaint.setColor(context.getColor(R.color.graphGrid));
+        mGridPaint.setStrokeWidth(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 1f,
+                getResources().getDisplayMetrics()));
+
+        mLabelPaint.setColor(context.getColor(R.color.graphLabel));
+        mLabelPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+                LABEL_TEXT_SIZE_SP, getResources().getDisplayMetrics()));
+
+        mScaleDetector = new ScaleGestureDetector(context,
+                new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                    @Override
+                    public boolean onScale(ScaleGestureDetector detector) {
+                        float focus = toValue(detector.getFocusX());
+                        float factor = 1f / detector.getScaleFactor();
+                        setWindow(focus - (focus - mWindowMinX) * factor,
+                                focus + (mWindowMaxX - focus) * factor);
+                        return true;
+                    }
+                });
+        mGestureDetector = new GestureDetector(context,
+                new GestureDetector.SimpleOnGestureListener() {
+                    @Override
+                    public boolean onDown(MotionEvent event) {
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onScroll(MotionEvent down, MotionEvent event, float distanceX,
+                                            float distanceY) {
+                        float shift = distanceX * (mWindowMaxX - mWindowMinX) / mPlot.width();
+                        setWindow(mWindowMinX + shift, mWindowMaxX + shift);
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onDoubleTap(MotionEvent event) {
+                        setWindow(mMinX, mMaxX);
+                        return true;
+                    }
+                });
+    }
+
+
+
+    private final Paint mGridPaint = new Paint();
+
+    private final Paint mLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private final DecimalFormat mLabelFormat = new DecimalFormat("###.#");
+
+    private final ScaleGestureDetector mScaleDetector;
+
+    private final GestureDetector mGestureDetector;
+
+
+    private GraphSeries mData;
+
+    private GraphSeries mOverlay;
+
+    private float mMinY;
+
+    private float mMaxY;
+
+
+    // Bounds of the data and the visible window
+
+    private float mMinX;
+
+    private float mMaxX;
+
+    private float mWindowMinX;
+
+    private float mWindowMaxX;
+
+
+    // Layout computed by layoutGraph()
+
+    private final RectF mPlot = new RectF();
+
+    private final float[] mGrid = new float[GRID_LINES * 4];
+
+    private final String[] mLabels = new String[GRID_LINES];
+
+    private boolean mLaidOut;
+
+
+    /**
+     * Use this method to set the graph's data and vertical bounds. The horizontal bounds are those
+     * of the data, the whole series is visible.
+     *
+     * @param data  The graph's data or null to clear the graph
+     * @param minY  Y value at the bottom of the graph
+     * @param maxY  Y value at the top of the graph
+     */
+    public void setData(@Nullable GraphSeries data, float minY, float maxY) {
+        mData = data;
+        mMinY = minY;
+        mMaxY = maxY;
+        mMinX = data != null ? data.getMinX() : 0f;
+        mMaxX = data != null ? data.getMaxX() : 0f;
+        mWindowMinX = mMinX;
+        mWindowMaxX = mMaxX;
+        layoutGraph();
+        invalidate();
+    }
+
+    /**
+     * Use this method to draw an additional series on top of the graph's data, e.g. a smoothed
+     * curve. The overlay shares the data's bounds and visible window.
+     *
+     * @param overlay   Series to draw on top of the data or null to remove the overlay
+     */
+    public void setOverlay(@Nullable GraphSeries overlay) {
+        mOverlay = overlay;
+        layoutGraph();
+        invalidate();
+    }
+
+
+    // No Javadoc
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        layoutGraph();
+    }
+
+    private void layoutGraph() {
+        mLaidOut = false;
+        if (mData == null || getWidth() == 0 || getHeight() == 0) return;
+
+        // Leave room for the label above the top grid line
+        mPlot.set(getPaddingLeft(), getPaddingTop() - mLabelPaint.ascent(),
+                getWidth() - getPaddingRight(), getHeight() - getPaddingBottom());
+
+        for (int i = 0; i < GRID_LINES; i++) {
+            float y = mPlot.bottom - i * mPlot.height() / (GRID_LINES - 1);
+            mGrid[i * 4] = mPlot.left;
+            mGrid[i * 4 + 1] = y;
+            mGrid[i * 4 + 2] = mPlot.right;
+            mGrid[i * 4 + 3] = y;
+            mLabels[i] = mLabelFormat.format(mMinY + i * (mMaxY - mMinY) / (GRID_LINES - 1));
+        }
+
+        projectSeries();
+        mLaidOut = true;
+    }
+
+    private void projectSeries() {
+        mData.project(mPlot, mWindowMinX, mWindowMaxX, mMinY, mMaxY);
+        if (mOverlay != null) {
+            mOverlay.project(mPlot, mWindowMinX, mWindowMaxX, mMinY, mMaxY);
+        }
+    }
+
+
+    // Clamps the window to the data's bounds and the minimum window size
+    private void setWindow(float from, float to) {
+        if (!mLaidOut) return;
+
+        float span = Math.min(mMaxX - mMinX, Math.max(MIN_WINDOW, to - from));
+        float center = (from + to) * 0.5f;
+        float windowMinX = Math.max(mMinX, Math.min(mMaxX - span, center - span * 0.5f));
+        float windowMaxX = windowMinX + span;
+        if (windowMinX == mWindowMinX && windowMaxX == mWindowMaxX) return;
+
+        mWindowMinX = windowMinX;
+        mWindowMaxX = windowMaxX;
+        projectSeries();
+        postInvalidateOnAnimation();
+    }
+
+    private float toValue(float x) {
+        return mWindowMinX + (x - mPlot.left) * (mWindowMaxX - mWindowMinX) / mPlot.width();
+    }
+
+
+    // No Javadoc
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!mLaidOut) return super.onTouchEvent(event);
+
+        // Keep a surrounding ScrollView from taking over while pinching
+        if (event.getPointerCount() > 1) {
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+
+        boolean handled = mScaleDetector.onTouchEvent(event);
+        handled = mGestureDetector.onTouchEvent(event) || handled;
+        return handled || super.onTouchEvent(event);
+    }
+
+
+    // No Javadoc
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (!mLaidOut) return;
+
+        canvas.drawLines(mGrid, mGridPaint);
+        for (int i = 0; i < GRID_LINES; i++) {
+            canvas.drawText(mLabels[i], mPlot.left, mGrid[i * 4 + 1] - mGridPaint.getStrokeWidth(),
+                    mLabelPaint);
+        }
+
+        // Buckets just outside of the window are projected as well
+        canvas.save();
+        canvas.clipRect(mPlot.left, 0f, mPlot.right, getHeight());
+        mData.draw(canvas);
+        if (mOverlay != null) {
+            mOverlay.draw(canvas);
+        }
+        canvas.restore();
+    }
+}
@@ -29,7 +29,7 @@ import android.view.View;
 import android.widget.Toast;
 
 import de.haukesomm.healthdemo.R;
-import de.haukesomm.healthdemo.privacy.PrivacyModeView;
+import de.haukesomm.healthdemo.privacy.AnonymizationService;
 
 /**
  * Created on 27.11.17
@@ -66,6 +66,9 @@ public class MainActivity extends AppCompatActivity {
         initFragments();
 
         launchSetupIfNecessary();
+
+        // Continues rewriting the stored data if the job got lost, e.g. by an app update
+        AnonymizationService.resume(this);
     }
 
 
@@ -106,8 +109,6 @@ public class MainActivity extends AppCompatActivity {
             case REQUEST_PRIVACY_SETUP:
                 mPrefs.edit().putBoolean(getString(R.string.pref_bool_privacy_setupPending), false)
                         .apply();
-            case PrivacyModeView.REQUEST_SELECT_PRIVACY_MODE:
-                mOverviewFragment.updatePrivacyMode();
                 break;
         }
     }
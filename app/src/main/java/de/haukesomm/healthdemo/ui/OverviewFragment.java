@@ -11,34 +11,39 @@
 
 package de.haukesomm.healthdemo.ui;
 
-import android.content.SharedPreferences;
+import android.content.Context;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ListView;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import de.haukesomm.healthdemo.R;
+import de.haukesomm.healthdemo.analytics.RollupPeriod;
+import de.haukesomm.healthdemo.analytics.Statistics;
+import de.haukesomm.healthdemo.data.Rollup;
 import de.haukesomm.healthdemo.data.SessionDatabase;
-import de.haukesomm.healthdemo.data.SessionDescription;
 import de.haukesomm.healthdemo.data.SessionDescriptionAdapter;
-import de.haukesomm.healthdemo.privacy.PrivacyMode;
-import de.haukesomm.healthdemo.privacy.PrivacyModeView;
 
 /**
  * Created on 27.11.17
  * <p>
  * This Fragment provides an overview over the user's
- * {@link de.haukesomm.healthdemo.privacy.PrivacyMode} settings and his 5 most recent sets of
- * driving data.
+ * {@link de.haukesomm.healthdemo.privacy.PrivacyMode} settings, the trend of his heart rate over
+ * the last weeks and his 5 most recent sets of driving data.<br>
+ * The trend is read from the weekly {@link Rollup}s and the stored heart rate statistics, so it
+ * costs a few rows per week regardless of how many measurements were taken.
  *
  * @author Hauke Sommerfeld
  */
@@ -46,9 +51,25 @@ public class OverviewFragment extends Fragment {
 
     private static final int MAX_PREVIEWS = 5;
 
+    private static final int TREND_WEEKS = 12;
 
+    private static final long MILLIS_PER_WEEK = 7 * 24 * 60 * 60 * 1000L;
 
-    private SharedPreferences mPrefs;
+    private static final float TREND_THICKNESS = 7f;
+
+
+    // Loads the trend in the background, one at a time
+    private static final ExecutorService sLoader = Executors.newSingleThreadExecutor();
+
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+
+    private SessionDescriptionAdapter mAdapter;
+
+    private View mTrendCard;
+
+    private TelematicsGraphView mTrend;
 
 
 
@@ -59,10 +80,6 @@ public class OverviewFragment extends Fragment {
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
                              @Nullable Bundle savedInstanceState) {
 
-        mPrefs = PreferenceManager.getDefaultSharedPreferences(getContext());
-
-
-
         View view = inflater.inflate(R.layout.fragment_overview, container, false);
 
         if (getContext() == null) {
@@ -70,41 +87,75 @@ public class OverviewFragment extends Fragment {
         }
 
 
-        mPrivacyModeView = view.findViewById(R.id.fragment_overview_privacyMode);
-        updatePrivacyMode();
-
-
-        ListView recents = view.findViewById(R.id.fragment_overview_list);
-
-        try (SessionDatabase database = new SessionDatabase(getContext())) {
-            List<SessionDescription> descriptions = database.listSessions();
+        RecyclerView recents = view.findViewById(R.id.fragment_overview_list);
+        recents.setLayoutManager(new LinearLayoutManager(getContext()));
+        recents.setHasFixedSize(true);
 
-            List<SessionDescription> newest = new ArrayList<>();
-            for (int i = 0; i < descriptions.size() && i < 5; i++) {
-                newest.add(descriptions.get(i));
-            }
-            Collections.reverse(newest);
-
-            SessionDescriptionAdapter adapter = new SessionDescriptionAdapter(getContext(), newest);
-            recents.setAdapter(adapter);
-        }
+        mAdapter = new SessionDescriptionAdapter(getContext(), MAX_PREVIEWS);
+        recents.setAdapter(mAdapter);
 
+        mTrendCard = view.findViewById(R.id.fragment_overview_trendCard);
+        mTrend = view.findViewById(R.id.fragment_overview_trend);
 
         return view;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStart() {
+        super.onStart();
+        // Sessions may have been added or deleted while the Fragment was stopped
+        if (mAdapter != null) mAdapter.refresh();
+        if (mTrend != null) loadTrend();
+    }
+
 
+    private void loadTrend() {
+        final Context context = getContext().getApplicationContext();
+        sLoader.execute(new Runnable() {
+            @Override
+            public void run() {
+                TimeZone zone = TimeZone.getDefault();
+                long now = System.currentTimeMillis();
+                long from = RollupPeriod.WEEK.getStart(now - (TREND_WEEKS - 1) * MILLIS_PER_WEEK,
+                        zone);
+                long to = RollupPeriod.WEEK.getNext(RollupPeriod.WEEK.getStart(now, zone), zone);
+
+                final List<Rollup> rollups;
+                final Statistics statistics;
+                try (SessionDatabase database = new SessionDatabase(context)) {
+                    rollups = database.listRollups(RollupPeriod.WEEK, from, to);
+                    statistics = database.getHeartrateStatistics(null, from, to);
+                }
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (getView() != null) showTrend(rollups, statistics);
+                    }
+                });
+            }
+        });
+    }
 
-    private PrivacyModeView mPrivacyModeView;
+    // Weeks without Sessions or heart rates are left out of the graph
+    private void showTrend(List<Rollup> rollups, Statistics statistics) {
+        double[] averages = new double[rollups.size()];
+        int size = 0;
+        for (Rollup rollup : rollups) {
+            double average = rollup.getAverageHeartrate();
+            if (!Double.isNaN(average)) averages[size++] = average;
+        }
 
+        if (size < 2) {
+            mTrendCard.setVisibility(View.GONE);
+            return;
+        }
 
-    // TODO Make this method part of the View itself
-    @Deprecated
-    public void updatePrivacyMode() {
-        int id = mPrefs
-                .getInt(getString(R.string.pref_int_privacy_lastModeID), PrivacyMode.UNKNOWN.getID());
-        PrivacyMode mode = PrivacyMode.fromID(id);
-        mPrivacyModeView.setMode(mode);
+        mTrend.setData(new GraphSeries(averages, size,
+                mTrend.getContext().getColor(R.color.colorAccent), TREND_THICKNESS), statistics);
+        mTrendCard.setVisibility(View.VISIBLE);
     }
-
 }
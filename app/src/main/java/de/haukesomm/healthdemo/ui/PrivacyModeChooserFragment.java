@@ -12,12 +12,12 @@
 package de.haukesomm.healthdemo.ui;
 
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.content.DialogInterface;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
+import android.support.v7.app.AlertDialog;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -31,8 +31,14 @@ import android.widget.TextView;
 import java.util.Arrays;
 
 import de.haukesomm.healthdemo.R;
+import de.haukesomm.healthdemo.data.GeocodingCache;
+import de.haukesomm.healthdemo.data.ProjectionCache;
+import de.haukesomm.healthdemo.data.RouteThumbnailCache;
+import de.haukesomm.healthdemo.privacy.AnonymizationService;
+import de.haukesomm.healthdemo.privacy.PrivacyConfigStore;
 import de.haukesomm.healthdemo.privacy.PrivacyMode;
 import de.haukesomm.healthdemo.privacy.PrivacyModeAdapter;
+import de.haukesomm.healthdemo.privacy.StorageTier;
 
 /**
  * Created on 21.02.18
@@ -43,10 +49,6 @@ import de.haukesomm.healthdemo.privacy.PrivacyModeAdapter;
  */
 public class PrivacyModeChooserFragment extends Fragment {
 
-    private SharedPreferences mPrefs;
-
-
-
     /**
      * {@inheritDoc}
      */
@@ -54,8 +56,6 @@ public class PrivacyModeChooserFragment extends Fragment {
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container,
             @Nullable Bundle savedInstanceState) {
 
-        mPrefs = PreferenceManager.getDefaultSharedPreferences(getContext());
-
         return setupFragment(inflater.inflate(R.layout.fragment_privacymodechooser, container, false));
     }
 
@@ -157,24 +157,40 @@ public class PrivacyModeChooserFragment extends Fragment {
 
         mPrivacyModes.setAdapter(new PrivacyModeAdapter(getContext(), modes));
 
-        int lastID = mPrefs.getInt(getString(R.string.pref_int_privacy_lastModeID), modes[0].getID());
-        PrivacyMode lastMode = PrivacyMode.fromID(lastID);
-        mPrivacyModes.setSelection(Arrays.asList(modes).indexOf(lastMode));
+        final PrivacyConfigStore store = PrivacyConfigStore.getInstance(getContext());
+        mPrivacyModes.setSelection(Arrays.asList(modes).indexOf(store.getMode()));
 
         mPrivacyModes.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-            private SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getContext());
-
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                PrivacyMode mode = modes[position];
-
-                prefs.edit()
-                        .putInt(getString(R.string.pref_int_privacy_lastModeID), mode.getID())
-                        .apply();
-
-                if (mModeListener != null) {
-                    mModeListener.onModeChanged(mode);
+                final PrivacyMode mode = modes[position];
+
+                // Compacting stored Measurements can not be undone, see StorageTier
+                if (StorageTier.of(mode).compareTo(StorageTier.of(store.getMode())) > 0) {
+                    new AlertDialog.Builder(getContext())
+                            .setTitle(R.string.privacy_mode_compact_title)
+                            .setMessage(R.string.privacy_mode_compact_message)
+                            .setPositiveButton(R.string.privacy_mode_compact_confirm,
+                                    new DialogInterface.OnClickListener() {
+                                        @Override
+                                        public void onClick(DialogInterface dialog, int which) {
+                                            changeMode(store, mode);
+                                        }
+                                    })
+                            .setNegativeButton(R.string.cancel, null)
+                            .setOnDismissListener(new DialogInterface.OnDismissListener() {
+                                @Override
+                                public void onDismiss(DialogInterface dialog) {
+                                    // Shows the previous mode again if the user has cancelled
+                                    mPrivacyModes.setSelection(
+                                            Arrays.asList(modes).indexOf(store.getMode()));
+                                }
+                            })
+                            .show();
+                    return;
                 }
+
+                changeMode(store, mode);
             }
 
             @Override
@@ -185,6 +201,21 @@ public class PrivacyModeChooserFragment extends Fragment {
     }
 
 
+    private void changeMode(PrivacyConfigStore store, PrivacyMode mode) {
+        // Projections, thumbnails and addresses of the previous mode are rebuilt lazily
+        if (store.setMode(mode)) {
+            ProjectionCache.getInstance(getContext()).invalidate();
+            RouteThumbnailCache.getInstance(getContext()).invalidate();
+            GeocodingCache.getInstance(getContext()).invalidate();
+            AnonymizationService.start(getContext(), mode);
+        }
+
+        if (mModeListener != null) {
+            mModeListener.onModeChanged(mode);
+        }
+    }
+
+
     /**
      * this method enables/disables the optional collapse of this Fragment in order to save space.
      * A dedicated button will appear.
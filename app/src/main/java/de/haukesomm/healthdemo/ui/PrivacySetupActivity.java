@@ -1,9 +1,6 @@
 package de.haukesomm.healthdemo.ui;
 
-import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
 import android.view.Menu;
@@ -11,21 +8,16 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 
 import de.haukesomm.healthdemo.R;
-import de.haukesomm.healthdemo.privacy.PrivacyMode;
-import de.haukesomm.healthdemo.privacy.PrivacyModeView;
 
 public class PrivacySetupActivity extends AppCompatActivity {
 
-    private PrivacyModeView mPrivacyModeView;
-
-
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_setup_privacy);
 
+        // The PrivacyModeView follows the PrivacyConfigStore on its own
         initToolbar();
-        initPrivacyMode();
     }
 
 
@@ -34,10 +26,6 @@ public class PrivacySetupActivity extends AppCompatActivity {
         setSupportActionBar(toolbar);
     }
 
-    private void initPrivacyMode() {
-        mPrivacyModeView = findViewById(R.id.activity_policy_privacy_mode);
-        updatePrivacyMode();
-    }
 
 
     @Override
@@ -57,25 +45,4 @@ public class PrivacySetupActivity extends AppCompatActivity {
                 return super.onOptionsItemSelected(item);
         }
     }
-
-
-    @Override
-    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
-        switch (requestCode) {
-            case PrivacyModeView.REQUEST_SELECT_PRIVACY_MODE:
-                updatePrivacyMode();
-                break;
-        }
-    }
-
-
-    // TODO Make this method part of the View itself
-    @Deprecated
-    public void updatePrivacyMode() {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-        int id = prefs
-                .getInt(getString(R.string.pref_int_privacy_lastModeID), PrivacyMode.UNKNOWN.getID());
-        PrivacyMode mode = PrivacyMode.fromID(id);
-        mPrivacyModeView.setMode(mode);
-    }
 }
@@ -20,22 +20,16 @@ import android.util.AttributeSet;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
-import com.jjoe64.graphview.GraphView;
-import com.jjoe64.graphview.GridLabelRenderer;
-import com.jjoe64.graphview.Viewport;
-import com.jjoe64.graphview.series.DataPoint;
-import com.jjoe64.graphview.series.LineGraphSeries;
-import com.jjoe64.graphview.series.Series;
-
 import java.text.DecimalFormat;
 
 import de.haukesomm.healthdemo.R;
+import de.haukesomm.healthdemo.analytics.Statistics;
 
 /**
  * Created on 27.12.17
  * <p>
- * This View is a more powerful {@link GraphView} featuring an additional title, headline as well as
- * maximum and minimum value statistics.
+ * This View is a more powerful {@link LineGraphView} featuring an additional title, headline as
+ * well as maximum and minimum value statistics.
  *
  * @author Hauke Sommerfeld
  */
@@ -48,13 +42,15 @@ public class TelematicsGraphView extends LinearLayout {
      * @param icon      Icon to use for the graph
      * @param title     The title of the Graph
      * @param data      The actual data to use for the graph
+     * @param statistics  Statistics of the data displayed in the header
      */
     public TelematicsGraphView(@NonNull Context context, @Nullable Drawable icon, @Nullable String title,
-                               @NonNull LineGraphSeries<DataPoint> data) {
+                               @NonNull GraphSeries data,
+                               @NonNull Statistics statistics) {
         super(context);
 
         init(icon, title);
-        setData(data);
+        setData(data, statistics);
     }
 
 
@@ -92,7 +88,7 @@ public class TelematicsGraphView extends LinearLayout {
 
 
 
-    private GraphView mGraph;
+    private LineGraphView mGraph;
 
 
     private TextView mMaximum;
@@ -101,11 +97,15 @@ public class TelematicsGraphView extends LinearLayout {
     private TextView mMinimum;
 
 
+    private TextView mAverage;
+
+
     private void bindView() {
         mTitle = findViewById(R.id.graph_telematics_title);
         mGraph = findViewById(R.id.graph_telematics_graph);
         mMaximum = findViewById(R.id.graph_telematics_maximum_value);
         mMinimum = findViewById(R.id.graph_telematics_minimum_value);
+        mAverage = findViewById(R.id.graph_telematics_average_value);
     }
 
 
@@ -114,34 +114,45 @@ public class TelematicsGraphView extends LinearLayout {
 
 
 
-    private Series<DataPoint> mData;
-
-
     /**
-     * Use this method to provide the grpah's data in form of a {@link LineGraphSeries} in case you
-     * created the View from XML or want to update the data.
+     * Use this method to provide the graph's data in form of a {@link GraphSeries} in case you
+     * created the View from XML or want to update the data.<br>
+     * The header values and the vertical bounds are taken from the provided {@link Statistics}
+     * instead of scanning the series again.
      *
-     * @param data  The graph's data
+     * @param data          The graph's data
+     * @param statistics    Statistics of the graph's data
      */
-    public void setData(@NonNull Series<DataPoint> data) {
-        mData = data;
-
+    public void setData(@NonNull GraphSeries data, @NonNull Statistics statistics) {
+        // The graph starts at zero unless there are negative values
+        float minY = 0f;
+        float maxY = 1f;
+        if (statistics.getCount() > 0) {
+            minY = (float) Math.min(0d, statistics.getMin());
+            maxY = (float) Math.max(minY + 1d, statistics.getMax());
+        }
+        mGraph.setData(data, minY, maxY);
+
+        mMaximum.setText(format(statistics.getMax()));
+        mMinimum.setText(format(statistics.getMin()));
+        mAverage.setText(format(statistics.getMean()));
+    }
 
-        mGraph.removeAllSeries();
-        mGraph.addSeries(mData);
 
-        // Setup Viewport
-        Viewport viewport = mGraph.getViewport();
-        viewport.setXAxisBoundsManual(true);
-        viewport.setMaxX(viewport.getMaxX(true));
-        viewport.setYAxisBoundsManual(true);
-        viewport.setMaxY(viewport.getMaxY(true));
+    /**
+     * Use this method to draw an additional series on top of the graph's data, e.g. a smoothed
+     * curve. The overlay does not affect the header values or the bounds of the graph.
+     *
+     * @param overlay   Series to draw on top of the data or null to remove the overlay
+     */
+    public void setOverlay(@Nullable GraphSeries overlay) {
+        mGraph.setOverlay(overlay);
+    }
 
-        // Setup labels
-        GridLabelRenderer labelRenderer = mGraph.getGridLabelRenderer();
-        labelRenderer.setHorizontalLabelsVisible(false);
 
-        mMaximum.setText(mNumberFormat.format(mData.getHighestValueY()));
-        mMinimum.setText(mNumberFormat.format(mData.getLowestValueY()));
+    private String format(double value) {
+        return Double.isNaN(value)
+                ? getContext().getString(R.string.unknown)
+                : mNumberFormat.format(value);
     }
 }
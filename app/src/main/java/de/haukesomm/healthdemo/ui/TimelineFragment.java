@@ -15,16 +15,13 @@ import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ListView;
-
-import java.util.List;
 
 import de.haukesomm.healthdemo.R;
-import de.haukesomm.healthdemo.data.SessionDatabase;
-import de.haukesomm.healthdemo.data.SessionDescription;
 import de.haukesomm.healthdemo.data.SessionDescriptionAdapter;
 
 /**
@@ -37,6 +34,10 @@ import de.haukesomm.healthdemo.data.SessionDescriptionAdapter;
  */
 public class TimelineFragment extends Fragment {
 
+    private SessionDescriptionAdapter mAdapter;
+
+
+
     /**
      * {@inheritDoc}
      */
@@ -51,16 +52,26 @@ public class TimelineFragment extends Fragment {
         }
 
 
-        ListView recents = view.findViewById(R.id.fragment_timeline_list);
+        RecyclerView recents = view.findViewById(R.id.fragment_timeline_list);
+        recents.setLayoutManager(new LinearLayoutManager(getContext()));
+        recents.setHasFixedSize(true);
 
-        try (SessionDatabase database = new SessionDatabase(getContext())) {
-            List<SessionDescription> descriptions = database.listSessions();
-            SessionDescriptionAdapter adapter = new SessionDescriptionAdapter(getContext(), descriptions);
-            recents.setAdapter(adapter);
-        }
+        // Further pages are loaded while scrolling
+        mAdapter = new SessionDescriptionAdapter(getContext(), SessionDescriptionAdapter.NO_LIMIT);
+        recents.setAdapter(mAdapter);
 
 
         return view;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStart() {
+        super.onStart();
+        // Sessions may have been added or deleted while the Fragment was stopped
+        if (mAdapter != null) mAdapter.refresh();
+    }
+
 }
@@ -0,0 +1,164 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Tests the invariants of routes simplified by a {@link RouteSimplifier}: the endpoints are kept,
+ * the vertex limit holds, vertices keep their order and larger tolerances keep a subset of the
+ * vertices of smaller ones.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class RouteSimplifierTest {
+
+    private static final int SIZE = 5000;
+
+
+    private final double[] mLatitudes = new double[SIZE];
+
+    private final double[] mLongitudes = new double[SIZE];
+
+
+    // A random walk around Hamburg with roughly 5 meters per sample
+    public RouteSimplifierTest() {
+        Random random = new Random(1);
+        double latitude = 53.55d;
+        double longitude = 9.99d;
+        double heading = 0d;
+        for (int i = 0; i < SIZE; i++) {
+            heading += random.nextGaussian() * 0.3d;
+            latitude += Math.cos(heading) * 0.000045d;
+            longitude += Math.sin(heading) * 0.000075d;
+            mLatitudes[i] = latitude;
+            mLongitudes[i] = longitude;
+        }
+    }
+
+
+    @Test
+    public void keepsEndpoints() {
+        RouteSimplifier simplifier = new RouteSimplifier(mLatitudes, mLongitudes, SIZE);
+        double[] tolerances = { 0d, 1d, 10d, 100d, 1e6d, Double.POSITIVE_INFINITY };
+        for (double tolerance : tolerances) {
+            for (int maxVertices = 2; maxVertices <= SIZE; maxVertices *= 3) {
+                RouteSimplifier.Route route = simplifier.simplify(tolerance, maxVertices);
+                assertTrue(route.size() >= 2);
+                assertEquals(mLatitudes[0], route.latitudes[0], 0d);
+                assertEquals(mLongitudes[0], route.longitudes[0], 0d);
+                assertEquals(mLatitudes[SIZE - 1], route.latitudes[route.size() - 1], 0d);
+                assertEquals(mLongitudes[SIZE - 1], route.longitudes[route.size() - 1], 0d);
+            }
+        }
+    }
+
+    @Test
+    public void respectsVertexLimit() {
+        RouteSimplifier simplifier = new RouteSimplifier(mLatitudes, mLongitudes, SIZE);
+        for (int maxVertices = 2; maxVertices <= 2 * SIZE; maxVertices = maxVertices * 2 + 1) {
+            RouteSimplifier.Route route = simplifier.simplify(0d, maxVertices);
+            assertEquals(Math.min(maxVertices, SIZE), route.size());
+            assertEquals(route.size(), route.latitudes.length);
+            assertEquals(route.size(), route.longitudes.length);
+        }
+    }
+
+    @Test
+    public void largerToleranceKeepsSubset() {
+        RouteSimplifier simplifier = new RouteSimplifier(mLatitudes, mLongitudes, SIZE);
+        RouteSimplifier.Route previous = simplifier.simplify(0d, SIZE);
+        assertEquals(SIZE, previous.size());
+
+        for (double tolerance = 0.5d; tolerance < 1000d; tolerance *= 2) {
+            RouteSimplifier.Route route = simplifier.simplify(tolerance, SIZE);
+            assertTrue(route.size() <= previous.size());
+            assertOrderedSubset(route, previous);
+            previous = route;
+        }
+    }
+
+    @Test
+    public void straightLineKeepsEndpointsOnly() {
+        double[] latitudes = new double[100];
+        double[] longitudes = new double[100];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = 53.55d + i * 0.0001d;
+            longitudes[i] = 9.99d;
+        }
+
+        RouteSimplifier.Route route = new RouteSimplifier(latitudes, longitudes, 100)
+                .simplify(0.1d, 100);
+        assertEquals(2, route.size());
+        assertEquals(latitudes[0], route.latitudes[0], 0d);
+        assertEquals(latitudes[99], route.latitudes[1], 0d);
+    }
+
+    @Test
+    public void dropsInvalidFixes() {
+        double[] latitudes = mLatitudes.clone();
+        double[] longitudes = mLongitudes.clone();
+        latitudes[0] = 0d;
+        longitudes[0] = 0d;
+        latitudes[100] = Double.NaN;
+        latitudes[SIZE - 1] = 91d;
+
+        RouteSimplifier simplifier = new RouteSimplifier(latitudes, longitudes, SIZE);
+        assertEquals(SIZE - 3, simplifier.size());
+
+        RouteSimplifier.Route route = simplifier.simplify(0d, SIZE);
+        assertEquals(SIZE - 3, route.size());
+        assertEquals(mLatitudes[1], route.latitudes[0], 0d);
+        assertEquals(mLatitudes[SIZE - 2], route.latitudes[route.size() - 1], 0d);
+        for (int i = 0; i < route.size(); i++) {
+            assertTrue(Kinematics.isValidFix(route.latitudes[i], route.longitudes[i]));
+        }
+    }
+
+    @Test
+    public void smallRoutes() {
+        RouteSimplifier empty = new RouteSimplifier(new double[0], new double[0], 0);
+        assertEquals(0, empty.simplify(10d, 2).size());
+        assertTrue(Double.isNaN(empty.getNorth()));
+
+        RouteSimplifier single = new RouteSimplifier(new double[] { 53.55d },
+                new double[] { 9.99d }, 1);
+        assertEquals(1, single.simplify(10d, 2).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooFewVertices() {
+        new RouteSimplifier(mLatitudes, mLongitudes, SIZE).simplify(10d, 1);
+    }
+
+
+    private static void assertOrderedSubset(RouteSimplifier.Route subset,
+                                            RouteSimplifier.Route route) {
+        int j = 0;
+        for (int i = 0; i < subset.size(); i++) {
+            while (j < route.size() && (route.latitudes[j] != subset.latitudes[i]
+                    || route.longitudes[j] != subset.longitudes[i])) {
+                j++;
+            }
+            assertTrue("Vertex " + i + " is not part of the larger route", j < route.size());
+            j++;
+        }
+    }
+}
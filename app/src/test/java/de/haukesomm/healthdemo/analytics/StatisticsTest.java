@@ -0,0 +1,173 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Tests merging and serializing {@link Statistics}. Merged and restored Statistics have to answer
+ * every query like Statistics accumulated from all values at once.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class StatisticsTest {
+
+    private static final double DELTA = 1e-9;
+
+
+    @Test
+    public void mergeEqualsSinglePass() {
+        int[] values = heartrates(10000, 1);
+
+        Statistics all = Statistics.forHeartrate();
+        all.addAll(values, 0, values.length);
+
+        Statistics merged = Statistics.forHeartrate();
+        for (int from = 0; from < values.length; from += 999) {
+            Statistics part = Statistics.forHeartrate();
+            part.addAll(values, from, Math.min(values.length, from + 999));
+            merged.merge(part);
+        }
+
+        assertSameStatistics(all, merged);
+    }
+
+    @Test
+    public void mergeMatchesExactMoments() {
+        int[] values = heartrates(5000, 2);
+        Statistics left = Statistics.forHeartrate();
+        left.addAll(values, 0, 1234);
+        Statistics right = Statistics.forHeartrate();
+        for (int i = 1234; i < values.length; i++) {
+            right.add(values[i]);
+        }
+        left.merge(right);
+
+        double sum = 0d;
+        for (int value : values) sum += value;
+        double mean = sum / values.length;
+        double squares = 0d;
+        for (int value : values) squares += (value - mean) * (value - mean);
+
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        assertEquals(values.length, left.getCount());
+        assertEquals(sorted[0], left.getMin(), 0d);
+        assertEquals(sorted[sorted.length - 1], left.getMax(), 0d);
+        assertEquals(mean, left.getMean(), DELTA);
+        assertEquals(squares / values.length, left.getVariance(), 1e-6);
+        // One bucket per beat per minute
+        assertEquals(sorted[sorted.length / 2], left.getPercentile(50), 1d);
+    }
+
+    @Test
+    public void mergeEmpty() {
+        Statistics statistics = Statistics.forHeartrate();
+        statistics.add(80);
+        statistics.merge(Statistics.forHeartrate());
+        assertEquals(1, statistics.getCount());
+        assertEquals(80d, statistics.getMean(), 0d);
+
+        Statistics empty = Statistics.forHeartrate();
+        empty.merge(statistics);
+        assertSameStatistics(statistics, empty);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mergeRejectsOtherLayout() {
+        Statistics.forHeartrate().merge(new Statistics(0, 100, 10));
+    }
+
+
+    @Test
+    public void bytesRoundTrip() {
+        int[] values = heartrates(10000, 3);
+        Statistics statistics = Statistics.forHeartrate();
+        statistics.addAll(values, 0, values.length);
+        // Counts above 127 need more than one byte
+        for (int i = 0; i < 300; i++) statistics.add(255);
+
+        Statistics restored = Statistics.fromBytes(statistics.toBytes());
+        assertSameStatistics(statistics, restored);
+        assertArrayEquals(statistics.toBytes(), restored.toBytes());
+    }
+
+    @Test
+    public void bytesRoundTripEmpty() {
+        Statistics restored = Statistics.fromBytes(Statistics.forHeartrate().toBytes());
+        assertEquals(0, restored.getCount());
+        assertTrue(Double.isNaN(restored.getMean()));
+        assertTrue(Double.isNaN(restored.getPercentile(50)));
+    }
+
+    @Test
+    public void restoredStatisticsMerge() {
+        int[] values = heartrates(2000, 4);
+        Statistics left = Statistics.forHeartrate();
+        left.addAll(values, 0, 1000);
+        Statistics right = Statistics.forHeartrate();
+        right.addAll(values, 1000, 2000);
+        Statistics all = Statistics.forHeartrate();
+        all.addAll(values, 0, 2000);
+
+        Statistics merged = Statistics.fromBytes(left.toBytes());
+        merged.merge(Statistics.fromBytes(right.toBytes()));
+        assertSameStatistics(all, merged);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromBytesRejectsTruncated() {
+        Statistics statistics = Statistics.forHeartrate();
+        statistics.add(80);
+        byte[] bytes = statistics.toBytes();
+        Statistics.fromBytes(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromBytesRejectsUnknownVersion() {
+        byte[] bytes = Statistics.forHeartrate().toBytes();
+        bytes[0]++;
+        Statistics.fromBytes(bytes);
+    }
+
+
+    private static int[] heartrates(int size, long seed) {
+        Random random = new Random(seed);
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = 60 + random.nextInt(120);
+        }
+        return values;
+    }
+
+    private static void assertSameStatistics(Statistics expected, Statistics actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getMin(), actual.getMin(), 0d);
+        assertEquals(expected.getMax(), actual.getMax(), 0d);
+        assertEquals(expected.getMean(), actual.getMean(), DELTA);
+        assertEquals(expected.getVariance(), actual.getVariance(), 1e-6);
+        for (int percentile = 0; percentile <= 100; percentile += 5) {
+            assertEquals(expected.getPercentile(percentile), actual.getPercentile(percentile),
+                    DELTA);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Tests that a {@link ChunkCipher} only opens chunks sealed for the same key, Session, chunk
+ * index and purpose and rejects any modification.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class ChunkCipherTest {
+
+    private static final byte[] PLAINTEXT = "2018-08-24T10:00:00+02:00;53.55;9.99;80"
+            .getBytes(Charset.forName("UTF-8"));
+
+
+    private final SecretKey mKey = ChunkCipher.generateKey();
+
+    private final ChunkCipher mCipher = new ChunkCipher(mKey, 1);
+
+
+    @Test
+    public void roundTrip() {
+        assertArrayEquals(PLAINTEXT, mCipher.open(3, mCipher.seal(3, PLAINTEXT)));
+        assertArrayEquals(new byte[0], mCipher.open(0, mCipher.seal(0, new byte[0])));
+    }
+
+    @Test
+    public void sealUsesFreshIvs() {
+        byte[] first = mCipher.seal(3, PLAINTEXT);
+        byte[] second = mCipher.seal(3, PLAINTEXT);
+        assertFalse(Arrays.equals(first, second));
+    }
+
+    @Test
+    public void openedByOtherInstanceWithSameKey() {
+        byte[] sealed = mCipher.seal(3, PLAINTEXT);
+        assertArrayEquals(PLAINTEXT, new ChunkCipher(mKey, 1).open(3, sealed));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsTamperedCiphertext() {
+        byte[] sealed = mCipher.seal(3, PLAINTEXT);
+        sealed[sealed.length / 2] ^= 1;
+        mCipher.open(3, sealed);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsTamperedIv() {
+        byte[] sealed = mCipher.seal(3, PLAINTEXT);
+        sealed[0] ^= 1;
+        mCipher.open(3, sealed);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsTamperedTag() {
+        byte[] sealed = mCipher.seal(3, PLAINTEXT);
+        sealed[sealed.length - 1] ^= 1;
+        mCipher.open(3, sealed);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsTruncated() {
+        byte[] sealed = mCipher.seal(3, PLAINTEXT);
+        mCipher.open(3, Arrays.copyOf(sealed, sealed.length - 1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsOtherChunkIndex() {
+        mCipher.open(4, mCipher.seal(3, PLAINTEXT));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsOtherSession() {
+        new ChunkCipher(mKey, 2).open(3, mCipher.seal(3, PLAINTEXT));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsOtherKey() {
+        new ChunkCipher(ChunkCipher.generateKey(), 1).open(3, mCipher.seal(3, PLAINTEXT));
+    }
+
+    @Test
+    public void roundTripWithPurpose() {
+        assertArrayEquals(PLAINTEXT, mCipher.open(ChunkCipher.KINEMATICS, 3,
+                mCipher.seal(ChunkCipher.KINEMATICS, 3, PLAINTEXT)));
+        assertArrayEquals(PLAINTEXT, mCipher.open(ChunkCipher.MEASUREMENTS, 3,
+                mCipher.seal(3, PLAINTEXT)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsDerivedChunkAsMeasurements() {
+        mCipher.open(3, mCipher.seal(ChunkCipher.KINEMATICS, 3, PLAINTEXT));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsMeasurementsAsDerivedChunk() {
+        mCipher.open(ChunkCipher.KINEMATICS, 3, mCipher.seal(3, PLAINTEXT));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsOtherPurpose() {
+        mCipher.open(ChunkCipher.KINEMATICS + 1, 3,
+                mCipher.seal(ChunkCipher.KINEMATICS, 3, PLAINTEXT));
+    }
+}
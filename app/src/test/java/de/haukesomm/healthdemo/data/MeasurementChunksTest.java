@@ -0,0 +1,110 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Tests encoding and decoding {@link MeasurementChunks}.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class MeasurementChunksTest {
+
+    private static final String[] TIMESTAMPS = {
+            "2018-08-24T10:00:00+02:00", "2018-08-24T10:00:01+02:00", "not a timestamp", "",
+            "2018-08-24T08:00:03Z"
+    };
+
+    private static final long[] TIMES = {
+            1535097600000L, 1535097601000L, Timestamps.INVALID, Timestamps.INVALID, 1535097603000L
+    };
+
+    private static final double[] LATITUDES = { 53.55d, 53.5501d, Double.NaN, -90d, 90d };
+
+    private static final double[] LONGITUDES = { 9.99d, 9.9901d, Double.NaN, -180d, 180d };
+
+    private static final int[] HEARTRATES = { 80, 81, -1, 0, 255 };
+
+
+    @Test
+    public void roundTrip() {
+        MeasurementChunks.Chunk chunk = MeasurementChunks.decode(MeasurementChunks.encode(
+                TIMESTAMPS, TIMES, LATITUDES, LONGITUDES, HEARTRATES, 0, TIMES.length));
+
+        assertEquals(TIMES.length, chunk.size());
+        assertArrayEquals(TIMESTAMPS, chunk.timestamps);
+        assertArrayEquals(TIMES, chunk.times);
+        assertArrayEquals(LATITUDES, chunk.latitudes, 0d);
+        assertArrayEquals(LONGITUDES, chunk.longitudes, 0d);
+        assertArrayEquals(HEARTRATES, chunk.heartrates);
+    }
+
+    @Test
+    public void roundTripRange() {
+        MeasurementChunks.Chunk chunk = MeasurementChunks.decode(MeasurementChunks.encode(
+                TIMESTAMPS, TIMES, LATITUDES, LONGITUDES, HEARTRATES, 1, 4));
+
+        assertEquals(3, chunk.size());
+        assertArrayEquals(Arrays.copyOfRange(TIMESTAMPS, 1, 4), chunk.timestamps);
+        assertArrayEquals(Arrays.copyOfRange(TIMES, 1, 4), chunk.times);
+        assertArrayEquals(Arrays.copyOfRange(LATITUDES, 1, 4), chunk.latitudes, 0d);
+        assertArrayEquals(Arrays.copyOfRange(LONGITUDES, 1, 4), chunk.longitudes, 0d);
+        assertArrayEquals(Arrays.copyOfRange(HEARTRATES, 1, 4), chunk.heartrates);
+    }
+
+    @Test
+    public void roundTripEmpty() {
+        MeasurementChunks.Chunk chunk = MeasurementChunks.decode(MeasurementChunks.encode(
+                TIMESTAMPS, TIMES, LATITUDES, LONGITUDES, HEARTRATES, 2, 2));
+        assertEquals(0, chunk.size());
+    }
+
+    @Test
+    public void roundTripNonAscii() {
+        String[] timestamps = { "2018-08-24T10:00:00+02:00\u00e4\u20ac" };
+        MeasurementChunks.Chunk chunk = MeasurementChunks.decode(MeasurementChunks.encode(
+                timestamps, new long[1], new double[1], new double[1], new int[1], 0, 1));
+        assertArrayEquals(timestamps, chunk.timestamps);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeRejectsTruncated() {
+        byte[] data = MeasurementChunks.encode(TIMESTAMPS, TIMES, LATITUDES, LONGITUDES,
+                HEARTRATES, 0, TIMES.length);
+        MeasurementChunks.decode(Arrays.copyOf(data, data.length - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeRejectsUnknownVersion() {
+        byte[] data = MeasurementChunks.encode(TIMESTAMPS, TIMES, LATITUDES, LONGITUDES,
+                HEARTRATES, 0, TIMES.length);
+        data[0]++;
+        MeasurementChunks.decode(data);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeRejectsInvalidSize() {
+        byte[] data = MeasurementChunks.encode(TIMESTAMPS, TIMES, LATITUDES, LONGITUDES,
+                HEARTRATES, 0, TIMES.length);
+        data[1] = (byte) 0x80;
+        MeasurementChunks.decode(data);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import org.junit.Test;
+
+import de.haukesomm.healthdemo.privacy.PrivacyMode;
+import de.haukesomm.healthdemo.privacy.PrivacySettings;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Tests which Measurements a {@link PrivacyProjection} keeps when resampling to the collection
+ * interval and that projected values are read from the kept Measurements.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class PrivacyProjectionTest {
+
+    private static final long START = Timestamps.parse("2018-08-24T10:00:00Z");
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+
+    @Test
+    public void keepsAllWithoutInterval() {
+        Session session = session(new long[] { 0, 10, 20, 70, 130 });
+        PrivacyProjection projection = new PrivacyProjection(session, PrivacySettings.UNRESTRICTED);
+
+        assertEquals(5, projection.size());
+        assertEquals(5, projection.getSourceSize());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, projection.getSourceIndex(i));
+        }
+    }
+
+    @Test
+    public void keepsFirstOfEachInterval() {
+        // Seconds after the start, two measurements in the first minute share a time
+        Session session = session(new long[] { 0, 0, 30, 59, 60, 61, 179, 180, 600 });
+        PrivacyProjection projection = new PrivacyProjection(session, interval(1));
+
+        assertSourceIndices(new int[] { 0, 4, 6, 7, 8 }, projection);
+        assertEquals(9, projection.getSourceSize());
+    }
+
+    @Test
+    public void intervalsAreAlignedToTheClock() {
+        // Starts at 10:00:45, so the second measurement already starts a new minute
+        Session session = session(new long[] { 45, 75, 100, 125 });
+        PrivacyProjection projection = new PrivacyProjection(session, interval(1));
+
+        assertSourceIndices(new int[] { 0, 1, 3 }, projection);
+    }
+
+    @Test
+    public void dropsMalformedTimestamps() {
+        Session session = new Session(1, SessionType.RUN, "Test");
+        session.add("malformed", 53.5d, 10d, 80);
+        session.add(Timestamps.format(START, 0), 53.5d, 10d, 81);
+        session.add(Timestamps.format(START + 5 * MILLIS_PER_MINUTE, 0), 53.5d, 10d, 82);
+        session.sort();
+
+        PrivacyProjection projection = new PrivacyProjection(session, interval(1));
+        assertSourceIndices(new int[] { 1, 2 }, projection);
+        assertEquals(3, projection.getSourceSize());
+    }
+
+    @Test
+    public void projectedValuesFollowSourceIndices() {
+        long[] seconds = new long[200];
+        for (int i = 0; i < seconds.length; i++) seconds[i] = i * 7;
+        Session session = session(seconds);
+        PrivacyProjection projection = new PrivacyProjection(session, interval(5));
+
+        int[] heartrates = projection.getHeartrates();
+        long[] times = projection.getTimes();
+        for (int i = 0; i < projection.size(); i++) {
+            int source = projection.getSourceIndex(i);
+            assertEquals(session.getHeartrates()[source], projection.getHeartrate(i));
+            assertEquals(session.getHeartrates()[source], heartrates[i]);
+            assertEquals(session.getTimes()[source], projection.getTime(i));
+            assertEquals(session.getTimes()[source], times[i]);
+            assertEquals(session.getTimestamps()[source], projection.getTimestamp(i));
+            // Each kept Measurement starts the next 5 minute interval
+            if (i > 0) {
+                long previous = (times[i - 1] - START) / (5 * MILLIS_PER_MINUTE);
+                assertEquals(previous + 1, (times[i] - START) / (5 * MILLIS_PER_MINUTE));
+            }
+        }
+        assertEquals(seconds[seconds.length - 1] / (5 * 60) + 1, projection.size());
+    }
+
+    @Test
+    public void emptySession() {
+        PrivacyProjection projection = new PrivacyProjection(
+                new Session(1, SessionType.RUN, "Test"), interval(1));
+        assertEquals(0, projection.size());
+        assertEquals(0, projection.getSourceSize());
+    }
+
+
+    private static PrivacySettings interval(int minutes) {
+        return new PrivacySettings(PrivacyMode.USER_DEFINED, true, true, true,
+                minutes * MILLIS_PER_MINUTE);
+    }
+
+    // Creates a sorted Session with one Measurement per time, the heart rate is its index
+    private static Session session(long[] seconds) {
+        Session session = new Session(1, SessionType.RUN, "Test");
+        for (int i = 0; i < seconds.length; i++) {
+            long time = START + seconds[i] * 1000L;
+            session.add(Timestamps.format(time, 0), time, 53.5d + i * 0.0001d, 10d, 60 + i);
+        }
+        return session;
+    }
+
+    private static void assertSourceIndices(int[] expected, PrivacyProjection projection) {
+        int[] indices = new int[projection.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = projection.getSourceIndex(i);
+        }
+        assertArrayEquals(expected, indices);
+    }
+}
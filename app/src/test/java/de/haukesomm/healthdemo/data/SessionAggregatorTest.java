@@ -0,0 +1,238 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.haukesomm.healthdemo.analytics.Statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Tests that a {@link SessionAggregator} computes the same aggregates as a sequential pass over
+ * the Sessions, reports its progress and stops its workers once cancelled. The aggregations of
+ * these tests derive their values from the Session IDs instead of reading from a database.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class SessionAggregatorTest {
+
+    private static final int PARALLELISM = 4;
+
+    private static final double DELTA = 1e-9;
+
+
+    private ForkJoinPool mPool;
+
+    private SessionAggregator mAggregator;
+
+
+    @Before
+    public void setUp() {
+        mPool = new ForkJoinPool(PARALLELISM);
+        mAggregator = new SessionAggregator(new SessionAggregator.Connections() {
+            @Override
+            public SessionDatabase open() {
+                // Not used by the aggregations, try-with-resources skips closing null
+                return null;
+            }
+        }, mPool);
+    }
+
+    @After
+    public void tearDown() {
+        mPool.shutdownNow();
+    }
+
+
+    @Test
+    public void partitionedStatisticsMatchSequential() {
+        int[] ids = ids(1000);
+
+        Statistics sequential = Statistics.forHeartrate();
+        for (int id : ids) {
+            int[] heartrates = heartrates(id);
+            sequential.addAll(heartrates, 0, heartrates.length);
+        }
+        Statistics partitioned = mAggregator.invoke(STATISTICS, ids);
+
+        assertEquals(sequential.getCount(), partitioned.getCount());
+        assertEquals(sequential.getMin(), partitioned.getMin(), 0d);
+        assertEquals(sequential.getMax(), partitioned.getMax(), 0d);
+        assertEquals(sequential.getMean(), partitioned.getMean(), DELTA);
+        assertEquals(sequential.getVariance(), partitioned.getVariance(), DELTA);
+        for (double percentile = 0.05; percentile < 1; percentile += 0.05) {
+            assertEquals(sequential.getPercentile(percentile),
+                    partitioned.getPercentile(percentile), DELTA);
+        }
+    }
+
+    @Test
+    public void partitionsCoverEverySessionOnceInOrder() {
+        for (int size : new int[] { 0, 1, 2, 15, 16, 17, 1001 }) {
+            int[] ids = ids(size);
+            List<Integer> result = mAggregator.invoke(IDS, ids);
+
+            assertEquals(size, result.size());
+            for (int i = 0; i < size; i++) {
+                assertEquals(ids[i], (int) result.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void reportsEveryPercentOnce() {
+        final List<Integer> reported = new ArrayList<>();
+        SessionAggregator.Task<List<Integer>> task = mAggregator.execute(IDS, ids(250),
+                new SessionAggregator.ProgressListener() {
+                    @Override
+                    public void onProgress(int done, int total) {
+                        assertEquals(250, total);
+                        synchronized (reported) {
+                            reported.add(done);
+                        }
+                    }
+                });
+        task.join();
+
+        synchronized (reported) {
+            assertEquals(100, reported.size());
+            assertTrue(reported.contains(250));
+        }
+    }
+
+    @Test
+    public void cancellationStopsWorkers() throws InterruptedException {
+        final int total = 100000;
+        final AtomicInteger accumulated = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(100);
+        SessionAggregator.Aggregation<Long> slow = new SessionAggregator.Aggregation<Long>() {
+            @Override
+            public Long create() {
+                return 0L;
+            }
+
+            @Override
+            public void accumulate(Long aggregate, SessionDatabase database, int id) {
+                accumulated.incrementAndGet();
+                started.countDown();
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public Long merge(Long left, Long right) {
+                return left + right;
+            }
+        };
+
+        SessionAggregator.Task<Long> task = mAggregator.execute(slow, ids(total), null);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        task.cancel();
+        assertTrue(task.isCancelled());
+
+        try {
+            task.join();
+            fail("Cancelled aggregation completed");
+        } catch (CancellationException e) {
+            // Expected
+        }
+
+        // Each worker finishes at most the Session it is accumulating
+        assertTrue(mPool.awaitQuiescence(10, TimeUnit.SECONDS));
+        int stopped = accumulated.get();
+        Thread.sleep(50);
+        assertEquals(stopped, accumulated.get());
+        assertTrue(stopped < total);
+    }
+
+
+
+    // Heart rate Statistics of synthetic Sessions
+    private static final SessionAggregator.Aggregation<Statistics> STATISTICS =
+            new SessionAggregator.Aggregation<Statistics>() {
+                @Override
+                public Statistics create() {
+                    return Statistics.forHeartrate();
+                }
+
+                @Override
+                public void accumulate(Statistics aggregate, SessionDatabase database, int id) {
+                    int[] heartrates = heartrates(id);
+                    aggregate.addAll(heartrates, 0, heartrates.length);
+                }
+
+                @Override
+                public Statistics merge(Statistics left, Statistics right) {
+                    left.merge(right);
+                    return left;
+                }
+            };
+
+    // IDs of the accumulated Sessions in the order they were merged
+    private static final SessionAggregator.Aggregation<List<Integer>> IDS =
+            new SessionAggregator.Aggregation<List<Integer>>() {
+                @Override
+                public List<Integer> create() {
+                    return new ArrayList<>();
+                }
+
+                @Override
+                public void accumulate(List<Integer> aggregate, SessionDatabase database,
+                                       int id) {
+                    aggregate.add(id);
+                }
+
+                @Override
+                public List<Integer> merge(List<Integer> left, List<Integer> right) {
+                    left.addAll(right);
+                    return left;
+                }
+            };
+
+
+    private static int[] ids(int size) {
+        int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = 3 * i + 1;
+        }
+        return ids;
+    }
+
+    private static int[] heartrates(int id) {
+        Random random = new Random(id);
+        int[] heartrates = new int[50 + random.nextInt(200)];
+        for (int i = 0; i < heartrates.length; i++) {
+            heartrates[i] = 60 + random.nextInt(120);
+        }
+        return heartrates;
+    }
+}
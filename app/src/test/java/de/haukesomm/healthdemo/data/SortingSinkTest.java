@@ -0,0 +1,207 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Tests that a {@link SortingSink} passes measurements on in a stable chronological order, both
+ * when sorting in memory and when merging sorted runs, and leaves no runs behind.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class SortingSinkTest {
+
+    private File mDirectory;
+
+    private final Collector mCollector = new Collector();
+
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("runs", "");
+        assertTrue(mDirectory.delete() && mDirectory.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        mDirectory.delete();
+    }
+
+
+    @Test
+    public void sortsInMemory() {
+        feed(new SortingSink(mCollector, 1000, mDirectory), 500);
+        assertEquals(0, mDirectory.list().length);
+    }
+
+    @Test
+    public void sortsExternally() {
+        // 7 runs, the last one only partially filled
+        feed(new SortingSink(mCollector, 64, mDirectory), 400);
+        assertEquals(0, mDirectory.list().length);
+    }
+
+    @Test
+    public void sortsExternallyWithSingleMeasurementRuns() {
+        feed(new SortingSink(mCollector, 1, mDirectory), 50);
+        assertEquals(0, mDirectory.list().length);
+    }
+
+    @Test
+    public void emptySession() {
+        SortingSink sink = new SortingSink(mCollector, 16, mDirectory);
+        sink.begin("run", "Empty", 0);
+        sink.end();
+
+        assertEquals("run", mCollector.type);
+        assertEquals(0, mCollector.size);
+        assertEquals(0, mCollector.timestamps.size());
+        assertTrue(mCollector.ended);
+    }
+
+    @Test
+    public void reusable() {
+        SortingSink sink = new SortingSink(mCollector, 32, mDirectory);
+        feed(sink, 100);
+        mCollector.timestamps.clear();
+        feed(sink, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyBuffer() {
+        new SortingSink(mCollector, 0, mDirectory);
+    }
+
+
+    // Feeds shuffled measurements with duplicate and malformed timestamps and checks the order
+    private void feed(SortingSink sink, int size) {
+        Random random = new Random(size);
+        List<String> timestamps = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (i % 50 == 7) {
+                timestamps.add("malformed " + i);
+                times.add(Timestamps.INVALID);
+            } else {
+                // Seconds are drawn from a small range so that many timestamps are equal
+                long time = 1535097600000L + random.nextInt(size / 4 + 1) * 1000L;
+                timestamps.add(Timestamps.format(time, 0));
+                times.add(time);
+            }
+        }
+
+        sink.begin("run", "Test", size);
+        for (int i = 0; i < size; i++) {
+            // The heart rate identifies the measurement
+            sink.measurement(timestamps.get(i), i, -i, i);
+        }
+        sink.end();
+
+        assertEquals("run", mCollector.type);
+        assertEquals("Test", mCollector.description);
+        assertEquals(size, mCollector.size);
+        assertEquals(size, mCollector.heartrates.size());
+        assertTrue(mCollector.ended);
+
+        long previousTime = Long.MIN_VALUE;
+        int previous = -1;
+        boolean[] seen = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            int index = mCollector.heartrates.get(i);
+            assertFalse("Duplicate at " + i, seen[index]);
+            seen[index] = true;
+            assertEquals(timestamps.get(index), mCollector.timestamps.get(i));
+            assertEquals(index, mCollector.latitudes.get(i), 0d);
+            assertEquals(-index, mCollector.longitudes.get(i), 0d);
+
+            long time = times.get(index);
+            assertTrue("Out of order at " + i, time >= previousTime);
+            if (time == previousTime) {
+                assertTrue("Unstable at " + i, index > previous);
+            }
+            previousTime = time;
+            previous = index;
+        }
+
+        mCollector.heartrates.clear();
+        mCollector.latitudes.clear();
+        mCollector.longitudes.clear();
+        mCollector.ended = false;
+    }
+
+
+    private static class Collector implements SessionGenerator.Sink {
+
+        private String type;
+
+        private String description;
+
+        private int size = -1;
+
+        private final List<String> timestamps = new ArrayList<>();
+
+        private final List<Double> latitudes = new ArrayList<>();
+
+        private final List<Double> longitudes = new ArrayList<>();
+
+        private final List<Integer> heartrates = new ArrayList<>();
+
+        private boolean ended;
+
+
+        @Override
+        public void begin(String type, String description, int size) {
+            this.type = type;
+            this.description = description;
+            this.size = size;
+            timestamps.clear();
+        }
+
+        @Override
+        public void measurement(String timestamp, double latitude, double longitude,
+                                int heartrate) {
+            timestamps.add(timestamp);
+            latitudes.add(latitude);
+            longitudes.add(longitude);
+            heartrates.add(heartrate);
+        }
+
+        @Override
+        public void end() {
+            ended = true;
+        }
+    }
+}
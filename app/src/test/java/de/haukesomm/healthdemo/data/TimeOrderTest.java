@@ -0,0 +1,112 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Tests that {@link TimeOrder} matches a stable sort for in-order, mostly ordered and random
+ * input.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class TimeOrderTest {
+
+    @Test
+    public void inOrderReturnsNull() {
+        assertNull(TimeOrder.sort(new long[] { 1, 2, 2, 3, 10 }, 5));
+        assertNull(TimeOrder.sort(new long[0], 0));
+        assertNull(TimeOrder.sort(new long[] { 5 }, 1));
+    }
+
+    @Test
+    public void ignoresTimesBeyondSize() {
+        assertNull(TimeOrder.sort(new long[] { 1, 2, 3, 0 }, 3));
+    }
+
+    @Test
+    public void lateSamples() {
+        long[] times = { 10, 20, 15, 30, 5, 40 };
+        assertArrayEquals(new int[] { 4, 0, 2, 1, 3, 5 }, TimeOrder.sort(times, times.length));
+    }
+
+    @Test
+    public void equalTimesKeepArrivalOrder() {
+        long[] times = { 10, 20, 10, 20, 10 };
+        assertArrayEquals(new int[] { 0, 2, 4, 1, 3 }, TimeOrder.sort(times, times.length));
+    }
+
+    @Test
+    public void invalidTimesFirst() {
+        long[] times = { 10, Timestamps.INVALID, 20, Timestamps.INVALID };
+        assertArrayEquals(new int[] { 1, 3, 0, 2 }, TimeOrder.sort(times, times.length));
+    }
+
+    @Test
+    public void mostlyOrderedMatchesStableSort() {
+        Random random = new Random(1);
+        long[] times = new long[10000];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = i * 1000L;
+            // Every 20th sample arrives up to a minute late
+            if (random.nextInt(20) == 0) times[i] -= random.nextInt(60000);
+        }
+        assertArrayEquals(stableOrder(times), TimeOrder.sort(times, times.length));
+    }
+
+    @Test
+    public void randomMatchesStableSort() {
+        Random random = new Random(2);
+        for (int size = 2; size < 300; size += 7) {
+            long[] times = new long[size];
+            for (int i = 0; i < size; i++) {
+                times[i] = random.nextInt(size / 2 + 1);
+            }
+            int[] expected = stableOrder(times);
+            int[] order = TimeOrder.sort(times, size);
+            assertArrayEquals(expected, order == null ? identity(size) : order);
+        }
+    }
+
+
+    private static int[] stableOrder(final long[] times) {
+        Integer[] indices = new Integer[times.length];
+        for (int i = 0; i < indices.length; i++) indices[i] = i;
+        // Sorting objects is stable
+        Arrays.sort(indices, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(times[a], times[b]);
+            }
+        });
+
+        int[] order = new int[indices.length];
+        for (int i = 0; i < order.length; i++) order[i] = indices[i];
+        return order;
+    }
+
+    private static int[] identity(int size) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        return order;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Tests {@link Timestamps} against java.time, which is not available on all supported API levels
+ * but can be used as a reference on the desktop JVM.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class TimestampsTest {
+
+    private static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssxxx");
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+
+
+    @Test
+    public void formatMatchesJavaTime() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            // 1901 to 2099, including leap days and times before the epoch
+            long millis = (long) ((random.nextDouble() * 199 - 69) * 365.25 * 24 * MILLIS_PER_HOUR);
+            int offset = (random.nextInt(26 * 4 + 1) - 12 * 4) * 15;
+            assertEquals(reference(millis, offset), Timestamps.format(millis, offset));
+        }
+    }
+
+    @Test
+    public void formatExamples() {
+        assertEquals("1970-01-01T00:00:00+00:00", Timestamps.format(0L, 0));
+        assertEquals("2018-12-07T06:12:32-08:00", Timestamps.format(1544191952000L, -8 * 60));
+        assertEquals("2020-02-29T23:59:59+05:30", Timestamps.format(1583000999999L, 5 * 60 + 30));
+        assertEquals("1969-12-31T23:59:59+00:00", Timestamps.format(-1L, 0));
+    }
+
+    @Test
+    public void parseRoundTrip() {
+        Random random = new Random(2);
+        for (int i = 0; i < 10000; i++) {
+            long seconds = (long) ((random.nextDouble() * 199 - 69) * 365.25 * 24 * 60 * 60);
+            int offset = (random.nextInt(26 * 4 + 1) - 12 * 4) * 15;
+            String timestamp = Timestamps.format(seconds * 1000L, offset);
+            assertEquals(timestamp, seconds * 1000L, Timestamps.parse(timestamp));
+            assertEquals(timestamp, offset, Timestamps.offsetMinutes(timestamp));
+        }
+    }
+
+    @Test
+    public void parseVariants() {
+        assertEquals(1544191952000L, Timestamps.parse("2018-12-07T06:12:32-08:00"));
+        assertEquals(1544191952000L, Timestamps.parse("2018-12-07T14:12:32Z"));
+        assertEquals(1544191952000L, Timestamps.parse("2018-12-07T14:12:32+00:00"));
+        assertEquals(1544191952500L, Timestamps.parse("2018-12-07T14:12:32.5Z"));
+        assertEquals(1544191952123L, Timestamps.parse("2018-12-07T14:12:32.123+00:00"));
+        // Digits beyond milliseconds are ignored
+        assertEquals(1544191952123L, Timestamps.parse("2018-12-07T14:12:32.123456Z"));
+    }
+
+    @Test
+    public void parseMalformed() {
+        String[] malformed = {
+                null, "", "2018-12-07", "2018-12-07T14:12:32", "2018-12-07 14:12:32Z",
+                "2018-13-07T14:12:32Z", "2018-12-00T14:12:32Z", "2018-12-07T24:12:32Z",
+                "2018-12-07T14:60:32Z", "2018-12-07T14:12:32X", "2018-12-07T14:12:32*08:00",
+                "2018-12-07T14:12:32+0800", "2018-12-07T14:12:32+08:00:00", "2018-1a-07T14:12:32Z",
+                "2018-12-07T14:12:32+0a:00"
+        };
+        for (String timestamp : malformed) {
+            assertEquals(String.valueOf(timestamp), Timestamps.INVALID,
+                    Timestamps.parse(timestamp));
+        }
+    }
+
+    @Test
+    public void offsetMinutes() {
+        assertEquals(-8 * 60, Timestamps.offsetMinutes("2018-12-07T06:12:32-08:00"));
+        assertEquals(5 * 60 + 30, Timestamps.offsetMinutes("2018-12-07T06:12:32.25+05:30"));
+        assertEquals(0, Timestamps.offsetMinutes("2018-12-07T14:12:32Z"));
+        assertEquals(0, Timestamps.offsetMinutes("malformed"));
+        assertEquals(0, Timestamps.offsetMinutes(null));
+    }
+
+    @Test
+    public void truncateInLocalTime() {
+        long time = Timestamps.parse("2018-12-07T06:42:32+05:30");
+        assertEquals(Timestamps.parse("2018-12-07T06:00:00+05:30"),
+                Timestamps.truncate(time, 5 * 60 + 30, MILLIS_PER_HOUR));
+        assertEquals(Timestamps.parse("1969-12-31T23:00:00Z"),
+                Timestamps.truncate(-1L, 0, MILLIS_PER_HOUR));
+        assertEquals(time, Timestamps.truncate(time, 0, 0L));
+        assertEquals(Timestamps.INVALID,
+                Timestamps.truncate(Timestamps.INVALID, 0, MILLIS_PER_HOUR));
+    }
+
+
+    private static String reference(long millis, int offsetMinutes) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(millis),
+                ZoneOffset.ofTotalSeconds(offsetMinutes * 60)).format(FORMAT);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.haukesomm.healthdemo.data.SessionFixture;
+import de.haukesomm.healthdemo.data.SessionGenerator;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Measures anomaly detection by {@link HeartRateAnomalyDetector} on heart rates containing one
+ * percent sensor glitches.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class HeartRateAnomalyDetectorBenchmark {
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+
+    private int[] mHeartrates;
+
+    private final HeartRateAnomalyDetector mDetector = new HeartRateAnomalyDetector();
+
+
+    @Setup
+    public void setup() {
+        mHeartrates = new int[size];
+        SessionGenerator generator = SessionFixture.generator(size);
+        generator.setGlitchRate(0.01);
+        generator.generate(0, new SessionGenerator.Sink() {
+            private int _index;
+
+            @Override
+            public void begin(String type, String description, int size) {
+                // Do nothing
+            }
+
+            @Override
+            public void measurement(String timestamp, double latitude, double longitude,
+                                    int heartrate) {
+                mHeartrates[_index++] = heartrate;
+            }
+
+            @Override
+            public void end() {
+                // Do nothing
+            }
+        });
+    }
+
+
+    @Benchmark
+    public int detect() {
+        return mDetector.apply(mHeartrates, size, null, false);
+    }
+}
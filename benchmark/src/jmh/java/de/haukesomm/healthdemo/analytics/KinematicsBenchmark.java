@@ -0,0 +1,67 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+import de.haukesomm.healthdemo.data.Measurement;
+import de.haukesomm.healthdemo.data.SessionFixture;
+import de.haukesomm.healthdemo.data.Timestamps;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Measures the derivation of distance and speed from GPS samples by {@link Kinematics}.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class KinematicsBenchmark {
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+
+    private long[] mTimes;
+
+    private double[] mLatitudes;
+
+    private double[] mLongitudes;
+
+
+    @Setup
+    public void setup() {
+        List<Measurement> measurements = SessionFixture.measurements(size);
+        mTimes = new long[size];
+        mLatitudes = new double[size];
+        mLongitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            Measurement measurement = measurements.get(i);
+            mTimes[i] = Timestamps.parse(measurement.timestamp);
+            mLatitudes[i] = measurement.latitude;
+            mLongitudes[i] = measurement.longitude;
+        }
+    }
+
+
+    @Benchmark
+    public Kinematics derive() {
+        return Kinematics.derive(mTimes, mLatitudes, mLongitudes, size);
+    }
+}
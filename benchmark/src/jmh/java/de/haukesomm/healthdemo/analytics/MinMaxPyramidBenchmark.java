@@ -0,0 +1,85 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.haukesomm.healthdemo.data.SessionFixture;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Measures building a {@link MinMaxPyramid} of a heart rate series and reading the buckets of a
+ * full width graph from it, once for the whole series and once zoomed into a 5 minute window of
+ * a 6 hour session. Reading uses the {@link LineProjection} of the app's graph series.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class MinMaxPyramidBenchmark {
+
+    // A 1080 pixel wide display
+    private static final float WIDTH = 1080f;
+
+    private static final float HEIGHT = 600f;
+
+    private static final int ZOOM = 6 * 60 / 5;
+
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+
+    private double[] mValues;
+
+    private MinMaxPyramid mPyramid;
+
+    private final LineProjection mProjection = new LineProjection();
+
+
+    @Setup
+    public void setup() {
+        int[] heartrates = SessionFixture.columns(size).heartrates;
+        mValues = new double[size];
+        for (int i = 0; i < size; i++) {
+            mValues[i] = heartrates[i];
+        }
+        mPyramid = new MinMaxPyramid(mValues, size);
+    }
+
+
+    @Benchmark
+    public MinMaxPyramid build() {
+        return new MinMaxPyramid(mValues, size);
+    }
+
+    @Benchmark
+    public int overview() {
+        return read(0, size);
+    }
+
+    @Benchmark
+    public int zoomed() {
+        int window = Math.max(1, size / ZOOM);
+        return read(size / 2, size / 2 + window);
+    }
+
+    private int read(int from, int to) {
+        mProjection.project(mPyramid, 0f, 0f, WIDTH, HEIGHT, from, to, 0f, 250f);
+        return mProjection.getLineCount();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+import de.haukesomm.healthdemo.data.Measurement;
+import de.haukesomm.healthdemo.data.SessionFixture;
+import de.haukesomm.healthdemo.data.Timestamps;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Compares incremental rolling window aggregations by {@link RollingWindow} and
+ * {@link ExponentialSmoothing} to recomputing each window from scratch.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class RollingWindowBenchmark {
+
+    // Five minutes, i.e. 300 samples at one sample per second
+    private static final long WINDOW = 5 * 60 * 1000L;
+
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+
+    private long[] mTimes;
+
+    private int[] mHeartrates;
+
+    private double[] mMeans;
+
+    private double[] mMinimums;
+
+    private double[] mMaximums;
+
+
+    @Setup
+    public void setup() {
+        List<Measurement> measurements = SessionFixture.measurements(size);
+        mTimes = new long[size];
+        mHeartrates = new int[size];
+        for (int i = 0; i < size; i++) {
+            mTimes[i] = Timestamps.parse(measurements.get(i).timestamp);
+            mHeartrates[i] = measurements.get(i).heartrate;
+        }
+        mMeans = new double[size];
+        mMinimums = new double[size];
+        mMaximums = new double[size];
+    }
+
+
+    @Benchmark
+    public double[] naive() {
+        for (int i = 0; i < size; i++) {
+            double sum = 0d;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            int count = 0;
+            for (int j = i; j >= 0 && mTimes[i] - mTimes[j] < WINDOW; j--) {
+                sum += mHeartrates[j];
+                min = Math.min(min, mHeartrates[j]);
+                max = Math.max(max, mHeartrates[j]);
+                count++;
+            }
+            mMeans[i] = sum / count;
+            mMinimums[i] = min;
+            mMaximums[i] = max;
+        }
+        return mMeans;
+    }
+
+    @Benchmark
+    public double[] rolling() {
+        RollingWindow.apply(mTimes, mHeartrates, size, WINDOW, mMeans, mMinimums, mMaximums);
+        return mMeans;
+    }
+
+    @Benchmark
+    public double[] smoothing() {
+        ExponentialSmoothing.apply(mTimes, mHeartrates, size, WINDOW, mMeans);
+        return mMeans;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+import de.haukesomm.healthdemo.data.Measurement;
+import de.haukesomm.healthdemo.data.SessionFixture;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Measures route simplification by {@link RouteSimplifier}: computing the vertex importances once
+ * per session and simplifying for a map zoom level.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class RouteSimplifierBenchmark {
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+
+    private double[] mLatitudes;
+
+    private double[] mLongitudes;
+
+    private RouteSimplifier mSimplifier;
+
+
+    @Setup
+    public void setup() {
+        List<Measurement> measurements = SessionFixture.measurements(size);
+        mLatitudes = new double[size];
+        mLongitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            Measurement measurement = measurements.get(i);
+            mLatitudes[i] = measurement.latitude;
+            mLongitudes[i] = measurement.longitude;
+        }
+        mSimplifier = new RouteSimplifier(mLatitudes, mLongitudes, size);
+    }
+
+
+    @Benchmark
+    public RouteSimplifier prepare() {
+        return new RouteSimplifier(mLatitudes, mLongitudes, size);
+    }
+
+    @Benchmark
+    public RouteSimplifier.Route simplify() {
+        // Zoom level 15, roughly a city district
+        return mSimplifier.simplify(RouteSimplifier.toleranceForZoom(15f, 53.55, 1d), 2000);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.analytics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+import de.haukesomm.healthdemo.data.Measurement;
+import de.haukesomm.healthdemo.data.SessionFixture;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Measures heart rate {@link Statistics} used as stored per-session sketches: serializing them,
+ * merging the sketches of a year of daily sessions and querying a percentile.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class StatisticsSketchBenchmark {
+
+    private static final int SESSIONS = 365;
+
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+
+    private Statistics mStatistics;
+
+    private byte[] mSketch;
+
+
+    @Setup
+    public void setup() {
+        List<Measurement> measurements = SessionFixture.measurements(size);
+        int[] heartrates = new int[size];
+        for (int i = 0; i < size; i++) {
+            heartrates[i] = measurements.get(i).heartrate;
+        }
+        mStatistics = Statistics.forHeartrate();
+        mStatistics.addAll(heartrates, 0, size);
+        mSketch = mStatistics.toBytes();
+    }
+
+
+    @Benchmark
+    public byte[] serialize() {
+        return mStatistics.toBytes();
+    }
+
+    @Benchmark
+    public double mergeYear() {
+        Statistics year = Statistics.forHeartrate();
+        for (int i = 0; i < SESSIONS; i++) {
+            year.merge(Statistics.fromBytes(mSketch));
+        }
+        return year.getPercentile(95);
+    }
+
+    @Benchmark
+    public double percentile() {
+        return mStatistics.getPercentile(95);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Measures the cost of encryption at rest in {@link SessionDatabase}: serializing a Session in
+ * chunks with {@link MeasurementChunks} only, and additionally sealing or opening every chunk with
+ * a {@link ChunkCipher}.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class ChunkCipherBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+
+    private String[] mTimestamps;
+
+    private long[] mTimes;
+
+    private double[] mLatitudes;
+
+    private double[] mLongitudes;
+
+    private int[] mHeartrates;
+
+
+    private ChunkCipher mCipher;
+
+    private byte[][] mEncoded;
+
+    private byte[][] mSealed;
+
+
+    @Setup
+    public void setup() {
+        List<Measurement> measurements = SessionFixture.measurements(size);
+        mTimestamps = new String[size];
+        mTimes = new long[size];
+        mLatitudes = new double[size];
+        mLongitudes = new double[size];
+        mHeartrates = new int[size];
+        for (int i = 0; i < size; i++) {
+            Measurement measurement = measurements.get(i);
+            mTimestamps[i] = measurement.timestamp;
+            mTimes[i] = Timestamps.parse(measurement.timestamp);
+            mLatitudes[i] = measurement.latitude;
+            mLongitudes[i] = measurement.longitude;
+            mHeartrates[i] = measurement.heartrate;
+        }
+
+        mCipher = new ChunkCipher(ChunkCipher.generateKey(), 1);
+        mEncoded = encode();
+        mSealed = new byte[mEncoded.length][];
+        for (int chunk = 0; chunk < mEncoded.length; chunk++) {
+            mSealed[chunk] = mCipher.seal(chunk, mEncoded[chunk]);
+        }
+    }
+
+    private byte[][] encode() {
+        int chunks = (size + MeasurementChunks.CHUNK_SIZE - 1) / MeasurementChunks.CHUNK_SIZE;
+        byte[][] encoded = new byte[chunks][];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int from = chunk * MeasurementChunks.CHUNK_SIZE;
+            encoded[chunk] = MeasurementChunks.encode(mTimestamps, mTimes, mLatitudes,
+                    mLongitudes, mHeartrates, from,
+                    Math.min(size, from + MeasurementChunks.CHUNK_SIZE));
+        }
+        return encoded;
+    }
+
+
+    @Benchmark
+    public byte[][] encodePlain() {
+        return encode();
+    }
+
+    @Benchmark
+    public byte[][] encodeSealed() {
+        byte[][] encoded = encode();
+        for (int chunk = 0; chunk < encoded.length; chunk++) {
+            encoded[chunk] = mCipher.seal(chunk, encoded[chunk]);
+        }
+        return encoded;
+    }
+
+
+    @Benchmark
+    public void decodePlain(Blackhole blackhole) {
+        for (byte[] encoded : mEncoded) {
+            blackhole.consume(MeasurementChunks.decode(encoded));
+        }
+    }
+
+    @Benchmark
+    public void decodeSealed(Blackhole blackhole) {
+        for (int chunk = 0; chunk < mSealed.length; chunk++) {
+            blackhole.consume(MeasurementChunks.decode(mCipher.open(chunk, mSealed[chunk])));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Command line entry point writing synthetic session assets ('session&lt;index&gt;.json') to a
+ * directory. Arguments: output directory, number of sessions, measurements per session, seed.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public class GenerateSessions {
+
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args[0]);
+        int count = Integer.parseInt(args[1]);
+        int length = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+
+        SessionGenerator generator = new SessionGenerator(seed);
+        generator.setLength(length, length);
+        for (int i = 0; i < count; i++) {
+            File file = new File(directory, "session" + i + ".json");
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                generator.generate(i, new SessionJsonWriter(writer));
+            }
+        }
+    }
+}
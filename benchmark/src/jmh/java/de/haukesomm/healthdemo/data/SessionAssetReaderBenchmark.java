@@ -0,0 +1,60 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Measures parsing a session asset with the {@link SessionJsonReader} used by
+ * {@link SessionAssetReader}. The benchmark module provides a desktop stand-in for Android's
+ * JsonReader backed by Gson, which implements the same API.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class SessionAssetReaderBenchmark {
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+
+    private byte[] mJson;
+
+
+    @Setup
+    public void setup() {
+        mJson = SessionFixture.json(size);
+    }
+
+
+    @Benchmark
+    public SessionFixture.Columns readSession() throws IOException {
+        SessionFixture.Columns session = new SessionFixture.Columns();
+        try (SessionJsonReader reader = new SessionJsonReader(new InputStreamReader(
+                new ByteArrayInputStream(mJson), StandardCharsets.UTF_8))) {
+            reader.read(session);
+        }
+        return session;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Measures filling the column arrays of a {@link Session}, both the way assets are read (unparsed
+ * timestamps, growing arrays) and the way the {@link SessionDatabase} loads chunks (parsed times,
+ * presized arrays), as well as reading the Measurements through the {@link Session#getMeasurements()
+ * List view} compared to the columns themselves.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class SessionBenchmark {
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+
+    private SessionFixture.Columns mColumns;
+
+    private Session mSession;
+
+
+    @Setup
+    public void setup() {
+        mColumns = SessionFixture.columns(size);
+        mSession = addParsed();
+    }
+
+
+    @Benchmark
+    public Session add() {
+        Session session = new Session(0, SessionType.RUN, null);
+        for (int i = 0; i < size; i++) {
+            session.add(mColumns.timestamps[i], mColumns.latitudes[i], mColumns.longitudes[i],
+                    mColumns.heartrates[i]);
+        }
+        return session;
+    }
+
+    @Benchmark
+    public Session addParsed() {
+        Session session = new Session(0, SessionType.RUN, null);
+        session.ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            session.add(mColumns.timestamps[i], mColumns.times[i], mColumns.latitudes[i],
+                    mColumns.longitudes[i], mColumns.heartrates[i]);
+        }
+        return session;
+    }
+
+    @Benchmark
+    public long getMeasurements() {
+        long sum = 0;
+        for (Measurement measurement : mSession.getMeasurements()) {
+            sum += measurement.heartrate;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long getHeartrates() {
+        int[] heartrates = mSession.getHeartrates();
+        long sum = 0;
+        for (int i = 0; i < mSession.size(); i++) {
+            sum += heartrates[i];
+        }
+        return sum;
+    }
+}
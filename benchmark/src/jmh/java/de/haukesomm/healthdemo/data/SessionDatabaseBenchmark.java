@@ -0,0 +1,146 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Measures the storage paths of {@link SessionDatabase} against a local SQLite database: storing
+ * a Session as encrypted chunks and loading it again. Both run the app's own code and statements
+ * from {@link ChunkTable}, only the Android database API is replaced by JDBC. Wrapping the
+ * Session's key with the Android Keystore happens once per Session and is not included.<br>
+ * Inserting is measured in single shot mode since every invocation needs to remove the chunks
+ * stored by the previous one.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class SessionDatabaseBenchmark {
+
+    private static final int SESSION = 1;
+
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+
+    private SessionFixture.Columns mColumns;
+
+    private ChunkCipher mCipher;
+
+    private Connection mConnection;
+
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        mColumns = SessionFixture.columns(size);
+        mCipher = new ChunkCipher(ChunkCipher.generateKey(), SESSION);
+        mConnection = SessionFixture.openDatabase();
+        try (Statement statement = mConnection.createStatement()) {
+            statement.execute(ChunkTable.CREATE);
+        }
+        insert(SESSION, mCipher);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mConnection.close();
+    }
+
+
+    @State(Scope.Thread)
+    public static class InsertState {
+
+        private static final int SESSION = 2;
+
+        private ChunkCipher mCipher;
+
+        @Setup(Level.Invocation)
+        public void setup(SessionDatabaseBenchmark benchmark) throws SQLException {
+            mCipher = new ChunkCipher(ChunkCipher.generateKey(), SESSION);
+            try (Statement statement = benchmark.mConnection.createStatement()) {
+                statement.execute("DELETE FROM " + ChunkTable.TABLE + " WHERE "
+                        + ChunkTable.SESSION + " = " + SESSION);
+            }
+        }
+    }
+
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public void insert(InsertState state) throws SQLException {
+        insert(InsertState.SESSION, state.mCipher);
+    }
+
+    @Benchmark
+    public SessionFixture.Columns load() throws SQLException {
+        ChunkTable.Reader reader = new ChunkTable.Reader(mCipher);
+        try (Statement statement = mConnection.createStatement();
+             ResultSet cursor = statement.executeQuery(
+                     ChunkTable.select(SESSION, Long.MIN_VALUE, Long.MAX_VALUE))) {
+            while (cursor.next()) {
+                reader.add(cursor.getInt(1), cursor.getInt(2), cursor.getBytes(3));
+            }
+        }
+
+        SessionFixture.Columns session = new SessionFixture.Columns();
+        reader.read(Long.MIN_VALUE, Long.MAX_VALUE, session);
+        return session;
+    }
+
+
+    // Stores the Session within a single transaction like SessionDatabase#add() does
+    private void insert(final int session, ChunkCipher cipher) throws SQLException {
+        mConnection.setAutoCommit(false);
+        try (final PreparedStatement insert = mConnection.prepareStatement(ChunkTable.INSERT)) {
+            ChunkTable.seal(mColumns.timestamps, mColumns.times, mColumns.latitudes,
+                    mColumns.longitudes, mColumns.heartrates, mColumns.size, cipher,
+                    new ChunkTable.Writer() {
+                        @Override
+                        public void write(int chunk, long start, long end, int count,
+                                          byte[] payload) {
+                            try {
+                                insert.setInt(1, session);
+                                insert.setInt(2, chunk);
+                                insert.setLong(3, start);
+                                insert.setLong(4, end);
+                                insert.setInt(5, count);
+                                insert.setBytes(6, payload);
+                                insert.executeUpdate();
+                            } catch (SQLException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        }
+                    });
+        }
+        mConnection.commit();
+        mConnection.setAutoCommit(true);
+    }
+}
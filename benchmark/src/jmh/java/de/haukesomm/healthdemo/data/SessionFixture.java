@@ -0,0 +1,201 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * This class provides deterministic benchmark data created by a {@link SessionGenerator} as well
+ * as a database on a desktop SQLite driver to execute the statements of {@link ChunkTable} on.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public final class SessionFixture {
+
+    private static final long SEED = 0x5E55105L;
+
+
+    private SessionFixture() {
+        // Utility class
+    }
+
+
+    /**
+     * Creates the {@link SessionGenerator} used for all benchmark data.
+     *
+     * @param size  Number of Measurements per session
+     * @return      SessionGenerator
+     */
+    public static SessionGenerator generator(int size) {
+        SessionGenerator generator = new SessionGenerator(SEED);
+        generator.setLength(size, size);
+        return generator;
+    }
+
+
+    /**
+     * Generates a List of Measurements with one sample per second.
+     *
+     * @param size  Number of Measurements
+     * @return      List of Measurements
+     */
+    public static List<Measurement> measurements(int size) {
+        final List<Measurement> measurements = new ArrayList<>(size);
+        generator(size).generate(0, new SessionGenerator.Sink() {
+            @Override
+            public void begin(String type, String description, int size) {
+                // Do nothing
+            }
+
+            @Override
+            public void measurement(String timestamp, double latitude, double longitude,
+                                    int heartrate) {
+                measurements.add(new Measurement(timestamp, latitude, longitude, heartrate));
+            }
+
+            @Override
+            public void end() {
+                // Do nothing
+            }
+        });
+        return measurements;
+    }
+
+
+    /**
+     * Generates a session with the specified number of Measurements as a JSON document matching
+     * the schema of the session assets.
+     *
+     * @param size  Number of Measurements
+     * @return      UTF-8 encoded JSON document
+     */
+    public static byte[] json(int size) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size * 128);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            generator(size).generate(0, new SessionJsonWriter(writer));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Generates Measurements with one sample per second column by column, with parsed times.
+     *
+     * @param size  Number of Measurements
+     * @return      Columns
+     */
+    public static Columns columns(int size) {
+        Columns columns = new Columns();
+        generator(size).generate(0, columns);
+        for (int i = 0; i < columns.size; i++) {
+            columns.times[i] = Timestamps.parse(columns.timestamps[i]);
+        }
+        return columns;
+    }
+
+    /**
+     * Opens a connection to a new, empty SQLite database in a temporary file.
+     *
+     * @return              Database connection
+     * @throws IOException  If the temporary file could not be created
+     * @throws SQLException If the database could not be opened
+     */
+    public static Connection openDatabase() throws IOException, SQLException {
+        File file = File.createTempFile("sessions", ".db");
+        file.deleteOnExit();
+        return DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+    }
+
+    /**
+     * Measurements stored column by column like a {@link Session} does, with public columns so
+     * benchmarks can pass them to {@link ChunkTable} directly. As a Sink, Measurements are added
+     * without parsing their timestamps just like the app does when reading assets.
+     */
+    public static final class Columns implements SessionGenerator.Sink, ChunkTable.Target {
+
+        public String[] timestamps = new String[0];
+
+        public long[] times = new long[0];
+
+        public double[] latitudes = new double[0];
+
+        public double[] longitudes = new double[0];
+
+        public int[] heartrates = new int[0];
+
+        public int size;
+
+
+        // No Javadoc
+        @Override
+        public void begin(String type, String description, int size) {
+            this.size = 0;
+            ensureCapacity(Math.max(size, 16));
+        }
+
+        // No Javadoc
+        @Override
+        public void measurement(String timestamp, double latitude, double longitude,
+                                int heartrate) {
+            add(timestamp, Timestamps.INVALID, latitude, longitude, heartrate);
+        }
+
+        // No Javadoc
+        @Override
+        public void end() {
+            // Do nothing
+        }
+
+        // No Javadoc
+        @Override
+        public void ensureCapacity(int capacity) {
+            if (capacity <= timestamps.length) return;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            times = Arrays.copyOf(times, capacity);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            heartrates = Arrays.copyOf(heartrates, capacity);
+        }
+
+        // No Javadoc
+        @Override
+        public void add(String timestamp, long time, double latitude, double longitude,
+                        int heartrate) {
+            if (size == timestamps.length) {
+                ensureCapacity(size + (size >> 1) + 1);
+            }
+            timestamps[size] = timestamp;
+            times[size] = time;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            heartrates[size] = heartrate;
+            size++;
+        }
+    }
+}
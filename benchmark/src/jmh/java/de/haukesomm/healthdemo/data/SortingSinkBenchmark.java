@@ -0,0 +1,135 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Measures time-ordered ingest by {@link SortingSink} for measurements arriving in order, with a
+ * few late samples, in random order and for sessions exceeding the sort buffer.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class SortingSinkBenchmark {
+
+    // Same buffer size as SessionDatabase
+    private static final int BUFFER_SIZE = 1 << 18;
+
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+
+    private Measurement[] mOrdered;
+
+    private Measurement[] mLate;
+
+    private Measurement[] mShuffled;
+
+    private final File mDirectory = new File(System.getProperty("java.io.tmpdir"));
+
+
+    @Setup
+    public void setup() {
+        List<Measurement> measurements = SessionFixture.measurements(size);
+        mOrdered = measurements.toArray(new Measurement[size]);
+
+        // One percent of the samples delayed by up to a minute
+        Random random = new Random(size);
+        mLate = mOrdered.clone();
+        for (int i = 0; i < size / 100; i++) {
+            int from = random.nextInt(size);
+            int to = Math.min(size - 1, from + 1 + random.nextInt(60));
+            Measurement late = mLate[from];
+            System.arraycopy(mLate, from + 1, mLate, from, to - from);
+            mLate[to] = late;
+        }
+
+        mShuffled = mOrdered.clone();
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Measurement swap = mShuffled[i];
+            mShuffled[i] = mShuffled[j];
+            mShuffled[j] = swap;
+        }
+    }
+
+
+    @Benchmark
+    public void ordered(Blackhole blackhole) {
+        ingest(mOrdered, BUFFER_SIZE, blackhole);
+    }
+
+    @Benchmark
+    public void late(Blackhole blackhole) {
+        ingest(mLate, BUFFER_SIZE, blackhole);
+    }
+
+    @Benchmark
+    public void shuffled(Blackhole blackhole) {
+        ingest(mShuffled, BUFFER_SIZE, blackhole);
+    }
+
+    @Benchmark
+    public void external(Blackhole blackhole) {
+        // Eight sorted runs written to and merged from temporary files
+        ingest(mShuffled, Math.max(1, size / 8), blackhole);
+    }
+
+
+    private void ingest(Measurement[] measurements, int bufferSize, final Blackhole blackhole) {
+        SortingSink sink = new SortingSink(new SessionGenerator.Sink() {
+            private long _previous = Long.MIN_VALUE;
+
+            @Override
+            public void begin(String type, String description, int size) {
+                blackhole.consume(size);
+            }
+
+            @Override
+            public void measurement(String timestamp, double latitude, double longitude,
+                                    int heartrate) {
+                long time = Timestamps.parse(timestamp);
+                if (time < _previous) {
+                    throw new IllegalStateException("Measurements out of order: " + timestamp);
+                }
+                _previous = time;
+                blackhole.consume(heartrate);
+            }
+
+            @Override
+            public void end() {
+                // Do nothing
+            }
+        }, bufferSize, mDirectory);
+
+        sink.begin("run", "Benchmark", measurements.length);
+        for (Measurement measurement : measurements) {
+            sink.measurement(measurement.timestamp, measurement.latitude, measurement.longitude,
+                    measurement.heartrate);
+        }
+        sink.end();
+    }
+}
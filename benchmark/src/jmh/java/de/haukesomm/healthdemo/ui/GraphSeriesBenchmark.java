@@ -0,0 +1,68 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.ui;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.haukesomm.healthdemo.analytics.LineProjection;
+import de.haukesomm.healthdemo.analytics.MinMaxPyramid;
+import de.haukesomm.healthdemo.data.SessionFixture;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Measures how {@link DataActivity} builds its heart rate graph: the heart rates are converted
+ * into values, a {@link GraphSeries} builds its {@link MinMaxPyramid} and projects the whole
+ * series into a 1080 pixel wide graph using the app's {@link LineProjection}.<br>
+ * GraphSeries itself depends on Android's Paint, so the benchmark runs the same steps without it.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class GraphSeriesBenchmark {
+
+    private static final float WIDTH = 1080f;
+
+    private static final float HEIGHT = 600f;
+
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+
+    private int[] mHeartrates;
+
+
+    @Setup
+    public void setup() {
+        mHeartrates = SessionFixture.columns(size).heartrates;
+    }
+
+
+    @Benchmark
+    public LineProjection buildSeries() {
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = mHeartrates[i];
+        }
+
+        LineProjection projection = new LineProjection();
+        projection.project(new MinMaxPyramid(values, size), 0f, 0f, WIDTH, HEIGHT,
+                0f, Math.max(0, size - 1), 0f, 250f);
+        return projection;
+    }
+}
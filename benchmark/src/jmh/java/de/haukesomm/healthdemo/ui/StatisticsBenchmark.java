@@ -0,0 +1,54 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo.ui;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.haukesomm.healthdemo.analytics.Statistics;
+import de.haukesomm.healthdemo.data.SessionFixture;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Measures the single pass {@link Statistics} of the heart rates shown by
+ * {@link TelematicsGraphView}.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+@State(Scope.Benchmark)
+public class StatisticsBenchmark {
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+
+    private int[] mHeartrates;
+
+
+    @Setup
+    public void setup() {
+        mHeartrates = SessionFixture.columns(size).heartrates;
+    }
+
+
+    @Benchmark
+    public Statistics streaming() {
+        Statistics statistics = Statistics.forHeartrate();
+        statistics.addAll(mHeartrates, 0, size);
+        return statistics;
+    }
+}
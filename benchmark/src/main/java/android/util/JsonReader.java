@@ -0,0 +1,30 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package android.util;
+
+import java.io.Reader;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Desktop stand-in for Android's JsonReader so the app's parsing code can be benchmarked. Gson's
+ * JsonReader is the library Android's one has been derived from and shares its API.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public final class JsonReader extends com.google.gson.stream.JsonReader {
+
+    public JsonReader(Reader in) {
+        super(in);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of the "eHealth-Demo" project, formerly known as
+ * "Telematics App Mockup".
+ * Copyright 2017-2018, Hauke Sommerfeld and Sarah Schulz-Mukisa
+ *
+ * Licensed under the MIT license.
+ *
+ * For more information and/or a copy of the license visit the following
+ * GitHub repository: https://github.com/haukesomm/eHealth-Demo
+ */
+
+package de.haukesomm.healthdemo;
+
+/**
+ * Created on 19.10.26
+ * <p>
+ * Desktop stand-in for the resource IDs generated for the app, limited to the ones referred to by
+ * the sources compiled into this module, i.e. the descriptions of the session types. The values
+ * are never resolved.
+ * </p>
+ *
+ * @author Hauke Sommerfeld
+ */
+public final class R {
+
+    private R() {
+        // Resource IDs only
+    }
+
+
+    public static final class string {
+
+        public static final int session_type_description_bicycle = 1;
+
+        public static final int session_type_description_default = 2;
+
+        public static final int session_type_description_run = 3;
+
+        public static final int session_type_description_walk = 4;
+
+
+        private string() {
+            // Resource IDs only
+        }
+    }
+}